@@ -1,2 +1,2 @@
 #!/bin/bash
-java -jar SQL_Load_Utility.jar
\ No newline at end of file
+java $JAVA_OPTS -jar SQL_Load_Utility.jar
\ No newline at end of file
@@ -0,0 +1,2 @@
+@echo off
+java %JAVA_OPTS% -cp SQL_Load_Utility.jar com.ibm.hdm.utility.sql.load.DistributedWorker %*
\ No newline at end of file
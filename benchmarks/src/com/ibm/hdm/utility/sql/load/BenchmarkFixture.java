@@ -0,0 +1,149 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Creates the SQL files, parameter files and configuration used by the benchmarks in a
+ * temporary directory.
+ *
+ * @author Jeff Tuck
+ */
+
+public class BenchmarkFixture {
+
+	public static final String PLAIN_FILE = "plain.sql";
+	public static final String PARAMETERIZED_FILE = "parameterized.sql";
+
+	private final File directory;
+	private final File sqlDirectory;
+	private final File parameterDirectory;
+
+	/**
+	 * Constructor for BenchmarkFixture.  Creates a plain and a parameterized SQL file and
+	 * the parameter file of the parameterized SQL file.
+	 * @throws IOException if the files cannot be created.
+	 */
+	public BenchmarkFixture() throws IOException {
+		super();
+		this.directory = Files.createTempDirectory("sqlload-benchmark").toFile();
+		this.sqlDirectory = new File(directory, "sql");
+		this.parameterDirectory = new File(directory, "parameters");
+		sqlDirectory.mkdirs();
+		parameterDirectory.mkdirs();
+		writeFile(new File(sqlDirectory, PLAIN_FILE), "SELECT ORDER_ID, STATUS FROM ORDERS WHERE ORDER_DATE > CURRENT DATE - 7 DAYS;\n");
+		writeFile(new File(sqlDirectory, PARAMETERIZED_FILE), "SELECT ORDER_ID, STATUS FROM ORDERS WHERE CUSTOMER_ID = :customer_id AND REGION = :region;\n");
+		StringBuilder parameters = new StringBuilder("customer_id,region\n");
+		for(int i = 0; i < 1000; i++) {
+			parameters.append(i).append(",REGION").append(i % 10).append('\n');
+		}
+		writeFile(new File(parameterDirectory, "parameterized.csv"), parameters.toString());
+	}
+
+	/**
+	 * Gets the directory of the SQL files.
+	 * @return The SQL directory.
+	 */
+	public File getSqlDirectory() {
+		return sqlDirectory;
+	}
+
+	/**
+	 * Creates a configuration that uses the NoOpDriver, prints nothing per execution and
+	 * keeps one connection per thread.
+	 * @param drainResultSet - True to fetch every row of each result set.
+	 * @return The configuration.
+	 */
+	public ConfigurationBean createConfiguration(boolean drainResultSet) {
+		Properties props = new Properties();
+		props.setProperty("jdbc_driver", NoOpDriver.class.getName());
+		props.setProperty("database_host_name", "localhost");
+		props.setProperty("database_port", "50000");
+		props.setProperty("database_name", "BENCH");
+		props.setProperty("database_username", "bench");
+		props.setProperty("database_password", "bench");
+		props.setProperty("use_ssl_connection", "false");
+		props.setProperty("parallel_execution", "false");
+		props.setProperty("parallel_execution_max_connections", "1");
+		props.setProperty("sql_file_directory", sqlDirectory.getPath());
+		props.setProperty("parameter_file_directory", parameterDirectory.getPath());
+		props.setProperty("result_set_drain", Boolean.toString(drainResultSet));
+		props.setProperty("quiet_mode", "true");
+		return new ConfigurationBean(props);
+	}
+
+	/**
+	 * Loads the workload of the fixture.
+	 * @param config - A configuration created by createConfiguration().
+	 * @return The workload.
+	 * @throws IOException if the workload cannot be loaded.
+	 */
+	public Workload createWorkload(ConfigurationBean config) throws IOException {
+		Workload workload = new Workload(SQLLoad.getSqlFiles(config.getSqlDirectory()), config.getStatementTerminator(),
+				config.getSqlFileEncoding(), config.getSqlCacheMaxFileBytes());
+		workload.loadParameterFiles(config.getParameterDirectory(), config.getParameterAssignment());
+		return workload;
+	}
+
+	/**
+	 * Writes a file with UTF-8 encoding.
+	 * @param file - The file to write.
+	 * @param content - The content of the file.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public static void writeFile(File file, String content) throws IOException {
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Creates a record of a successful execution with realistic times.
+	 * @param fileId - The id of the SQL file.
+	 * @param sequence - The execution sequence, which varies the times.
+	 * @return The record.
+	 */
+	public static ExecutionRecord createRecord(int fileId, long sequence) {
+		ExecutionRecord record = new ExecutionRecord();
+		record.reset(fileId, 1, sequence);
+		long now = System.nanoTime();
+		record.requestNanos = now;
+		record.startNanos = now + 20000;
+		record.executedNanos = record.startNanos + 1500000 + (sequence % 1000) * 1000;
+		record.endNanos = record.executedNanos + 250000;
+		record.status = ExecutionRecord.STATUS_SUCCESS;
+		return record;
+	}
+
+	/**
+	 * Deletes the temporary directory of the fixture.
+	 */
+	public void delete() {
+		delete(directory);
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if(children != null) {
+			for(File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,184 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * In-memory JDBC driver that does no work, so benchmarks measure the SQL Load Utility and not
+ * a database.  Each connection returns the same statement, prepared statement and result set
+ * objects every time, so the driver does not allocate per execution apart from the argument
+ * arrays of the proxies.  Result sets have ROW_COUNT rows of one INTEGER and one VARCHAR column.
+ * The cost of the driver itself is measured by RequestBenchmark.driverBaseline.
+ *
+ * The driver accepts the jdbc:db2: URLs built by ConnectionPool, so it must not be on the same
+ * classpath as the Db2 driver.
+ *
+ * @author Jeff Tuck
+ */
+
+public class NoOpDriver implements Driver {
+
+	public static final String URL_PREFIX = "jdbc:db2:";
+	public static final int ROW_COUNT = 10;
+
+	static {
+		try {
+			DriverManager.registerDriver(new NoOpDriver());
+		} catch (SQLException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	@Override
+	public Connection connect(String url, Properties info) throws SQLException {
+		if(!acceptsURL(url)) {
+			return null;
+		}
+		return new JdbcObjects().connection;
+	}
+
+	@Override
+	public boolean acceptsURL(String url) {
+		return url != null && url.startsWith(URL_PREFIX);
+	}
+
+	@Override
+	public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+		return new DriverPropertyInfo[0];
+	}
+
+	@Override
+	public int getMajorVersion() {
+		return 1;
+	}
+
+	@Override
+	public int getMinorVersion() {
+		return 0;
+	}
+
+	@Override
+	public boolean jdbcCompliant() {
+		return false;
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+
+	/**
+	 * The JDBC objects of one connection.  A connection is only used by one thread at a time,
+	 * so the result set can keep its position in a plain field.
+	 */
+	private static class JdbcObjects implements InvocationHandler {
+
+		private final Connection connection = proxy(Connection.class);
+		private final Statement statement = proxy(Statement.class);
+		private final PreparedStatement preparedStatement = proxy(PreparedStatement.class);
+		private final ResultSet resultSet = proxy(ResultSet.class);
+		private final ResultSetMetaData resultSetMetaData = proxy(ResultSetMetaData.class);
+		private final ParameterMetaData parameterMetaData = proxy(ParameterMetaData.class);
+		private int row = 0;
+
+		private <T> T proxy(Class<T> type) {
+			return type.cast(Proxy.newProxyInstance(NoOpDriver.class.getClassLoader(), new Class<?>[] { type }, this));
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			switch (name) {
+			case "createStatement":
+				return statement;
+			case "prepareStatement":
+				return preparedStatement;
+			case "executeQuery":
+				row = 0;
+				return resultSet;
+			case "getResultSet":
+				row = 0;
+				return resultSet;
+			case "next":
+				return Boolean.valueOf(++row <= ROW_COUNT);
+			case "getMetaData":
+				return resultSetMetaData;
+			case "getParameterMetaData":
+				return parameterMetaData;
+			case "getColumnCount":
+				return Integer.valueOf(2);
+			case "getColumnType":
+				return Integer.valueOf(((Integer) args[0]).intValue() == 1 ? Types.INTEGER : Types.VARCHAR);
+			case "getParameterType":
+				return Integer.valueOf(Types.VARCHAR);
+			case "getColumnDisplaySize":
+				return Integer.valueOf(32);
+			case "getInt":
+				return Integer.valueOf(row);
+			case "getString":
+				return "row";
+			case "isValid":
+			case "getAutoCommit":
+				return Boolean.TRUE;
+			case "getUpdateCount":
+				return Integer.valueOf(-1);
+			case "hashCode":
+				return Integer.valueOf(System.identityHashCode(proxy));
+			case "equals":
+				return Boolean.valueOf(proxy == args[0]);
+			case "toString":
+				return "NoOpDriver " + method.getDeclaringClass().getSimpleName();
+			default:
+				return defaultValue(method.getReturnType());
+			}
+		}
+
+		private static Object defaultValue(Class<?> type) {
+			if(type == boolean.class) {
+				return Boolean.FALSE;
+			} else if(type == int.class) {
+				return Integer.valueOf(0);
+			} else if(type == long.class) {
+				return Long.valueOf(0);
+			} else if(type == short.class) {
+				return Short.valueOf((short) 0);
+			} else if(type == byte.class) {
+				return Byte.valueOf((byte) 0);
+			} else if(type == double.class) {
+				return Double.valueOf(0);
+			} else if(type == float.class) {
+				return Float.valueOf(0);
+			}
+			return null;
+		}
+	}
+}
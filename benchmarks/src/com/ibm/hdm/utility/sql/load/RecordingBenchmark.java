@@ -0,0 +1,119 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Measures the cost of recording the result of one SQL execution: the latency histogram, the
+ * run statistics, the result collector with a sink that discards results, and the hand off of
+ * a result to the background writer of the results file.  The statistics are shared by all
+ * benchmark threads, so running with more threads (-t 8) shows the cost under contention.
+ *
+ * @author Jeff Tuck
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordingBenchmark {
+
+	private static final String[] FILE_NAMES = { "Query1.sql", "Query2.sql", "Query3.sql", "Query4.sql" };
+
+	private LatencyHistogram histogram;
+	private RunStatistics runStatistics;
+	private ResultCollector resultCollector;
+
+	@Setup
+	public void setUp() {
+		histogram = new LatencyHistogram();
+		runStatistics = new RunStatistics(FILE_NAMES);
+		runStatistics.start();
+		resultCollector = new ResultCollector(new RunStatistics(FILE_NAMES), new ResultSink() {
+			@Override
+			public void write(ExecutionRecord record) {
+				// Results are discarded.
+			}
+
+			@Override
+			public void close() {
+				// Nothing to release.
+			}
+		}, null);
+	}
+
+	/**
+	 * The records of one benchmark thread.
+	 */
+	@State(Scope.Thread)
+	public static class ThreadRecords {
+
+		private final ExecutionRecord[] records = new ExecutionRecord[1024];
+		private final ExecutionRecord polled = new ExecutionRecord();
+		private final ExecutionRecordBuffer queue = new ExecutionRecordBuffer(1024);
+		private int next = 0;
+
+		@Setup
+		public void setUp() {
+			for(int i = 0; i < records.length; i++) {
+				records[i] = BenchmarkFixture.createRecord(i % FILE_NAMES.length, i);
+			}
+		}
+
+		private ExecutionRecord next() {
+			next = (next + 1) & (records.length - 1);
+			return records[next];
+		}
+	}
+
+	@Benchmark
+	public LatencyHistogram histogramRecord(ThreadRecords threadRecords) {
+		histogram.recordValue(threadRecords.next().getResponseNanos());
+		return histogram;
+	}
+
+	@Benchmark
+	public RunStatistics runStatisticsRecord(ThreadRecords threadRecords) {
+		runStatistics.record(threadRecords.next());
+		return runStatistics;
+	}
+
+	@Benchmark
+	public ResultCollector collect(ThreadRecords threadRecords) {
+		resultCollector.collect(threadRecords.next());
+		return resultCollector;
+	}
+
+	@Benchmark
+	public ExecutionRecord resultQueueHandoff(ThreadRecords threadRecords) {
+		threadRecords.queue.offer(threadRecords.next());
+		threadRecords.queue.poll(threadRecords.polled);
+		return threadRecords.polled;
+	}
+}
@@ -0,0 +1,117 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Measures the client side cost of one SQL execution by Request.executeSQL() against the
+ * NoOpDriver, for plain SQL executed as a statement and for parameterized SQL executed as a
+ * cached prepared statement with bind values from its parameter file.  driverBaseline makes
+ * the same JDBC calls as a plain execution without the utility, so the overhead the utility
+ * adds to every measured execution is the difference between executePlain and driverBaseline.
+ *
+ * @author Jeff Tuck
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestBenchmark {
+
+	@Param({"false", "true"})
+	public boolean drainResultSet;
+
+	private BenchmarkFixture fixture;
+	private ConfigurationBean config;
+	private Workload workload;
+	private ConnectionPool connectionPool;
+	private Connection connection;
+	private String plainSql;
+	private int plainStatementId;
+	private int parameterizedStatementId;
+	private long executionSequence = 0;
+	private final ExecutionRecord record = new ExecutionRecord();
+
+	@Setup
+	public void setUp() throws IOException, ClassNotFoundException, SQLException {
+		fixture = new BenchmarkFixture();
+		config = fixture.createConfiguration(drainResultSet);
+		workload = fixture.createWorkload(config);
+		plainStatementId = workload.getFirstStatementId(workload.findFileId(BenchmarkFixture.PLAIN_FILE));
+		parameterizedStatementId = workload.getFirstStatementId(workload.findFileId(BenchmarkFixture.PARAMETERIZED_FILE));
+		plainSql = workload.getSql(plainStatementId);
+		connectionPool = new ConnectionPool(config, 1);
+		connectionPool.prewarm();
+		// The setup runs on the benchmark thread, so this is the connection Request uses as well.
+		connection = connectionPool.getConnection();
+	}
+
+	@TearDown
+	public void tearDown() {
+		connectionPool.close();
+		workload.close();
+		fixture.delete();
+	}
+
+	@Benchmark
+	public ExecutionRecord executePlain() {
+		new Request(workload, plainStatementId, ++executionSequence, config, connectionPool).executeSQL(record);
+		return record;
+	}
+
+	@Benchmark
+	public ExecutionRecord executeParameterized() {
+		new Request(workload, parameterizedStatementId, ++executionSequence, config, connectionPool).executeSQL(record);
+		return record;
+	}
+
+	@Benchmark
+	public long driverBaseline() throws SQLException {
+		long rowCount = 0;
+		Statement statement = connection.createStatement();
+		ResultSet resultSet = statement.executeQuery(plainSql);
+		if(drainResultSet) {
+			resultSet.getMetaData().getColumnCount();
+			while(resultSet.next()) {
+				rowCount++;
+			}
+		}
+		resultSet.close();
+		statement.close();
+		return rowCount;
+	}
+}
@@ -0,0 +1,89 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Measures the cost of formatting one line of the results CSV file, for a successful
+ * execution and for a failed execution with an error message.  Lines are written to a
+ * writer that discards them, so only the formatting is measured.  This is the work the
+ * background writer thread does for every execution of a run.
+ *
+ * @author Jeff Tuck
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultWriterBenchmark {
+
+	private File file;
+	private ResultWriter resultWriter;
+	private final Writer out = Writer.nullWriter();
+	private ExecutionRecord success;
+	private ExecutionRecord error;
+
+	@Setup
+	public void setUp() throws IOException {
+		file = File.createTempFile("sqlload-results", ".csv");
+		resultWriter = new ResultWriter(file.getPath(), new String[] { "Query1.sql" }, "bench", 1024, 1000);
+		success = BenchmarkFixture.createRecord(0, 1);
+		success.rowCount = 10;
+		success.bytesFetched = 360;
+		success.firstRowNanos = success.executedNanos + 1000;
+		success.lastRowNanos = success.endNanos;
+		error = BenchmarkFixture.createRecord(0, 2);
+		error.status = ExecutionRecord.STATUS_ERROR;
+		error.errorCode = -204;
+		error.errorMessage = "com.ibm.db2.jcc.am.SqlSyntaxErrorException: DB2 SQL Error: SQLCODE=-204, SQLSTATE=42704, SQLERRMC=ORDERS, DRIVER=4.20.4";
+	}
+
+	@TearDown
+	public void tearDown() {
+		resultWriter.close();
+		file.delete();
+	}
+
+	@Benchmark
+	public Writer formatSuccess() throws IOException {
+		resultWriter.writeResult(out, success);
+		return out;
+	}
+
+	@Benchmark
+	public Writer formatError() throws IOException {
+		resultWriter.writeResult(out, error);
+		return out;
+	}
+}
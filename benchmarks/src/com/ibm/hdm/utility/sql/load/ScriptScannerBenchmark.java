@@ -0,0 +1,111 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Measures how long SQLScriptScanner takes to find the statements of a large SQL file with
+ * comments, string literals and multi line statements.  The file is read from the page
+ * cache, so the result is the scanning cost and not the disk speed.  Divide the file size by
+ * the time per scan for the scanning throughput in MB per second.
+ *
+ * @author Jeff Tuck
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScriptScannerBenchmark {
+
+	@Param({"1", "64"})
+	public int fileMegabytes;
+
+	private File file;
+	private FileChannel channel;
+	private final SQLScriptScanner scanner = new SQLScriptScanner(";");
+	private final StatementCounter counter = new StatementCounter();
+
+	@Setup
+	public void setUp() throws IOException {
+		file = File.createTempFile("sqlload-scanner", ".sql");
+		long targetBytes = fileMegabytes * 1024L * 1024L;
+		long bytes = 0;
+		Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+		try {
+			for(int i = 0; bytes < targetBytes; i++) {
+				String statement = "-- Statement " + i + " checks the orders; of one customer\n"
+						+ "SELECT O.ORDER_ID, O.STATUS, C.NAME\n"
+						+ "  FROM ORDERS O JOIN CUSTOMERS C ON C.CUSTOMER_ID = O.CUSTOMER_ID\n"
+						+ " WHERE O.CUSTOMER_ID = " + i + " AND C.NOTE <> 'closed; do not use' /* ; */\n"
+						+ "   AND O.ORDER_DATE > CURRENT DATE - 30 DAYS;\n\n";
+				out.write(statement);
+				bytes += statement.length();
+			}
+		} finally {
+			out.close();
+		}
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		channel.close();
+		file.delete();
+	}
+
+	@Benchmark
+	public long scan() throws IOException {
+		counter.statements = 0;
+		scanner.scan(channel, counter);
+		return counter.statements;
+	}
+
+	/**
+	 * Counts the statements found.
+	 */
+	private static class StatementCounter implements SQLScriptScanner.StatementListener {
+
+		private long statements = 0;
+
+		@Override
+		public void statementFound(long offset, int length) {
+			statements++;
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Sustained, closed loop load.  A fixed population of virtual users each run on their own
+ * thread and repeatedly execute the workload, one SQL statement at a time, until the 
+ * configured duration has passed or the configured number of iterations is complete.  A 
+ * virtual user submits its next statement only after the previous one has finished and the 
+ * optional think time has passed.  Virtual users are started evenly over the ramp up period.
+ * The users are divided into the user classes of the workload mix, which define the
+ * statements of an iteration and the think time.
+ * Each virtual user runs on a platform thread or, in the virtual executor mode, on its own
+ * virtual thread.
+ * 
+ * @author Jeff Tuck
+ */
+
+public class ClosedLoopDriver {
+
+	private ConfigurationBean config = null;
+	private ConnectionPool connectionPool = null;
+	private Workload workload = null;
+	private WorkloadMix workloadMix = null;
+	private ResultCollector resultCollector = null;
+	private WorkerThreads workerThreads = null;
+	private int userCount = 1;
+	private final AtomicLong executionSequence = new AtomicLong(1);
+	private long deadlineNanos = Long.MAX_VALUE;
+
+	/**
+	 * Constructor for ClosedLoopDriver
+	 * @param config - The configuration for SQL Load.
+	 * @param connectionPool - The pool to get database connections from.
+	 * @param workload - The SQL statements of the run.
+	 * @param workloadMix - The user classes of the virtual users.
+	 * @param resultCollector - Receives the result of each SQL execution.
+	 * @param workerThreads - Creates the threads of the virtual users and limits concurrent SQL executions.
+	 */
+	public ClosedLoopDriver(ConfigurationBean config, ConnectionPool connectionPool, Workload workload, WorkloadMix workloadMix,
+			ResultCollector resultCollector, WorkerThreads workerThreads) {
+		super();
+		this.config = config;
+		this.connectionPool = connectionPool;
+		this.workload = workload;
+		this.workloadMix = workloadMix;
+		this.resultCollector = resultCollector;
+		this.workerThreads = workerThreads;
+		this.userCount = Math.max(workloadMix.getTotalUsers(), 1);
+	}
+
+	/**
+	 * Starts the virtual users and waits until all of them are finished.
+	 */
+	public void run() {
+		ExecutorService executor = workerThreads.newExecutor(this.userCount, "virtual-user");
+		long startNanos = System.nanoTime();
+		if(config.getRunDuration() > 0) {
+			this.deadlineNanos = startNanos + TimeUnit.SECONDS.toNanos(config.getRunDuration());
+		}
+		long rampUpNanos = TimeUnit.SECONDS.toNanos(config.getRampUp());
+		System.out.println("*****  STARTING " + this.userCount + " VIRTUAL USERS ON " + (workerThreads.isVirtual() ? "VIRTUAL" : "PLATFORM") + " THREADS  *****");
+		int user = 0;
+		for(UserClass userClass : workloadMix.getUserClasses()) {
+			for(int classUser = 0; classUser < userClass.getUsers(); classUser++) {
+				executor.execute(new VirtualUser(userClass, classUser, startNanos + rampUpNanos * user / this.userCount));
+				user++;
+			}
+		}
+		executor.shutdown();
+		try {
+			while(!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				System.out.println("*****  WAITING FOR VIRTUAL USERS TO FINISH  *****");
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Indicates if the configured run duration or the run timeout has passed, or the run has
+	 * reached a steady state.
+	 * @return True if no more SQL should be started.
+	 */
+	private boolean isPastDeadline() {
+		return (this.deadlineNanos != Long.MAX_VALUE && System.nanoTime() - this.deadlineNanos >= 0) || connectionPool.getWatchdog().isRunExpired()
+				|| resultCollector.isSteadyState();
+	}
+
+	/**
+	 * Indicates if a virtual user has completed all of its iterations.
+	 * @param iteration - The number of iterations the virtual user has completed.
+	 * @return True if the virtual user should stop.
+	 */
+	private boolean isComplete(int iteration) {
+		int iterations = config.getIterationsPerUser();
+		if(iterations > 0) {
+			return iteration >= iterations;
+		}
+		// Without an iteration limit the run lasts for the duration, or a single iteration without one.
+		return this.deadlineNanos == Long.MAX_VALUE && iteration >= 1;
+	}
+
+	/**
+	 * A single simulated user which executes the iteration of its user class in a loop.  When
+	 * the iteration is the whole workload, each user starts at a different SQL statement so that
+	 * users do not all run the same statement at the same time.
+	 */
+	private class VirtualUser implements Runnable {
+
+		private final UserClass userClass;
+		private final int userNumber;
+		private final long startNanos;
+
+		private VirtualUser(UserClass userClass, int userNumber, long startNanos) {
+			this.userClass = userClass;
+			this.userNumber = userNumber;
+			this.startNanos = startNanos;
+		}
+
+		@Override
+		public void run() {
+			try {
+				long delayNanos = this.startNanos - System.nanoTime();
+				if(delayNanos > 0) {
+					TimeUnit.NANOSECONDS.sleep(delayNanos);
+				}
+				int iterationLength = this.userClass.getIterationLength();
+				long thinkTime = this.userClass.getThinkTime();
+				ExecutionRecord record = new ExecutionRecord();
+				for(int iteration = 0; !isComplete(iteration); iteration++) {
+					for(int step = 0; step < iterationLength; step++) {
+						if(isPastDeadline()) {
+							return;
+						}
+						int statementId = this.userClass.getStatementId(this.userNumber, step);
+						Request request = new Request(workload, statementId, executionSequence.getAndIncrement(), config, connectionPool);
+						// Time spent waiting for an execution permit is reported as queue delay.
+						request.setIntendedStartNanos(System.nanoTime());
+						workerThreads.beginExecution();
+						resultCollector.executionStarted();
+						try {
+							request.executeSQL(record);
+						} finally {
+							workerThreads.endExecution();
+						}
+						resultCollector.collect(record);
+						if(thinkTime > 0) {
+							Thread.sleep(thinkTime);
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -0,0 +1,333 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Drives the sweep load mode, which finds the concurrency at which the throughput of the
+ * database stops growing.  The sweep is a closed loop run whose number of virtual users
+ * grows in steps from sweep_start_users up to sweep_max_users.  Each step measures the
+ * throughput and response times of a window of sweep_step_seconds.
+ *
+ * Virtual users keep running from one step to the next, so connections, prepared statements
+ * and the warm up before the first step are reused.  Only the settle period after adding
+ * users is repeated at each step.  With sweep_step_users set to 0 the steps are adaptive:
+ * the number of users doubles while the throughput grows well and the step is halved when
+ * the gain gets smaller.
+ *
+ * The sweep stops when the throughput gain of a step is below sweep_plateau_percent, when
+ * the P99 response time is above sweep_p99_slo_millis, at sweep_max_users or when the run
+ * timeout has passed.  The step table is printed and written to a Sweep CSV file, with the
+ * saturation knee: the smallest concurrency whose throughput is within sweep_plateau_percent
+ * of the best throughput of the steps that met the P99 objective.
+ *
+ * With user classes each added user takes the next class in proportion to the users of
+ * the classes.
+ *
+ * @author Jeff Tuck
+ */
+
+public class ConcurrencySweep {
+
+	public static final String STOP_PLATEAU = "THROUGHPUT PLATEAU";
+	public static final String STOP_SLO = "P99 ABOVE SLO";
+	public static final String STOP_MAX_USERS = "MAXIMUM USERS REACHED";
+	public static final String STOP_RUN_TIMEOUT = "RUN TIMEOUT";
+
+	private ConfigurationBean config = null;
+	private ConnectionPool connectionPool = null;
+	private Workload workload = null;
+	private ResultCollector resultCollector = null;
+	private WorkerThreads workerThreads = null;
+	private String fileName = null;
+	private final List<UserClass> userPattern = new ArrayList<UserClass>();
+	private final AtomicLong executionSequence = new AtomicLong(1);
+	private final List<Step> steps = new ArrayList<Step>();
+	private volatile Step currentStep = null;
+	private volatile boolean stopped = false;
+	private int startedUsers = 0;
+
+	/**
+	 * Constructor for ConcurrencySweep
+	 * @param config - The configuration for SQL Load.
+	 * @param connectionPool - The pool to get database connections from.
+	 * @param workload - The SQL statements of the run.
+	 * @param workloadMix - The user classes of the virtual users.
+	 * @param resultCollector - Receives the result of each SQL execution.
+	 * @param workerThreads - Creates the threads of the virtual users and limits concurrent SQL executions.
+	 * @param fileName - The name of the file to write the step table to.
+	 */
+	public ConcurrencySweep(ConfigurationBean config, ConnectionPool connectionPool, Workload workload, WorkloadMix workloadMix,
+			ResultCollector resultCollector, WorkerThreads workerThreads, String fileName) {
+		super();
+		this.config = config;
+		this.connectionPool = connectionPool;
+		this.workload = workload;
+		this.resultCollector = resultCollector;
+		this.workerThreads = workerThreads;
+		this.fileName = fileName;
+		for(UserClass userClass : workloadMix.getUserClasses()) {
+			for(int user = 0; user < Math.max(userClass.getUsers(), 1); user++) {
+				userPattern.add(userClass);
+			}
+		}
+	}
+
+	/**
+	 * Runs the steps of the sweep, stops the virtual users and writes the step table.
+	 */
+	public void run() {
+		int maxUsers = Math.max(config.getSweepMaxUsers(), 1);
+		int users = Math.min(Math.max(config.getSweepStartUsers(), 1), maxUsers);
+		int stepUsers = config.getSweepStepUsers() > 0 ? config.getSweepStepUsers() : users;
+		ExecutorService executor = workerThreads.newExecutor(maxUsers, "virtual-user");
+		System.out.println("*****  SWEEPING " + users + " TO " + maxUsers + " VIRTUAL USERS ON " + (workerThreads.isVirtual() ? "VIRTUAL" : "PLATFORM") + " THREADS  *****");
+		String stopReason = STOP_MAX_USERS;
+		try {
+			startUsers(executor, users);
+			pause(config.getSweepWarmUpSeconds());
+			Step previous = null;
+			while(true) {
+				Step step = measure(users);
+				if(connectionPool.getWatchdog().isRunExpired()) {
+					// A step cut short by the run timeout is not reported.
+					stopReason = STOP_RUN_TIMEOUT;
+					break;
+				}
+				steps.add(step);
+				double gain = previous == null ? Double.NaN : (step.getThroughput() / previous.getThroughput() - 1) * 100;
+				System.out.println("*****  STEP " + steps.size() + ": " + users + " USERS, " + format(step.getThroughput()) + " PER SEC, P99 "
+						+ RunStatistics.toMillis(step.latencies.getValueAtPercentile(99.0)) + " MS" + (previous == null ? "" : ", GAIN " + format(gain) + "%") + "  *****");
+				if(config.getSweepP99SloMillis() > 0 && step.latencies.getValueAtPercentile(99.0) > config.getSweepP99SloMillis() * 1e6) {
+					stopReason = STOP_SLO;
+					break;
+				}
+				if(previous != null && !(gain >= config.getSweepPlateauPercent())) {
+					stopReason = STOP_PLATEAU;
+					break;
+				}
+				if(users >= maxUsers) {
+					break;
+				}
+				if(config.getSweepStepUsers() <= 0 && previous != null) {
+					// Adaptive steps double the users while the gain is large and shrink as it levels off.
+					stepUsers = gain >= 2 * config.getSweepPlateauPercent() ? users : Math.max(stepUsers / 2, 1);
+				}
+				users = Math.min(users + stepUsers, maxUsers);
+				startUsers(executor, users);
+				pause(config.getSweepSettleSeconds());
+				previous = step;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			stopReason = "INTERRUPTED";
+		}
+		stopped = true;
+		executor.shutdown();
+		try {
+			while(!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				System.out.println("*****  WAITING FOR VIRTUAL USERS TO FINISH  *****");
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		writeSteps(stopReason);
+	}
+
+	/**
+	 * Starts virtual users until the given number of users is running.
+	 * @param executor - The executor of the virtual users.
+	 * @param users - The number of users that should be running.
+	 */
+	private void startUsers(ExecutorService executor, int users) {
+		while(startedUsers < users) {
+			UserClass userClass = userPattern.get(startedUsers % userPattern.size());
+			executor.execute(new SweepUser(userClass, startedUsers));
+			startedUsers++;
+		}
+	}
+
+	/**
+	 * Measures the executions that complete during the window of one step.
+	 * @param users - The number of virtual users of the step.
+	 * @return The measured step.
+	 * @throws InterruptedException if the sweep is interrupted.
+	 */
+	private Step measure(int users) throws InterruptedException {
+		Step step = new Step(users);
+		long startNanos = System.nanoTime();
+		currentStep = step;
+		pause(config.getSweepStepSeconds());
+		currentStep = null;
+		step.seconds = (System.nanoTime() - startNanos) / 1e9;
+		return step;
+	}
+
+	private static void pause(int seconds) throws InterruptedException {
+		if(seconds > 0) {
+			TimeUnit.SECONDS.sleep(seconds);
+		}
+	}
+
+	/**
+	 * Prints the step table and writes it to the sweep file.
+	 * @param stopReason - Why the sweep stopped.
+	 */
+	private void writeSteps(String stopReason) {
+		double bestThroughput = 0;
+		for(Step step : steps) {
+			if(step.meetsSlo()) {
+				bestThroughput = Math.max(bestThroughput, step.getThroughput());
+			}
+		}
+		Step knee = null;
+		for(Step step : steps) {
+			if(knee == null && step.meetsSlo() && step.getThroughput() >= bestThroughput * (1 - config.getSweepPlateauPercent() / 100)) {
+				knee = step;
+			}
+		}
+		StringBuilder table = new StringBuilder();
+		table.append("Step, Virtual Users, Executions, Errors, Throughput (per sec), Throughput Gain (%), P50 (ms), P90 (ms), P99 (ms), Max (ms), Mean (ms), Knee");
+		table.append(System.lineSeparator());
+		Step previous = null;
+		for(int i = 0; i < steps.size(); i++) {
+			Step step = steps.get(i);
+			LatencyHistogram latencies = step.latencies;
+			table.append(i + 1).append(',')
+				.append(step.users).append(',')
+				.append(latencies.getTotalCount() + step.errors.sum()).append(',')
+				.append(step.errors.sum()).append(',')
+				.append(format(step.getThroughput())).append(',')
+				.append(previous == null || previous.getThroughput() == 0 ? "" : format((step.getThroughput() / previous.getThroughput() - 1) * 100)).append(',')
+				.append(RunStatistics.toMillis(latencies.getValueAtPercentile(50.0))).append(',')
+				.append(RunStatistics.toMillis(latencies.getValueAtPercentile(90.0))).append(',')
+				.append(RunStatistics.toMillis(latencies.getValueAtPercentile(99.0))).append(',')
+				.append(RunStatistics.toMillis(latencies.getMaxValue())).append(',')
+				.append(RunStatistics.toMillis(latencies.getMean())).append(',')
+				.append(step == knee ? "KNEE" : "")
+				.append(System.lineSeparator());
+			previous = step;
+		}
+		System.out.println("=========================================================");
+		System.out.print(table);
+		System.out.println("*****  SWEEP STOPPED: " + stopReason + "  *****");
+		if(knee != null) {
+			System.out.println("*****  SATURATION KNEE AT " + knee.users + " VIRTUAL USERS, " + format(knee.getThroughput()) + " PER SEC  *****");
+		} else {
+			System.out.println("*****  NO STEP MET THE P99 SLO  *****");
+		}
+		try {
+			OutputStreamWriter outputStreamWriter = new OutputStreamWriter(new FileOutputStream(fileName));
+			outputStreamWriter.write(table.toString());
+			outputStreamWriter.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		System.out.println("Sweep Written To: " + fileName);
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+
+	/**
+	 * The executions that completed during the measured window of one step.
+	 */
+	private class Step {
+		private final int users;
+		private final LatencyHistogram latencies = new LatencyHistogram();
+		private final LongAdder errors = new LongAdder();
+		private double seconds = 0;
+
+		private Step(int users) {
+			this.users = users;
+		}
+
+		private void record(ExecutionRecord record) {
+			if(record.isSuccess()) {
+				latencies.recordValue(record.getResponseNanos());
+			} else {
+				errors.increment();
+			}
+		}
+
+		private double getThroughput() {
+			return seconds > 0 ? latencies.getTotalCount() / seconds : 0.0;
+		}
+
+		private boolean meetsSlo() {
+			return config.getSweepP99SloMillis() <= 0 || latencies.getValueAtPercentile(99.0) <= config.getSweepP99SloMillis() * 1e6;
+		}
+	}
+
+	/**
+	 * A virtual user that executes the iteration of its user class in a loop until the sweep
+	 * stops.
+	 */
+	private class SweepUser implements Runnable {
+
+		private final UserClass userClass;
+		private final int userNumber;
+
+		private SweepUser(UserClass userClass, int userNumber) {
+			this.userClass = userClass;
+			this.userNumber = userNumber;
+		}
+
+		@Override
+		public void run() {
+			try {
+				int iterationLength = this.userClass.getIterationLength();
+				long thinkTime = this.userClass.getThinkTime();
+				ExecutionRecord record = new ExecutionRecord();
+				while(!stopped && !connectionPool.getWatchdog().isRunExpired()) {
+					for(int step = 0; step < iterationLength && !stopped; step++) {
+						int statementId = this.userClass.getStatementId(this.userNumber, step);
+						Request request = new Request(workload, statementId, executionSequence.getAndIncrement(), config, connectionPool);
+						request.setIntendedStartNanos(System.nanoTime());
+						workerThreads.beginExecution();
+						resultCollector.executionStarted();
+						try {
+							request.executeSQL(record);
+						} finally {
+							workerThreads.endExecution();
+						}
+						resultCollector.collect(record);
+						Step measuredStep = currentStep;
+						if(measuredStep != null) {
+							measuredStep.record(record);
+						}
+						if(thinkTime > 0) {
+							Thread.sleep(thinkTime);
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -40,6 +40,73 @@ public class ConfigurationBean {
 	private boolean useThreads = false;
 	private int maxThreadCount = 10;
 	private String sqlDirectory = "";
+	private boolean drainResultSet = false;
+	private int fetchSize = 0;
+	private String connectionPoolMode = "per_user";
+	private int connectionPoolSize = 0;
+	private int connectionPoolTimeout = 60;
+	private boolean connectionValidateOnBorrow = false;
+	private int connectionValidationTimeout = 5;
+	private String sessionSchema = "";
+	private String sessionIsolation = "";
+	private String sessionCurrentDegree = "";
+	private String sessionInitSql = "";
+	private String loadMode = "once";
+	private int virtualUsers = 0;
+	private int runDuration = 0;
+	private int iterationsPerUser = 0;
+	private int rampUp = 0;
+	private long thinkTime = 0;
+	private double targetRate = 0.0;
+	private int resultQueueCapacity = 65536;
+	private long resultFlushInterval = 1000;
+	private String executorMode = "platform";
+	private int maxConcurrentExecutions = 0;
+	private boolean pinnedThreadCheck = false;
+	private long pinnedThreadThreshold = 20;
+	private String parameterDirectory = "";
+	private String parameterAssignment = "round_robin";
+	private int statementCacheSize = 64;
+	private String statementTerminator = ";";
+	private String sqlFileEncoding = "UTF-8";
+	private long sqlCacheMaxFileBytes = 1048576;
+	private String workloadDefinitionFile = "";
+	private boolean quietMode = false;
+	private int intervalReportSeconds = 0;
+	private String resultFormat = "csv";
+	private Properties properties = null;
+	private String workerHosts = "";
+	private int workerStartDelay = 2000;
+	private String jdbcUrl = "";
+	private int sweepStartUsers = 1;
+	private int sweepMaxUsers = 64;
+	private int sweepStepUsers = 0;
+	private int sweepStepSeconds = 30;
+	private int sweepWarmUpSeconds = 30;
+	private int sweepSettleSeconds = 5;
+	private double sweepPlateauPercent = 5;
+	private double sweepP99SloMillis = 0;
+	private String replayFile = "";
+	private double replaySpeed = 1.0;
+	private int replaySessionIdleSeconds = 30;
+	private boolean serverMetrics = false;
+	private String serverMetricsApplicationName = "SQLLoad";
+	private String serverMetricsStatementSource = "TABLE(MON_GET_PKG_CACHE_STMT('D', NULL, NULL, -2))";
+	private String serverMetricsConnectionSource = "TABLE(MON_GET_CONNECTION(NULL, -2))";
+	private int statementTimeout = 0;
+	private int runTimeout = 0;
+	private int ingestBatchSize = 1000;
+	private int ingestCommitBatches = 1;
+	private String ingestSource = "csv";
+	private long ingestRows = 0;
+	private boolean flightRecording = false;
+	private String flightRecordingSettings = "default";
+	private int warmUpSeconds = 0;
+	private int steadyStateIntervalSeconds = 0;
+	private double steadyStatePrecisionPercent = 5;
+	private int steadyStateMinIntervals = 5;
+	private boolean verifyResults = false;
+	private String verificationBaselineFile = "";
 
 	
 	/**
@@ -47,13 +114,6 @@ public class ConfigurationBean {
 	 */
 	public ConfigurationBean() {
 		super();
-		init();
-	}
-	
-	/**
-	 * Initialize variables with values from properties file.
-	 */
-	private void init() {
 		Properties props = new Properties();
 		try {
 			InputStream inputStream = new FileInputStream("config.props");  
@@ -63,6 +123,34 @@ public class ConfigurationBean {
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+		init(props);
+	}
+	
+	/**
+	 * Constructor for a configuration received from a distributed coordinator.
+	 * @param props - The configuration properties.
+	 */
+	public ConfigurationBean(Properties props) {
+		super();
+		init(props);
+	}
+	
+	/**
+	 * Gets a copy of the properties the configuration was read from.
+	 * @return The configuration properties.
+	 */
+	protected Properties getProperties() {
+		Properties copy = new Properties();
+		copy.putAll(this.properties);
+		return copy;
+	}
+	
+	/**
+	 * Initialize variables with values from properties file.
+	 * @param props - The configuration properties.
+	 */
+	private void init(Properties props) {
+		this.properties = props;
 		this.jdbcDriver = props.getProperty("jdbc_driver");
 		this.hostName = props.getProperty("database_host_name");
 		this.port = props.getProperty("database_port");
@@ -73,6 +161,72 @@ public class ConfigurationBean {
 		this.useThreads = Boolean.parseBoolean(props.getProperty("parallel_execution"));
 		this.maxThreadCount = Integer.parseInt(props.getProperty("parallel_execution_max_connections"));
 		this.sqlDirectory = props.getProperty("sql_file_directory");
+		this.drainResultSet = Boolean.parseBoolean(props.getProperty("result_set_drain", "false"));
+		this.fetchSize = Integer.parseInt(props.getProperty("result_set_fetch_size", "0").trim());
+		this.connectionPoolMode = props.getProperty("connection_pool_mode", "per_user").trim();
+		this.connectionPoolSize = Integer.parseInt(props.getProperty("connection_pool_size", "0").trim());
+		this.connectionPoolTimeout = Integer.parseInt(props.getProperty("connection_pool_timeout_seconds", "60").trim());
+		this.connectionValidateOnBorrow = Boolean.parseBoolean(props.getProperty("connection_validate_on_borrow", "false").trim());
+		this.connectionValidationTimeout = Integer.parseInt(props.getProperty("connection_validation_timeout_seconds", "5").trim());
+		this.sessionSchema = props.getProperty("session_schema", "").trim();
+		this.sessionIsolation = props.getProperty("session_isolation", "").trim();
+		this.sessionCurrentDegree = props.getProperty("session_current_degree", "").trim();
+		this.sessionInitSql = props.getProperty("session_init_sql", "").trim();
+		this.loadMode = props.getProperty("load_mode", "once").trim();
+		this.virtualUsers = Integer.parseInt(props.getProperty("virtual_users", "0").trim());
+		this.runDuration = Integer.parseInt(props.getProperty("run_duration_seconds", "0").trim());
+		this.iterationsPerUser = Integer.parseInt(props.getProperty("iterations_per_user", "0").trim());
+		this.rampUp = Integer.parseInt(props.getProperty("ramp_up_seconds", "0").trim());
+		this.thinkTime = Long.parseLong(props.getProperty("think_time_millis", "0").trim());
+		this.targetRate = Double.parseDouble(props.getProperty("target_rate_per_second", "0.0").trim());
+		this.resultQueueCapacity = Integer.parseInt(props.getProperty("result_queue_capacity", "65536").trim());
+		this.resultFlushInterval = Long.parseLong(props.getProperty("result_flush_interval_millis", "1000").trim());
+		this.executorMode = props.getProperty("executor_mode", "platform").trim();
+		this.maxConcurrentExecutions = Integer.parseInt(props.getProperty("max_concurrent_executions", "0").trim());
+		this.pinnedThreadCheck = Boolean.parseBoolean(props.getProperty("pinned_thread_check", "false").trim());
+		this.pinnedThreadThreshold = Long.parseLong(props.getProperty("pinned_thread_threshold_millis", "20").trim());
+		this.parameterDirectory = props.getProperty("parameter_file_directory", "").trim();
+		this.parameterAssignment = props.getProperty("parameter_assignment", "round_robin").trim();
+		this.statementCacheSize = Integer.parseInt(props.getProperty("statement_cache_size", "64").trim());
+		this.statementTerminator = props.getProperty("statement_terminator", ";").trim();
+		this.sqlFileEncoding = props.getProperty("sql_file_encoding", "UTF-8").trim();
+		this.sqlCacheMaxFileBytes = Long.parseLong(props.getProperty("sql_cache_max_file_bytes", "1048576").trim());
+		this.workloadDefinitionFile = props.getProperty("workload_definition_file", "").trim();
+		this.quietMode = Boolean.parseBoolean(props.getProperty("quiet_mode", "false").trim());
+		this.intervalReportSeconds = Integer.parseInt(props.getProperty("interval_report_seconds", "0").trim());
+		this.resultFormat = props.getProperty("result_format", "csv").trim();
+		this.workerHosts = props.getProperty("worker_hosts", "").trim();
+		this.workerStartDelay = Integer.parseInt(props.getProperty("worker_start_delay_millis", "2000").trim());
+		this.jdbcUrl = props.getProperty("jdbc_url", "").trim();
+		this.sweepStartUsers = Integer.parseInt(props.getProperty("sweep_start_users", "1").trim());
+		this.sweepMaxUsers = Integer.parseInt(props.getProperty("sweep_max_users", "64").trim());
+		this.sweepStepUsers = Integer.parseInt(props.getProperty("sweep_step_users", "0").trim());
+		this.sweepStepSeconds = Integer.parseInt(props.getProperty("sweep_step_seconds", "30").trim());
+		this.sweepWarmUpSeconds = Integer.parseInt(props.getProperty("sweep_warm_up_seconds", "30").trim());
+		this.sweepSettleSeconds = Integer.parseInt(props.getProperty("sweep_settle_seconds", "5").trim());
+		this.sweepPlateauPercent = Double.parseDouble(props.getProperty("sweep_plateau_percent", "5").trim());
+		this.sweepP99SloMillis = Double.parseDouble(props.getProperty("sweep_p99_slo_millis", "0").trim());
+		this.replayFile = props.getProperty("replay_file", "").trim();
+		this.replaySpeed = Double.parseDouble(props.getProperty("replay_speed", "1.0").trim());
+		this.replaySessionIdleSeconds = Integer.parseInt(props.getProperty("replay_session_idle_seconds", "30").trim());
+		this.serverMetrics = Boolean.parseBoolean(props.getProperty("server_metrics", "false").trim());
+		this.serverMetricsApplicationName = props.getProperty("server_metrics_application_name", "SQLLoad").trim();
+		this.serverMetricsStatementSource = props.getProperty("server_metrics_statement_source", "TABLE(MON_GET_PKG_CACHE_STMT('D', NULL, NULL, -2))").trim();
+		this.serverMetricsConnectionSource = props.getProperty("server_metrics_connection_source", "TABLE(MON_GET_CONNECTION(NULL, -2))").trim();
+		this.statementTimeout = Integer.parseInt(props.getProperty("statement_timeout_seconds", "0").trim());
+		this.runTimeout = Integer.parseInt(props.getProperty("run_timeout_seconds", "0").trim());
+		this.ingestBatchSize = Integer.parseInt(props.getProperty("ingest_batch_size", "1000").trim());
+		this.ingestCommitBatches = Integer.parseInt(props.getProperty("ingest_commit_batches", "1").trim());
+		this.ingestSource = props.getProperty("ingest_source", "csv").trim();
+		this.ingestRows = Long.parseLong(props.getProperty("ingest_rows", "0").trim());
+		this.flightRecording = Boolean.parseBoolean(props.getProperty("flight_recording", "false").trim());
+		this.flightRecordingSettings = props.getProperty("flight_recording_settings", "default").trim();
+		this.warmUpSeconds = Integer.parseInt(props.getProperty("warm_up_seconds", "0").trim());
+		this.steadyStateIntervalSeconds = Integer.parseInt(props.getProperty("steady_state_interval_seconds", "0").trim());
+		this.steadyStatePrecisionPercent = Double.parseDouble(props.getProperty("steady_state_precision_percent", "5").trim());
+		this.steadyStateMinIntervals = Integer.parseInt(props.getProperty("steady_state_min_intervals", "5").trim());
+		this.verifyResults = Boolean.parseBoolean(props.getProperty("verify_results", "false").trim());
+		this.verificationBaselineFile = props.getProperty("verification_baseline_file", "").trim();
 	}
 	
 	
@@ -238,4 +392,1066 @@ public class ConfigurationBean {
 	protected void setUseSSL(boolean useSSL) {
 		this.useSSL = useSSL;
 	}
+
+	/**
+	 * Indicates if every row of a result set should be fetched from the server.  Time to 
+	 * first row, time to last row, row count and bytes fetched are only captured when 
+	 * the result set is drained.
+	 * @return True if result sets are drained.  False if only the cursor is opened.
+	 */
+	protected boolean isDrainResultSet() {
+		return drainResultSet;
+	}
+
+	/**
+	 * Set the configuration to drain result sets.
+	 * @param drainResultSet True to fetch every row.  False to only open the cursor.
+	 */
+	protected void setDrainResultSet(boolean drainResultSet) {
+		this.drainResultSet = drainResultSet;
+	}
+
+	/**
+	 * Gets the number of rows the JDBC driver should fetch from the server per round trip.
+	 * @return The fetch size.  Zero means the driver default is used.
+	 */
+	protected int getFetchSize() {
+		return fetchSize;
+	}
+
+	/**
+	 * Sets the number of rows the JDBC driver should fetch from the server per round trip.
+	 * @param fetchSize The fetch size.  Zero to use the driver default.
+	 */
+	protected void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Gets the connection pool mode.  per_user keeps one connection per simulated user for the whole run, shared
+	 * borrows a connection from a bounded pool for each SQL execution.
+	 * @return The connection pool mode.
+	 */
+	protected String getConnectionPoolMode() {
+		return connectionPoolMode;
+	}
+
+	/**
+	 * Sets the connection pool mode.
+	 * @param connectionPoolMode The connection pool mode, per_user or shared.
+	 */
+	protected void setConnectionPoolMode(String connectionPoolMode) {
+		this.connectionPoolMode = connectionPoolMode;
+	}
+
+	/**
+	 * Gets the number of connections in the shared connection pool.
+	 * @return The pool size.  Zero means one connection per thread.
+	 */
+	protected int getConnectionPoolSize() {
+		return connectionPoolSize;
+	}
+
+	/**
+	 * Sets the number of connections in the shared connection pool.
+	 * @param connectionPoolSize The pool size.  Zero for one connection per thread.
+	 */
+	protected void setConnectionPoolSize(int connectionPoolSize) {
+		this.connectionPoolSize = connectionPoolSize;
+	}
+
+	/**
+	 * Gets the number of seconds to wait for a free connection in the shared connection pool.
+	 * @return The wait time in seconds.
+	 */
+	protected int getConnectionPoolTimeout() {
+		return connectionPoolTimeout;
+	}
+
+	/**
+	 * Sets the number of seconds to wait for a free connection in the shared connection pool.
+	 * @param connectionPoolTimeout The wait time in seconds.
+	 */
+	protected void setConnectionPoolTimeout(int connectionPoolTimeout) {
+		this.connectionPoolTimeout = connectionPoolTimeout;
+	}
+
+	/**
+	 * Indicates if connections are validated with a round trip to the database before each use.
+	 * @return True if connections are validated before each use.
+	 */
+	protected boolean isConnectionValidateOnBorrow() {
+		return connectionValidateOnBorrow;
+	}
+
+	/**
+	 * Set the configuration to validate connections before each use.
+	 * @param connectionValidateOnBorrow True to validate connections before each use.
+	 */
+	protected void setConnectionValidateOnBorrow(boolean connectionValidateOnBorrow) {
+		this.connectionValidateOnBorrow = connectionValidateOnBorrow;
+	}
+
+	/**
+	 * Gets the number of seconds to wait for a connection to be validated.
+	 * @return The validation timeout in seconds.
+	 */
+	protected int getConnectionValidationTimeout() {
+		return connectionValidationTimeout;
+	}
+
+	/**
+	 * Sets the number of seconds to wait for a connection to be validated.
+	 * @param connectionValidationTimeout The validation timeout in seconds.
+	 */
+	protected void setConnectionValidationTimeout(int connectionValidationTimeout) {
+		this.connectionValidationTimeout = connectionValidationTimeout;
+	}
+
+	/**
+	 * Gets the schema that is set as the current schema of each new connection.
+	 * @return The schema name or an empty string to use the default schema.
+	 */
+	protected String getSessionSchema() {
+		return sessionSchema;
+	}
+
+	/**
+	 * Sets the schema that is set as the current schema of each new connection.
+	 * @param sessionSchema The schema name.
+	 */
+	protected void setSessionSchema(String sessionSchema) {
+		this.sessionSchema = sessionSchema;
+	}
+
+	/**
+	 * Gets the Db2 isolation level (UR, CS, RS or RR) of each new connection.
+	 * @return The isolation level or an empty string to use the driver default.
+	 */
+	protected String getSessionIsolation() {
+		return sessionIsolation;
+	}
+
+	/**
+	 * Sets the Db2 isolation level of each new connection.
+	 * @param sessionIsolation UR, CS, RS or RR.
+	 */
+	protected void setSessionIsolation(String sessionIsolation) {
+		this.sessionIsolation = sessionIsolation;
+	}
+
+	/**
+	 * Gets the value of the CURRENT DEGREE special register of each new connection.
+	 * @return The degree such as ANY or 1, or an empty string to use the database default.
+	 */
+	protected String getSessionCurrentDegree() {
+		return sessionCurrentDegree;
+	}
+
+	/**
+	 * Sets the value of the CURRENT DEGREE special register of each new connection.
+	 * @param sessionCurrentDegree The degree such as ANY or 1.
+	 */
+	protected void setSessionCurrentDegree(String sessionCurrentDegree) {
+		this.sessionCurrentDegree = sessionCurrentDegree;
+	}
+
+	/**
+	 * Gets additional statements, separated by ";", that are executed on each new connection.
+	 * @return The session initialization statements.
+	 */
+	protected String getSessionInitSql() {
+		return sessionInitSql;
+	}
+
+	/**
+	 * Sets additional statements, separated by ";", that are executed on each new connection.
+	 * @param sessionInitSql The session initialization statements.
+	 */
+	protected void setSessionInitSql(String sessionInitSql) {
+		this.sessionInitSql = sessionInitSql;
+	}
+
+	/**
+	 * Gets the load mode.  once executes each SQL file a single time.  closed_loop has virtual users
+	 * repeatedly execute the SQL files for a duration or number of iterations.  open_loop issues
+	 * SQL files at a constant rate for a duration.  ingest streams rows into the parameterized
+	 * INSERT, UPDATE or MERGE statements of the SQL files in batches.
+	 * @return The load mode.
+	 */
+	protected String getLoadMode() {
+		return loadMode;
+	}
+
+	/**
+	 * Sets the load mode.
+	 * @param loadMode once, closed_loop or open_loop.
+	 */
+	protected void setLoadMode(String loadMode) {
+		this.loadMode = loadMode;
+	}
+
+	/**
+	 * Gets the number of virtual users used by the closed_loop load mode.
+	 * @return The number of virtual users.  Zero means the maximum thread count is used.
+	 */
+	protected int getVirtualUsers() {
+		return virtualUsers;
+	}
+
+	/**
+	 * Sets the number of virtual users used by the closed_loop load mode.
+	 * @param virtualUsers The number of virtual users.
+	 */
+	protected void setVirtualUsers(int virtualUsers) {
+		this.virtualUsers = virtualUsers;
+	}
+
+	/**
+	 * Gets the number of seconds a closed_loop run lasts.
+	 * @return The run duration in seconds.  Zero means the run is limited by iterations.
+	 */
+	protected int getRunDuration() {
+		return runDuration;
+	}
+
+	/**
+	 * Sets the number of seconds a closed_loop run lasts.
+	 * @param runDuration The run duration in seconds.
+	 */
+	protected void setRunDuration(int runDuration) {
+		this.runDuration = runDuration;
+	}
+
+	/**
+	 * Gets the number of times each virtual user executes all SQL files.
+	 * @return The number of iterations.  Zero means the run is limited by duration.
+	 */
+	protected int getIterationsPerUser() {
+		return iterationsPerUser;
+	}
+
+	/**
+	 * Sets the number of times each virtual user executes all SQL files.
+	 * @param iterationsPerUser The number of iterations.
+	 */
+	protected void setIterationsPerUser(int iterationsPerUser) {
+		this.iterationsPerUser = iterationsPerUser;
+	}
+
+	/**
+	 * Gets the number of seconds over which virtual users are started.
+	 * @return The ramp up period in seconds.
+	 */
+	protected int getRampUp() {
+		return rampUp;
+	}
+
+	/**
+	 * Sets the number of seconds over which virtual users are started.
+	 * @param rampUp The ramp up period in seconds.
+	 */
+	protected void setRampUp(int rampUp) {
+		this.rampUp = rampUp;
+	}
+
+	/**
+	 * Gets the number of milliseconds a virtual user waits between SQL statements.
+	 * @return The think time in milliseconds.
+	 */
+	protected long getThinkTime() {
+		return thinkTime;
+	}
+
+	/**
+	 * Sets the number of milliseconds a virtual user waits between SQL statements.
+	 * @param thinkTime The think time in milliseconds.
+	 */
+	protected void setThinkTime(long thinkTime) {
+		this.thinkTime = thinkTime;
+	}
+
+	/**
+	 * Gets the rate at which SQL statements are issued by the open_loop load mode.
+	 * @return The target number of SQL statements per second.
+	 */
+	protected double getTargetRate() {
+		return targetRate;
+	}
+
+	/**
+	 * Sets the rate at which SQL statements are issued by the open_loop load mode.
+	 * @param targetRate The target number of SQL statements per second.
+	 */
+	protected void setTargetRate(double targetRate) {
+		this.targetRate = targetRate;
+	}
+
+	/**
+	 * Gets the number of results that can wait to be written to the results file.
+	 * @return The result queue capacity.
+	 */
+	protected int getResultQueueCapacity() {
+		return resultQueueCapacity;
+	}
+
+	/**
+	 * Sets the number of results that can wait to be written to the results file.
+	 * @param resultQueueCapacity The result queue capacity.
+	 */
+	protected void setResultQueueCapacity(int resultQueueCapacity) {
+		this.resultQueueCapacity = resultQueueCapacity;
+	}
+
+	/**
+	 * Gets the interval at which the results file is flushed to disk.
+	 * @return The flush interval in milliseconds.
+	 */
+	protected long getResultFlushInterval() {
+		return resultFlushInterval;
+	}
+
+	/**
+	 * Sets the interval at which the results file is flushed to disk.
+	 * @param resultFlushInterval The flush interval in milliseconds.
+	 */
+	protected void setResultFlushInterval(long resultFlushInterval) {
+		this.resultFlushInterval = resultFlushInterval;
+	}
+
+	/**
+	 * Gets the kind of threads that run virtual users and open loop workers.
+	 * @return platform or virtual.
+	 */
+	protected String getExecutorMode() {
+		return executorMode;
+	}
+
+	/**
+	 * Sets the kind of threads that run virtual users and open loop workers.
+	 * @param executorMode platform or virtual.
+	 */
+	protected void setExecutorMode(String executorMode) {
+		this.executorMode = executorMode;
+	}
+
+	/**
+	 * Gets the largest number of SQL statements that may execute at the same time.
+	 * @return The concurrency limit or 0 for no limit.
+	 */
+	protected int getMaxConcurrentExecutions() {
+		return maxConcurrentExecutions;
+	}
+
+	/**
+	 * Sets the largest number of SQL statements that may execute at the same time.
+	 * @param maxConcurrentExecutions The concurrency limit or 0 for no limit.
+	 */
+	protected void setMaxConcurrentExecutions(int maxConcurrentExecutions) {
+		this.maxConcurrentExecutions = maxConcurrentExecutions;
+	}
+
+	/**
+	 * Indicates if virtual thread pinning is reported at the end of the run.
+	 * @return True if pinning is reported.
+	 */
+	protected boolean isPinnedThreadCheck() {
+		return pinnedThreadCheck;
+	}
+
+	/**
+	 * Sets whether virtual thread pinning is reported at the end of the run.
+	 * @param pinnedThreadCheck True if pinning is reported.
+	 */
+	protected void setPinnedThreadCheck(boolean pinnedThreadCheck) {
+		this.pinnedThreadCheck = pinnedThreadCheck;
+	}
+
+	/**
+	 * Gets the shortest pinning of a virtual thread that is reported.
+	 * @return The threshold in milliseconds.
+	 */
+	protected long getPinnedThreadThreshold() {
+		return pinnedThreadThreshold;
+	}
+
+	/**
+	 * Sets the shortest pinning of a virtual thread that is reported.
+	 * @param pinnedThreadThreshold The threshold in milliseconds.
+	 */
+	protected void setPinnedThreadThreshold(long pinnedThreadThreshold) {
+		this.pinnedThreadThreshold = pinnedThreadThreshold;
+	}
+
+	/**
+	 * Gets the directory that contains the CSV parameter files of parameterized SQL files.
+	 * @return The parameter file directory.
+	 */
+	protected String getParameterDirectory() {
+		return parameterDirectory;
+	}
+
+	/**
+	 * Sets the directory that contains the CSV parameter files of parameterized SQL files.
+	 * @param parameterDirectory The parameter file directory.
+	 */
+	protected void setParameterDirectory(String parameterDirectory) {
+		this.parameterDirectory = parameterDirectory;
+	}
+
+	/**
+	 * Gets how rows of the parameter files are assigned to executions.
+	 * @return round_robin, random or unique.
+	 */
+	protected String getParameterAssignment() {
+		return parameterAssignment;
+	}
+
+	/**
+	 * Sets how rows of the parameter files are assigned to executions.
+	 * @param parameterAssignment round_robin, random or unique.
+	 */
+	protected void setParameterAssignment(String parameterAssignment) {
+		this.parameterAssignment = parameterAssignment;
+	}
+
+	/**
+	 * Gets the number of prepared statements kept open per connection.
+	 * @return The statement cache size.
+	 */
+	protected int getStatementCacheSize() {
+		return statementCacheSize;
+	}
+
+	/**
+	 * Sets the number of prepared statements kept open per connection.
+	 * @param statementCacheSize The statement cache size.
+	 */
+	protected void setStatementCacheSize(int statementCacheSize) {
+		this.statementCacheSize = statementCacheSize;
+	}
+
+	/**
+	 * Gets the character that separates SQL statements within a SQL file.
+	 * @return The statement terminator.
+	 */
+	protected String getStatementTerminator() {
+		return statementTerminator;
+	}
+
+	/**
+	 * Sets the character that separates SQL statements within a SQL file.
+	 * @param statementTerminator The statement terminator.
+	 */
+	protected void setStatementTerminator(String statementTerminator) {
+		this.statementTerminator = statementTerminator;
+	}
+
+	/**
+	 * Gets the character encoding of the SQL files.
+	 * @return The encoding name.
+	 */
+	protected String getSqlFileEncoding() {
+		return sqlFileEncoding;
+	}
+
+	/**
+	 * Sets the character encoding of the SQL files.
+	 * @param sqlFileEncoding The encoding name.
+	 */
+	protected void setSqlFileEncoding(String sqlFileEncoding) {
+		this.sqlFileEncoding = sqlFileEncoding;
+	}
+
+	/**
+	 * Gets the size up to which the statements of a SQL file are kept in memory.
+	 * @return The size in bytes.
+	 */
+	protected long getSqlCacheMaxFileBytes() {
+		return sqlCacheMaxFileBytes;
+	}
+
+	/**
+	 * Sets the size up to which the statements of a SQL file are kept in memory.
+	 * @param sqlCacheMaxFileBytes The size in bytes.
+	 */
+	protected void setSqlCacheMaxFileBytes(long sqlCacheMaxFileBytes) {
+		this.sqlCacheMaxFileBytes = sqlCacheMaxFileBytes;
+	}
+
+	/**
+	 * Gets the workload definition file, which defines SQL file weights and user classes.
+	 * @return The path of the workload definition file, or an empty string.
+	 */
+	protected String getWorkloadDefinitionFile() {
+		return workloadDefinitionFile;
+	}
+
+	/**
+	 * Sets the workload definition file.
+	 * @param workloadDefinitionFile - The path of the workload definition file.
+	 */
+	protected void setWorkloadDefinitionFile(String workloadDefinitionFile) {
+		this.workloadDefinitionFile = workloadDefinitionFile;
+	}
+
+	/**
+	 * Indicates if the per execution console output is suppressed.
+	 * @return True if only interval reports and the summary are printed.
+	 */
+	protected boolean isQuietMode() {
+		return quietMode;
+	}
+
+	/**
+	 * Sets whether the per execution console output is suppressed.
+	 * @param quietMode - True to suppress the per execution console output.
+	 */
+	protected void setQuietMode(boolean quietMode) {
+		this.quietMode = quietMode;
+	}
+
+	/**
+	 * Gets the length of a reporting interval.
+	 * @return The interval in seconds, or 0 if interval reporting is disabled.
+	 */
+	protected int getIntervalReportSeconds() {
+		return intervalReportSeconds;
+	}
+
+	/**
+	 * Sets the length of a reporting interval.
+	 * @param intervalReportSeconds - The interval in seconds.
+	 */
+	protected void setIntervalReportSeconds(int intervalReportSeconds) {
+		this.intervalReportSeconds = intervalReportSeconds;
+	}
+
+	/**
+	 * Gets the format in which the result of every SQL execution is stored.
+	 * @return csv for the results CSV file or journal for a binary execution journal.
+	 */
+	protected String getResultFormat() {
+		return resultFormat;
+	}
+
+	/**
+	 * Sets the format in which the result of every SQL execution is stored.
+	 * @param resultFormat - csv or journal.
+	 */
+	protected void setResultFormat(String resultFormat) {
+		this.resultFormat = resultFormat;
+	}
+
+	/**
+	 * Gets the distributed workers that run the load.
+	 * @return A comma separated list of host:port pairs, or an empty string to run the load in this process.
+	 */
+	protected String getWorkerHosts() {
+		return workerHosts;
+	}
+
+	/**
+	 * Sets the distributed workers that run the load.
+	 * @param workerHosts - A comma separated list of host:port pairs.
+	 */
+	protected void setWorkerHosts(String workerHosts) {
+		this.workerHosts = workerHosts;
+	}
+
+	/**
+	 * Gets the delay between the moment all distributed workers are ready and the start of the run.
+	 * @return The start delay in milliseconds.
+	 */
+	protected int getWorkerStartDelay() {
+		return workerStartDelay;
+	}
+
+	/**
+	 * Sets the delay between the moment all distributed workers are ready and the start of the run.
+	 * @param workerStartDelay - The start delay in milliseconds.
+	 */
+	protected void setWorkerStartDelay(int workerStartDelay) {
+		this.workerStartDelay = workerStartDelay;
+	}
+
+	/**
+	 * Gets the JDBC URL that replaces the Db2 URL built from the host name, port and database name.
+	 * @return The JDBC URL, or an empty string to build a Db2 URL.
+	 */
+	protected String getJdbcUrl() {
+		return jdbcUrl;
+	}
+
+	/**
+	 * Sets the JDBC URL that replaces the Db2 URL built from the host name, port and database name.
+	 * @param jdbcUrl - The JDBC URL.
+	 */
+	protected void setJdbcUrl(String jdbcUrl) {
+		this.jdbcUrl = jdbcUrl;
+	}
+
+	/**
+	 * Gets the number of virtual users of the first step of a sweep.
+	 * @return The number of virtual users of the first step.
+	 */
+	protected int getSweepStartUsers() {
+		return sweepStartUsers;
+	}
+
+	/**
+	 * Sets the number of virtual users of the first step of a sweep.
+	 * @param sweepStartUsers - The number of virtual users of the first step.
+	 */
+	protected void setSweepStartUsers(int sweepStartUsers) {
+		this.sweepStartUsers = sweepStartUsers;
+	}
+
+	/**
+	 * Gets the largest number of virtual users of a sweep.
+	 * @return The largest number of virtual users.
+	 */
+	protected int getSweepMaxUsers() {
+		return sweepMaxUsers;
+	}
+
+	/**
+	 * Sets the largest number of virtual users of a sweep.
+	 * @param sweepMaxUsers - The largest number of virtual users.
+	 */
+	protected void setSweepMaxUsers(int sweepMaxUsers) {
+		this.sweepMaxUsers = sweepMaxUsers;
+	}
+
+	/**
+	 * Gets the number of virtual users added at each step of a sweep.
+	 * @return The number of virtual users added at each step, 0 for adaptive steps.
+	 */
+	protected int getSweepStepUsers() {
+		return sweepStepUsers;
+	}
+
+	/**
+	 * Sets the number of virtual users added at each step of a sweep.
+	 * @param sweepStepUsers - The number of virtual users added at each step, 0 for adaptive steps.
+	 */
+	protected void setSweepStepUsers(int sweepStepUsers) {
+		this.sweepStepUsers = sweepStepUsers;
+	}
+
+	/**
+	 * Gets the length of the measured window of each step of a sweep.
+	 * @return The length of the measured window in seconds.
+	 */
+	protected int getSweepStepSeconds() {
+		return sweepStepSeconds;
+	}
+
+	/**
+	 * Sets the length of the measured window of each step of a sweep.
+	 * @param sweepStepSeconds - The length of the measured window in seconds.
+	 */
+	protected void setSweepStepSeconds(int sweepStepSeconds) {
+		this.sweepStepSeconds = sweepStepSeconds;
+	}
+
+	/**
+	 * Gets the unmeasured warm up period before the first step of a sweep.
+	 * @return The warm up period in seconds.
+	 */
+	protected int getSweepWarmUpSeconds() {
+		return sweepWarmUpSeconds;
+	}
+
+	/**
+	 * Sets the unmeasured warm up period before the first step of a sweep.
+	 * @param sweepWarmUpSeconds - The warm up period in seconds.
+	 */
+	protected void setSweepWarmUpSeconds(int sweepWarmUpSeconds) {
+		this.sweepWarmUpSeconds = sweepWarmUpSeconds;
+	}
+
+	/**
+	 * Gets the unmeasured period after virtual users are added at a step of a sweep.
+	 * @return The settle period in seconds.
+	 */
+	protected int getSweepSettleSeconds() {
+		return sweepSettleSeconds;
+	}
+
+	/**
+	 * Sets the unmeasured period after virtual users are added at a step of a sweep.
+	 * @param sweepSettleSeconds - The settle period in seconds.
+	 */
+	protected void setSweepSettleSeconds(int sweepSettleSeconds) {
+		this.sweepSettleSeconds = sweepSettleSeconds;
+	}
+
+	/**
+	 * Gets the smallest throughput gain of a step that continues a sweep.
+	 * @return The throughput gain in percent.
+	 */
+	protected double getSweepPlateauPercent() {
+		return sweepPlateauPercent;
+	}
+
+	/**
+	 * Sets the smallest throughput gain of a step that continues a sweep.
+	 * @param sweepPlateauPercent - The throughput gain in percent.
+	 */
+	protected void setSweepPlateauPercent(double sweepPlateauPercent) {
+		this.sweepPlateauPercent = sweepPlateauPercent;
+	}
+
+	/**
+	 * Gets the P99 response time that ends a sweep when it is exceeded.
+	 * @return The P99 response time in milliseconds, 0 for no limit.
+	 */
+	protected double getSweepP99SloMillis() {
+		return sweepP99SloMillis;
+	}
+
+	/**
+	 * Sets the P99 response time that ends a sweep when it is exceeded.
+	 * @param sweepP99SloMillis - The P99 response time in milliseconds, 0 for no limit.
+	 */
+	protected void setSweepP99SloMillis(double sweepP99SloMillis) {
+		this.sweepP99SloMillis = sweepP99SloMillis;
+	}
+
+	/**
+	 * Gets the trace file replayed in replay mode.
+	 * @return The name of the trace file.
+	 */
+	protected String getReplayFile() {
+		return replayFile;
+	}
+
+	/**
+	 * Sets the trace file replayed in replay mode.
+	 * @param replayFile - The name of the trace file.
+	 */
+	protected void setReplayFile(String replayFile) {
+		this.replayFile = replayFile;
+	}
+
+	/**
+	 * Gets the factor by which a replay is faster than the original trace.
+	 * @return The speed factor, 2 replays twice as fast.
+	 */
+	protected double getReplaySpeed() {
+		return replaySpeed;
+	}
+
+	/**
+	 * Sets the factor by which a replay is faster than the original trace.
+	 * @param replaySpeed - The speed factor, 2 replays twice as fast.
+	 */
+	protected void setReplaySpeed(double replaySpeed) {
+		this.replaySpeed = replaySpeed;
+	}
+
+	/**
+	 * Gets the idle time after which a replayed session releases its connection.
+	 * @return The idle time in seconds.
+	 */
+	protected int getReplaySessionIdleSeconds() {
+		return replaySessionIdleSeconds;
+	}
+
+	/**
+	 * Sets the idle time after which a replayed session releases its connection.
+	 * @param replaySessionIdleSeconds - The idle time in seconds.
+	 */
+	protected void setReplaySessionIdleSeconds(int replaySessionIdleSeconds) {
+		this.replaySessionIdleSeconds = replaySessionIdleSeconds;
+	}
+
+	/**
+	 * Indicates if the server metrics of the run are captured from the Db2 monitor table functions.
+	 * @return True if server metrics are captured.
+	 */
+	protected boolean isServerMetrics() {
+		return serverMetrics;
+	}
+
+	/**
+	 * Sets whether the server metrics of the run are captured from the Db2 monitor table functions.
+	 * @param serverMetrics - True if server metrics are captured.
+	 */
+	protected void setServerMetrics(boolean serverMetrics) {
+		this.serverMetrics = serverMetrics;
+	}
+
+	/**
+	 * Gets the client application name that tags the connections of the run.
+	 * @return The client application name.
+	 */
+	protected String getServerMetricsApplicationName() {
+		return serverMetricsApplicationName;
+	}
+
+	/**
+	 * Sets the client application name that tags the connections of the run.
+	 * @param serverMetricsApplicationName - The client application name.
+	 */
+	protected void setServerMetricsApplicationName(String serverMetricsApplicationName) {
+		this.serverMetricsApplicationName = serverMetricsApplicationName;
+	}
+
+	/**
+	 * Gets the table or table function that statement metrics are read from.
+	 * @return The FROM clause of the statement metrics query.
+	 */
+	protected String getServerMetricsStatementSource() {
+		return serverMetricsStatementSource;
+	}
+
+	/**
+	 * Sets the table or table function that statement metrics are read from.
+	 * @param serverMetricsStatementSource - The FROM clause of the statement metrics query.
+	 */
+	protected void setServerMetricsStatementSource(String serverMetricsStatementSource) {
+		this.serverMetricsStatementSource = serverMetricsStatementSource;
+	}
+
+	/**
+	 * Gets the table or table function that connection metrics are read from.
+	 * @return The FROM clause of the connection metrics query.
+	 */
+	protected String getServerMetricsConnectionSource() {
+		return serverMetricsConnectionSource;
+	}
+
+	/**
+	 * Sets the table or table function that connection metrics are read from.
+	 * @param serverMetricsConnectionSource - The FROM clause of the connection metrics query.
+	 */
+	protected void setServerMetricsConnectionSource(String serverMetricsConnectionSource) {
+		this.serverMetricsConnectionSource = serverMetricsConnectionSource;
+	}
+
+	/**
+	 * Gets the longest time a SQL execution may take before it is cancelled.
+	 * @return The statement timeout in seconds, 0 for no limit.
+	 */
+	protected int getStatementTimeout() {
+		return statementTimeout;
+	}
+
+	/**
+	 * Sets the longest time a SQL execution may take before it is cancelled.
+	 * @param statementTimeout - The statement timeout in seconds, 0 for no limit.
+	 */
+	protected void setStatementTimeout(int statementTimeout) {
+		this.statementTimeout = statementTimeout;
+	}
+
+	/**
+	 * Gets the longest time the run may take before the SQL in progress is cancelled.
+	 * @return The run timeout in seconds, 0 for no limit.
+	 */
+	protected int getRunTimeout() {
+		return runTimeout;
+	}
+
+	/**
+	 * Sets the longest time the run may take before the SQL in progress is cancelled.
+	 * @param runTimeout - The run timeout in seconds, 0 for no limit.
+	 */
+	protected void setRunTimeout(int runTimeout) {
+		this.runTimeout = runTimeout;
+	}
+
+	/**
+	 * Gets the number of rows sent to the database in one batch in ingest mode.
+	 * @return The batch size in rows.
+	 */
+	protected int getIngestBatchSize() {
+		return ingestBatchSize;
+	}
+
+	/**
+	 * Sets the number of rows sent to the database in one batch in ingest mode.
+	 * @param ingestBatchSize - The batch size in rows.
+	 */
+	protected void setIngestBatchSize(int ingestBatchSize) {
+		this.ingestBatchSize = ingestBatchSize;
+	}
+
+	/**
+	 * Gets the number of batches after which an ingest worker commits.
+	 * @return The commit interval in batches, 0 to commit only after the last batch.
+	 */
+	protected int getIngestCommitBatches() {
+		return ingestCommitBatches;
+	}
+
+	/**
+	 * Sets the number of batches after which an ingest worker commits.
+	 * @param ingestCommitBatches - The commit interval in batches, 0 to commit only after the last batch.
+	 */
+	protected void setIngestCommitBatches(int ingestCommitBatches) {
+		this.ingestCommitBatches = ingestCommitBatches;
+	}
+
+	/**
+	 * Gets where the rows of ingest mode come from, csv or generated.
+	 * @return The ingest source.
+	 */
+	protected String getIngestSource() {
+		return ingestSource;
+	}
+
+	/**
+	 * Sets where the rows of ingest mode come from, csv or generated.
+	 * @param ingestSource - The ingest source.
+	 */
+	protected void setIngestSource(String ingestSource) {
+		this.ingestSource = ingestSource;
+	}
+
+	/**
+	 * Gets the number of rows ingested into each statement in ingest mode.
+	 * @return The number of rows, 0 for every row of the CSV file.
+	 */
+	protected long getIngestRows() {
+		return ingestRows;
+	}
+
+	/**
+	 * Sets the number of rows ingested into each statement in ingest mode.
+	 * @param ingestRows - The number of rows, 0 for every row of the CSV file.
+	 */
+	protected void setIngestRows(long ingestRows) {
+		this.ingestRows = ingestRows;
+	}
+
+	/**
+	 * Indicates if a Java Flight Recorder recording of the whole run is written.
+	 * @return True to record the run.
+	 */
+	protected boolean isFlightRecording() {
+		return flightRecording;
+	}
+
+	/**
+	 * Sets if a Java Flight Recorder recording of the whole run is written.
+	 * @param flightRecording - True to record the run.
+	 */
+	protected void setFlightRecording(boolean flightRecording) {
+		this.flightRecording = flightRecording;
+	}
+
+	/**
+	 * Gets the flight recorder settings of the recording, default, profile or a .jfc file.
+	 * @return The recording settings.
+	 */
+	protected String getFlightRecordingSettings() {
+		return flightRecordingSettings;
+	}
+
+	/**
+	 * Sets the flight recorder settings of the recording, default, profile or a .jfc file.
+	 * @param flightRecordingSettings - The recording settings.
+	 */
+	protected void setFlightRecordingSettings(String flightRecordingSettings) {
+		this.flightRecordingSettings = flightRecordingSettings;
+	}
+
+	/**
+	 * Gets the number of seconds at the start of the run whose SQL executions are summarized separately from the run.
+	 * @return The warm up in seconds.
+	 */
+	protected int getWarmUpSeconds() {
+		return warmUpSeconds;
+	}
+
+	/**
+	 * Sets the number of seconds at the start of the run whose SQL executions are summarized separately from the run.
+	 * @param warmUpSeconds - The warm up in seconds.
+	 */
+	protected void setWarmUpSeconds(int warmUpSeconds) {
+		this.warmUpSeconds = warmUpSeconds;
+	}
+
+	/**
+	 * Gets the length of the intervals the steady state detector compares, 0 to not stop at a steady state.
+	 * @return The interval in seconds.
+	 */
+	protected int getSteadyStateIntervalSeconds() {
+		return steadyStateIntervalSeconds;
+	}
+
+	/**
+	 * Sets the length of the intervals the steady state detector compares, 0 to not stop at a steady state.
+	 * @param steadyStateIntervalSeconds - The interval in seconds.
+	 */
+	protected void setSteadyStateIntervalSeconds(int steadyStateIntervalSeconds) {
+		this.steadyStateIntervalSeconds = steadyStateIntervalSeconds;
+	}
+
+	/**
+	 * Gets the largest half width of the 95% confidence intervals of a steady state, as a percentage of the mean and P95.
+	 * @return The precision in percent.
+	 */
+	protected double getSteadyStatePrecisionPercent() {
+		return steadyStatePrecisionPercent;
+	}
+
+	/**
+	 * Sets the largest half width of the 95% confidence intervals of a steady state, as a percentage of the mean and P95.
+	 * @param steadyStatePrecisionPercent - The precision in percent.
+	 */
+	protected void setSteadyStatePrecisionPercent(double steadyStatePrecisionPercent) {
+		this.steadyStatePrecisionPercent = steadyStatePrecisionPercent;
+	}
+
+	/**
+	 * Gets the smallest number of intervals of each SQL file before a steady state can be reached.
+	 * @return The minimum number of intervals.
+	 */
+	protected int getSteadyStateMinIntervals() {
+		return steadyStateMinIntervals;
+	}
+
+	/**
+	 * Sets the smallest number of intervals of each SQL file before a steady state can be reached.
+	 * @param steadyStateMinIntervals - The minimum number of intervals.
+	 */
+	protected void setSteadyStateMinIntervals(int steadyStateMinIntervals) {
+		this.steadyStateMinIntervals = steadyStateMinIntervals;
+	}
+
+	/**
+	 * Indicates if a digest of the rows of every query is computed and compared with a baseline run.
+	 * @return True to verify results.
+	 */
+	protected boolean isVerifyResults() {
+		return verifyResults;
+	}
+
+	/**
+	 * Sets if a digest of the rows of every query is computed and compared with a baseline run.
+	 * @param verifyResults - True to verify results.
+	 */
+	protected void setVerifyResults(boolean verifyResults) {
+		this.verifyResults = verifyResults;
+	}
+
+	/**
+	 * Gets the digests file of the baseline run that results are compared with, empty to only record digests.
+	 * @return The baseline digests file.
+	 */
+	protected String getVerificationBaselineFile() {
+		return verificationBaselineFile;
+	}
+
+	/**
+	 * Sets the digests file of the baseline run that results are compared with, empty to only record digests.
+	 * @param verificationBaselineFile - The baseline digests file.
+	 */
+	protected void setVerificationBaselineFile(String verificationBaselineFile) {
+		this.verificationBaselineFile = verificationBaselineFile;
+	}
 }
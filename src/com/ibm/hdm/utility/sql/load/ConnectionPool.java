@@ -0,0 +1,383 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Pool of JDBC connections to the configured database.  Two modes are supported:
+ *
+ * per_user - Each worker thread (simulated user) keeps one long lived connection for the
+ * whole run.
+ * shared - Worker threads borrow a connection from a bounded pool for each SQL execution
+ * and return it afterwards.
+ *
+ * Connections are opened and initialized with the configured session statements before
+ * the timed part of the run starts.  Connections that are found broken are closed and
+ * replaced the next time a connection is requested, so a failing connection does not end
+ * the run.
+ *
+ * Each connection keeps a cache of prepared statements for parameterized SQL.
+ *
+ * @author Jeff Tuck
+ */
+
+public class ConnectionPool {
+
+	public static final String MODE_PER_USER = "per_user";
+	public static final String MODE_SHARED = "shared";
+	public static final String CLIENT_INFO_APPLICATION_NAME = "ApplicationName";
+
+	private ConfigurationBean config = null;
+	private final boolean perUser;
+	private final int size;
+	private final Semaphore permits;
+	private final LinkedBlockingDeque<Connection> idleConnections = new LinkedBlockingDeque<Connection>();
+	private final Set<Connection> openConnections = Collections.newSetFromMap(new ConcurrentHashMap<Connection, Boolean>());
+	private final ThreadLocal<Connection> userConnection = new ThreadLocal<Connection>();
+	private final Map<Connection, StatementCache> statementCaches = new ConcurrentHashMap<Connection, StatementCache>();
+	private final QueryWatchdog watchdog;
+
+	/**
+	 * Constructor for ConnectionPool.  Loads the configured JDBC driver.
+	 * @param config - The configuration for SQL Load.
+	 * @param size - The number of connections to pre-warm.  In shared mode this is also
+	 * the maximum number of connections that will be open at the same time.
+	 * @throws ClassNotFoundException if the configured JDBC driver is not found.
+	 */
+	public ConnectionPool(ConfigurationBean config, int size) throws ClassNotFoundException {
+		super();
+		this.config = config;
+		this.perUser = !MODE_SHARED.equalsIgnoreCase(config.getConnectionPoolMode());
+		this.size = Math.max(size, 1);
+		this.permits = new Semaphore(this.size, true);
+		this.watchdog = new QueryWatchdog(config.getStatementTimeout(), config.getRunTimeout());
+		Class.forName(config.getJdbcDriver());
+	}
+
+	/**
+	 * Opens and initializes all connections of the pool so that connection and SSL handshake
+	 * cost is not part of the timed run.
+	 * @throws SQLException if a connection cannot be opened.
+	 */
+	public void prewarm() throws SQLException {
+		while(idleConnections.size() < this.size) {
+			idleConnections.offer(openConnection());
+		}
+	}
+
+	/**
+	 * Gets a connection for the calling thread.  In per_user mode the same connection is
+	 * returned every time a thread calls this method.  In shared mode the caller waits for a
+	 * free connection up to the configured timeout.
+	 * @return An initialized JDBC connection.
+	 * @throws SQLException if a connection is not available or cannot be opened.
+	 */
+	public Connection getConnection() throws SQLException {
+		Connection connection = null;
+		if(this.perUser) {
+			connection = userConnection.get();
+			if(connection != null && config.isConnectionValidateOnBorrow() && !isValid(connection)) {
+				closeConnection(connection);
+				connection = null;
+			}
+			if(connection == null) {
+				connection = takeIdleConnection();
+				userConnection.set(connection);
+			}
+		} else {
+			try {
+				if(!permits.tryAcquire(config.getConnectionPoolTimeout(), TimeUnit.SECONDS)) {
+					throw new SQLException("Timed out after " + config.getConnectionPoolTimeout()
+						+ " seconds waiting for a pooled connection", "08001");
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SQLException("Interrupted while waiting for a pooled connection", "08001", e);
+			}
+			try {
+				connection = takeIdleConnection();
+			} catch (SQLException e) {
+				permits.release();
+				throw e;
+			}
+		}
+		return connection;
+	}
+
+	/**
+	 * Takes an idle connection from the pool or opens a new one when no idle connection is
+	 * available.  Idle connections are validated first when validation on borrow is configured.
+	 * @return An initialized JDBC connection.
+	 * @throws SQLException if a new connection cannot be opened.
+	 */
+	private Connection takeIdleConnection() throws SQLException {
+		Connection connection = idleConnections.poll();
+		while(connection != null && config.isConnectionValidateOnBorrow() && !isValid(connection)) {
+			closeConnection(connection);
+			connection = idleConnections.poll();
+		}
+		if(connection == null) {
+			connection = openConnection();
+		}
+		return connection;
+	}
+
+	/**
+	 * Returns a connection after the SQL execution completed.  In per_user mode the
+	 * connection stays with the calling thread unless it is broken.
+	 * @param connection - The connection to return.
+	 * @param failure - The exception raised while the connection was in use or null if
+	 * the connection was used successfully.  The connection is validated if an exception
+	 * was raised and replaced if it is broken.
+	 */
+	public void releaseConnection(Connection connection, SQLException failure) {
+		if(connection == null) {
+			return;
+		}
+		if(failure != null && isBroken(connection, failure)) {
+			System.out.println("*****  REPLACING BROKEN CONNECTION: " + failure.getMessage() + "  *****");
+			discard(connection);
+			return;
+		}
+		if(!this.perUser) {
+			idleConnections.offerFirst(connection);
+			permits.release();
+		}
+	}
+
+	/**
+	 * Returns the connection of the calling thread to the pool in per_user mode, so the
+	 * thread gets another connection the next time it calls getConnection().  Used by
+	 * replayed sessions, which keep a connection for the life of the session and not of the
+	 * thread.
+	 */
+	public void releaseUserConnection() {
+		if(!this.perUser) {
+			return;
+		}
+		Connection connection = userConnection.get();
+		if(connection != null) {
+			userConnection.remove();
+			idleConnections.offerFirst(connection);
+		}
+	}
+
+	/**
+	 * Gets the prepared statement cache of a connection borrowed from the pool.
+	 * @param connection - The connection.
+	 * @return The statement cache of the connection.
+	 */
+	public StatementCache getStatementCache(Connection connection) {
+		StatementCache statementCache = statementCaches.get(connection);
+		if(statementCache == null) {
+			statementCache = new StatementCache(connection, config.getStatementCacheSize(), config.getFetchSize(), config.getStatementTimeout());
+			statementCaches.put(connection, statementCache);
+		}
+		return statementCache;
+	}
+
+	/**
+	 * Closes every connection opened by the pool.
+	 */
+	public void close() {
+		for(Connection connection : openConnections) {
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				e.printStackTrace();
+			}
+		}
+		openConnections.clear();
+		idleConnections.clear();
+		statementCaches.clear();
+		watchdog.close();
+	}
+
+	/**
+	 * Gets the watchdog that cancels the SQL executions of the pool's connections when they
+	 * pass the statement or run timeout.
+	 * @return The query watchdog.
+	 */
+	public QueryWatchdog getWatchdog() {
+		return watchdog;
+	}
+
+	/**
+	 * Closes a broken connection and frees its place in the pool so that a replacement
+	 * is opened on the next request.
+	 * @param connection - The connection to discard.
+	 */
+	private void discard(Connection connection) {
+		if(this.perUser) {
+			userConnection.remove();
+		} else {
+			permits.release();
+		}
+		closeConnection(connection);
+	}
+
+	/**
+	 * Closes a connection that is no longer usable and removes it from the pool.
+	 * @param connection - The connection to close.
+	 */
+	private void closeConnection(Connection connection) {
+		openConnections.remove(connection);
+		statementCaches.remove(connection);
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			// The connection is already unusable.
+		}
+	}
+
+	/**
+	 * Determines if a connection can no longer be used after an exception was raised.
+	 * @param connection - The connection that was in use.
+	 * @param failure - The exception that was raised.
+	 * @return True if the connection is broken.
+	 */
+	private boolean isBroken(Connection connection, SQLException failure) {
+		String sqlState = failure.getSQLState();
+		if(sqlState != null && sqlState.startsWith("08")) {
+			return true;
+		}
+		return !isValid(connection);
+	}
+
+	/**
+	 * Validates a connection with a round trip to the database.
+	 * @param connection - The connection to validate.
+	 * @return True if the connection is usable.
+	 */
+	private boolean isValid(Connection connection) {
+		try {
+			return connection.isValid(config.getConnectionValidationTimeout());
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Opens a new connection to the configured database and runs the session
+	 * initialization statements.
+	 * @return The JDBC connection.
+	 * @throws SQLException if the connection cannot be opened or initialized.
+	 */
+	private Connection openConnection() throws SQLException {
+		Connection connection = DriverManager.getConnection(getJdbcUrl(), config.getDbUserName(), config.getDbPassword());
+		try {
+			initializeSession(connection);
+		} catch (SQLException e) {
+			try {
+				connection.close();
+			} catch (SQLException closeException) {
+				// Report the initialization failure.
+			}
+			throw e;
+		}
+		openConnections.add(connection);
+		return connection;
+	}
+
+	/**
+	 * Opens a connection outside of the pool, without the session settings and the client
+	 * application name of pooled connections, for reading monitor metrics while a run is in
+	 * progress.  The caller closes the connection.
+	 * @return The JDBC connection.
+	 * @throws SQLException if the connection cannot be opened.
+	 */
+	public Connection openMonitorConnection() throws SQLException {
+		return DriverManager.getConnection(getJdbcUrl(), config.getDbUserName(), config.getDbPassword());
+	}
+
+	/**
+	 * Applies the configured session settings to a new connection.
+	 * @param connection - The connection to initialize.
+	 * @throws SQLException if a session statement fails.
+	 */
+	private void initializeSession(Connection connection) throws SQLException {
+		if(config.isServerMetrics()) {
+			// Tags the connection so its server metrics can be told apart from other applications.
+			connection.setClientInfo(CLIENT_INFO_APPLICATION_NAME, config.getServerMetricsApplicationName());
+		}
+		int isolation = getIsolationLevel(config.getSessionIsolation());
+		if(isolation != Connection.TRANSACTION_NONE) {
+			connection.setTransactionIsolation(isolation);
+		}
+		Statement statement = connection.createStatement();
+		try {
+			if(!config.getSessionSchema().isEmpty()) {
+				statement.execute("SET SCHEMA \"" + config.getSessionSchema() + "\"");
+			}
+			if(!config.getSessionCurrentDegree().isEmpty()) {
+				statement.execute("SET CURRENT DEGREE = '" + config.getSessionCurrentDegree() + "'");
+			}
+			for(String sessionSql : config.getSessionInitSql().split(";")) {
+				if(!sessionSql.trim().isEmpty()) {
+					statement.execute(sessionSql.trim());
+				}
+			}
+		} finally {
+			statement.close();
+		}
+	}
+
+	/**
+	 * Maps a Db2 isolation level name to the JDBC isolation level.
+	 * @param isolation - UR, CS, RS or RR.  Any other value leaves the driver default.
+	 * @return The JDBC transaction isolation level.
+	 */
+	private static int getIsolationLevel(String isolation) {
+		switch (isolation.toUpperCase()) {
+		case "UR":
+			return Connection.TRANSACTION_READ_UNCOMMITTED;
+		case "CS":
+			return Connection.TRANSACTION_READ_COMMITTED;
+		case "RS":
+			return Connection.TRANSACTION_REPEATABLE_READ;
+		case "RR":
+			return Connection.TRANSACTION_SERIALIZABLE;
+		default:
+			return Connection.TRANSACTION_NONE;
+		}
+	}
+
+	/**
+	 * Gets a Db2 formatted JDBC URL based on the configuration, unless a JDBC URL is
+	 * configured, for example for the SimulatedDriver.
+	 * @return The JDBC URL.
+	 */
+	private String getJdbcUrl() {
+		if(!config.getJdbcUrl().isEmpty()) {
+			return config.getJdbcUrl();
+		}
+		String jdbcUrl = "jdbc:db2://" + config.getHostName() + ":" + config.getPort() + "/" + config.getDbName();
+		if(config.isUseSSL()) {
+			jdbcUrl = jdbcUrl + ":sslConnection=true;";
+		}
+		return jdbcUrl;
+	}
+}
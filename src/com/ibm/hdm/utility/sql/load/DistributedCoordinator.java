@@ -0,0 +1,416 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Runs the configured load on the DistributedWorker processes listed in worker_hosts instead
+ * of in this process.  Every worker receives the configuration and the SQL, parameter,
+ * workload definition and verification baseline files, with its share of the virtual users and of the open_loop target
+ * rate.  Once every worker is ready, all workers are told to start at the same clock time.
+ * The statistics of the workers are merged into one summary file.  The results file of each
+ * worker is written by the worker.
+ *
+ * @author Jeff Tuck
+ */
+
+public class DistributedCoordinator {
+
+	private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+
+	private final ConfigurationBean config;
+
+	/**
+	 * Constructor for DistributedCoordinator.
+	 * @param config - The configuration for SQL Load.
+	 */
+	public DistributedCoordinator(ConfigurationBean config) {
+		super();
+		this.config = config;
+	}
+
+	/**
+	 * Runs the load on the workers and writes the merged summary.
+	 */
+	public void run() {
+		boolean closedLoop = SQLLoad.LOAD_MODE_CLOSED_LOOP.equalsIgnoreCase(config.getLoadMode());
+		boolean openLoop = SQLLoad.LOAD_MODE_OPEN_LOOP.equalsIgnoreCase(config.getLoadMode());
+		if(!closedLoop && !openLoop) {
+			System.out.println("*****  DISTRIBUTED RUNS REQUIRE THE closed_loop OR open_loop LOAD MODE  *****");
+			System.exit(-1);
+		}
+		// Loading the workload here reports problems before any worker is contacted.
+		Workload workload = SQLLoad.createWorkload(config);
+		String[] fileNames = workload.getFileNames();
+		workload.close();
+		List<InetSocketAddress> workers = getWorkerAddresses();
+		int workerCount = workers.size();
+
+		List<Socket> sockets = new ArrayList<Socket>();
+		try {
+			Properties definition = loadDefinition();
+			String[] classNames = closedLoop ? getUserClassNames(definition) : new String[0];
+			int totalUsers = getTotalUsers(definition, classNames);
+			if(totalUsers < workerCount) {
+				System.out.println("*****  " + totalUsers + " USERS CANNOT BE SHARED BY " + workerCount + " WORKERS  *****");
+				System.exit(-1);
+			}
+			List<File> sqlFiles = SQLLoad.getSqlFiles(config.getSqlDirectory());
+			List<File> parameterFiles = getParameterFiles(sqlFiles);
+
+			for(int workerIndex = 0; workerIndex < workerCount; workerIndex++) {
+				InetSocketAddress address = workers.get(workerIndex);
+				System.out.println("*****  SENDING THE WORKLOAD TO WORKER " + (workerIndex + 1) + " AT " + address + "  *****");
+				Socket socket = new Socket();
+				sockets.add(socket);
+				try {
+					socket.connect(address, CONNECT_TIMEOUT_MILLIS);
+				} catch (IOException e) {
+					System.out.println("*****  UNABLE TO CONNECT TO WORKER " + (workerIndex + 1) + " AT " + address + "  *****");
+					throw e;
+				}
+				socket.setTcpNoDelay(true);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+				out.writeInt(DistributedProtocol.MAGIC);
+				out.writeInt(DistributedProtocol.VERSION);
+				out.writeInt(workerIndex);
+				out.writeInt(workerCount);
+				DistributedProtocol.writeBytes(out, toBytes(getWorkerProperties(workerIndex, workerCount)));
+				boolean sendDefinition = !config.getWorkloadDefinitionFile().isEmpty();
+				boolean sendBaseline = config.isVerifyResults() && !config.getVerificationBaselineFile().isEmpty();
+				out.writeInt(sqlFiles.size() + parameterFiles.size() + (sendDefinition ? 1 : 0) + (sendBaseline ? 1 : 0));
+				for(File file : sqlFiles) {
+					writeFile(out, DistributedProtocol.FILE_SQL, file.getName(), Files.readAllBytes(file.toPath()));
+				}
+				for(File file : parameterFiles) {
+					writeFile(out, DistributedProtocol.FILE_PARAMETER, file.getName(), Files.readAllBytes(file.toPath()));
+				}
+				if(sendDefinition) {
+					Properties workerDefinition = getWorkerDefinition(definition, classNames, workerIndex, workerCount);
+					writeFile(out, DistributedProtocol.FILE_DEFINITION, new File(config.getWorkloadDefinitionFile()).getName(), toBytes(workerDefinition));
+				}
+				if(sendBaseline) {
+					File baselineFile = new File(config.getVerificationBaselineFile());
+					writeFile(out, DistributedProtocol.FILE_BASELINE, baselineFile.getName(), Files.readAllBytes(baselineFile.toPath()));
+				}
+				out.flush();
+			}
+
+			if(!awaitReady(sockets)) {
+				for(Socket socket : sockets) {
+					sendCancel(socket);
+				}
+				System.out.println("*****  THE DISTRIBUTED RUN WAS CANCELLED  *****");
+				System.exit(-1);
+			}
+			long startTime = System.currentTimeMillis() + config.getWorkerStartDelay();
+			for(Socket socket : sockets) {
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+				out.writeUTF(DistributedProtocol.START);
+				out.writeLong(startTime);
+				out.flush();
+			}
+			System.out.println("*****  " + workerCount + " WORKERS START AT " + new SimpleDateFormat("HH:mm:ss.SSS").format(startTime) + "  *****");
+
+			RunStatistics runStatistics = new RunStatistics(fileNames);
+			for(int workerIndex = 0; workerIndex < workerCount; workerIndex++) {
+				byte[] result = readResult(sockets.get(workerIndex));
+				RunStatistics workerStatistics = new RunStatistics(fileNames);
+				workerStatistics.merge(new DataInputStream(new ByteArrayInputStream(result)));
+				runStatistics.merge(new DataInputStream(new ByteArrayInputStream(result)));
+				System.out.println("*****  WORKER " + (workerIndex + 1) + " COMPLETED: " + workerStatistics.getSuccessCount()
+						+ " SUCCESS, " + workerStatistics.getErrorCount() + " ERROR, " + workerStatistics.getTimeoutCount() + " TIMEOUT  *****");
+			}
+			String summaryFileName = SQLLoad.getReportFileName("Summary", config, totalUsers, System.currentTimeMillis());
+			runStatistics.writeSummary(summaryFileName);
+
+			System.out.println("=========================================================");
+			System.out.println("Total Success: " + runStatistics.getSuccessCount());
+			System.out.println("Total Error: " + runStatistics.getErrorCount());
+			System.out.println("Total Timeout: " + runStatistics.getTimeoutCount());
+			if(config.isVerifyResults()) {
+				System.out.println("Total Mismatch: " + runStatistics.getMismatchCount());
+			}
+			System.out.println("Results Written By Each Worker");
+			System.out.println("Summary Written To: " + summaryFileName);
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.out.println("*****  THE DISTRIBUTED RUN FAILED  *****");
+			System.exit(-1);
+		} finally {
+			for(Socket socket : sockets) {
+				close(socket);
+			}
+		}
+	}
+
+	/**
+	 * Parses the worker_hosts list.
+	 * @return The addresses of the workers.
+	 */
+	private List<InetSocketAddress> getWorkerAddresses() {
+		List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+		for(String worker : config.getWorkerHosts().split(",")) {
+			worker = worker.trim();
+			if(worker.isEmpty()) {
+				continue;
+			}
+			int separator = worker.lastIndexOf(':');
+			try {
+				if(separator > 0) {
+					addresses.add(new InetSocketAddress(worker.substring(0, separator), Integer.parseInt(worker.substring(separator + 1))));
+				} else {
+					addresses.add(new InetSocketAddress(worker, DistributedProtocol.DEFAULT_PORT));
+				}
+			} catch (IllegalArgumentException e) {
+				System.out.println("*****  INVALID WORKER " + worker + ", USE host:port  *****");
+				System.exit(-1);
+			}
+		}
+		return addresses;
+	}
+
+	/**
+	 * Reads the workload definition file.
+	 * @return The workload definition, empty when no file is configured.
+	 * @throws IOException if the file cannot be read.
+	 */
+	private Properties loadDefinition() throws IOException {
+		Properties definition = new Properties();
+		if(!config.getWorkloadDefinitionFile().isEmpty()) {
+			InputStream input = new FileInputStream(config.getWorkloadDefinitionFile());
+			try {
+				definition.load(input);
+			} finally {
+				input.close();
+			}
+		}
+		return definition;
+	}
+
+	/**
+	 * Gets the names of the closed_loop user classes of the workload definition.
+	 * @param definition - The workload definition.
+	 * @return The class names, empty when no classes are defined.
+	 */
+	private String[] getUserClassNames(Properties definition) {
+		List<String> classNames = new ArrayList<String>();
+		for(String className : definition.getProperty("user_classes", "").split(",")) {
+			if(!className.trim().isEmpty()) {
+				classNames.add(className.trim());
+			}
+		}
+		return classNames.toArray(new String[classNames.size()]);
+	}
+
+	/**
+	 * Gets the number of virtual users or open_loop workers of the whole run.
+	 * @param definition - The workload definition.
+	 * @param classNames - The closed_loop user classes.
+	 * @return The number of users.
+	 */
+	private int getTotalUsers(Properties definition, String[] classNames) {
+		if(classNames.length == 0) {
+			return SQLLoad.getUserCount(config);
+		}
+		int totalUsers = 0;
+		for(String className : classNames) {
+			totalUsers += getClassUsers(definition, className);
+		}
+		return totalUsers;
+	}
+
+	/**
+	 * Gets the number of virtual users of a user class.
+	 * @param definition - The workload definition.
+	 * @param className - The name of the user class.
+	 * @return The number of virtual users.
+	 */
+	private static int getClassUsers(Properties definition, String className) {
+		return Integer.parseInt(definition.getProperty(className + ".users", "0").trim());
+	}
+
+	/**
+	 * Finds the parameter files of the SQL files.
+	 * @param sqlFiles - The SQL files.
+	 * @return The parameter files that exist.
+	 */
+	private List<File> getParameterFiles(List<File> sqlFiles) {
+		List<File> parameterFiles = new ArrayList<File>();
+		String parameterDirectory = config.getParameterDirectory();
+		for(File sqlFile : sqlFiles) {
+			String baseName = sqlFile.getName();
+			if(baseName.lastIndexOf('.') > 0) {
+				baseName = baseName.substring(0, baseName.lastIndexOf('.'));
+			}
+			File parameterFile = parameterDirectory.isEmpty() ? new File(baseName + ".csv") : new File(parameterDirectory, baseName + ".csv");
+			if(parameterFile.isFile()) {
+				parameterFiles.add(parameterFile);
+			}
+		}
+		return parameterFiles;
+	}
+
+	/**
+	 * Creates the configuration of a worker.  The virtual users and the open_loop target rate
+	 * are shared by the workers, all other settings apply to every worker.
+	 * @param workerIndex - The index of the worker.
+	 * @param workerCount - The number of workers.
+	 * @return The configuration properties of the worker.
+	 */
+	private Properties getWorkerProperties(int workerIndex, int workerCount) {
+		Properties props = config.getProperties();
+		props.setProperty("worker_hosts", "");
+		props.setProperty("virtual_users", Integer.toString(DistributedProtocol.share(SQLLoad.getUserCount(config), workerIndex, workerCount)));
+		props.setProperty("target_rate_per_second", Double.toString(config.getTargetRate() / workerCount));
+		return props;
+	}
+
+	/**
+	 * Creates the workload definition of a worker, with its share of the users of each user
+	 * class.  The first worker of each class follows the last worker of the previous class,
+	 * so the users of small classes are spread over the workers.  Classes without users on
+	 * the worker are left out.
+	 * @param definition - The workload definition.
+	 * @param classNames - The closed_loop user classes.
+	 * @param workerIndex - The index of the worker.
+	 * @param workerCount - The number of workers.
+	 * @return The workload definition of the worker.
+	 */
+	private static Properties getWorkerDefinition(Properties definition, String[] classNames, int workerIndex, int workerCount) {
+		Properties workerDefinition = new Properties();
+		workerDefinition.putAll(definition);
+		if(classNames.length == 0) {
+			return workerDefinition;
+		}
+		StringBuilder workerClasses = new StringBuilder();
+		int offset = 0;
+		for(String className : classNames) {
+			int users = getClassUsers(definition, className);
+			int share = DistributedProtocol.share(users, (workerIndex + workerCount - offset) % workerCount, workerCount);
+			offset = (offset + users) % workerCount;
+			if(share > 0) {
+				workerDefinition.setProperty(className + ".users", Integer.toString(share));
+				workerClasses.append(workerClasses.length() == 0 ? "" : ",").append(className);
+			}
+		}
+		workerDefinition.setProperty("user_classes", workerClasses.toString());
+		return workerDefinition;
+	}
+
+	/**
+	 * Waits until every worker has loaded the workload and opened its database connections.
+	 * @param sockets - The connections to the workers.
+	 * @return True if every worker is ready.
+	 */
+	private boolean awaitReady(List<Socket> sockets) {
+		boolean ready = true;
+		for(int workerIndex = 0; workerIndex < sockets.size(); workerIndex++) {
+			try {
+				DataInputStream in = new DataInputStream(sockets.get(workerIndex).getInputStream());
+				String status = in.readUTF();
+				if(DistributedProtocol.READY.equals(status)) {
+					System.out.println("*****  WORKER " + (workerIndex + 1) + " IS READY  *****");
+				} else {
+					System.out.println("*****  WORKER " + (workerIndex + 1) + " FAILED: " + in.readUTF() + "  *****");
+					ready = false;
+				}
+			} catch (IOException e) {
+				System.out.println("*****  WORKER " + (workerIndex + 1) + " FAILED, SEE THE OUTPUT OF THE WORKER  *****");
+				ready = false;
+			}
+		}
+		return ready;
+	}
+
+	/**
+	 * Reads the statistics of a worker once its run has completed.
+	 * @param socket - The connection to the worker.
+	 * @return The statistics written by RunStatistics.
+	 * @throws IOException if the worker failed.
+	 */
+	private static byte[] readResult(Socket socket) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		if(!DistributedProtocol.RESULT.equals(in.readUTF())) {
+			throw new IOException("Unexpected message from the worker at " + socket.getRemoteSocketAddress());
+		}
+		return DistributedProtocol.readBytes(in);
+	}
+
+	/**
+	 * Tells a worker not to start, ignoring workers that have already failed.
+	 * @param socket - The connection to the worker.
+	 */
+	private static void sendCancel(Socket socket) {
+		try {
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			out.writeUTF(DistributedProtocol.CANCEL);
+			out.flush();
+		} catch (IOException e) {
+			// The worker has already closed the connection.
+		}
+	}
+
+	/**
+	 * Writes a file of the run to a worker.
+	 * @param out - The output to the worker.
+	 * @param fileType - The type of the file.
+	 * @param name - The name of the file.
+	 * @param content - The content of the file.
+	 * @throws IOException if the file cannot be written.
+	 */
+	private static void writeFile(DataOutputStream out, int fileType, String name, byte[] content) throws IOException {
+		out.writeInt(fileType);
+		out.writeUTF(name);
+		DistributedProtocol.writeBytes(out, content);
+	}
+
+	/**
+	 * Stores properties in the properties file format.
+	 * @param props - The properties.
+	 * @return The properties file content.
+	 * @throws IOException if the properties cannot be stored.
+	 */
+	private static byte[] toBytes(Properties props) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		props.store(bytes, null);
+		return bytes.toByteArray();
+	}
+
+	private static void close(Socket socket) {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
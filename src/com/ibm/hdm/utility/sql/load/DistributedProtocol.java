@@ -0,0 +1,99 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The messages exchanged between a distributed coordinator and its workers over a socket.
+ * A run is one connection:
+ *
+ * Coordinator to worker - MAGIC, VERSION, the worker index and count, the configuration
+ * properties and the SQL, parameter, workload definition and verification baseline files.
+ * Worker to coordinator - READY once the workload is loaded and the database connections are
+ * open, or FAILED with a message.
+ * Coordinator to worker - START with the clock time to start at, or CANCEL.
+ * Worker to coordinator - RESULT with the statistics of the run written by RunStatistics.
+ *
+ * @author Jeff Tuck
+ */
+
+public final class DistributedProtocol {
+
+	public static final int MAGIC = 0x53514C44;
+	public static final int VERSION = 3;
+	public static final int DEFAULT_PORT = 7070;
+
+	public static final String READY = "READY";
+	public static final String FAILED = "FAILED";
+	public static final String START = "START";
+	public static final String CANCEL = "CANCEL";
+	public static final String RESULT = "RESULT";
+
+	public static final int FILE_SQL = 1;
+	public static final int FILE_PARAMETER = 2;
+	public static final int FILE_DEFINITION = 3;
+	public static final int FILE_BASELINE = 4;
+
+	private static final int MAX_MESSAGE_BYTES = Integer.MAX_VALUE - 8;
+
+	/**
+	 * Default constructor
+	 */
+	private DistributedProtocol() {
+		super();
+	}
+
+	/**
+	 * Writes a block of bytes preceded by its length.
+	 * @param out - The output to write to.
+	 * @param bytes - The bytes to write.
+	 * @throws IOException if the bytes cannot be written.
+	 */
+	public static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads a block of bytes written with writeBytes().
+	 * @param in - The input to read from.
+	 * @return The bytes.
+	 * @throws IOException if the bytes cannot be read.
+	 */
+	public static byte[] readBytes(DataInput in) throws IOException {
+		int length = in.readInt();
+		if(length < 0 || length > MAX_MESSAGE_BYTES) {
+			throw new IOException("Invalid message length " + length);
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Calculates the share of a total that one worker takes.  The remainder of an uneven
+	 * division goes to the first workers.
+	 * @param total - The total to divide.
+	 * @param workerIndex - The index of the worker, starting with 0.
+	 * @param workerCount - The number of workers.
+	 * @return The share of the worker.
+	 */
+	public static int share(int total, int workerIndex, int workerCount) {
+		return total / workerCount + (workerIndex < total % workerCount ? 1 : 0);
+	}
+}
@@ -0,0 +1,206 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A worker process of a distributed run.  The worker listens on a port and runs the load it
+ * receives from a DistributedCoordinator with the same engine as a stand alone run, then
+ * returns the statistics of the run to the coordinator.  The SQL, parameter, workload
+ * definition and verification baseline files are stored in a temporary directory for the run.
+ * A run that cannot start, for example with an invalid baseline file, is cancelled and the
+ * worker waits for the next run.  Results, summary and interval files are
+ * written to the working directory of the worker.  Runs are served one at a time.
+ *
+ * Usage: DistributedWorker [port]
+ *
+ * @author Jeff Tuck
+ */
+
+public class DistributedWorker {
+
+	public static void main(String args[]) {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DistributedProtocol.DEFAULT_PORT;
+		ServerSocket serverSocket = null;
+		try {
+			serverSocket = new ServerSocket(port);
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.out.println("*****  UNABLE TO LISTEN ON PORT " + port + "  *****");
+			System.exit(-1);
+		}
+		System.out.println("*****  WORKER LISTENING ON PORT " + serverSocket.getLocalPort() + "  *****");
+		while(true) {
+			try {
+				Socket socket = serverSocket.accept();
+				System.out.println("*****  RUN REQUESTED BY " + socket.getRemoteSocketAddress() + "  *****");
+				serve(socket);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Serves one run for a coordinator.
+	 * @param socket - The connection to the coordinator.
+	 * @throws IOException if the connection fails.
+	 */
+	private static void serve(Socket socket) throws IOException {
+		File runDirectory = null;
+		try {
+			socket.setTcpNoDelay(true);
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			if(in.readInt() != DistributedProtocol.MAGIC || in.readInt() != DistributedProtocol.VERSION) {
+				throw new IOException("The coordinator uses a different protocol version");
+			}
+			int workerIndex = in.readInt();
+			int workerCount = in.readInt();
+			Properties props = new Properties();
+			props.load(new ByteArrayInputStream(DistributedProtocol.readBytes(in)));
+			runDirectory = Files.createTempDirectory("sqlload-worker").toFile();
+			File sqlDirectory = new File(runDirectory, "sql");
+			File parameterDirectory = new File(runDirectory, "parameters");
+			sqlDirectory.mkdirs();
+			parameterDirectory.mkdirs();
+			props.setProperty("sql_file_directory", sqlDirectory.getPath());
+			props.setProperty("parameter_file_directory", parameterDirectory.getPath());
+			props.setProperty("workload_definition_file", "");
+			props.setProperty("verification_baseline_file", "");
+			props.setProperty("worker_hosts", "");
+			try {
+				receiveFiles(in, props, runDirectory, sqlDirectory, parameterDirectory);
+			} catch (IOException e) {
+				e.printStackTrace();
+				out.writeUTF(DistributedProtocol.FAILED);
+				out.writeUTF(String.valueOf(e.getMessage()));
+				out.flush();
+				return;
+			}
+			System.out.println("*****  RUNNING AS WORKER " + (workerIndex + 1) + " OF " + workerCount + "  *****");
+
+			RunStatistics runStatistics = SQLLoad.run(new ConfigurationBean(props), new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws Exception {
+					out.writeUTF(DistributedProtocol.READY);
+					out.flush();
+					if(!DistributedProtocol.START.equals(in.readUTF())) {
+						System.out.println("*****  RUN CANCELLED BY THE COORDINATOR  *****");
+						return Boolean.FALSE;
+					}
+					long delayMillis = in.readLong() - System.currentTimeMillis();
+					if(delayMillis > 0) {
+						Thread.sleep(delayMillis);
+					} else {
+						System.out.println("*****  STARTING " + (-delayMillis) + " MS LATE, CHECK THAT THE CLOCKS ARE SYNCHRONIZED  *****");
+					}
+					return Boolean.TRUE;
+				}
+			});
+			if(runStatistics != null) {
+				ByteArrayOutputStream statistics = new ByteArrayOutputStream();
+				runStatistics.write(new DataOutputStream(statistics));
+				out.writeUTF(DistributedProtocol.RESULT);
+				DistributedProtocol.writeBytes(out, statistics.toByteArray());
+				out.flush();
+			}
+		} finally {
+			socket.close();
+			if(runDirectory != null) {
+				delete(runDirectory);
+			}
+		}
+	}
+
+	/**
+	 * Receives the SQL, parameter, workload definition and verification baseline files of a run
+	 * and stores them in the run directory.
+	 * @param in - The input from the coordinator.
+	 * @param props - The configuration properties, updated with the location of the files.
+	 * @param runDirectory - The directory for the workload definition and baseline files.
+	 * @param sqlDirectory - The directory for the SQL files.
+	 * @param parameterDirectory - The directory for the parameter files.
+	 * @throws IOException if a file cannot be received or stored.
+	 */
+	private static void receiveFiles(DataInputStream in, Properties props, File runDirectory, File sqlDirectory, File parameterDirectory) throws IOException {
+		int fileCount = in.readInt();
+		for(int i = 0; i < fileCount; i++) {
+			int fileType = in.readInt();
+			// Only the name is used, so files cannot be written outside the run directory.
+			String name = new File(in.readUTF()).getName();
+			byte[] content = DistributedProtocol.readBytes(in);
+			File file = null;
+			if(fileType == DistributedProtocol.FILE_SQL) {
+				file = new File(sqlDirectory, name);
+			} else if(fileType == DistributedProtocol.FILE_PARAMETER) {
+				file = new File(parameterDirectory, name);
+			} else if(fileType == DistributedProtocol.FILE_DEFINITION) {
+				file = new File(runDirectory, name);
+				props.setProperty("workload_definition_file", file.getPath());
+			} else if(fileType == DistributedProtocol.FILE_BASELINE) {
+				file = new File(runDirectory, name);
+				props.setProperty("verification_baseline_file", file.getPath());
+			} else {
+				throw new IOException("Unknown file type " + fileType + " for " + name);
+			}
+			writeFile(file, content);
+		}
+	}
+
+	/**
+	 * Writes a file received from the coordinator.
+	 * @param file - The file to write.
+	 * @param content - The content of the file.
+	 * @throws IOException if the file cannot be written.
+	 */
+	private static void writeFile(File file, byte[] content) throws IOException {
+		OutputStream output = new FileOutputStream(file);
+		try {
+			output.write(content);
+		} finally {
+			output.close();
+		}
+	}
+
+	/**
+	 * Deletes a directory and everything in it.
+	 * @param file - The file or directory to delete.
+	 */
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if(children != null) {
+			for(File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,336 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Append only binary journal of SQL executions, written instead of the results CSV file when
+ * the cost of formatting every result during the run must be avoided.  The journal is a
+ * directory with a manifest (journal.properties) and one segment file per worker thread.
+ * Each thread appends its records to the direct buffer of its own segment and writes the
+ * buffer to the segment file when it is full, so threads never wait for each other or for a
+ * background writer.  Once more than MAX_SEGMENTS threads have written records, for example
+ * with one virtual thread per statement, further threads share the existing segments.
+ *
+ * Segment files start with a magic number and version, followed by records made of the
+ * ExecutionRecord fields as big endian longs, the length of the error message in bytes
+ * (-1 when there is none) and the UTF-8 bytes of the error message.  JournalConverter turns
+ * a journal into the results and summary CSV files.
+ *
+ * Once a segment file cannot be written, the records of its buffer and every later record
+ * of the segment are dropped.  The manifest marks the journal as failed with the number of
+ * dropped records, so the journal is known to be incomplete when it is converted.
+ *
+ * @author Jeff Tuck
+ */
+
+public class ExecutionJournal implements ResultSink {
+
+	public static final String MANIFEST_FILE = "journal.properties";
+	public static final String SEGMENT_PREFIX = "segment-";
+	public static final String SEGMENT_SUFFIX = ".bin";
+	public static final int MAGIC = 0x53514C4A;
+	public static final int VERSION = 1;
+
+	private static final int MAX_SEGMENTS = 64;
+	private static final int BUFFER_SIZE = 1 << 18;
+
+	private final File directory;
+	private final String[] fileNames;
+	private final String userName;
+	private final RunStatistics runStatistics;
+	private final long referenceNanos;
+	private final long referenceEpochMillis;
+	private final AtomicReferenceArray<Segment> segments = new AtomicReferenceArray<Segment>(MAX_SEGMENTS);
+	private final AtomicInteger threadCount = new AtomicInteger();
+	private long droppedCount = 0;
+	private boolean warmUp = false;
+	private long warmUpStartNanos = 0;
+	private long warmUpEndNanos = 0;
+	private final ThreadLocal<Segment> threadSegment = new ThreadLocal<Segment>() {
+		@Override
+		protected Segment initialValue() {
+			return getSegment(threadCount.getAndIncrement() % MAX_SEGMENTS);
+		}
+	};
+
+	/**
+	 * Constructor for ExecutionJournal.  Creates the journal directory and writes the manifest.
+	 * @param directoryName - The name of the journal directory.
+	 * @param fileNames - The names of the SQL files of the run, in file id order.
+	 * @param userName - The database user name of the run.
+	 * @param runStatistics - The statistics of the run, whose start and end are written to the manifest.
+	 * @throws IOException if the journal directory or manifest cannot be created.
+	 */
+	public ExecutionJournal(String directoryName, String[] fileNames, String userName, RunStatistics runStatistics) throws IOException {
+		super();
+		this.directory = new File(directoryName);
+		this.fileNames = fileNames;
+		this.userName = userName;
+		this.runStatistics = runStatistics;
+		this.referenceNanos = System.nanoTime();
+		this.referenceEpochMillis = RunClock.toEpochMillis(this.referenceNanos);
+		if(!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Unable to create the journal directory " + directoryName);
+		}
+		writeManifest(0, 0, 0);
+	}
+
+	/**
+	 * Appends the result of a SQL execution to the segment of the calling thread.
+	 * @param record - The record of the SQL execution.
+	 */
+	@Override
+	public void write(ExecutionRecord record) {
+		threadSegment.get().append(record);
+	}
+
+	/**
+	 * Records the start and the end of the warm up in the manifest, so the converter can
+	 * summarize the warm up separately.  The start of the warm up is the start of the run,
+	 * which RunStatistics moves to the end of the warm up before the journal is closed.
+	 * @param warmUpEndNanos - The System.nanoTime() at which the warm up ends.
+	 */
+	@Override
+	public void setWarmUp(long warmUpEndNanos) {
+		this.warmUp = true;
+		this.warmUpStartNanos = runStatistics.getRunStartNanos();
+		this.warmUpEndNanos = warmUpEndNanos;
+		try {
+			writeManifest(0, 0, 0);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Writes the buffered records of every segment, closes the segment files and completes
+	 * the manifest with the run times, the number of records and the number of dropped records.
+	 */
+	@Override
+	public void close() {
+		int segmentCount = 0;
+		long recordCount = 0;
+		long droppedCount = 0;
+		for(int i = 0; i < MAX_SEGMENTS; i++) {
+			Segment segment = segments.get(i);
+			if(segment != null) {
+				recordCount += segment.close();
+				droppedCount += segment.droppedCount;
+				segmentCount++;
+			}
+		}
+		this.droppedCount = droppedCount;
+		try {
+			writeManifest(segmentCount, recordCount, droppedCount);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		if(droppedCount > 0) {
+			System.out.println("*****  THE JOURNAL IS INCOMPLETE, " + droppedCount + " RECORDS COULD NOT BE WRITTEN  *****");
+		}
+	}
+
+	/**
+	 * Gets the number of records that could not be written to the journal.
+	 * @return The number of dropped records, known once the journal is closed.
+	 */
+	public long getDroppedCount() {
+		return droppedCount;
+	}
+
+	/**
+	 * Gets a segment, creating its file when it is used for the first time.
+	 * @param index - The index of the segment.
+	 * @return The segment.
+	 */
+	private Segment getSegment(int index) {
+		Segment segment = segments.get(index);
+		if(segment == null) {
+			synchronized (segments) {
+				segment = segments.get(index);
+				if(segment == null) {
+					segment = new Segment(new File(directory, SEGMENT_PREFIX + index + SEGMENT_SUFFIX));
+					segments.set(index, segment);
+				}
+			}
+		}
+		return segment;
+	}
+
+	/**
+	 * Writes the manifest, which holds everything needed to convert the segments: the SQL
+	 * file names, the user name, a reference point of the clock, the run times and the
+	 * times of the warm up, if there is one.
+	 * @param segmentCount - The number of segment files.
+	 * @param recordCount - The number of records in all segments.
+	 * @param droppedCount - The number of records that could not be written.
+	 * @throws IOException if the manifest cannot be written.
+	 */
+	private void writeManifest(int segmentCount, long recordCount, long droppedCount) throws IOException {
+		Properties manifest = new Properties();
+		manifest.setProperty("version", Integer.toString(VERSION));
+		manifest.setProperty("user_name", userName);
+		manifest.setProperty("file_count", Integer.toString(fileNames.length));
+		for(int fileId = 0; fileId < fileNames.length; fileId++) {
+			manifest.setProperty("file." + fileId, fileNames[fileId]);
+		}
+		manifest.setProperty("reference_nanos", Long.toString(referenceNanos));
+		manifest.setProperty("reference_epoch_millis", Long.toString(referenceEpochMillis));
+		manifest.setProperty("run_start_nanos", Long.toString(runStatistics.getRunStartNanos()));
+		manifest.setProperty("run_end_nanos", Long.toString(runStatistics.getRunEndNanos()));
+		if(warmUp) {
+			manifest.setProperty("warm_up_start_nanos", Long.toString(warmUpStartNanos));
+			manifest.setProperty("warm_up_end_nanos", Long.toString(warmUpEndNanos));
+		}
+		manifest.setProperty("segment_count", Integer.toString(segmentCount));
+		manifest.setProperty("record_count", Long.toString(recordCount));
+		manifest.setProperty("dropped_record_count", Long.toString(droppedCount));
+		manifest.setProperty("failed", Boolean.toString(droppedCount > 0));
+		OutputStream output = new FileOutputStream(new File(directory, MANIFEST_FILE));
+		try {
+			manifest.store(output, "SQL Load Utility execution journal");
+		} finally {
+			output.close();
+		}
+	}
+
+	/**
+	 * One segment file with its buffer.  A segment is normally used by a single thread, so
+	 * its lock is uncontended.
+	 */
+	private static class Segment {
+
+		private final ReentrantLock lock = new ReentrantLock();
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		private final long[] values = new long[ExecutionRecord.FIELD_COUNT];
+		private final String fileName;
+		private FileChannel channel = null;
+		private long recordCount = 0;
+		private long bufferedCount = 0;
+		private long droppedCount = 0;
+		private boolean failed = false;
+
+		private Segment(File file) {
+			this.fileName = file.getName();
+			try {
+				this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+				buffer.putInt(MAGIC);
+				buffer.putInt(VERSION);
+			} catch (IOException e) {
+				fail(e);
+			}
+		}
+
+		private void append(ExecutionRecord record) {
+			lock.lock();
+			try {
+				if(failed) {
+					droppedCount++;
+					return;
+				}
+				byte[] message = record.getErrorMessage() == null ? null : record.getErrorMessage().getBytes(StandardCharsets.UTF_8);
+				int size = ExecutionRecord.FIELD_COUNT * 8 + 4 + (message == null ? 0 : message.length);
+				if(buffer.remaining() < size) {
+					flush();
+				}
+				record.writeTo(values, 0);
+				for(long value : values) {
+					buffer.putLong(value);
+				}
+				if(message == null) {
+					buffer.putInt(-1);
+					bufferedCount++;
+				} else {
+					buffer.putInt(message.length);
+					if(buffer.remaining() >= message.length) {
+						buffer.put(message);
+						bufferedCount++;
+					} else {
+						// Only error messages larger than the buffer are written directly, the
+						// record is then on disk and not in the buffer.
+						flush();
+						writeFully(ByteBuffer.wrap(message));
+					}
+				}
+				recordCount++;
+			} catch (IOException e) {
+				// The record being appended is lost with the records of the buffer.
+				droppedCount++;
+				fail(e);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private long close() {
+			lock.lock();
+			try {
+				if(channel != null) {
+					if(!failed) {
+						flush();
+					}
+					channel.close();
+				}
+			} catch (IOException e) {
+				if(!failed) {
+					fail(e);
+				}
+			} finally {
+				this.failed = true;
+				lock.unlock();
+			}
+			return recordCount;
+		}
+
+		private void flush() throws IOException {
+			buffer.flip();
+			writeFully(buffer);
+			buffer.clear();
+			bufferedCount = 0;
+		}
+
+		/**
+		 * Stops writing the segment after a failure.  The records of the buffer are dropped.
+		 * @param e - The failure.
+		 */
+		private void fail(IOException e) {
+			e.printStackTrace();
+			System.out.println("*****  UNABLE TO WRITE THE JOURNAL SEGMENT " + fileName + ", ITS FURTHER RECORDS ARE DROPPED  *****");
+			this.failed = true;
+			this.recordCount -= bufferedCount;
+			this.droppedCount += bufferedCount;
+			this.bufferedCount = 0;
+		}
+
+		private void writeFully(ByteBuffer source) throws IOException {
+			while(source.hasRemaining()) {
+				channel.write(source);
+			}
+		}
+	}
+}
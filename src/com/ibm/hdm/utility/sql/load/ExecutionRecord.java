@@ -0,0 +1,328 @@
+package com.ibm.hdm.utility.sql.load;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The outcome of a single SQL execution held in primitive fields.  Records are mutable and
+ * meant to be reused: a worker thread fills the same record for every execution it performs
+ * and the record is copied into an ExecutionRecordBuffer, so recording an execution does not
+ * allocate.  Times are System.nanoTime() values and are only converted to clock times and
+ * formatted when the results file is written.
+ * 
+ * @author Jeff Tuck
+ */
+
+public class ExecutionRecord {
+
+	public static final int STATUS_SUCCESS = 0;
+	public static final int STATUS_ERROR = 1;
+	public static final int STATUS_TIMEOUT = 2;
+	public static final int STATUS_MISMATCH = 3;
+
+	/** The number of long values needed to store a record in a primitive array. */
+	public static final int FIELD_COUNT = 15;
+
+	private static final String[] STATUS_NAMES = { "success", "error", "timeout", "mismatch" };
+
+	protected int fileId = 0;
+	protected int statementNumber = 0;
+	protected int status = STATUS_SUCCESS;
+	protected long executionSequence = 0;
+	protected long threadId = 0;
+	protected long requestNanos = 0;
+	protected long startNanos = 0;
+	protected long endNanos = 0;
+	protected long firstRowNanos = -1;
+	protected long lastRowNanos = -1;
+	protected long rowCount = -1;
+	protected long bytesFetched = -1;
+	protected long prepareNanos = -1;
+	protected long executedNanos = -1;
+	protected int errorCode = 0;
+	protected String errorMessage = null;
+
+	/**
+	 * Default constructor
+	 */
+	public ExecutionRecord() {
+		super();
+	}
+
+	/**
+	 * Clears the record before it is used for another SQL execution.
+	 * @param fileId - The id of the SQL file within the workload.
+	 * @param statementNumber - The position of the statement within its SQL file.
+	 * @param executionSequence - The sequence with which the SQL was executed.
+	 */
+	public void reset(int fileId, int statementNumber, long executionSequence) {
+		this.fileId = fileId;
+		this.statementNumber = statementNumber;
+		this.status = STATUS_SUCCESS;
+		this.executionSequence = executionSequence;
+		this.threadId = Thread.currentThread().getId();
+		this.requestNanos = 0;
+		this.startNanos = 0;
+		this.endNanos = 0;
+		this.firstRowNanos = -1;
+		this.lastRowNanos = -1;
+		this.rowCount = -1;
+		this.bytesFetched = -1;
+		this.prepareNanos = -1;
+		this.executedNanos = -1;
+		this.errorCode = 0;
+		this.errorMessage = null;
+	}
+
+	/**
+	 * Copies the primitive fields of the record into an array.
+	 * @param values - The array to copy to.
+	 * @param offset - The position of the first field in the array.
+	 */
+	public void writeTo(long[] values, int offset) {
+		values[offset] = fileId;
+		values[offset + 1] = status;
+		values[offset + 2] = executionSequence;
+		values[offset + 3] = threadId;
+		values[offset + 4] = requestNanos;
+		values[offset + 5] = startNanos;
+		values[offset + 6] = endNanos;
+		values[offset + 7] = firstRowNanos;
+		values[offset + 8] = lastRowNanos;
+		values[offset + 9] = rowCount;
+		values[offset + 10] = bytesFetched;
+		values[offset + 11] = prepareNanos;
+		values[offset + 12] = executedNanos;
+		values[offset + 13] = statementNumber;
+		values[offset + 14] = errorCode;
+	}
+
+	/**
+	 * Copies the primitive fields of the record from an array.
+	 * @param values - The array to copy from.
+	 * @param offset - The position of the first field in the array.
+	 */
+	public void readFrom(long[] values, int offset) {
+		fileId = (int) values[offset];
+		status = (int) values[offset + 1];
+		executionSequence = values[offset + 2];
+		threadId = values[offset + 3];
+		requestNanos = values[offset + 4];
+		startNanos = values[offset + 5];
+		endNanos = values[offset + 6];
+		firstRowNanos = values[offset + 7];
+		lastRowNanos = values[offset + 8];
+		rowCount = values[offset + 9];
+		bytesFetched = values[offset + 10];
+		prepareNanos = values[offset + 11];
+		executedNanos = values[offset + 12];
+		statementNumber = (int) values[offset + 13];
+		errorCode = (int) values[offset + 14];
+	}
+
+	/**
+	 * Moves every time of the record by the same offset.  Used to map times recorded by
+	 * another process onto the clock of this process.  Durations are not changed.
+	 * @param offsetNanos - The offset to add in nanoseconds.
+	 */
+	public void shiftTimes(long offsetNanos) {
+		requestNanos += offsetNanos;
+		startNanos += offsetNanos;
+		endNanos += offsetNanos;
+		if(firstRowNanos != -1) {
+			firstRowNanos += offsetNanos;
+		}
+		if(lastRowNanos != -1) {
+			lastRowNanos += offsetNanos;
+		}
+		if(executedNanos != -1) {
+			executedNanos += offsetNanos;
+		}
+	}
+
+	/**
+	 * Gets the name of a status code as written to the results file.
+	 * @param status - The status code.
+	 * @return The status name.
+	 */
+	public static String getStatusName(int status) {
+		return STATUS_NAMES[status];
+	}
+
+	/**
+	 * Gets the id of the SQL file within the workload.
+	 * @return The file id.
+	 */
+	public int getFileId() {
+		return fileId;
+	}
+
+	/**
+	 * Gets the position of the statement within its SQL file.
+	 * @return The statement number, starting with 1.
+	 */
+	public int getStatementNumber() {
+		return statementNumber;
+	}
+
+	/**
+	 * Gets the status code of the SQL execution.
+	 * @return STATUS_SUCCESS, STATUS_ERROR, STATUS_TIMEOUT or STATUS_MISMATCH.
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * Indicates if the SQL execution succeeded.
+	 * @return True if the execution succeeded.
+	 */
+	public boolean isSuccess() {
+		return status == STATUS_SUCCESS;
+	}
+
+	/**
+	 * Gets the sequence with which the SQL was executed.
+	 * @return The execution sequence.
+	 */
+	public long getExecutionSequence() {
+		return executionSequence;
+	}
+
+	/**
+	 * Gets the id of the thread that executed the SQL.
+	 * @return The thread id.
+	 */
+	public long getThreadId() {
+		return threadId;
+	}
+
+	/**
+	 * Gets the time the SQL execution was scheduled to start.
+	 * @return The System.nanoTime() value.
+	 */
+	public long getRequestNanos() {
+		return requestNanos;
+	}
+
+	/**
+	 * Gets the time the SQL execution started.
+	 * @return The System.nanoTime() value.
+	 */
+	public long getStartNanos() {
+		return startNanos;
+	}
+
+	/**
+	 * Gets the time the SQL execution ended.
+	 * @return The System.nanoTime() value.
+	 */
+	public long getEndNanos() {
+		return endNanos;
+	}
+
+	/**
+	 * Gets the elapsed time of the SQL execution itself.
+	 * @return The elapsed time in nanoseconds.
+	 */
+	public long getElapsedNanos() {
+		return endNanos - startNanos;
+	}
+
+	/**
+	 * Gets the time between the scheduled start and the actual start of the SQL execution.
+	 * @return The queue delay in nanoseconds.
+	 */
+	public long getQueueDelayNanos() {
+		return startNanos - requestNanos;
+	}
+
+	/**
+	 * Gets the time between the scheduled start and the end of the SQL execution.
+	 * @return The response time in nanoseconds.
+	 */
+	public long getResponseNanos() {
+		return endNanos - requestNanos;
+	}
+
+	/**
+	 * Gets the time the first row was received.
+	 * @return The System.nanoTime() value or -1 if rows were not fetched.
+	 */
+	public long getFirstRowNanos() {
+		return firstRowNanos;
+	}
+
+	/**
+	 * Gets the time the last row was received.
+	 * @return The System.nanoTime() value or -1 if rows were not fetched.
+	 */
+	public long getLastRowNanos() {
+		return lastRowNanos;
+	}
+
+	/**
+	 * Gets the number of rows fetched.
+	 * @return The row count or -1 if rows were not fetched.
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Gets the approximate number of bytes fetched.
+	 * @return The byte count or -1 if rows were not fetched.
+	 */
+	public long getBytesFetched() {
+		return bytesFetched;
+	}
+
+	/**
+	 * Gets the time spent preparing the statement.  Zero when a prepared statement was taken
+	 * from the statement cache of the connection.
+	 * @return The prepare time in nanoseconds or -1 if no prepared statement was used.
+	 */
+	public long getPrepareNanos() {
+		return prepareNanos;
+	}
+
+	/**
+	 * Gets the time the statement took to execute, from the end of the prepare until the
+	 * result set was returned, without fetching rows.
+	 * @return The execute time in nanoseconds or -1 if the statement did not complete.
+	 */
+	public long getExecuteNanos() {
+		if(executedNanos == -1) {
+			return -1;
+		}
+		return executedNanos - startNanos - Math.max(prepareNanos, 0);
+	}
+
+	/**
+	 * Gets the vendor error code of the error raised by the SQL execution, such as the SQLCODE
+	 * for Db2.
+	 * @return The error code or zero if the execution succeeded.
+	 */
+	public int getErrorCode() {
+		return errorCode;
+	}
+
+	/**
+	 * Gets the error raised by the SQL execution.
+	 * @return The error message or null if the execution succeeded.
+	 */
+	public String getErrorMessage() {
+		return errorMessage;
+	}
+}
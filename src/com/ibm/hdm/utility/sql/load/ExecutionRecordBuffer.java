@@ -0,0 +1,104 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Bounded, lock free queue of execution records for many producer threads and a single
+ * consumer thread.  Records are copied into one preallocated primitive array, so no objects
+ * are created per execution.  Each slot of the ring carries a sequence number that tells
+ * producers when the slot is free and the consumer when the slot has been published, so
+ * neither side ever blocks on a lock.
+ * 
+ * @author Jeff Tuck
+ */
+
+public class ExecutionRecordBuffer {
+
+	private final int mask;
+	private final long[] values;
+	private final String[] errorMessages;
+	private final AtomicLongArray sequences;
+	private final AtomicLong producerPosition = new AtomicLong();
+	private long consumerPosition = 0;
+
+	/**
+	 * Constructor for ExecutionRecordBuffer
+	 * @param requestedCapacity - The minimum number of records the queue can hold.  The
+	 * capacity is rounded up to a power of two.
+	 */
+	public ExecutionRecordBuffer(int requestedCapacity) {
+		super();
+		int capacity = Integer.highestOneBit(Math.max(requestedCapacity, 2) - 1) << 1;
+		this.mask = capacity - 1;
+		this.values = new long[capacity * ExecutionRecord.FIELD_COUNT];
+		this.errorMessages = new String[capacity];
+		this.sequences = new AtomicLongArray(capacity);
+		for(int i = 0; i < capacity; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * Copies a record into the queue.  May be called by any number of threads.
+	 * @param record - The record to copy.
+	 * @return True if the record was added.  False if the queue is full.
+	 */
+	public boolean offer(ExecutionRecord record) {
+		while(true) {
+			long position = producerPosition.get();
+			int index = (int) position & mask;
+			long difference = sequences.get(index) - position;
+			if(difference == 0) {
+				if(producerPosition.compareAndSet(position, position + 1)) {
+					record.writeTo(values, index * ExecutionRecord.FIELD_COUNT);
+					errorMessages[index] = record.getErrorMessage();
+					sequences.lazySet(index, position + 1);
+					return true;
+				}
+			} else if(difference < 0) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Copies the oldest record out of the queue.  Must only be called by the consumer thread.
+	 * @param record - The record to copy into.
+	 * @return True if a record was copied.  False if the queue is empty.
+	 */
+	public boolean poll(ExecutionRecord record) {
+		int index = (int) consumerPosition & mask;
+		if(sequences.get(index) != consumerPosition + 1) {
+			return false;
+		}
+		record.readFrom(values, index * ExecutionRecord.FIELD_COUNT);
+		record.errorMessage = errorMessages[index];
+		errorMessages[index] = null;
+		sequences.lazySet(index, consumerPosition + mask + 1);
+		consumerPosition++;
+		return true;
+	}
+
+	/**
+	 * Gets the number of slots in the ring.
+	 * @return The capacity of the queue.
+	 */
+	public int capacity() {
+		return mask + 1;
+	}
+}
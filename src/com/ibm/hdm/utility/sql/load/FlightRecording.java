@@ -0,0 +1,72 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.text.ParseException;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A Java Flight Recorder recording of a whole run, with the SQL execution phase events of
+ * SQLExecutionEvent next to the garbage collection, safepoint, thread and I/O events of the
+ * client.  The recording uses one of the predefined flight recorder settings, default for
+ * about 1% overhead or profile for more detail, and is written to a file when the run ends.
+ *
+ * @author Jeff Tuck
+ */
+
+public class FlightRecording {
+
+	private final Recording recording;
+
+	/**
+	 * Constructor for FlightRecording.  Starts the recording.
+	 * @param settings - The name of the predefined settings, default or profile, or the path
+	 * of a .jfc settings file.
+	 * @throws IOException if the settings file cannot be read.
+	 * @throws ParseException if the settings file is invalid.
+	 */
+	public FlightRecording(String settings) throws IOException, ParseException {
+		super();
+		Configuration configuration = settings.endsWith(".jfc") ? Configuration.create(Paths.get(settings)) : Configuration.getConfiguration(settings);
+		this.recording = new Recording(configuration);
+		this.recording.setName("SQL Load");
+		this.recording.enable(SQLExecutionEvent.class);
+		this.recording.start();
+		System.out.println("*****  FLIGHT RECORDING STARTED WITH THE " + settings + " SETTINGS  *****");
+	}
+
+	/**
+	 * Stops the recording and writes it to a file.
+	 * @param fileName - The name of the recording file.
+	 * @return True if the recording was written.
+	 */
+	public boolean stop(String fileName) {
+		try {
+			recording.stop();
+			recording.dump(Paths.get(fileName));
+			return true;
+		} catch (IOException | IllegalStateException e) {
+			e.printStackTrace();
+			System.out.println("*****  UNABLE TO WRITE THE FLIGHT RECORDING " + fileName + "  *****");
+			return false;
+		} finally {
+			recording.close();
+		}
+	}
+}
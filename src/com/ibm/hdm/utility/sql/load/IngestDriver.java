@@ -0,0 +1,424 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Drives the ingest load mode, which loads rows into the database as fast as it accepts them
+ * to measure write throughput.  The statements of the SQL files are processed in order:
+ * statements without parameter markers, such as a DELETE or TRUNCATE that prepares the
+ * target table, are executed once, and each parameterized INSERT, UPDATE or MERGE statement
+ * ingests every row of its ingest source.
+ *
+ * A statement is ingested by virtual_users workers at the same time, each on its own
+ * connection with auto commit off.  Workers take ingest_batch_size rows at a time from the
+ * shared source, send them with addBatch() and executeBatch() and commit after every
+ * ingest_commit_batches batches.  A batch that fails is rolled back with the uncommitted
+ * batches before it and the worker continues with the next rows.  A failed commit rolls back
+ * every uncommitted batch of the worker in the same way.  The rolled back batches are counted
+ * as failed batches of the ingest report.
+ *
+ * Each batch is recorded as one execution with the rows of the batch as its row count.  Its
+ * Execute Time is the time to bind and execute the batch, and when the batch is followed by a
+ * commit its Elapsed Time includes the commit.  When a statement has been ingested, the rows
+ * per second and the batch and commit latency percentiles are printed and added to the
+ * ingest report, which is written with one line per ingested statement when the run ends.
+ * The throughput of the summary counts batches, the ingest report counts rows.  The summary
+ * and results count executed batches, not committed ones: a batch is recorded when it has
+ * been executed, so the batches before a failed batch or commit stay recorded as successes
+ * although they were rolled back.  Only the ingest report counts the committed rows.
+ *
+ * @author Jeff Tuck
+ */
+
+public class IngestDriver {
+
+	private ConfigurationBean config = null;
+	private ConnectionPool connectionPool = null;
+	private Workload workload = null;
+	private ResultCollector resultCollector = null;
+	private WorkerThreads workerThreads = null;
+	private int workerCount = 1;
+	private String fileName = null;
+	private final AtomicLong executionSequence = new AtomicLong(1);
+	private final StringBuilder report = new StringBuilder();
+
+	/**
+	 * Constructor for IngestDriver
+	 * @param config - The configuration for SQL Load.
+	 * @param connectionPool - The pool to get database connections from.
+	 * @param workload - The SQL statements to ingest into.
+	 * @param resultCollector - Receives the result of each batch.
+	 * @param workerThreads - Creates the worker threads and limits concurrent SQL executions.
+	 * @param workerCount - The number of workers that ingest each statement.
+	 * @param fileName - The name of the file to write the ingest report to.
+	 */
+	public IngestDriver(ConfigurationBean config, ConnectionPool connectionPool, Workload workload, ResultCollector resultCollector,
+			WorkerThreads workerThreads, int workerCount, String fileName) {
+		super();
+		this.config = config;
+		this.connectionPool = connectionPool;
+		this.workload = workload;
+		this.resultCollector = resultCollector;
+		this.workerThreads = workerThreads;
+		this.workerCount = Math.max(workerCount, 1);
+		this.fileName = fileName;
+		this.report.append("SQL Filename, Statement Number, Source, Workers, Batch Size, Committed Rows, Failed Batches, Seconds, Rows Per Second, "
+				+ "Batches, Batch P50 (ms), Batch P99 (ms), Batch Max (ms), Commits, Commit P50 (ms), Commit P99 (ms), Commit Max (ms)");
+		this.report.append(System.lineSeparator());
+	}
+
+	/**
+	 * Executes the statements of the workload in order, ingesting into the parameterized ones.
+	 */
+	public void run() {
+		if(config.getIngestBatchSize() <= 0) {
+			throw new IllegalArgumentException("ingest_batch_size must be greater than zero for the ingest load mode");
+		}
+		String source = config.getIngestSource().toLowerCase();
+		if(!IngestSource.SOURCE_CSV.equals(source) && !IngestSource.SOURCE_GENERATED.equals(source)) {
+			throw new IllegalArgumentException("ingest_source must be csv or generated, not " + config.getIngestSource());
+		}
+		ExecutorService executor = workerThreads.newExecutor(this.workerCount, "ingest-worker");
+		ExecutionRecord record = new ExecutionRecord();
+		try {
+			for(int statementId = 0; statementId < workload.size() && !connectionPool.getWatchdog().isRunExpired(); statementId++) {
+				SQLTemplate template = getTemplate(statementId);
+				if(template != null && template.isParameterized()) {
+					ingest(executor, statementId, template, IngestSource.SOURCE_GENERATED.equals(source));
+				} else {
+					Request request = new Request(workload, statementId, executionSequence.getAndIncrement(), config, connectionPool);
+					resultCollector.executionStarted();
+					request.executeSQL(record);
+					resultCollector.collect(record);
+					// The connection goes back to the pool for the workers.
+					connectionPool.releaseUserConnection();
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+		writeReport();
+	}
+
+	/**
+	 * Writes the ingest report, one line per ingested statement.
+	 */
+	private void writeReport() {
+		try {
+			OutputStreamWriter outputStreamWriter = new OutputStreamWriter(new FileOutputStream(fileName));
+			outputStreamWriter.write(report.toString());
+			outputStreamWriter.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		System.out.println("Ingest Report Written To: " + fileName);
+	}
+
+	/**
+	 * Gets the parameter markers of a statement.
+	 * @param statementId - The id of the statement.
+	 * @return The SQL template or null if the statement cannot be read or parsed, in which
+	 * case its execution reports the failure.
+	 */
+	private SQLTemplate getTemplate(int statementId) {
+		try {
+			return workload.getTemplate(statementId, workload.getSql(statementId));
+		} catch (IOException | IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Ingests every row of the source of a statement with the workers and prints the ingest
+	 * rate and latencies.
+	 * @param executor - Runs the workers.
+	 * @param statementId - The id of the parameterized statement.
+	 * @param template - The statement.
+	 * @param generated - True to generate the rows, false to read them from the parameter file.
+	 */
+	private void ingest(ExecutorService executor, int statementId, SQLTemplate template, boolean generated) {
+		int fileId = workload.getFileId(statementId);
+		String target = workload.getFileName(fileId) + " STATEMENT " + workload.getStatementNumber(statementId);
+		IngestSource source = null;
+		try {
+			if(generated) {
+				source = new IngestSource(workload.getFileName(fileId), config.getIngestRows());
+			} else {
+				File file = workload.getParameterFile(fileId, config.getParameterDirectory());
+				source = new IngestSource(file, config.getIngestRows());
+			}
+		} catch (IOException e) {
+			System.out.println("*****  UNABLE TO OPEN THE INGEST SOURCE OF " + target + ", IT IS SKIPPED: " + e.getMessage() + "  *****");
+			return;
+		}
+		System.out.println("*****  INGESTING " + source.getFileName() + " INTO " + target + " WITH " + this.workerCount + " WORKERS, BATCHES OF "
+				+ config.getIngestBatchSize() + " ROWS  *****");
+		Ingest ingest = new Ingest(statementId, template, source);
+		long startNanos = System.nanoTime();
+		List<Future<?>> workers = new ArrayList<Future<?>>();
+		for(int worker = 0; worker < this.workerCount; worker++) {
+			workers.add(executor.submit(new Worker(ingest)));
+		}
+		for(Future<?> worker : workers) {
+			try {
+				worker.get();
+			} catch (ExecutionException e) {
+				e.printStackTrace();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		source.close();
+		double seconds = Math.max(System.nanoTime() - startNanos, 1) / 1e9;
+		System.out.println("*****  INGESTED " + ingest.committedRows.get() + " ROWS INTO " + target + " IN " + format(seconds) + " S, "
+				+ format(ingest.committedRows.get() / seconds) + " ROWS/S, " + ingest.failedBatches.get() + " FAILED BATCHES  *****");
+		System.out.println("*****  BATCH LATENCY P50 " + RunStatistics.toMillis(ingest.batchLatency.getValueAtPercentile(50.0)) + " MS, P99 "
+				+ RunStatistics.toMillis(ingest.batchLatency.getValueAtPercentile(99.0)) + " MS, MAX " + RunStatistics.toMillis(ingest.batchLatency.getMaxValue()) + " MS  *****");
+		System.out.println("*****  COMMIT LATENCY P50 " + RunStatistics.toMillis(ingest.commitLatency.getValueAtPercentile(50.0)) + " MS, P99 "
+				+ RunStatistics.toMillis(ingest.commitLatency.getValueAtPercentile(99.0)) + " MS, MAX " + RunStatistics.toMillis(ingest.commitLatency.getMaxValue()) + " MS  *****");
+		report.append(workload.getFileName(fileId)).append(',')
+			.append(workload.getStatementNumber(statementId)).append(',')
+			.append(source.getFileName()).append(',')
+			.append(this.workerCount).append(',')
+			.append(config.getIngestBatchSize()).append(',')
+			.append(ingest.committedRows.get()).append(',')
+			.append(ingest.failedBatches.get()).append(',')
+			.append(format(seconds)).append(',')
+			.append(format(ingest.committedRows.get() / seconds)).append(',')
+			.append(ingest.batchLatency.getTotalCount()).append(',')
+			.append(RunStatistics.toMillis(ingest.batchLatency.getValueAtPercentile(50.0))).append(',')
+			.append(RunStatistics.toMillis(ingest.batchLatency.getValueAtPercentile(99.0))).append(',')
+			.append(RunStatistics.toMillis(ingest.batchLatency.getMaxValue())).append(',')
+			.append(ingest.commitLatency.getTotalCount()).append(',')
+			.append(RunStatistics.toMillis(ingest.commitLatency.getValueAtPercentile(50.0))).append(',')
+			.append(RunStatistics.toMillis(ingest.commitLatency.getValueAtPercentile(99.0))).append(',')
+			.append(RunStatistics.toMillis(ingest.commitLatency.getMaxValue()))
+			.append(System.lineSeparator());
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+
+	/**
+	 * The ingest of one statement, shared by its workers.
+	 */
+	private static class Ingest {
+		private final int statementId;
+		private final SQLTemplate template;
+		private final IngestSource source;
+		private final LatencyHistogram batchLatency = new LatencyHistogram();
+		private final LatencyHistogram commitLatency = new LatencyHistogram();
+		private final AtomicLong committedRows = new AtomicLong();
+		private final AtomicLong failedBatches = new AtomicLong();
+
+		private Ingest(int statementId, SQLTemplate template, IngestSource source) {
+			this.statementId = statementId;
+			this.template = template;
+			this.source = source;
+		}
+	}
+
+	/**
+	 * Sends batches of rows on one connection until the source is exhausted.
+	 */
+	private class Worker implements Runnable {
+
+		private final Ingest ingest;
+		private final ExecutionRecord record = new ExecutionRecord();
+		private int uncommittedBatches = 0;
+		private long uncommittedRows = 0;
+
+		private Worker(Ingest ingest) {
+			this.ingest = ingest;
+		}
+
+		@Override
+		public void run() {
+			Connection connection = null;
+			SQLException failure = null;
+			try {
+				connection = connectionPool.getConnection();
+				boolean autoCommit = connection.getAutoCommit();
+				connection.setAutoCommit(false);
+				try {
+					failure = ingestBatches(connection);
+				} finally {
+					connection.setAutoCommit(autoCommit);
+				}
+			} catch (SQLException e) {
+				e.printStackTrace();
+				System.out.println("*****  INGEST WORKER STOPPED: " + e.getMessage() + "  *****");
+				failure = e;
+			} catch (IOException e) {
+				e.printStackTrace();
+				System.out.println("*****  UNABLE TO READ " + ingest.source.getFileName() + ", INGEST WORKER STOPPED  *****");
+			} finally {
+				connectionPool.releaseConnection(connection, failure);
+				connectionPool.releaseUserConnection();
+			}
+		}
+
+		/**
+		 * Sends the batches of the worker and commits the last of them.
+		 * @param connection - The connection of the worker, with auto commit off.
+		 * @return The failure that broke the connection, or null.
+		 * @throws SQLException if the statement cannot be prepared or the last commit fails.
+		 * @throws IOException if the source cannot be read.
+		 */
+		private SQLException ingestBatches(Connection connection) throws SQLException, IOException {
+			StatementCache statementCache = connectionPool.getStatementCache(connection);
+			String jdbcSql = ingest.template.getJdbcSql();
+			long prepareStartNanos = System.nanoTime();
+			StatementCache.CachedStatement cached = statementCache.get(jdbcSql);
+			long prepareNanos = 0;
+			if(cached == null) {
+				cached = statementCache.prepare(jdbcSql, ingest.template.getParameterNames().size());
+				prepareNanos = System.nanoTime() - prepareStartNanos;
+			}
+			PreparedStatement statement = cached.getStatement();
+			int[] parameterTypes = cached.getParameterTypes();
+			int[] columns = ingest.source.getColumns(ingest.template);
+			String[][] batch = new String[Math.max(config.getIngestBatchSize(), 1)][];
+			int commitBatches = config.getIngestCommitBatches();
+			QueryWatchdog watchdog = connectionPool.getWatchdog();
+			int rows;
+			while(!watchdog.isRunExpired() && (rows = ingest.source.fill(batch, columns, parameterTypes)) > 0) {
+				record.reset(workload.getFileId(ingest.statementId), workload.getStatementNumber(ingest.statementId), executionSequence.getAndIncrement());
+				record.requestNanos = prepareNanos > 0 ? prepareStartNanos : System.nanoTime();
+				resultCollector.executionStarted();
+				QueryWatchdog.Execution execution = null;
+				try {
+					workerThreads.beginExecution();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+				try {
+					// The first batch of the worker includes the prepare of the statement.
+					record.startNanos = prepareNanos > 0 ? prepareStartNanos : System.nanoTime();
+					record.prepareNanos = prepareNanos;
+					prepareNanos = 0;
+					for(int row = 0; row < rows; row++) {
+						ParameterSource.bind(statement, parameterTypes, batch[row]);
+						statement.addBatch();
+					}
+					execution = watchdog.begin(statement);
+					statement.executeBatch();
+					record.executedNanos = System.nanoTime();
+					ingest.batchLatency.recordValue(record.getExecuteNanos());
+					record.rowCount = rows;
+					uncommittedBatches++;
+					uncommittedRows += rows;
+				} catch (SQLException e) {
+					record.status = Request.isTimeout(e, execution) ? ExecutionRecord.STATUS_TIMEOUT : ExecutionRecord.STATUS_ERROR;
+					record.errorMessage = e.toString();
+					record.errorCode = e.getErrorCode();
+					record.rowCount = rows;
+					ingest.failedBatches.incrementAndGet();
+					rollback(connection, statement);
+					String sqlState = e.getSQLState();
+					if(sqlState != null && sqlState.startsWith("08")) {
+						record.endNanos = System.nanoTime();
+						resultCollector.collect(record);
+						return e;
+					}
+				} finally {
+					watchdog.end(execution);
+					workerThreads.endExecution();
+				}
+				if(record.isSuccess() && commitBatches > 0 && uncommittedBatches >= commitBatches) {
+					SQLException e = commit(connection, statement);
+					if(e != null) {
+						// The batch is reported with the failed commit, its rows were rolled back.
+						record.status = ExecutionRecord.STATUS_ERROR;
+						record.errorMessage = e.toString();
+						record.errorCode = e.getErrorCode();
+						String sqlState = e.getSQLState();
+						if(sqlState != null && sqlState.startsWith("08")) {
+							record.endNanos = System.nanoTime();
+							resultCollector.collect(record);
+							return e;
+						}
+					}
+				}
+				record.endNanos = System.nanoTime();
+				resultCollector.collect(record);
+			}
+			if(uncommittedBatches > 0) {
+				SQLException e = commit(connection, statement);
+				if(e != null) {
+					throw e;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Commits the uncommitted batches of the worker, or rolls them back if the commit fails.
+		 * @param connection - The connection of the worker.
+		 * @param statement - The statement of the batches.
+		 * @return The failure of the commit, or null.
+		 */
+		private SQLException commit(Connection connection, PreparedStatement statement) {
+			long startNanos = System.nanoTime();
+			try {
+				connection.commit();
+			} catch (SQLException e) {
+				rollback(connection, statement);
+				return e;
+			}
+			ingest.commitLatency.recordValue(System.nanoTime() - startNanos);
+			ingest.committedRows.addAndGet(uncommittedRows);
+			uncommittedBatches = 0;
+			uncommittedRows = 0;
+			return null;
+		}
+
+		/**
+		 * Discards the uncommitted batches of the worker after a failed batch or commit and
+		 * counts them as failed.
+		 * @param connection - The connection of the worker.
+		 * @param statement - The statement of the batches.
+		 */
+		private void rollback(Connection connection, PreparedStatement statement) {
+			ingest.failedBatches.addAndGet(uncommittedBatches);
+			uncommittedBatches = 0;
+			uncommittedRows = 0;
+			try {
+				statement.clearBatch();
+				connection.rollback();
+			} catch (SQLException e) {
+				// The connection is validated when it is returned to the pool.
+			}
+		}
+	}
+}
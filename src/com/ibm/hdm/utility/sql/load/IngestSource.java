@@ -0,0 +1,221 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The rows of the ingest load mode, shared by the ingest workers of a statement.  Rows are
+ * handed out a batch at a time and every row is used once.
+ *
+ * csv - Rows are read from the parameter file of the SQL file while they are ingested, so
+ * files of any size can be ingested.  The file has the format of a parameter file.
+ * generated - Rows are numbered from 1 and each value is derived from the row number and
+ * the type of its parameter: the row number for numbers and strings, a day from 2000-01-01
+ * for dates and a second from 2000-01-01 00:00:00 for times and timestamps.
+ *
+ * @author Jeff Tuck
+ */
+
+public class IngestSource {
+
+	public static final String SOURCE_CSV = "csv";
+	public static final String SOURCE_GENERATED = "generated";
+
+	private static final LocalDateTime GENERATED_EPOCH = LocalDateTime.of(2000, 1, 1, 0, 0);
+	private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+	private final String fileName;
+	private final BufferedReader reader;
+	private final Map<String, Integer> columnIndexes = new HashMap<String, Integer>();
+	private final int columnCount;
+	private final long rowLimit;
+	private final AtomicLong nextRow = new AtomicLong();
+
+	/**
+	 * Constructor for an IngestSource that reads the rows of a CSV file.  Opens the file and
+	 * reads its header.
+	 * @param file - The CSV file.
+	 * @param rowLimit - The largest number of rows to hand out, 0 for every row of the file.
+	 * @throws IOException if the file cannot be read or is empty.
+	 */
+	public IngestSource(File file, long rowLimit) throws IOException {
+		super();
+		this.fileName = file.getName();
+		this.rowLimit = rowLimit > 0 ? rowLimit : Long.MAX_VALUE;
+		this.reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 1 << 16);
+		String line = reader.readLine();
+		if(line == null) {
+			reader.close();
+			throw new IOException("The ingest file " + fileName + " is empty");
+		}
+		String[] header = ParameterSource.parseLine(line);
+		this.columnCount = header.length;
+		ParameterSource.indexColumns(header, columnIndexes);
+	}
+
+	/**
+	 * Constructor for an IngestSource that generates its rows.
+	 * @param name - The name the source is reported under.
+	 * @param rowCount - The number of rows to generate.
+	 */
+	public IngestSource(String name, long rowCount) {
+		super();
+		if(rowCount <= 0) {
+			throw new IllegalArgumentException("ingest_rows must be greater than zero for the generated ingest source");
+		}
+		this.fileName = name;
+		this.reader = null;
+		this.columnCount = 0;
+		this.rowLimit = rowCount;
+	}
+
+	/**
+	 * Gets the name of the CSV file, or the name of a generated source.
+	 * @return The name.
+	 */
+	public String getFileName() {
+		return fileName;
+	}
+
+	/**
+	 * Finds the column of the source that holds the value of each parameter of a statement.
+	 * Generated rows have one value per parameter.
+	 * @param template - The statement.
+	 * @return The column index of each parameter.
+	 * @throws SQLException if the CSV file has no column for a parameter.
+	 */
+	public int[] getColumns(SQLTemplate template) throws SQLException {
+		if(reader == null) {
+			int[] columns = new int[template.getParameterNames().size()];
+			for(int i = 0; i < columns.length; i++) {
+				columns[i] = i;
+			}
+			return columns;
+		}
+		return ParameterSource.findColumns(template, columnIndexes, columnCount, fileName);
+	}
+
+	/**
+	 * Fills a batch with the bind values of the next rows.  May be called by many threads.
+	 * @param batch - The batch to fill, whose length is the batch size.  Each row is replaced
+	 * with the values in parameter order.
+	 * @param columns - The column of each parameter, as returned by getColumns().
+	 * @param parameterTypes - The java.sql.Types of the parameters, used for generated values.
+	 * @return The number of rows filled, 0 once every row has been handed out.
+	 * @throws IOException if the CSV file cannot be read.
+	 */
+	public int fill(String[][] batch, int[] columns, int[] parameterTypes) throws IOException {
+		if(reader == null) {
+			return generate(batch, parameterTypes);
+		}
+		String[][] lines = new String[batch.length][];
+		int count = 0;
+		synchronized (reader) {
+			String line;
+			while(count < lines.length && nextRow.get() < rowLimit && (line = reader.readLine()) != null) {
+				if(!line.trim().isEmpty()) {
+					lines[count++] = ParameterSource.parseLine(line);
+					nextRow.incrementAndGet();
+				}
+			}
+		}
+		// Values are picked outside of the lock, which only covers reading and splitting lines.
+		for(int row = 0; row < count; row++) {
+			String[] values = new String[columns.length];
+			for(int i = 0; i < columns.length; i++) {
+				values[i] = columns[i] < lines[row].length ? lines[row][columns[i]] : null;
+			}
+			batch[row] = values;
+		}
+		return count;
+	}
+
+	/**
+	 * Closes the CSV file.
+	 */
+	public void close() {
+		if(reader == null) {
+			return;
+		}
+		try {
+			reader.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Claims the next row numbers and generates their values.
+	 * @param batch - The batch to fill.
+	 * @param parameterTypes - The java.sql.Types of the parameters.
+	 * @return The number of rows filled.
+	 */
+	private int generate(String[][] batch, int[] parameterTypes) {
+		long first = nextRow.getAndAdd(batch.length);
+		int count = (int) Math.max(Math.min(batch.length, rowLimit - first), 0);
+		for(int row = 0; row < count; row++) {
+			long number = first + row + 1;
+			String[] values = new String[parameterTypes.length];
+			for(int i = 0; i < values.length; i++) {
+				values[i] = generateValue(number, parameterTypes[i]);
+			}
+			batch[row] = values;
+		}
+		return count;
+	}
+
+	/**
+	 * Derives the value of a parameter from the row number.
+	 * @param number - The row number, starting with 1.
+	 * @param type - The java.sql.Types of the parameter.
+	 * @return The value in the form ParameterSource.bind() converts to the parameter type.
+	 */
+	private static String generateValue(long number, int type) {
+		switch (type) {
+		case Types.TINYINT:
+			return Long.toString(number % Byte.MAX_VALUE);
+		case Types.SMALLINT:
+			return Long.toString(number % Short.MAX_VALUE);
+		case Types.INTEGER:
+			return Long.toString(number % Integer.MAX_VALUE);
+		case Types.BOOLEAN:
+		case Types.BIT:
+			return number % 2 == 0 ? "true" : "false";
+		case Types.DATE:
+			return LocalDate.of(2000, 1, 1).plusDays(number % 36525).toString();
+		case Types.TIME:
+			long seconds = number % 86400;
+			return String.format("%02d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+		case Types.TIMESTAMP:
+			return GENERATED_EPOCH.plusSeconds(number).format(TIMESTAMP_FORMAT);
+		default:
+			return Long.toString(number);
+		}
+	}
+}
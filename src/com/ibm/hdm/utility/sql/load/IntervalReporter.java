@@ -0,0 +1,213 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Reports throughput, errors, executions in flight and response time percentiles for each
+ * interval of a run while the run is in progress.  At every interval a line is printed to the
+ * console and appended to the intervals CSV file, so saturation can be seen as it happens.
+ *
+ * Worker threads only update counters and histograms that need no locks.  Counters are
+ * LongAdders, which keep a separate cell per contending thread and are summed by the
+ * reporter thread at each interval.  Each SQL file has a live histogram that workers record
+ * into and an interval histogram owned by the reporter thread.  At each interval the live
+ * counts are moved to the interval histogram with atomic swaps, so no value is lost or
+ * counted twice.
+ *
+ * @author Jeff Tuck
+ */
+
+public class IntervalReporter implements Runnable {
+
+	private final Workload workload;
+	private final long intervalNanos;
+	private final LatencyHistogram[] liveHistograms;
+	private final LatencyHistogram[] intervalHistograms;
+	private final LatencyHistogram totalHistogram = new LatencyHistogram();
+	private final LongAdder[] errors;
+	private final long[] reportedErrors;
+	private final LongAdder started = new LongAdder();
+	private final LongAdder completed = new LongAdder();
+	private final Thread reporterThread;
+	private BufferedWriter writer = null;
+	private long startNanos = 0;
+	private long lastReportNanos = 0;
+	private volatile boolean closed = false;
+
+	/**
+	 * Constructor for IntervalReporter.  Creates the intervals file and writes the header line.
+	 * @param fileName - The name of the file to write the intervals to.
+	 * @param workload - The SQL files of the run.
+	 * @param intervalSeconds - The length of an interval in seconds.
+	 * @throws IOException if the intervals file cannot be created.
+	 */
+	public IntervalReporter(String fileName, Workload workload, int intervalSeconds) throws IOException {
+		super();
+		this.workload = workload;
+		this.intervalNanos = TimeUnit.SECONDS.toNanos(Math.max(intervalSeconds, 1));
+		int fileCount = workload.getFileCount();
+		this.liveHistograms = new LatencyHistogram[fileCount];
+		this.intervalHistograms = new LatencyHistogram[fileCount];
+		this.errors = new LongAdder[fileCount];
+		this.reportedErrors = new long[fileCount];
+		for(int fileId = 0; fileId < fileCount; fileId++) {
+			liveHistograms[fileId] = new LatencyHistogram();
+			intervalHistograms[fileId] = new LatencyHistogram();
+			errors[fileId] = new LongAdder();
+		}
+		this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileName)));
+		StringBuilder header = new StringBuilder("Interval End Time, Elapsed Time (s), In Flight, Executions, Throughput (per sec), Errors, P50 (ms), P95 (ms), P99 (ms), Max (ms)");
+		for(int fileId = 0; fileId < fileCount; fileId++) {
+			String name = workload.getFileName(fileId);
+			header.append(", ").append(name).append(" Executions, ").append(name).append(" Errors, ")
+				.append(name).append(" P50 (ms), ").append(name).append(" P95 (ms), ").append(name).append(" P99 (ms)");
+		}
+		this.writer.write(header.toString() + System.lineSeparator());
+		this.writer.flush();
+		this.reporterThread = new Thread(this, "interval-reporter");
+		this.reporterThread.setDaemon(true);
+	}
+
+	/**
+	 * Starts the first interval and the background reporter thread.
+	 */
+	public void start() {
+		this.startNanos = System.nanoTime();
+		this.lastReportNanos = this.startNanos;
+		this.reporterThread.start();
+	}
+
+	/**
+	 * Counts a SQL execution that has started.  May be called by many threads.
+	 */
+	public void executionStarted() {
+		started.increment();
+	}
+
+	/**
+	 * Records the outcome of a SQL execution.  May be called by many threads.
+	 * @param record - The record of the SQL execution.
+	 */
+	public void record(ExecutionRecord record) {
+		if(record.isSuccess()) {
+			liveHistograms[record.getFileId()].recordValue(record.getResponseNanos());
+		} else {
+			errors[record.getFileId()].increment();
+		}
+		completed.increment();
+	}
+
+	/**
+	 * Reports the last, partial interval and closes the intervals file.
+	 */
+	public void close() {
+		this.closed = true;
+		LockSupport.unpark(this.reporterThread);
+		try {
+			this.reporterThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		long nextReportNanos = this.startNanos + this.intervalNanos;
+		try {
+			while(!this.closed) {
+				long waitNanos = nextReportNanos - System.nanoTime();
+				if(waitNanos > 0) {
+					LockSupport.parkNanos(waitNanos);
+					continue;
+				}
+				report(nextReportNanos);
+				nextReportNanos += this.intervalNanos;
+			}
+			long endNanos = System.nanoTime();
+			if(endNanos - this.lastReportNanos >= TimeUnit.MILLISECONDS.toNanos(1)) {
+				report(endNanos);
+			}
+			this.writer.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Reports the interval that ends at the given time.
+	 * @param reportNanos - The end of the interval.
+	 * @throws IOException if the line cannot be written.
+	 */
+	private void report(long reportNanos) throws IOException {
+		double seconds = (reportNanos - this.lastReportNanos) / 1e9;
+		this.lastReportNanos = reportNanos;
+		long inFlight = Math.max(started.sum() - completed.sum(), 0);
+		totalHistogram.reset();
+		long totalErrors = 0;
+		StringBuilder files = new StringBuilder();
+		StringBuilder console = new StringBuilder();
+		for(int fileId = 0; fileId < liveHistograms.length; fileId++) {
+			LatencyHistogram histogram = intervalHistograms[fileId];
+			histogram.reset();
+			liveHistograms[fileId].moveTo(histogram);
+			totalHistogram.add(histogram);
+			long errorCount = errors[fileId].sum();
+			long intervalErrors = errorCount - reportedErrors[fileId];
+			reportedErrors[fileId] = errorCount;
+			totalErrors += intervalErrors;
+			files.append(',').append(histogram.getTotalCount())
+				.append(',').append(intervalErrors)
+				.append(',').append(RunStatistics.toMillis(histogram.getValueAtPercentile(50.0)))
+				.append(',').append(RunStatistics.toMillis(histogram.getValueAtPercentile(95.0)))
+				.append(',').append(RunStatistics.toMillis(histogram.getValueAtPercentile(99.0)));
+			if(histogram.getTotalCount() > 0 || intervalErrors > 0) {
+				console.append("    ").append(workload.getFileName(fileId)).append(": ")
+					.append(histogram.getTotalCount()).append(" EXECUTIONS, ")
+					.append(intervalErrors).append(" ERRORS, P50 ")
+					.append(RunStatistics.toMillis(histogram.getValueAtPercentile(50.0))).append(" P95 ")
+					.append(RunStatistics.toMillis(histogram.getValueAtPercentile(95.0))).append(" P99 ")
+					.append(RunStatistics.toMillis(histogram.getValueAtPercentile(99.0))).append(" MS")
+					.append(System.lineSeparator());
+			}
+		}
+		long executions = totalHistogram.getTotalCount();
+		String throughput = String.format(Locale.ROOT, "%.3f", seconds > 0 ? executions / seconds : 0.0);
+		String elapsed = String.format(Locale.ROOT, "%.3f", (reportNanos - this.startNanos) / 1e9);
+		String time = RunClock.formatTime(reportNanos);
+		this.writer.write(time + ',' + elapsed + ',' + inFlight + ',' + executions + ',' + throughput + ',' + totalErrors + ','
+				+ RunStatistics.toMillis(totalHistogram.getValueAtPercentile(50.0)) + ','
+				+ RunStatistics.toMillis(totalHistogram.getValueAtPercentile(95.0)) + ','
+				+ RunStatistics.toMillis(totalHistogram.getValueAtPercentile(99.0)) + ','
+				+ RunStatistics.toMillis(totalHistogram.getMaxValue()) + files + System.lineSeparator());
+		this.writer.flush();
+		System.out.println("*****  INTERVAL " + time + "  ELAPSED " + elapsed + " S  THROUGHPUT " + throughput + "/S  IN FLIGHT " + inFlight
+				+ "  ERRORS " + totalErrors + "  P50 " + RunStatistics.toMillis(totalHistogram.getValueAtPercentile(50.0))
+				+ " P95 " + RunStatistics.toMillis(totalHistogram.getValueAtPercentile(95.0))
+				+ " P99 " + RunStatistics.toMillis(totalHistogram.getValueAtPercentile(99.0)) + " MS  *****");
+		System.out.print(console);
+	}
+}
@@ -0,0 +1,294 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Properties;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Offline tool that converts an execution journal into the results CSV file, the summary
+ * CSV file or both.  The segments of the journal are merged in the order the executions
+ * ended, so the results file lists executions in the same order as a results file written
+ * during the run.  Memory use does not depend on the size of the journal.
+ *
+ * Usage: JournalConverter [journal directory] [results | summary | all]
+ *
+ * The output files are written next to the journal directory and named after it, for
+ * example Journal_ClosedLoop_Users-50_12072016_042940AM becomes
+ * Results_ClosedLoop_Users-50_12072016_042940AM.csv and Summary_ClosedLoop_Users-50_12072016_042940AM.csv.
+ * A journal of a run that was killed can be converted up to the last record that was
+ * written to disk.  A journal that lost records because a segment could not be written, or
+ * that has fewer records than its manifest lists, is reported as truncated and the tool
+ * exits with 1 after converting it.
+ *
+ * When the run had a warm up, executions requested before its end are summarized in a
+ * separate WarmUp file and marked as warm up in the Phase column of the results file, the
+ * same as during the run.
+ *
+ * @author Jeff Tuck
+ */
+
+public class JournalConverter {
+
+	public static final String OUTPUT_RESULTS = "results";
+	public static final String OUTPUT_SUMMARY = "summary";
+	public static final String OUTPUT_ALL = "all";
+
+	private static final String JOURNAL_PREFIX = "Journal_";
+
+	public static void main(String args[]) {
+		if(args.length < 1 || args.length > 2) {
+			System.out.println("Usage: JournalConverter <journal directory> [results | summary | all]");
+			System.exit(-1);
+		}
+		String output = args.length > 1 ? args[1].toLowerCase() : OUTPUT_ALL;
+		if(!OUTPUT_RESULTS.equals(output) && !OUTPUT_SUMMARY.equals(output) && !OUTPUT_ALL.equals(output)) {
+			System.out.println("*****  UNKNOWN OUTPUT " + args[1] + ", USE results, summary OR all  *****");
+			System.exit(-1);
+		}
+		boolean complete = false;
+		try {
+			complete = convert(new File(args[0]), !OUTPUT_SUMMARY.equals(output), !OUTPUT_RESULTS.equals(output));
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.out.println("*****  UNABLE TO CONVERT THE JOURNAL " + args[0] + "  *****");
+			System.exit(-1);
+		}
+		System.exit(complete ? 0 : 1);
+	}
+
+	/**
+	 * Converts a journal.
+	 * @param directory - The journal directory.
+	 * @param writeResults - True to write the results CSV file.
+	 * @param writeSummary - True to write the summary CSV file.
+	 * @return True if the journal is complete, false if it is truncated.
+	 * @throws IOException if the journal cannot be read or an output file cannot be written.
+	 */
+	public static boolean convert(File directory, boolean writeResults, boolean writeSummary) throws IOException {
+		Properties manifest = new Properties();
+		InputStream input = new FileInputStream(new File(directory, ExecutionJournal.MANIFEST_FILE));
+		try {
+			manifest.load(input);
+		} finally {
+			input.close();
+		}
+		if(Integer.parseInt(manifest.getProperty("version", "0")) != ExecutionJournal.VERSION) {
+			throw new IOException("Unsupported journal version " + manifest.getProperty("version"));
+		}
+		String[] fileNames = new String[Integer.parseInt(manifest.getProperty("file_count", "0"))];
+		for(int fileId = 0; fileId < fileNames.length; fileId++) {
+			fileNames[fileId] = manifest.getProperty("file." + fileId);
+		}
+		// Times in the journal are nanoTime() values of the process that wrote it.
+		long offsetNanos = RunClock.toNanos(Long.parseLong(manifest.getProperty("reference_epoch_millis")))
+				- Long.parseLong(manifest.getProperty("reference_nanos"));
+		// The warm up is split off by the request time, the same as in ResultCollector.
+		boolean warmUp = manifest.getProperty("warm_up_end_nanos") != null;
+		long warmUpEndNanos = warmUp ? Long.parseLong(manifest.getProperty("warm_up_end_nanos")) + offsetNanos : 0;
+		String runName = directory.getName().startsWith(JOURNAL_PREFIX) ? directory.getName().substring(JOURNAL_PREFIX.length()) : directory.getName();
+		File outputDirectory = directory.getAbsoluteFile().getParentFile();
+
+		PriorityQueue<SegmentReader> readers = openSegments(directory);
+		int segmentCount = readers.size();
+		ResultWriter resultWriter = null;
+		String resultsFileName = new File(outputDirectory, "Results_" + runName + ".csv").getPath();
+		if(writeResults) {
+			resultWriter = new ResultWriter(resultsFileName, fileNames, manifest.getProperty("user_name", ""), 1 << 16, 1000);
+			if(warmUp) {
+				resultWriter.setWarmUp(warmUpEndNanos);
+			}
+		}
+		RunStatistics runStatistics = new RunStatistics(fileNames);
+		RunStatistics warmUpStatistics = warmUp ? new RunStatistics(fileNames) : null;
+		long firstRequestNanos = Long.MAX_VALUE;
+		long lastEndNanos = Long.MIN_VALUE;
+		long recordCount = 0;
+		try {
+			while(!readers.isEmpty()) {
+				SegmentReader reader = readers.poll();
+				ExecutionRecord record = reader.record;
+				record.shiftTimes(offsetNanos);
+				firstRequestNanos = Math.min(firstRequestNanos, record.getRequestNanos());
+				lastEndNanos = Math.max(lastEndNanos, record.getEndNanos());
+				if(warmUpStatistics != null && record.getRequestNanos() - warmUpEndNanos < 0) {
+					warmUpStatistics.record(record);
+				} else {
+					runStatistics.record(record);
+				}
+				if(resultWriter != null) {
+					resultWriter.write(record);
+				}
+				recordCount++;
+				if(reader.next()) {
+					readers.add(reader);
+				} else {
+					reader.close();
+				}
+			}
+		} finally {
+			for(SegmentReader reader : readers) {
+				reader.close();
+			}
+			if(resultWriter != null) {
+				resultWriter.close();
+			}
+		}
+		System.out.println("*****  CONVERTED " + recordCount + " EXECUTIONS FROM " + segmentCount + " SEGMENTS  *****");
+		long droppedCount = Long.parseLong(manifest.getProperty("dropped_record_count", "0"));
+		long expectedCount = Long.parseLong(manifest.getProperty("record_count", "0"));
+		boolean ended = Long.parseLong(manifest.getProperty("run_end_nanos", "0")) != 0;
+		// The record count is only known once the run ended normally and closed the journal.
+		long missingCount = droppedCount + (ended ? Math.max(expectedCount - recordCount, 0) : 0);
+		boolean complete = !Boolean.parseBoolean(manifest.getProperty("failed", "false")) && missingCount <= 0;
+		if(!complete) {
+			System.out.println("*****  THE JOURNAL IS TRUNCATED, " + missingCount + " EXECUTIONS OF THE RUN ARE MISSING FROM THE RESULTS AND SUMMARY  *****");
+		}
+		if(writeResults) {
+			System.out.println("Results Written To: " + resultsFileName);
+		}
+		if(writeSummary) {
+			long runStartNanos = Long.parseLong(manifest.getProperty("run_start_nanos", "0"));
+			long runEndNanos = Long.parseLong(manifest.getProperty("run_end_nanos", "0"));
+			if(runStartNanos != 0 && runEndNanos != 0) {
+				// The run start in the manifest is the end of the warm up, as in the Summary written during the run.
+				runStatistics.setRunInterval(runStartNanos + offsetNanos, runEndNanos + offsetNanos);
+				if(warmUpStatistics != null) {
+					warmUpStatistics.setRunInterval(Long.parseLong(manifest.getProperty("warm_up_start_nanos")) + offsetNanos, runStartNanos + offsetNanos);
+				}
+			} else if(recordCount > 0) {
+				// The run did not end normally, so the run is taken to last from the first to the last execution.
+				runStatistics.setRunInterval(firstRequestNanos, lastEndNanos);
+				if(warmUpStatistics != null) {
+					long measureStartNanos = Math.max(Math.min(warmUpEndNanos, lastEndNanos), firstRequestNanos);
+					warmUpStatistics.setRunInterval(firstRequestNanos, measureStartNanos);
+					runStatistics.setRunInterval(measureStartNanos, lastEndNanos);
+				}
+			}
+			if(warmUpStatistics != null) {
+				String warmUpFileName = new File(outputDirectory, "WarmUp_" + runName + ".csv").getPath();
+				System.out.println("*****  WARM UP, EXCLUDED FROM THE SUMMARY  *****");
+				warmUpStatistics.writeSummary(warmUpFileName);
+				System.out.println("Warm Up Summary Written To: " + warmUpFileName);
+			}
+			String summaryFileName = new File(outputDirectory, "Summary_" + runName + ".csv").getPath();
+			runStatistics.writeSummary(summaryFileName);
+			System.out.println("Summary Written To: " + summaryFileName);
+		}
+		return complete;
+	}
+
+	/**
+	 * Opens every segment of a journal and reads its first record.
+	 * @param directory - The journal directory.
+	 * @return The readers of the segments that have records, ordered by the end time of their current record.
+	 * @throws IOException if a segment cannot be read.
+	 */
+	private static PriorityQueue<SegmentReader> openSegments(File directory) throws IOException {
+		File[] segmentFiles = directory.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.startsWith(ExecutionJournal.SEGMENT_PREFIX) && name.endsWith(ExecutionJournal.SEGMENT_SUFFIX);
+			}
+		});
+		if(segmentFiles == null) {
+			throw new IOException(directory + " is not a journal directory");
+		}
+		PriorityQueue<SegmentReader> readers = new PriorityQueue<SegmentReader>(Math.max(segmentFiles.length, 1),
+				new Comparator<SegmentReader>() {
+					@Override
+					public int compare(SegmentReader a, SegmentReader b) {
+						return Long.compare(a.record.getEndNanos(), b.record.getEndNanos());
+					}
+				});
+		for(File segmentFile : segmentFiles) {
+			SegmentReader reader = new SegmentReader(segmentFile);
+			if(reader.next()) {
+				readers.add(reader);
+			} else {
+				reader.close();
+			}
+		}
+		return readers;
+	}
+
+	/**
+	 * Reads the records of one segment file in order.
+	 */
+	private static class SegmentReader {
+
+		private final DataInputStream input;
+		private final String fileName;
+		private final long[] values = new long[ExecutionRecord.FIELD_COUNT];
+		private final ExecutionRecord record = new ExecutionRecord();
+
+		private SegmentReader(File file) throws IOException {
+			this.fileName = file.getName();
+			this.input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+			try {
+				if(input.readInt() != ExecutionJournal.MAGIC || input.readInt() != ExecutionJournal.VERSION) {
+					input.close();
+					throw new IOException(fileName + " is not a journal segment of version " + ExecutionJournal.VERSION);
+				}
+			} catch (EOFException e) {
+				input.close();
+				throw new IOException(fileName + " is not a journal segment", e);
+			}
+		}
+
+		/**
+		 * Reads the next record.  A record that was only partly written is ignored.
+		 * @return True if a record was read, false at the end of the segment.
+		 * @throws IOException if the segment cannot be read.
+		 */
+		private boolean next() throws IOException {
+			try {
+				for(int i = 0; i < values.length; i++) {
+					values[i] = input.readLong();
+				}
+				int messageLength = input.readInt();
+				String message = null;
+				if(messageLength >= 0) {
+					byte[] bytes = new byte[messageLength];
+					input.readFully(bytes);
+					message = new String(bytes, StandardCharsets.UTF_8);
+				}
+				record.readFrom(values, 0);
+				record.errorMessage = message;
+				return true;
+			} catch (EOFException e) {
+				return false;
+			}
+		}
+
+		private void close() {
+			try {
+				input.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
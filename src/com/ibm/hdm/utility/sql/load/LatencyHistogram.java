@@ -0,0 +1,301 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Fixed size, log-linear histogram of latencies recorded in nanoseconds.  Values below
+ * 256 nanoseconds are recorded exactly.  Larger values are grouped into buckets that are
+ * never wider than 1/128th of the value being recorded, so any reported percentile is
+ * within 0.8% of the true value.  Values up to roughly 2.4 hours are tracked, larger
+ * values are recorded as the maximum trackable value.  Memory use is constant
+ * (about 38KB) no matter how many values are recorded.
+ *
+ * Recording is lock free and can be performed by many threads at the same time.
+ *
+ * @author Jeff Tuck
+ */
+
+public class LatencyHistogram {
+
+	private static final int PRECISION_BITS = 8;
+	private static final int LINEAR_COUNT = 1 << PRECISION_BITS;
+	private static final int HALF_LINEAR_COUNT = LINEAR_COUNT >> 1;
+	private static final int MAX_VALUE_BITS = 43;
+	private static final long MAX_TRACKABLE_VALUE = (1L << MAX_VALUE_BITS) - 1;
+	private static final int BUCKET_COUNT = LINEAR_COUNT + (MAX_VALUE_BITS - PRECISION_BITS) * HALF_LINEAR_COUNT;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final AtomicLong totalCount = new AtomicLong();
+	private final AtomicLong totalValue = new AtomicLong();
+	private final AtomicLong minValue = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong maxValue = new AtomicLong(0);
+
+	/**
+	 * Default constructor
+	 */
+	public LatencyHistogram() {
+		super();
+	}
+
+	/**
+	 * Records a single latency.
+	 * @param valueNanos - The latency in nanoseconds.  Negative values are recorded as zero.
+	 */
+	public void recordValue(long valueNanos) {
+		long value = Math.min(Math.max(valueNanos, 0), MAX_TRACKABLE_VALUE);
+		counts.incrementAndGet(indexFor(value));
+		totalCount.incrementAndGet();
+		totalValue.addAndGet(value);
+		long min = minValue.get();
+		while(value < min && !minValue.compareAndSet(min, value)) {
+			min = minValue.get();
+		}
+		long max = maxValue.get();
+		while(value > max && !maxValue.compareAndSet(max, value)) {
+			max = maxValue.get();
+		}
+	}
+
+	/**
+	 * Adds all values recorded in another histogram to this histogram.
+	 * @param other - The histogram to add.
+	 */
+	public void add(LatencyHistogram other) {
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			long count = other.counts.get(i);
+			if(count > 0) {
+				counts.addAndGet(i, count);
+			}
+		}
+		totalCount.addAndGet(other.totalCount.get());
+		totalValue.addAndGet(other.totalValue.get());
+		long otherMin = other.minValue.get();
+		long min = minValue.get();
+		while(otherMin < min && !minValue.compareAndSet(min, otherMin)) {
+			min = minValue.get();
+		}
+		long otherMax = other.maxValue.get();
+		long max = maxValue.get();
+		while(otherMax > max && !maxValue.compareAndSet(max, otherMax)) {
+			max = maxValue.get();
+		}
+	}
+
+	/**
+	 * Writes the recorded values in a compact binary form, so histograms of different
+	 * processes can be merged.  Only buckets with values are written.
+	 * @param out - The output to write to.
+	 * @throws IOException if the histogram cannot be written.
+	 */
+	public void write(DataOutput out) throws IOException {
+		int usedBuckets = 0;
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			if(counts.get(i) > 0) {
+				usedBuckets++;
+			}
+		}
+		out.writeInt(usedBuckets);
+		for(int i = 0; i < BUCKET_COUNT && usedBuckets > 0; i++) {
+			long count = counts.get(i);
+			if(count > 0) {
+				out.writeShort(i);
+				out.writeLong(count);
+				usedBuckets--;
+			}
+		}
+		out.writeLong(totalCount.get());
+		out.writeLong(totalValue.get());
+		out.writeLong(minValue.get());
+		out.writeLong(maxValue.get());
+	}
+
+	/**
+	 * Adds the values of a histogram written with write() to this histogram.
+	 * @param in - The input to read from.
+	 * @throws IOException if the histogram cannot be read.
+	 */
+	public void add(DataInput in) throws IOException {
+		LatencyHistogram other = new LatencyHistogram();
+		int usedBuckets = in.readInt();
+		for(int i = 0; i < usedBuckets; i++) {
+			int index = in.readUnsignedShort();
+			if(index >= BUCKET_COUNT) {
+				throw new IOException("Invalid histogram bucket " + index);
+			}
+			other.counts.set(index, in.readLong());
+		}
+		other.totalCount.set(in.readLong());
+		other.totalValue.set(in.readLong());
+		other.minValue.set(in.readLong());
+		other.maxValue.set(in.readLong());
+		add(other);
+	}
+
+	/**
+	 * Moves all values recorded in this histogram to another histogram, leaving this histogram
+	 * empty.  Each count is taken with an atomic swap, so a value recorded while the move is in
+	 * progress is either moved or stays in this histogram, but is never lost.
+	 * @param target - The histogram to move the values to.
+	 */
+	public void moveTo(LatencyHistogram target) {
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			if(counts.get(i) > 0) {
+				target.counts.addAndGet(i, counts.getAndSet(i, 0));
+			}
+		}
+		target.totalCount.addAndGet(totalCount.getAndSet(0));
+		target.totalValue.addAndGet(totalValue.getAndSet(0));
+		long min = minValue.getAndSet(Long.MAX_VALUE);
+		long targetMin = target.minValue.get();
+		while(min < targetMin && !target.minValue.compareAndSet(targetMin, min)) {
+			targetMin = target.minValue.get();
+		}
+		long max = maxValue.getAndSet(0);
+		long targetMax = target.maxValue.get();
+		while(max > targetMax && !target.maxValue.compareAndSet(targetMax, max)) {
+			targetMax = target.maxValue.get();
+		}
+	}
+
+	/**
+	 * Removes all recorded values.  Must not be called while other threads record values.
+	 */
+	public void reset() {
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			counts.set(i, 0);
+		}
+		totalCount.set(0);
+		totalValue.set(0);
+		minValue.set(Long.MAX_VALUE);
+		maxValue.set(0);
+	}
+
+	/**
+	 * Gets the number of values recorded.
+	 * @return The number of values recorded.
+	 */
+	public long getTotalCount() {
+		return totalCount.get();
+	}
+
+	/**
+	 * Gets the smallest value recorded.
+	 * @return The smallest value in nanoseconds or zero if nothing was recorded.
+	 */
+	public long getMinValue() {
+		return getTotalCount() == 0 ? 0 : minValue.get();
+	}
+
+	/**
+	 * Gets the largest value recorded.
+	 * @return The largest value in nanoseconds.
+	 */
+	public long getMaxValue() {
+		return maxValue.get();
+	}
+
+	/**
+	 * Gets the arithmetic mean of the recorded values.
+	 * @return The mean in nanoseconds or zero if nothing was recorded.
+	 */
+	public double getMean() {
+		long count = getTotalCount();
+		return count == 0 ? 0 : (double) totalValue.get() / count;
+	}
+
+	/**
+	 * Gets the value at a given percentile.  The value returned is the highest value that
+	 * falls in the same bucket as the percentile, capped at the largest value recorded.
+	 * @param percentile - The percentile between 0 and 100.
+	 * @return The value in nanoseconds or zero if nothing was recorded.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long count = getTotalCount();
+		if(count == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * count));
+		long cumulative = 0;
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			cumulative += counts.get(i);
+			if(cumulative >= target) {
+				return Math.max(Math.min(highestValueFor(i), getMaxValue()), getMinValue());
+			}
+		}
+		return getMaxValue();
+	}
+
+	/**
+	 * Gets the number of buckets of every histogram.
+	 * @return The number of buckets.
+	 */
+	public static int getBucketCount() {
+		return BUCKET_COUNT;
+	}
+
+	/**
+	 * Gets the number of values recorded in a bucket.
+	 * @param index - The bucket index between zero and getBucketCount() - 1.
+	 * @return The number of values in the bucket.
+	 */
+	public long getCountAtIndex(int index) {
+		return counts.get(index);
+	}
+
+	/**
+	 * Gets the highest value that is recorded in a bucket.  Buckets are the same for every
+	 * histogram, so bucket counts of two histograms can be compared index by index.
+	 * @param index - The bucket index between zero and getBucketCount() - 1.
+	 * @return The highest value of the bucket in nanoseconds.
+	 */
+	public static long getValueAtIndex(int index) {
+		return highestValueFor(index);
+	}
+
+	/**
+	 * Gets the bucket index for a value.
+	 * @param value - A value between zero and the maximum trackable value.
+	 * @return The bucket index.
+	 */
+	private static int indexFor(long value) {
+		if(value < LINEAR_COUNT) {
+			return (int) value;
+		}
+		int shift = (63 - Long.numberOfLeadingZeros(value)) - (PRECISION_BITS - 1);
+		int mantissa = (int) (value >>> shift);
+		return LINEAR_COUNT + (shift - 1) * HALF_LINEAR_COUNT + (mantissa - HALF_LINEAR_COUNT);
+	}
+
+	/**
+	 * Gets the highest value that is recorded in a bucket.
+	 * @param index - The bucket index.
+	 * @return The highest value of the bucket.
+	 */
+	private static long highestValueFor(int index) {
+		if(index < LINEAR_COUNT) {
+			return index;
+		}
+		int offset = index - LINEAR_COUNT;
+		int shift = offset / HALF_LINEAR_COUNT + 1;
+		long mantissa = offset % HALF_LINEAR_COUNT + HALF_LINEAR_COUNT;
+		return ((mantissa + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,165 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Open loop load at a constant arrival rate.  A scheduler issues SQL statements at fixed
+ * intervals derived from the target rate, independent of how quickly the database responds.
+ * Statements are queued for a pool of worker threads.  When the database slows down, the
+ * queue grows instead of the offered load dropping.  In the virtual executor mode each
+ * statement runs on its own virtual thread and the number of statements executing at the
+ * same time is limited to the number of workers instead.
+ *
+ * Each statement carries its intended start time.  Response times are measured from the
+ * intended start time rather than from the moment a worker picked the statement up, which
+ * corrects for coordinated omission.  The time spent waiting in the queue is reported
+ * separately as queue delay.
+ *
+ * @author Jeff Tuck
+ */
+
+public class OpenLoopDriver {
+
+	private static final long SPIN_THRESHOLD_NANOS = 100000;
+	private static final ThreadLocal<ExecutionRecord> WORKER_RECORD = new ThreadLocal<ExecutionRecord>() {
+		@Override
+		protected ExecutionRecord initialValue() {
+			return new ExecutionRecord();
+		}
+	};
+
+	private ConfigurationBean config = null;
+	private ConnectionPool connectionPool = null;
+	private Workload workload = null;
+	private WorkloadMix workloadMix = null;
+	private ResultCollector resultCollector = null;
+	private WorkerThreads workerThreads = null;
+	private int workerCount = 1;
+
+	/**
+	 * Constructor for OpenLoopDriver
+	 * @param config - The configuration for SQL Load.
+	 * @param connectionPool - The pool to get database connections from.
+	 * @param workload - The SQL statements of the run.
+	 * @param workloadMix - Picks the statement of each arrival, by weight or in turn.
+	 * @param resultCollector - Receives the result of each SQL execution.
+	 * @param workerThreads - Creates the worker threads and limits concurrent SQL executions.
+	 * @param workerCount - The number of worker threads executing the SQL statements.
+	 */
+	public OpenLoopDriver(ConfigurationBean config, ConnectionPool connectionPool, Workload workload, WorkloadMix workloadMix,
+			ResultCollector resultCollector, WorkerThreads workerThreads, int workerCount) {
+		super();
+		this.config = config;
+		this.connectionPool = connectionPool;
+		this.workload = workload;
+		this.workloadMix = workloadMix;
+		this.resultCollector = resultCollector;
+		this.workerThreads = workerThreads;
+		this.workerCount = Math.max(workerCount, 1);
+	}
+
+	/**
+	 * Issues SQL statements at the target rate until the run duration has passed, then waits
+	 * for every issued statement to complete.  Without a run duration each SQL statement is issued
+	 * once at the target rate.
+	 */
+	public void run() {
+		ExecutorService executor = workerThreads.newExecutor(this.workerCount, "open-loop-worker");
+		final AtomicLong completed = new AtomicLong();
+		final boolean virtual = workerThreads.isVirtual();
+		double targetRate = config.getTargetRate();
+		if(targetRate <= 0) {
+			throw new IllegalArgumentException("target_rate_per_second must be greater than zero for the open_loop load mode");
+		}
+		double intervalNanos = 1e9 / targetRate;
+		long startNanos = System.nanoTime();
+		long durationNanos = TimeUnit.SECONDS.toNanos(config.getRunDuration());
+		long maxArrivals = durationNanos > 0 ? Long.MAX_VALUE : workload.size();
+		long arrivals = 0;
+		System.out.println("*****  ISSUING SQL AT " + targetRate + " PER SECOND WITH " + this.workerCount + " WORKERS ON "
+				+ (workerThreads.isVirtual() ? "VIRTUAL" : "PLATFORM") + " THREADS  *****");
+
+		for(long arrival = 0; arrival < maxArrivals; arrival++) {
+			long intendedStartNanos = startNanos + (long) (arrival * intervalNanos);
+			if(durationNanos > 0 && intendedStartNanos - startNanos >= durationNanos) {
+				break;
+			}
+			waitUntil(intendedStartNanos);
+			if(connectionPool.getWatchdog().isRunExpired() || resultCollector.isSteadyState()) {
+				break;
+			}
+			int statementId = workloadMix.getStatementId(arrival);
+			final Request request = new Request(workload, statementId, arrival + 1, config, connectionPool);
+			request.setIntendedStartNanos(intendedStartNanos);
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					// A virtual thread runs a single statement, so there is no record to reuse.
+					ExecutionRecord record = virtual ? new ExecutionRecord() : WORKER_RECORD.get();
+					try {
+						workerThreads.beginExecution();
+						resultCollector.executionStarted();
+						try {
+							request.executeSQL(record);
+						} finally {
+							workerThreads.endExecution();
+						}
+						resultCollector.collect(record);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} finally {
+						completed.incrementAndGet();
+					}
+				}
+			});
+			arrivals++;
+		}
+		double scheduleSeconds = (System.nanoTime() - startNanos) / 1e9;
+		System.out.println("*****  ISSUED " + arrivals + " SQL STATEMENTS, " + (arrivals - completed.get())
+				+ " STILL OUTSTANDING.  ACHIEVED ARRIVAL RATE: "
+				+ String.format(Locale.ROOT, "%.3f", scheduleSeconds > 0 ? arrivals / scheduleSeconds : 0.0) + " PER SECOND  *****");
+		executor.shutdown();
+		try {
+			while(!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				System.out.println("*****  WAITING FOR " + (arrivals - completed.get()) + " OUTSTANDING SQL STATEMENTS  *****");
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Waits until a point in time with sub-millisecond precision.  The thread parks until
+	 * shortly before the deadline and then spins for the remainder.
+	 * @param deadlineNanos - The System.nanoTime() value to wait for.
+	 */
+	static void waitUntil(long deadlineNanos) {
+		long remaining = deadlineNanos - System.nanoTime();
+		while(remaining > SPIN_THRESHOLD_NANOS) {
+			LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+			remaining = deadlineNanos - System.nanoTime();
+		}
+		while(deadlineNanos - System.nanoTime() > 0) {
+			Thread.yield();
+		}
+	}
+}
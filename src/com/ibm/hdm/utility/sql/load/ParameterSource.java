@@ -0,0 +1,293 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Bind values for the parameterized SQL statements of a SQL file, read from a CSV parameter
+ * file.  The first line of the file holds the column names and every following line one set
+ * of bind values.
+ * Named parameters are bound from the column with the same name and positional parameters
+ * from the columns in order, so one parameter file can serve every statement of a SQL file.
+ * Values may be enclosed in double quotes, which is required for values that contain commas.
+ * An empty, unquoted value is bound as NULL.
+ *
+ * Rows are assigned to executions in one of three ways:
+ *
+ * round_robin - Rows are used in file order, starting over after the last row.
+ * random - A random row is used for each execution.
+ * unique - Every row is used at most once.  Executions fail once all rows have been used.
+ *
+ * @author Jeff Tuck
+ */
+
+public class ParameterSource {
+
+	public static final String ASSIGNMENT_ROUND_ROBIN = "round_robin";
+	public static final String ASSIGNMENT_RANDOM = "random";
+	public static final String ASSIGNMENT_UNIQUE = "unique";
+
+	private final String fileName;
+	private final String assignment;
+	private final Map<String, Integer> columnIndexes = new HashMap<String, Integer>();
+	private final int columnCount;
+	private final String[][] rows;
+	private final AtomicLong nextRow = new AtomicLong();
+
+	/**
+	 * Constructor for ParameterSource.  Reads the parameter file.
+	 * @param file - The CSV parameter file.
+	 * @param assignment - round_robin, random or unique.
+	 * @throws IOException if the file cannot be read or has no rows.
+	 */
+	public ParameterSource(File file, String assignment) throws IOException {
+		super();
+		this.fileName = file.getName();
+		this.assignment = assignment.toLowerCase();
+		if(!ASSIGNMENT_ROUND_ROBIN.equals(this.assignment) && !ASSIGNMENT_RANDOM.equals(this.assignment)
+				&& !ASSIGNMENT_UNIQUE.equals(this.assignment)) {
+			throw new IllegalArgumentException("parameter_assignment must be round_robin, random or unique, not " + assignment);
+		}
+		List<String[]> values = new ArrayList<String[]>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+		try {
+			String line = reader.readLine();
+			if(line == null) {
+				throw new IOException("The parameter file " + fileName + " is empty");
+			}
+			String[] header = parseLine(line);
+			this.columnCount = header.length;
+			indexColumns(header, columnIndexes);
+			while((line = reader.readLine()) != null) {
+				if(!line.trim().isEmpty()) {
+					values.add(parseLine(line));
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		if(values.isEmpty()) {
+			throw new IOException("The parameter file " + fileName + " has no rows");
+		}
+		this.rows = values.toArray(new String[values.size()][]);
+	}
+
+	/**
+	 * Gets the bind values of a statement for the next execution.  May be called by many threads.
+	 * @param template - The statement the values are bound to.
+	 * @return The values in parameter order.  A null value is bound as NULL.
+	 * @throws SQLException if the file has no column for a parameter or the unique assignment 
+	 * has used every row.
+	 */
+	public String[] nextValues(SQLTemplate template) throws SQLException {
+		int[] columns = getColumns(template);
+		String[] row = nextRow();
+		String[] values = new String[columns.length];
+		for(int i = 0; i < columns.length; i++) {
+			values[i] = columns[i] < row.length ? row[columns[i]] : null;
+		}
+		return values;
+	}
+
+	/**
+	 * Finds the column of the parameter file that holds the value of each parameter of a
+	 * statement.  Named parameters are bound from the column with the same name and
+	 * positional parameters from the columns in order.
+	 * @param template - The statement.
+	 * @return The column index of each parameter.
+	 * @throws SQLException if a parameter has no column.
+	 */
+	public int[] getColumns(SQLTemplate template) throws SQLException {
+		return findColumns(template, columnIndexes, columnCount, fileName);
+	}
+
+	/**
+	 * Maps the upper case column names of a CSV header to their positions.
+	 * @param header - The values of the header line.
+	 * @param columnIndexes - The map to add the column positions to.
+	 */
+	protected static void indexColumns(String[] header, Map<String, Integer> columnIndexes) {
+		for(int column = 0; column < header.length; column++) {
+			if(header[column] != null) {
+				columnIndexes.put(header[column].trim().toUpperCase(), column);
+			}
+		}
+	}
+
+	/**
+	 * Finds the column of a CSV file that holds the value of each parameter of a statement.
+	 * @param template - The statement.
+	 * @param columnIndexes - The positions of the columns by upper case column name.
+	 * @param columnCount - The number of columns of the file.
+	 * @param fileName - The name of the file, for the error message.
+	 * @return The column index of each parameter.
+	 * @throws SQLException if a parameter has no column.
+	 */
+	protected static int[] findColumns(SQLTemplate template, Map<String, Integer> columnIndexes, int columnCount, String fileName) throws SQLException {
+		List<String> parameterNames = template.getParameterNames();
+		int[] columns = new int[parameterNames.size()];
+		for(int i = 0; i < columns.length; i++) {
+			Integer column = Integer.valueOf(i);
+			if(template.isNamed()) {
+				column = columnIndexes.get(parameterNames.get(i).toUpperCase());
+			}
+			if(column == null || column.intValue() >= columnCount) {
+				throw new SQLException("The parameter file " + fileName + " has no column for parameter " + parameterNames.get(i), "07001");
+			}
+			columns[i] = column.intValue();
+		}
+		return columns;
+	}
+
+	/**
+	 * Gets the number of rows in the parameter file.
+	 * @return The number of rows.
+	 */
+	public int size() {
+		return rows.length;
+	}
+
+	/**
+	 * Picks the row for the next execution according to the assignment.
+	 * @return The row.
+	 * @throws SQLException if the unique assignment has used every row.
+	 */
+	private String[] nextRow() throws SQLException {
+		if(ASSIGNMENT_RANDOM.equals(this.assignment)) {
+			return rows[ThreadLocalRandom.current().nextInt(rows.length)];
+		}
+		long row = nextRow.getAndIncrement();
+		if(ASSIGNMENT_UNIQUE.equals(this.assignment)) {
+			if(row >= rows.length) {
+				throw new SQLException("All " + rows.length + " rows of the parameter file " + fileName + " have been used");
+			}
+			return rows[(int) row];
+		}
+		return rows[(int) (row % rows.length)];
+	}
+
+	/**
+	 * Binds values to a prepared statement, converting each value to the declared type of
+	 * its parameter.
+	 * @param statement - The prepared statement.
+	 * @param parameterTypes - The java.sql.Types of the parameters.
+	 * @param values - The values in parameter order.
+	 * @throws SQLException if a value cannot be bound or converted.
+	 */
+	public static void bind(PreparedStatement statement, int[] parameterTypes, String[] values) throws SQLException {
+		for(int i = 0; i < values.length; i++) {
+			int index = i + 1;
+			int type = parameterTypes[i];
+			String value = values[i];
+			if(value == null) {
+				statement.setNull(index, type);
+				continue;
+			}
+			try {
+				switch (type) {
+				case Types.TINYINT:
+				case Types.SMALLINT:
+				case Types.INTEGER:
+					statement.setInt(index, Integer.parseInt(value.trim()));
+					break;
+				case Types.BIGINT:
+					statement.setLong(index, Long.parseLong(value.trim()));
+					break;
+				case Types.DECIMAL:
+				case Types.NUMERIC:
+					statement.setBigDecimal(index, new BigDecimal(value.trim()));
+					break;
+				case Types.REAL:
+				case Types.FLOAT:
+				case Types.DOUBLE:
+					statement.setDouble(index, Double.parseDouble(value.trim()));
+					break;
+				case Types.BOOLEAN:
+				case Types.BIT:
+					statement.setBoolean(index, Boolean.parseBoolean(value.trim()));
+					break;
+				case Types.DATE:
+					statement.setDate(index, Date.valueOf(value.trim()));
+					break;
+				case Types.TIME:
+					statement.setTime(index, Time.valueOf(value.trim()));
+					break;
+				case Types.TIMESTAMP:
+					statement.setTimestamp(index, Timestamp.valueOf(value.trim()));
+					break;
+				default:
+					statement.setString(index, value);
+				}
+			} catch (IllegalArgumentException e) {
+				throw new SQLException("Invalid value \"" + value + "\" for parameter " + index, "22018", e);
+			}
+		}
+	}
+
+	/**
+	 * Splits a CSV line into its values.  Quoted values may contain commas and doubled quotes.
+	 * @param line - The line to split.
+	 * @return The values.  Empty, unquoted values are null.
+	 */
+	protected static String[] parseLine(String line) {
+		List<String> fields = new ArrayList<String>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		boolean wasQuoted = false;
+		for(int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if(quoted) {
+				if(c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					field.append('"');
+					i++;
+				} else if(c == '"') {
+					quoted = false;
+				} else {
+					field.append(c);
+				}
+			} else if(c == '"') {
+				quoted = true;
+				wasQuoted = true;
+			} else if(c == ',') {
+				fields.add(field.length() == 0 && !wasQuoted ? null : field.toString());
+				field.setLength(0);
+				wasQuoted = false;
+			} else {
+				field.append(c);
+			}
+		}
+		fields.add(field.length() == 0 && !wasQuoted ? null : field.toString());
+		return fields.toArray(new String[fields.size()]);
+	}
+}
@@ -0,0 +1,138 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Watches for virtual threads that block while pinned to their carrier thread, which
+ * happens when a JDBC driver performs blocking I/O inside a synchronized block or a native
+ * method.  A pinned virtual thread holds a carrier thread for the whole wait, so a driver
+ * that pins on every network read limits the run to as many concurrent SQL statements as
+ * there are carrier threads.  Pinning events are read from a Java Flight Recorder stream
+ * while the run is in progress and summarized by the application frame where the pinning
+ * occurred.  Events from the last second before the monitor is stopped may not be counted.
+ *
+ * @author Jeff Tuck
+ */
+
+public class PinnedThreadMonitor {
+
+	private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+	private static final int REPORTED_FRAMES = 5;
+
+	private final long thresholdMillis;
+	private final LongAdder pinnedCount = new LongAdder();
+	private final LongAdder pinnedNanos = new LongAdder();
+	private final Map<String, LongAdder> pinnedFrames = new ConcurrentHashMap<String, LongAdder>();
+	private RecordingStream recordingStream = null;
+
+	/**
+	 * Constructor for PinnedThreadMonitor
+	 * @param thresholdMillis - The shortest pinning that is counted.
+	 */
+	public PinnedThreadMonitor(long thresholdMillis) {
+		super();
+		this.thresholdMillis = Math.max(thresholdMillis, 0);
+	}
+
+	/**
+	 * Starts the flight recorder stream in the background.
+	 */
+	public void start() {
+		this.recordingStream = new RecordingStream();
+		this.recordingStream.enable(PINNED_EVENT).withThreshold(Duration.ofMillis(this.thresholdMillis)).withStackTrace();
+		this.recordingStream.onEvent(PINNED_EVENT, new Consumer<RecordedEvent>() {
+			@Override
+			public void accept(RecordedEvent event) {
+				recordPinning(event);
+			}
+		});
+		this.recordingStream.startAsync();
+		System.out.println("*****  CHECKING FOR VIRTUAL THREADS PINNED LONGER THAN " + this.thresholdMillis + " MS  *****");
+	}
+
+	/**
+	 * Stops the flight recorder stream and prints the pinning found during the run.
+	 */
+	public void stop() {
+		if(this.recordingStream == null) {
+			return;
+		}
+		this.recordingStream.close();
+		this.recordingStream = null;
+		long count = pinnedCount.sum();
+		System.out.println("=========================================================");
+		if(count == 0) {
+			System.out.println("*****  NO PINNED VIRTUAL THREADS DETECTED  *****");
+			return;
+		}
+		System.out.println("*****  " + count + " VIRTUAL THREADS PINNED FOR A TOTAL OF "
+				+ RunStatistics.toMillis(pinnedNanos.sum()) + " MS  *****");
+		List<Map.Entry<String, LongAdder>> frames = new ArrayList<Map.Entry<String, LongAdder>>(pinnedFrames.entrySet());
+		Collections.sort(frames, new Comparator<Map.Entry<String, LongAdder>>() {
+			@Override
+			public int compare(Map.Entry<String, LongAdder> first, Map.Entry<String, LongAdder> second) {
+				return Long.compare(second.getValue().sum(), first.getValue().sum());
+			}
+		});
+		for(int i = 0; i < Math.min(frames.size(), REPORTED_FRAMES); i++) {
+			System.out.println("Pinned " + frames.get(i).getValue().sum() + " times in " + frames.get(i).getKey());
+		}
+		System.out.println("Pinned virtual threads hold a carrier thread while the JDBC driver waits on the database.");
+		System.out.println("Use a JDBC driver version that does not block inside synchronized code, limit max_concurrent_executions");
+		System.out.println("to the number of processors, or use executor_mode=platform.  Run with -Djdk.tracePinnedThreads=full");
+		System.out.println("to print the complete stack trace of each pinning.");
+	}
+
+	/**
+	 * Counts a pinning event under the first frame outside the Java runtime.
+	 * @param event - The flight recorder event.
+	 */
+	private void recordPinning(RecordedEvent event) {
+		pinnedCount.increment();
+		pinnedNanos.add(event.getDuration().toNanos());
+		String location = "unknown";
+		RecordedStackTrace stackTrace = event.getStackTrace();
+		if(stackTrace != null) {
+			for(RecordedFrame frame : stackTrace.getFrames()) {
+				String className = frame.getMethod().getType().getName();
+				if(!className.startsWith("java.") && !className.startsWith("jdk.") && !className.startsWith("sun.")) {
+					location = className + "." + frame.getMethod().getName();
+					break;
+				}
+			}
+		}
+		LongAdder frameCount = pinnedFrames.get(location);
+		if(frameCount == null) {
+			pinnedFrames.putIfAbsent(location, new LongAdder());
+			frameCount = pinnedFrames.get(location);
+		}
+		frameCount.increment();
+	}
+}
@@ -0,0 +1,211 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Enforces the per statement and whole run deadlines by cancelling SQL executions from a
+ * thread of its own.  Statements also get statement_timeout_seconds as their JDBC query
+ * timeout, but drivers only apply the query timeout while a statement executes, so the
+ * watchdog also ends executions that hang while their rows are fetched.
+ *
+ * Once run_timeout_seconds have passed since the start of the run every SQL execution in
+ * progress is cancelled, new SQL executions fail at once and the load drivers stop issuing
+ * SQL, so a runaway query cannot hold up the end of the run.
+ *
+ * @author Jeff Tuck
+ */
+
+public class QueryWatchdog {
+
+	private static final long CHECK_MILLIS = 100;
+
+	private static final int RUNNING = 0;
+	private static final int ENDED = 1;
+	private static final int CANCELLING = 2;
+	private static final int CANCELLED = 3;
+
+	private final long statementTimeoutNanos;
+	private final int runTimeoutSeconds;
+	private final Set<Execution> executions = ConcurrentHashMap.newKeySet();
+	private volatile long runDeadlineNanos = 0;
+	private volatile boolean runExpired = false;
+	private volatile boolean closed = false;
+	private Thread thread = null;
+
+	/**
+	 * Constructor for QueryWatchdog
+	 * @param statementTimeoutSeconds - The longest time a SQL execution may take, 0 for no limit.
+	 * @param runTimeoutSeconds - The longest time the run may take, 0 for no limit.
+	 */
+	public QueryWatchdog(int statementTimeoutSeconds, int runTimeoutSeconds) {
+		super();
+		this.statementTimeoutNanos = TimeUnit.SECONDS.toNanos(Math.max(statementTimeoutSeconds, 0));
+		this.runTimeoutSeconds = Math.max(runTimeoutSeconds, 0);
+	}
+
+	/**
+	 * Indicates if SQL executions are watched, which is when a statement or run timeout is set.
+	 * @return True if the watchdog is enabled.
+	 */
+	public boolean isEnabled() {
+		return statementTimeoutNanos > 0 || runTimeoutSeconds > 0;
+	}
+
+	/**
+	 * Starts the run timeout and the watchdog thread.  Called when the timed part of the run starts.
+	 */
+	public void startRun() {
+		if(!isEnabled() || thread != null) {
+			return;
+		}
+		if(runTimeoutSeconds > 0) {
+			runDeadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(runTimeoutSeconds);
+		}
+		thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				watch();
+			}
+		}, "query-watchdog");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Indicates if the run timeout has passed, after which no more SQL should be issued.
+	 * @return True if the run timeout has passed.
+	 */
+	public boolean isRunExpired() {
+		return runExpired;
+	}
+
+	/**
+	 * Gets the configured run timeout.
+	 * @return The run timeout in seconds, 0 for no limit.
+	 */
+	public int getRunTimeoutSeconds() {
+		return runTimeoutSeconds;
+	}
+
+	/**
+	 * Starts watching a SQL execution.
+	 * @param statement - The statement that executes the SQL.
+	 * @return The execution, to be passed to end() when the execution is complete, or null if
+	 * the watchdog is not enabled.
+	 */
+	public Execution begin(Statement statement) {
+		if(!isEnabled()) {
+			return null;
+		}
+		Execution execution = new Execution(statement);
+		executions.add(execution);
+		return execution;
+	}
+
+	/**
+	 * Stops watching a SQL execution.  Once this returns the watchdog no longer cancels the
+	 * statement, so it can be reused.
+	 * @param execution - The execution returned by begin(), or null.
+	 */
+	public void end(Execution execution) {
+		if(execution == null) {
+			return;
+		}
+		executions.remove(execution);
+		if(!execution.state.compareAndSet(RUNNING, ENDED)) {
+			// Wait for a cancel in progress, so it cannot reach the next use of the statement.
+			while(execution.state.get() == CANCELLING) {
+				Thread.yield();
+			}
+		}
+	}
+
+	/**
+	 * Stops the watchdog thread.
+	 */
+	public void close() {
+		closed = true;
+		if(thread != null) {
+			thread.interrupt();
+		}
+	}
+
+	/**
+	 * Cancels SQL executions that passed the statement timeout, and all of them once the run
+	 * timeout has passed.
+	 */
+	private void watch() {
+		while(!closed) {
+			try {
+				Thread.sleep(CHECK_MILLIS);
+			} catch (InterruptedException e) {
+				return;
+			}
+			long now = System.nanoTime();
+			if(!runExpired && runDeadlineNanos != 0 && now - runDeadlineNanos >= 0) {
+				runExpired = true;
+				System.out.println("*****  RUN TIMEOUT OF " + runTimeoutSeconds + " SECONDS REACHED, CANCELLING " + executions.size() + " SQL EXECUTIONS  *****");
+			}
+			for(Execution execution : executions) {
+				if(runExpired || (statementTimeoutNanos > 0 && now - execution.startNanos > statementTimeoutNanos)) {
+					execution.cancel();
+				}
+			}
+		}
+	}
+
+	/**
+	 * A SQL execution in progress.
+	 */
+	public static class Execution {
+
+		private final Statement statement;
+		private final long startNanos = System.nanoTime();
+		private final AtomicInteger state = new AtomicInteger(RUNNING);
+
+		private Execution(Statement statement) {
+			this.statement = statement;
+		}
+
+		/**
+		 * Indicates if the watchdog cancelled the execution.
+		 * @return True if the execution was cancelled.
+		 */
+		public boolean isCancelled() {
+			int current = state.get();
+			return current == CANCELLING || current == CANCELLED;
+		}
+
+		private void cancel() {
+			if(!state.compareAndSet(RUNNING, CANCELLING)) {
+				return;
+			}
+			try {
+				statement.cancel();
+			} catch (SQLException e) {
+				// The execution may have completed in the meantime.
+			} finally {
+				state.set(CANCELLED);
+			}
+		}
+	}
+}
@@ -0,0 +1,280 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Drives the replay load mode, which replays a trace of production SQL executions.  Each
+ * event is issued at its original time from the start of the trace, divided by replay_speed,
+ * so a replay_speed of 2 replays the trace twice as fast with the same overlap of sessions.
+ *
+ * Each session of the trace is replayed by its own worker on its own connection, so the
+ * statements of a session run one after the other on the same connection, as they did in
+ * production, and sessions that overlapped in the trace overlap in the replay.  A session
+ * that has been idle for replay_session_idle_seconds returns its connection to the pool.
+ * With platform threads at most virtual_users sessions are replayed at the same time.
+ *
+ * Like the open_loop mode, response times are measured from the scheduled time of each
+ * event, so the time an event waits for the previous statement of its session is reported
+ * as queue delay.  When the replay ends the drift from the timing of the trace is printed:
+ * how late the scheduler issued events and how late they started.
+ *
+ * @author Jeff Tuck
+ */
+
+public class ReplayDriver {
+
+	private static final long POLL_MILLIS = 100;
+	private static final int SESSION_CLEANUP_EVENTS = 10000;
+
+	private ConfigurationBean config = null;
+	private ConnectionPool connectionPool = null;
+	private Workload workload = null;
+	private ResultCollector resultCollector = null;
+	private WorkerThreads workerThreads = null;
+	private ReplayTrace trace = null;
+	private int sessionThreads = 1;
+	private final LatencyHistogram scheduleDrift = new LatencyHistogram();
+	private final LatencyHistogram startDrift = new LatencyHistogram();
+	private final AtomicInteger activeSessions = new AtomicInteger();
+	private final AtomicInteger peakSessions = new AtomicInteger();
+	private final AtomicLong completed = new AtomicLong();
+	private volatile boolean traceEnded = false;
+
+	/**
+	 * Constructor for ReplayDriver
+	 * @param config - The configuration for SQL Load.
+	 * @param connectionPool - The pool to get database connections from.  Must be in per_user mode.
+	 * @param workload - The workload the executions are reported under.
+	 * @param resultCollector - Receives the result of each SQL execution.
+	 * @param workerThreads - Creates the session threads and limits concurrent SQL executions.
+	 * @param trace - The trace to replay.
+	 * @param sessionThreads - The number of platform threads that replay sessions.
+	 */
+	public ReplayDriver(ConfigurationBean config, ConnectionPool connectionPool, Workload workload, ResultCollector resultCollector,
+			WorkerThreads workerThreads, ReplayTrace trace, int sessionThreads) {
+		super();
+		this.config = config;
+		this.connectionPool = connectionPool;
+		this.workload = workload;
+		this.resultCollector = resultCollector;
+		this.workerThreads = workerThreads;
+		this.trace = trace;
+		this.sessionThreads = Math.max(sessionThreads, 1);
+	}
+
+	/**
+	 * Issues the events of the trace at their scheduled times, waits until every session has
+	 * completed and prints the timing drift of the replay.
+	 */
+	public void run() {
+		double speed = config.getReplaySpeed();
+		if(speed <= 0) {
+			throw new IllegalArgumentException("replay_speed must be greater than zero for the replay load mode");
+		}
+		ExecutorService executor = workerThreads.newExecutor(this.sessionThreads, "replay-session");
+		Map<String, Session> sessions = new HashMap<String, Session>();
+		System.out.println("*****  REPLAYING " + trace.getFileName() + " AT " + format(speed) + "X SPEED ON "
+				+ (workerThreads.isVirtual() ? "VIRTUAL THREADS" : this.sessionThreads + " PLATFORM THREADS") + "  *****");
+		long startNanos = System.nanoTime();
+		long firstMicros = 0;
+		long lastMicros = 0;
+		long events = 0;
+		long sessionCount = 0;
+		try {
+			ReplayTrace.Event event;
+			while((event = trace.next()) != null && !connectionPool.getWatchdog().isRunExpired()) {
+				if(events == 0) {
+					firstMicros = event.getTimestampMicros();
+					startNanos = System.nanoTime();
+				}
+				lastMicros = Math.max(lastMicros, event.getTimestampMicros());
+				// Events out of time order are issued at once.
+				long intendedStartNanos = startNanos + (long) ((event.getTimestampMicros() - firstMicros) * 1000 / speed);
+				OpenLoopDriver.waitUntil(intendedStartNanos);
+				scheduleDrift.recordValue(Math.max(System.nanoTime() - intendedStartNanos, 0));
+				events++;
+				Session session = sessions.get(event.getSession());
+				if(session == null || !session.offer(event, intendedStartNanos)) {
+					session = new Session();
+					session.offer(event, intendedStartNanos);
+					sessions.put(event.getSession(), session);
+					executor.execute(session);
+					sessionCount++;
+				}
+				if(events % SESSION_CLEANUP_EVENTS == 0) {
+					removeRetiredSessions(sessions);
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.out.println("*****  UNABLE TO READ THE TRACE, THE REPLAY STOPS AFTER " + events + " EVENTS  *****");
+		} finally {
+			trace.close();
+		}
+		long issuedNanos = System.nanoTime();
+		traceEnded = true;
+		System.out.println("*****  ISSUED " + events + " EVENTS OF " + sessionCount + " SESSIONS, " + (events - completed.get()) + " STILL OUTSTANDING  *****");
+		executor.shutdown();
+		try {
+			while(!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				System.out.println("*****  WAITING FOR " + (events - completed.get()) + " OUTSTANDING EVENTS  *****");
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		double traceSeconds = (lastMicros - firstMicros) / 1e6;
+		System.out.println("*****  TRACE SPAN " + format(traceSeconds) + " S, EXPECTED REPLAY SPAN " + format(traceSeconds / speed)
+				+ " S, ACTUAL REPLAY SPAN " + format((issuedNanos - startNanos) / 1e9) + " S, PEAK CONCURRENT SESSIONS " + peakSessions.get() + "  *****");
+		System.out.println("*****  SCHEDULE DRIFT P50 " + RunStatistics.toMillis(scheduleDrift.getValueAtPercentile(50.0)) + " MS, P99 "
+				+ RunStatistics.toMillis(scheduleDrift.getValueAtPercentile(99.0)) + " MS, MAX " + RunStatistics.toMillis(scheduleDrift.getMaxValue()) + " MS  *****");
+		System.out.println("*****  START DRIFT P50 " + RunStatistics.toMillis(startDrift.getValueAtPercentile(50.0)) + " MS, P99 "
+				+ RunStatistics.toMillis(startDrift.getValueAtPercentile(99.0)) + " MS, MAX " + RunStatistics.toMillis(startDrift.getMaxValue()) + " MS  *****");
+	}
+
+	/**
+	 * Forgets sessions whose worker has ended, so long traces with many sessions do not keep
+	 * every session in memory.
+	 * @param sessions - The sessions by session id.
+	 */
+	private static void removeRetiredSessions(Map<String, Session> sessions) {
+		Iterator<Session> iterator = sessions.values().iterator();
+		while(iterator.hasNext()) {
+			if(iterator.next().isRetired()) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+
+	/**
+	 * An event waiting to be replayed by its session.
+	 */
+	private static class ScheduledEvent {
+		private final ReplayTrace.Event event;
+		private final long intendedStartNanos;
+
+		private ScheduledEvent(ReplayTrace.Event event, long intendedStartNanos) {
+			this.event = event;
+			this.intendedStartNanos = intendedStartNanos;
+		}
+	}
+
+	/**
+	 * Replays the events of one session in order on one connection.  The worker ends when it
+	 * has been idle for the session idle time or when the trace has ended and no event is left.
+	 */
+	private class Session implements Runnable {
+
+		private final LinkedBlockingQueue<ScheduledEvent> events = new LinkedBlockingQueue<ScheduledEvent>();
+		private final ReentrantLock lock = new ReentrantLock();
+		private volatile boolean retired = false;
+
+		/**
+		 * Queues an event of the session.
+		 * @param event - The event.
+		 * @param intendedStartNanos - The time the event is scheduled to start.
+		 * @return False if the worker of the session has ended and a new one is needed.
+		 */
+		private boolean offer(ReplayTrace.Event event, long intendedStartNanos) {
+			lock.lock();
+			try {
+				if(retired) {
+					return false;
+				}
+				events.add(new ScheduledEvent(event, intendedStartNanos));
+				return true;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private boolean isRetired() {
+			return retired;
+		}
+
+		/**
+		 * Ends the worker if no event is waiting.
+		 * @return True if the worker ended.
+		 */
+		private boolean retire() {
+			lock.lock();
+			try {
+				retired = events.isEmpty();
+				return retired;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void run() {
+			int active = activeSessions.incrementAndGet();
+			int peak = peakSessions.get();
+			while(active > peak && !peakSessions.compareAndSet(peak, active)) {
+				peak = peakSessions.get();
+			}
+			ExecutionRecord record = new ExecutionRecord();
+			long idleNanos = TimeUnit.SECONDS.toNanos(Math.max(config.getReplaySessionIdleSeconds(), 0));
+			long idleSince = System.nanoTime();
+			try {
+				while(true) {
+					ScheduledEvent scheduled = events.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+					if(scheduled == null) {
+						if((traceEnded || System.nanoTime() - idleSince >= idleNanos) && retire()) {
+							break;
+						}
+						continue;
+					}
+					ReplayTrace.Event event = scheduled.event;
+					Request request = new Request(workload, 0, event.getNumber(), event.getSql(), event.getNumber(), config, connectionPool);
+					request.setIntendedStartNanos(scheduled.intendedStartNanos);
+					workerThreads.beginExecution();
+					resultCollector.executionStarted();
+					try {
+						request.executeSQL(record);
+					} finally {
+						workerThreads.endExecution();
+					}
+					resultCollector.collect(record);
+					startDrift.recordValue(record.getQueueDelayNanos());
+					completed.incrementAndGet();
+					idleSince = System.nanoTime();
+				}
+			} catch (InterruptedException e) {
+				retired = true;
+				Thread.currentThread().interrupt();
+			} finally {
+				connectionPool.releaseUserConnection();
+				activeSessions.decrementAndGet();
+			}
+		}
+	}
+}
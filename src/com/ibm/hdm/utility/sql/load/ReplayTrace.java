@@ -0,0 +1,270 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A trace of SQL executions captured on a production system, read one event at a time so
+ * traces of any size can be replayed.  The trace is a UTF-8 CSV file with a header line and
+ * one line per execution, ordered by time, with these columns in any order:
+ *
+ * timestamp - When the execution started, as a Db2 timestamp (2024-05-01-12.30.45.123456),
+ * an ISO timestamp (2024-05-01 12:30:45.123456) or seconds from the start of the trace.
+ * Also found as TIME_STARTED or START_TIME.
+ * session_id - The session that executed the SQL.  Also found as APPL_ID or
+ * APPLICATION_HANDLE.
+ * sql - The SQL that was executed.  Also found as STMT_TEXT.
+ *
+ * Column names are not case sensitive and other columns are ignored, so the activities of a
+ * Db2 activity event monitor can be exported with a query such as:
+ *
+ * SELECT A.TIME_STARTED, A.APPL_ID, S.STMT_TEXT FROM ACTIVITY_MON A JOIN ACTIVITYSTMT_MON S
+ * ON ... ORDER BY A.TIME_STARTED
+ *
+ * Values that contain commas, quotes or line breaks are enclosed in double quotes, with
+ * doubled quotes inside.
+ *
+ * @author Jeff Tuck
+ */
+
+public class ReplayTrace {
+
+	private static final String[] TIMESTAMP_COLUMNS = { "TIMESTAMP", "TIME_STARTED", "START_TIME" };
+	private static final String[] SESSION_COLUMNS = { "SESSION_ID", "APPL_ID", "APPLICATION_HANDLE", "SESSION" };
+	private static final String[] SQL_COLUMNS = { "SQL", "STMT_TEXT", "STATEMENT_TEXT" };
+
+	private final String fileName;
+	private final BufferedReader reader;
+	private final int timestampColumn;
+	private final int sessionColumn;
+	private final int sqlColumn;
+	private final StringBuilder field = new StringBuilder();
+	private int lineNumber = 1;
+	private int eventNumber = 0;
+
+	/**
+	 * Constructor for ReplayTrace.  Opens the trace file and reads its header.
+	 * @param file - The trace file.
+	 * @throws IOException if the file cannot be read or a column is missing.
+	 */
+	public ReplayTrace(File file) throws IOException {
+		super();
+		this.fileName = file.getName();
+		this.reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 1 << 16);
+		List<String> header = readRecord();
+		if(header == null) {
+			reader.close();
+			throw new IOException("The trace file " + fileName + " is empty");
+		}
+		List<String> names = new ArrayList<String>();
+		for(String name : header) {
+			names.add(name.trim().toUpperCase());
+		}
+		this.timestampColumn = findColumn(names, TIMESTAMP_COLUMNS);
+		this.sessionColumn = findColumn(names, SESSION_COLUMNS);
+		this.sqlColumn = findColumn(names, SQL_COLUMNS);
+		if(timestampColumn < 0 || sessionColumn < 0 || sqlColumn < 0) {
+			reader.close();
+			throw new IOException("The trace file " + fileName + " needs timestamp, session_id and sql columns");
+		}
+	}
+
+	private static int findColumn(List<String> names, String[] candidates) {
+		for(String candidate : candidates) {
+			int column = names.indexOf(candidate);
+			if(column >= 0) {
+				return column;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets the name of the trace file.
+	 * @return The file name.
+	 */
+	public String getFileName() {
+		return fileName;
+	}
+
+	/**
+	 * Reads the next event of the trace.  Lines without SQL are skipped.
+	 * @return The event or null at the end of the trace.
+	 * @throws IOException if the trace cannot be read or a timestamp is invalid.
+	 */
+	public Event next() throws IOException {
+		while(true) {
+			int line = lineNumber;
+			List<String> values = readRecord();
+			if(values == null) {
+				return null;
+			}
+			if(values.size() <= Math.max(timestampColumn, Math.max(sessionColumn, sqlColumn))) {
+				continue;
+			}
+			String sql = values.get(sqlColumn).trim();
+			if(sql.isEmpty()) {
+				continue;
+			}
+			long timestampMicros;
+			try {
+				timestampMicros = parseTimestamp(values.get(timestampColumn).trim());
+			} catch (DateTimeParseException | NumberFormatException e) {
+				throw new IOException("Invalid timestamp \"" + values.get(timestampColumn) + "\" in line " + line + " of " + fileName, e);
+			}
+			return new Event(++eventNumber, timestampMicros, values.get(sessionColumn).trim(), sql);
+		}
+	}
+
+	/**
+	 * Closes the trace file.
+	 */
+	public void close() {
+		try {
+			reader.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Reads one CSV record, which spans several lines when a quoted value contains line breaks.
+	 * @return The values of the record or null at the end of the file.
+	 * @throws IOException if the file cannot be read.
+	 */
+	private List<String> readRecord() throws IOException {
+		List<String> values = new ArrayList<String>();
+		field.setLength(0);
+		boolean quoted = false;
+		int c = reader.read();
+		if(c < 0) {
+			return null;
+		}
+		while(c >= 0) {
+			if(quoted) {
+				if(c == '"') {
+					reader.mark(1);
+					if(reader.read() == '"') {
+						field.append('"');
+					} else {
+						reader.reset();
+						quoted = false;
+					}
+				} else {
+					if(c == '\n') {
+						lineNumber++;
+					}
+					field.append((char) c);
+				}
+			} else if(c == '"') {
+				quoted = true;
+			} else if(c == ',') {
+				values.add(field.toString());
+				field.setLength(0);
+			} else if(c == '\n') {
+				lineNumber++;
+				break;
+			} else if(c != '\r') {
+				field.append((char) c);
+			}
+			c = reader.read();
+		}
+		values.add(field.toString());
+		return values;
+	}
+
+	/**
+	 * Parses the timestamp of an event.
+	 * @param value - A Db2 timestamp, an ISO timestamp or a number of seconds.
+	 * @return The timestamp in microseconds.  Only the difference between timestamps is used.
+	 */
+	protected static long parseTimestamp(String value) {
+		if(value.length() < 5 || value.charAt(4) != '-') {
+			// Seconds from the start of the trace.
+			return Math.round(Double.parseDouble(value) * 1e6);
+		}
+		char[] chars = value.toCharArray();
+		if(chars.length > 10 && (chars[10] == '-' || chars[10] == ' ')) {
+			chars[10] = 'T';
+		}
+		// Db2 timestamps separate hours, minutes and seconds with dots.
+		if(chars.length > 16 && chars[13] == '.' && chars[16] == '.') {
+			chars[13] = ':';
+			chars[16] = ':';
+		}
+		LocalDateTime timestamp = LocalDateTime.parse(new String(chars));
+		return timestamp.toEpochSecond(ZoneOffset.UTC) * 1000000 + timestamp.getNano() / 1000;
+	}
+
+	/**
+	 * One SQL execution of the trace.
+	 */
+	public static class Event {
+		private final int number;
+		private final long timestampMicros;
+		private final String session;
+		private final String sql;
+
+		private Event(int number, long timestampMicros, String session, String sql) {
+			this.number = number;
+			this.timestampMicros = timestampMicros;
+			this.session = session;
+			this.sql = sql;
+		}
+
+		/**
+		 * Gets the position of the event in the trace.
+		 * @return The event number, starting with 1.
+		 */
+		public int getNumber() {
+			return number;
+		}
+
+		/**
+		 * Gets the time the SQL was executed.
+		 * @return The timestamp in microseconds.
+		 */
+		public long getTimestampMicros() {
+			return timestampMicros;
+		}
+
+		/**
+		 * Gets the session that executed the SQL.
+		 * @return The session id.
+		 */
+		public String getSession() {
+			return session;
+		}
+
+		/**
+		 * Gets the SQL that was executed.
+		 * @return The SQL.
+		 */
+		public String getSql() {
+			return sql;
+		}
+	}
+}
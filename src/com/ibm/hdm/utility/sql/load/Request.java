@@ -1,13 +1,14 @@
 package com.ibm.hdm.utility.sql.load;
 
+import java.io.IOException;
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.sql.Statement;
-import java.text.SimpleDateFormat;
-import java.util.HashMap;
+import java.sql.Types;
 import java.util.concurrent.Callable;
 
 /*
@@ -32,138 +33,412 @@ import java.util.concurrent.Callable;
  * @author Jeff Tuck
  */
 
-public class Request implements Callable<HashMap<String, String>> {
+public class Request implements Callable<ExecutionRecord> {
+	
+	/** The SQLSTATE of a statement that was cancelled or timed out. */
+	private static final String SQLSTATE_CANCELLED = "57014";
+	
+	/** The size of a LOB locator, which is what a drained row holds for a LOB or XML column. */
+	private static final int LOB_LOCATOR_BYTES = 4;
 	
 	private ConfigurationBean config = null;
-	private Connection connection = null;
-	private String sql = "";
-	private String fileName = "";
-	private int executionSequence = 0;
+	private ConnectionPool connectionPool = null;
+	private Workload workload = null;
+	private int statementId = 0;
+	private long executionSequence = 0;
+	private long intendedStartNanos = 0;
+	private String sqlText = null;
+	private int fileId = 0;
+	private int statementNumber = 0;
+	private QueryWatchdog.Execution execution = null;
+	private SQLExecutionEvent phaseEvent = null;
+	private String parameterKey = null;
 	
 	/**
 	 * Constructor for Request
-	 * @param sql - The SQL to be executed.
-	 * @param fileName - The name of the file that contains the SQL.
+	 * @param workload - The SQL files of the run.
+	 * @param statementId - The id of the SQL statement to be executed.
 	 * @param executionSequence - The sequence with which the SQL was executed. 
 	 * @param config - The configuration for SQL Load.
+	 * @param connectionPool - The pool to get the database connection from.
 	 */
-	public Request(String sql, String fileName, int executionSequence, ConfigurationBean config) {
+	public Request(Workload workload, int statementId, long executionSequence, ConfigurationBean config, ConnectionPool connectionPool) {
 		super();
 		this.config = config;
-		this.sql = sql;
-		this.fileName = fileName;
+		this.connectionPool = connectionPool;
+		this.workload = workload;
+		this.statementId = statementId;
 		this.executionSequence = executionSequence;
 	}
 	
+	/**
+	 * Constructor for a Request that executes the given SQL instead of a statement of the SQL 
+	 * files, such as a statement of a replayed trace.  The SQL is executed as it is, without
+	 * binding parameters, and may be an update as well as a query.
+	 * @param workload - The workload whose file name the execution is reported under.
+	 * @param fileId - The id of the file name the execution is reported under.
+	 * @param statementNumber - The statement number reported for the execution.
+	 * @param sqlText - The SQL to execute.
+	 * @param executionSequence - The sequence with which the SQL was executed. 
+	 * @param config - The configuration for SQL Load.
+	 * @param connectionPool - The pool to get the database connection from.
+	 */
+	public Request(Workload workload, int fileId, int statementNumber, String sqlText, long executionSequence, ConfigurationBean config, ConnectionPool connectionPool) {
+		this(workload, 0, executionSequence, config, connectionPool);
+		this.fileId = fileId;
+		this.statementNumber = statementNumber;
+		this.sqlText = sqlText;
+	}
+	
+	/**
+	 * Sets the time at which the SQL was scheduled to start.  Queue delay and response time 
+	 * are measured from this time, so time spent waiting for a worker thread or a connection
+	 * is included in the response time.  When not set, the time executeSQL() is called is used. 
+	 * @param intendedStartNanos - The scheduled start time as a System.nanoTime() value.
+	 */
+	public void setIntendedStartNanos(long intendedStartNanos) {
+		this.intendedStartNanos = intendedStartNanos;
+	}
+	
 	
 	/**
-	 * Execute the SQL that was used when creating the Request object.
-	 * @return A Hashmap containing the results of the SQL execution such as start time, end time
-	 * SQL file name that contained the SQL executed, etc...
+	 * Execute the SQL that was used when creating the Request object.  SQL with parameter 
+	 * markers is executed as a prepared statement, taken from the statement cache of the 
+	 * connection when it was prepared before, with the next bind values of its parameter file.
+	 * The SQL may be a query or an update, whose update count is recorded as its row count.
+	 * When results are verified, the rows of a query are compared with a baseline run.
+	 * @param record - The record to fill with the results of the SQL execution such as start 
+	 * time, end time, status, etc...  The record is reset first, so callers can reuse the same
+	 * record for every execution.  Progress is printed to the console unless quiet mode is enabled.
 	 */
-	protected HashMap<String, String> executeSQL() {
-		HashMap<String, String> resultsMap = new HashMap<String, String>();
-		int returnCode = 0;
-		String status = "success";
-		String stackTrace = "";
-		long startTime = 0;
-		long endTime = 0;
-		long elapsedTime = 0;
-		System.out.println("#########################################################################################");
-		System.out.println("*****  EXECUTING SQL FOR FILE " + this.fileName + "  *****");
-		
-		SimpleDateFormat sdf = new SimpleDateFormat("HH:mm:ss");
+	protected void executeSQL(ExecutionRecord record) {
+		int fileId = this.sqlText != null ? this.fileId : workload.getFileId(this.statementId);
+		String fileName = workload.getFileName(fileId);
+		String sql = null;
+		long startNanos = 0;
+		long rowCount = 0;
+		boolean verbose = !config.isQuietMode();
+		record.reset(fileId, this.sqlText != null ? this.statementNumber : workload.getStatementNumber(this.statementId), this.executionSequence);
+		if(verbose) {
+			System.out.println("#########################################################################################");
+			System.out.println("*****  EXECUTING SQL FOR FILE " + fileName + "  *****");
+		}
 		
-		Statement statement;
-		this.connection = getConnection();
+		Connection connection = null;
+		Statement statement = null;
+		SQLException failure = null;
+		QueryWatchdog watchdog = connectionPool.getWatchdog();
+		record.requestNanos = this.intendedStartNanos != 0 ? this.intendedStartNanos : System.nanoTime();
 		try {
-			statement = this.connection.createStatement();
-			//statement.executeUpdate("set schema \"admin\"");
-			startTime = System.currentTimeMillis();
-			System.out.println("PROCESS START TIME: " + sdf.format(startTime) + System.lineSeparator());
-			ResultSet resultSet = statement.executeQuery(this.sql);
-			endTime = System.currentTimeMillis();
-			elapsedTime = endTime - startTime;
-			System.out.println("*****  END SQL EXECUTION FOR FILE " + this.fileName + "  *****");
-			System.out.println("");
-			//printResultSet(resultSet);
-			System.out.println("");
-			System.out.println("PROCESS END TIME: " + sdf.format(endTime));
-			System.out.println("TOTAL PROCESS TIME: " + elapsedToString(elapsedTime));
-			
-			statement.close();
-			this.connection.close();
+			if(watchdog.isRunExpired()) {
+				throw new SQLTimeoutException("The run timeout of " + watchdog.getRunTimeoutSeconds() + " seconds has passed", SQLSTATE_CANCELLED);
+			}
+			sql = readSql();
+			SQLTemplate template = this.sqlText != null ? null : getTemplate(sql);
+			beginPhase(SQLExecutionEvent.PHASE_CONNECT);
+			connection = connectionPool.getConnection();
+			endPhase(record, false);
+			Statement executed = null;
+			if(template != null && template.isParameterized()) {
+				startNanos = System.nanoTime();
+				if(verbose) {
+					System.out.println("PROCESS START TIME: " + RunClock.formatTime(startNanos) + System.lineSeparator());
+				}
+				executed = executePrepared(connection, fileId, template, record, startNanos);
+			} else {
+				statement = connection.createStatement();
+				if(config.getFetchSize() > 0) {
+					statement.setFetchSize(config.getFetchSize());
+				}
+				if(config.getStatementTimeout() > 0) {
+					statement.setQueryTimeout(config.getStatementTimeout());
+				}
+				startNanos = System.nanoTime();
+				this.execution = watchdog.begin(statement);
+				if(verbose) {
+					System.out.println("PROCESS START TIME: " + RunClock.formatTime(startNanos) + System.lineSeparator());
+				}
+				beginPhase(SQLExecutionEvent.PHASE_EXECUTE);
+				statement.execute(sql);
+				executed = statement;
+			}
+			record.executedNanos = System.nanoTime();
+			endPhase(record, false);
+			// Updates such as INSERT, UPDATE and MERGE return an update count instead of a result set.
+			ResultSet resultSet = executed.getResultSet();
+			if(resultSet == null) {
+				rowCount = Math.max(executed.getUpdateCount(), 0);
+				record.rowCount = rowCount;
+			}
+			if(config.isDrainResultSet() && resultSet != null) {
+				beginPhase(SQLExecutionEvent.PHASE_FETCH);
+				ResultSetMetaData rsmd = resultSet.getMetaData();
+				long rowWidth = estimateRowWidth(rsmd);
+				// Column values are only read when results are verified.
+				ResultVerifier verifier = workload.getResultVerifier();
+				int[] columnTypes = verifier != null ? ResultVerifier.getColumnTypes(rsmd) : null;
+				long digest = 0;
+				if(resultSet.next()) {
+					record.firstRowNanos = System.nanoTime();
+					rowCount = 1;
+					if(columnTypes != null) {
+						digest += ResultVerifier.hashRow(resultSet, columnTypes);
+					}
+					while(resultSet.next()) {
+						rowCount++;
+						if(columnTypes != null) {
+							digest += ResultVerifier.hashRow(resultSet, columnTypes);
+						}
+					}
+				}
+				record.lastRowNanos = System.nanoTime();
+				if(record.firstRowNanos < 0) {
+					record.firstRowNanos = record.lastRowNanos;
+				}
+				record.rowCount = rowCount;
+				record.bytesFetched = rowCount * rowWidth;
+				endPhase(record, false);
+				if(verifier != null) {
+					record.errorMessage = verifier.verify(fileId, record.getStatementNumber(), this.parameterKey, rowCount, digest);
+					if(record.errorMessage != null) {
+						record.status = ExecutionRecord.STATUS_MISMATCH;
+					}
+				}
+			}
+			if(resultSet != null) {
+				resultSet.close();
+			}
+			record.endNanos = System.nanoTime();
+			if(verbose) {
+				System.out.println("*****  END SQL EXECUTION FOR FILE " + fileName + "  *****");
+				System.out.println("");
+				//printResultSet(resultSet);
+				System.out.println("");
+				System.out.println("PROCESS END TIME: " + RunClock.formatTime(record.endNanos));
+				System.out.println("TOTAL PROCESS TIME (ms): " + RunStatistics.toMillis(record.endNanos - startNanos));
+				if(record.prepareNanos >= 0) {
+					System.out.println("PREPARE TIME (ms): " + RunStatistics.toMillis(record.prepareNanos));
+				}
+				if(resultSet == null) {
+					System.out.println("ROWS UPDATED: " + rowCount);
+				} else if(config.isDrainResultSet()) {
+					System.out.println("ROWS FETCHED: " + rowCount);
+				}
+				if(record.getStatus() == ExecutionRecord.STATUS_MISMATCH) {
+					System.out.println(record.getErrorMessage().toUpperCase());
+				}
+			}
 			
 		} catch (SQLException e) {
-			// TODO Auto-generated catch block
-			endTime = System.currentTimeMillis();
-			e.printStackTrace();
-			System.out.println("Query Executed:  " + this.sql);
-			returnCode = 1;
-			status = "error";
-			stackTrace = e.toString();
-			
+			record.endNanos = System.nanoTime();
+			endPhase(record, true);
+			if(verbose) {
+				// In quiet mode the error is only reported in the results file.
+				e.printStackTrace();
+				System.out.println("Query Executed:  " + sql);
+			}
+			record.status = isTimeout(e, this.execution) ? ExecutionRecord.STATUS_TIMEOUT : ExecutionRecord.STATUS_ERROR;
+			record.errorMessage = e.toString();
+			record.errorCode = e.getErrorCode();
+			if(config.isDrainResultSet()) {
+				record.rowCount = rowCount;
+				record.bytesFetched = 0;
+			}
+			failure = e;
+		} finally {
+			watchdog.end(this.execution);
+			this.execution = null;
+			closeStatement(statement);
+			connectionPool.releaseConnection(connection, failure);
 		}
-		resultsMap.put("sqlFileName", this.fileName);
-		resultsMap.put("executionSequence", Integer.toString(this.executionSequence));
-		resultsMap.put("status", status);
-		resultsMap.put("userName", config.getDbUserName());
-		resultsMap.put("startTime", sdf.format(startTime));
-		resultsMap.put("endTime", sdf.format(endTime));
-		resultsMap.put("elapsedTime", elapsedToString(elapsedTime));
-		resultsMap.put("sql", this.sql);
-		resultsMap.put("stackTrace", stackTrace);
-		
+		record.startNanos = startNanos != 0 ? startNanos : record.endNanos;
        
-		System.out.println("");
-		System.out.println("#########################################################################################");
-		return resultsMap;
+		if(verbose) {
+			System.out.println("");
+			System.out.println("#########################################################################################");
+		}
 	}
 	
 	/**
-	 * Gets a Db2 formatted JDBC URL based on the configuration.
-	 * @return The Db2 JDBC URL.
+	 * Gets the SQL of the statement, which is read from its SQL file unless it is kept in memory
+	 * or was given to the request.
+	 * @return The SQL statement.
+	 * @throws SQLException if the statement cannot be read.
 	 */
-	private String getJdbcUrl() {
-		String jdbcUrl = "jdbc:db2://" + config.getHostName() + ":" + config.getPort() + "/" + config.getDbName();
-		if(config.isUseSSL()) {
-			jdbcUrl = jdbcUrl + ":sslConnection=true;";
+	private String readSql() throws SQLException {
+		if(this.sqlText != null) {
+			return this.sqlText;
+		}
+		try {
+			return workload.getSql(this.statementId);
+		} catch (IOException e) {
+			throw new SQLException("Unable to read statement " + workload.getStatementNumber(this.statementId) + " of "
+					+ workload.getFileName(workload.getFileId(this.statementId)), e);
 		}
-		return jdbcUrl;
 	}
 	
 	/**
-	 * Gets a JDBC connection to the configured database.
-	 * @return The JDBC connection.
+	 * Gets the parameter markers of the statement.
+	 * @param sql - The SQL statement.
+	 * @return The SQL template.
+	 * @throws SQLException if the statement mixes positional and named parameters.
 	 */
-	private Connection getConnection() {
-		Connection connection = null;
+	private SQLTemplate getTemplate(String sql) throws SQLException {
 		try {
-			Class.forName(config.getJdbcDriver());
-			connection = DriverManager.getConnection(getJdbcUrl(), config.getDbUserName(), config.getDbPassword());
-		} catch (ClassNotFoundException e) {
-			e.printStackTrace();
-			System.exit(-1);
+			return workload.getTemplate(this.statementId, sql);
+		} catch (IllegalArgumentException e) {
+			throw new SQLException(e.getMessage(), "07001", e);
+		}
+	}
+	
+	/**
+	 * Executes a parameterized SQL statement.  The statement is prepared on the first use
+	 * with a connection and reused afterwards.  The time spent preparing is stored in the record.
+	 * @param connection - The connection to execute the statement on.
+	 * @param fileId - The id of the SQL file that contains the statement.
+	 * @param template - The SQL with parameter markers.
+	 * @param record - The record of the SQL execution.
+	 * @param startNanos - The time the SQL execution started.
+	 * @return The executed statement, which holds the result set or update count.
+	 * @throws SQLException if the statement cannot be prepared, bound or executed.
+	 */
+	private Statement executePrepared(Connection connection, int fileId, SQLTemplate template, ExecutionRecord record, long startNanos) throws SQLException {
+		StatementCache statementCache = connectionPool.getStatementCache(connection);
+		String jdbcSql = template.getJdbcSql();
+		StatementCache.CachedStatement cached = statementCache.get(jdbcSql);
+		if(cached == null) {
+			beginPhase(SQLExecutionEvent.PHASE_PREPARE);
+			cached = statementCache.prepare(jdbcSql, template.getParameterNames().size());
+			record.prepareNanos = System.nanoTime() - startNanos;
+			endPhase(record, false);
+		} else {
+			record.prepareNanos = 0;
+		}
+		ParameterSource parameterSource = workload.getParameterSource(fileId);
+		if(parameterSource == null) {
+			throw new SQLException("No parameter file was found for " + workload.getFileName(fileId), "07001");
+		}
+		PreparedStatement preparedStatement = cached.getStatement();
+		String[] values = parameterSource.nextValues(template);
+		ParameterSource.bind(preparedStatement, cached.getParameterTypes(), values);
+		if(workload.getResultVerifier() != null) {
+			this.parameterKey = ResultVerifier.getParameterKey(values);
+		}
+		this.execution = connectionPool.getWatchdog().begin(preparedStatement);
+		try {
+			beginPhase(SQLExecutionEvent.PHASE_EXECUTE);
+			preparedStatement.execute();
+			return preparedStatement;
 		} catch (SQLException e) {
-			e.printStackTrace();
-			System.exit(-1);
+			// Prepare the statement again next time in case the failure invalidated it.
+			statementCache.evict(jdbcSql);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Starts the flight recorder event of a phase of the SQL execution.
+	 * @param phase - The phase, one of the SQLExecutionEvent phases.
+	 */
+	private void beginPhase(String phase) {
+		this.phaseEvent = SQLExecutionEvent.beginPhase(phase);
+	}
+
+	/**
+	 * Records the flight recorder event of the phase in progress, if any.
+	 * @param record - The record of the SQL execution.
+	 * @param failed - True if the phase ended with an exception.
+	 */
+	private void endPhase(ExecutionRecord record, boolean failed) {
+		if(this.phaseEvent != null) {
+			SQLExecutionEvent.endPhase(this.phaseEvent, workload.getFileName(record.getFileId()), record.getStatementNumber(),
+					record.getExecutionSequence(), failed);
+			this.phaseEvent = null;
 		}
-		return connection;
+	}
+
+	/**
+	 * Indicates if a SQL execution failed because it timed out or was cancelled, by the query
+	 * timeout of the driver or by the watchdog.
+	 * @param e - The failure of the SQL execution.
+	 * @param execution - The execution as watched by the watchdog, or null.
+	 * @return True for a timeout.
+	 */
+	protected static boolean isTimeout(SQLException e, QueryWatchdog.Execution execution) {
+		return e instanceof SQLTimeoutException || SQLSTATE_CANCELLED.equals(e.getSQLState())
+				|| (execution != null && execution.isCancelled());
 	}
 	
 	/**
-	 * Formats elapsed system time to human readable format.
-	 * @param elapsedTimeMillis - Elapsed time to be formatted.
-	 * @return
+	 * Closes a statement without raising an exception.  A failure to close is not a
+	 * failure of the SQL execution.
+	 * @param statement - The statement to close.  May be null.
 	 */
-	private static String elapsedToString(long elapsedTimeMillis) {
-	    long seconds = (elapsedTimeMillis) / 1000; // round
-	    long minutes = seconds / 60;
-	    long hours = minutes / 60;
-	    return String.format("%1$02d:%2$02d:%3$02d",
-	        hours,
-	        minutes % 60,
-	        seconds % 60);
+	private static void closeStatement(Statement statement) {
+		if(statement != null) {
+			try {
+				statement.close();
+			} catch (SQLException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Approximates the number of bytes a single row occupies on the wire based on the 
+	 * declared column types.  Variable length columns are counted at their declared 
+	 * width, so the value is an upper bound for those columns.  LOB and XML columns are
+	 * counted at the size of a LOB locator, because their declared size of up to 2 GB says
+	 * nothing about their values and draining does not read them.  The estimate is computed
+	 * once per result set so that draining rows does not require reading column values.
+	 * @param rsmd - The metadata of the result set being drained.
+	 * @return The approximate width of a row in bytes.
+	 * @throws SQLException
+	 */
+	private static long estimateRowWidth(ResultSetMetaData rsmd) throws SQLException {
+		long rowWidth = 0;
+		int columnCount = rsmd.getColumnCount();
+		for (int i = 1; i <= columnCount; i++) {
+			switch (rsmd.getColumnType(i)) {
+			case Types.BOOLEAN:
+			case Types.BIT:
+			case Types.TINYINT:
+				rowWidth += 1;
+				break;
+			case Types.SMALLINT:
+				rowWidth += 2;
+				break;
+			case Types.INTEGER:
+			case Types.REAL:
+			case Types.DATE:
+				rowWidth += 4;
+				break;
+			case Types.BIGINT:
+			case Types.DOUBLE:
+			case Types.FLOAT:
+				rowWidth += 8;
+				break;
+			case Types.TIME:
+				rowWidth += 3;
+				break;
+			case Types.TIMESTAMP:
+				rowWidth += 10;
+				break;
+			case Types.DECIMAL:
+			case Types.NUMERIC:
+				rowWidth += rsmd.getPrecision(i) / 2 + 1;
+				break;
+			case Types.BLOB:
+			case Types.CLOB:
+			case Types.NCLOB:
+			case Types.SQLXML:
+				rowWidth += LOB_LOCATOR_BYTES;
+				break;
+			default:
+				rowWidth += Math.max(rsmd.getColumnDisplaySize(i), 0);
+			}
+		}
+		return rowWidth;
 	}
 	
 	/**
@@ -194,9 +469,10 @@ public class Request implements Callable<HashMap<String, String>> {
 	 * @see java.util.concurrent.Callable#call()
 	 */
 	@Override
-	public HashMap<String, String> call() throws Exception {
-		HashMap<String, String> resultsMap = executeSQL(); 
-		return resultsMap;
+	public ExecutionRecord call() throws Exception {
+		ExecutionRecord record = new ExecutionRecord();
+		executeSQL(record); 
+		return record;
 	}
 
 }
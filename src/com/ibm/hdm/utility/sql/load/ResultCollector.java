@@ -0,0 +1,121 @@
+package com.ibm.hdm.utility.sql.load;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Receives the results of SQL executions from any number of worker threads.  Each result 
+ * is added to the run statistics and handed to the result sink and, when interval
+ * reporting is enabled, to the interval reporter.
+ * 
+ * With a warm up, results of SQL requested before the warm up ended are added to separate
+ * warm up statistics instead, so the cold caches, connection setup and JIT compilation at
+ * the start of a run do not weigh on the summary.  They are still written to the results
+ * file and reported in their intervals.  Results after the warm up are also handed to the
+ * steady state detector, when there is one.
+ * 
+ * @author Jeff Tuck
+ */
+
+public class ResultCollector {
+
+	private RunStatistics runStatistics = null;
+	private ResultSink resultSink = null;
+	private IntervalReporter intervalReporter = null;
+	private RunStatistics warmUpStatistics = null;
+	private long warmUpEndNanos = 0;
+	private SteadyStateDetector steadyStateDetector = null;
+
+	/**
+	 * Constructor for ResultCollector
+	 * @param runStatistics - The statistics of the run that results are added to.
+	 * @param resultSink - Stores results in the results CSV file or the execution journal.
+	 * @param intervalReporter - Reports each interval of the run, or null.
+	 */
+	public ResultCollector(RunStatistics runStatistics, ResultSink resultSink, IntervalReporter intervalReporter) {
+		super();
+		this.runStatistics = runStatistics;
+		this.resultSink = resultSink;
+		this.intervalReporter = intervalReporter;
+	}
+
+	/**
+	 * Counts a SQL execution that is about to start, so executions in flight can be reported.
+	 * May be called by many threads.
+	 */
+	public void executionStarted() {
+		if(intervalReporter != null) {
+			intervalReporter.executionStarted();
+		}
+	}
+
+	/**
+	 * Collects the result of a single SQL execution.  May be called by many threads.  The
+	 * record is copied, so the caller may reuse it once this method returns.
+	 * @param record - The record of the SQL execution.
+	 */
+	public void collect(ExecutionRecord record) {
+		if(warmUpStatistics != null && record.getRequestNanos() - warmUpEndNanos < 0) {
+			warmUpStatistics.record(record);
+		} else {
+			runStatistics.record(record);
+			if(steadyStateDetector != null) {
+				steadyStateDetector.record(record);
+			}
+		}
+		if(intervalReporter != null) {
+			intervalReporter.record(record);
+		}
+		resultSink.write(record);
+	}
+
+	/**
+	 * Adds the results of SQL requested before the end of the warm up to separate statistics
+	 * and marks them as warm up results in the result sink.  Must be called before SQL is
+	 * executed.
+	 * @param warmUpStatistics - The statistics of the warm up.
+	 * @param warmUpEndNanos - The System.nanoTime() at which the warm up ends.
+	 */
+	public void setWarmUp(RunStatistics warmUpStatistics, long warmUpEndNanos) {
+		this.warmUpStatistics = warmUpStatistics;
+		this.warmUpEndNanos = warmUpEndNanos;
+		resultSink.setWarmUp(warmUpEndNanos);
+	}
+
+	/**
+	 * Hands the results after the warm up to a steady state detector.  Must be called before
+	 * SQL is executed.
+	 * @param steadyStateDetector - The steady state detector.
+	 */
+	public void setSteadyStateDetector(SteadyStateDetector steadyStateDetector) {
+		this.steadyStateDetector = steadyStateDetector;
+	}
+
+	/**
+	 * Indicates if the run has reached a steady state, after which load drivers stop issuing
+	 * SQL.
+	 * @return True if a steady state detector has found the run to be in a steady state.
+	 */
+	public boolean isSteadyState() {
+		return steadyStateDetector != null && steadyStateDetector.isSteady();
+	}
+
+	/**
+	 * Gets the statistics of the run.
+	 * @return The run statistics.
+	 */
+	public RunStatistics getRunStatistics() {
+		return runStatistics;
+	}
+}
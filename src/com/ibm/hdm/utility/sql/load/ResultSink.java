@@ -0,0 +1,44 @@
+package com.ibm.hdm.utility.sql.load;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Stores the result of every SQL execution of a run, either as the results CSV file or as
+ * a binary execution journal.
+ *
+ * @author Jeff Tuck
+ */
+
+public interface ResultSink {
+
+	/**
+	 * Stores the result of a SQL execution.  May be called by many threads.  The record must
+	 * be copied, so the caller may reuse it once this method returns.
+	 * @param record - The record of the SQL execution.
+	 */
+	void write(ExecutionRecord record);
+
+	/**
+	 * Marks the results of SQL requested before the end of the warm up as warm up results.
+	 * Called after the run has started and before SQL is executed.
+	 * @param warmUpEndNanos - The System.nanoTime() at which the warm up ends.
+	 */
+	void setWarmUp(long warmUpEndNanos);
+
+	/**
+	 * Stores all pending results and releases the files of the sink.
+	 */
+	void close();
+}
@@ -0,0 +1,332 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Verifies that queries return the rows they returned in a baseline run, so a run that got
+ * faster because a query silently returned fewer or different rows is not mistaken for a
+ * speedup.
+ *
+ * While a result set is drained each row is hashed from its column values, read with the
+ * getter of their SQL type so numbers, dates and times are not converted to strings, and
+ * the row hashes are added up.  The sum does not depend on the order of the rows, so
+ * queries without an ORDER BY can be verified too.  The digest and the row count of each
+ * execution are compared with the digest of its statement in the baseline file.  The bind
+ * values of a parameterized statement are part of its key, as they select its rows.
+ *
+ * The first digest of every statement and bind values of the run is written to a digests
+ * file, which can be the baseline file of later runs.
+ *
+ * @author Jeff Tuck
+ */
+
+public class ResultVerifier {
+
+	public static final String DIGESTS_HEADER = "SQL Filename,Statement Number,Parameters,Row Count,Digest";
+
+	private static final long NULL_HASH = 0x9E3779B97F4A7C15L;
+	private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+	private static final long FNV_PRIME = 0x100000001B3L;
+
+	private final Workload workload;
+	private final String baselineFileName;
+	private final Map<String, Digest> baseline = new HashMap<String, Digest>();
+	private final ConcurrentHashMap<String, Digest> observed = new ConcurrentHashMap<String, Digest>();
+	private final LongAdder verified = new LongAdder();
+	private final LongAdder mismatched = new LongAdder();
+	private final LongAdder unverified = new LongAdder();
+
+	/**
+	 * Constructor for ResultVerifier
+	 * @param workload - The SQL files of the run.
+	 * @param baselineFileName - The digests file of the baseline run, or empty to only record
+	 * the digests of this run.
+	 * @throws IOException if the baseline file cannot be read or is invalid.
+	 */
+	public ResultVerifier(Workload workload, String baselineFileName) throws IOException {
+		super();
+		this.workload = workload;
+		this.baselineFileName = baselineFileName;
+		if(!baselineFileName.isEmpty()) {
+			readBaseline(baselineFileName);
+		}
+	}
+
+	/**
+	 * Gets the SQL types of the columns of a result set, which select how each column is read
+	 * by hashRow().  Called once per result set.
+	 * @param rsmd - The metadata of the result set.
+	 * @return The java.sql.Types of the columns.
+	 * @throws SQLException if the metadata cannot be read.
+	 */
+	public static int[] getColumnTypes(ResultSetMetaData rsmd) throws SQLException {
+		int[] columnTypes = new int[rsmd.getColumnCount()];
+		for(int i = 0; i < columnTypes.length; i++) {
+			columnTypes[i] = rsmd.getColumnType(i + 1);
+		}
+		return columnTypes;
+	}
+
+	/**
+	 * Hashes the current row of a result set.  The digest of a result set is the sum of the
+	 * hashes of its rows.
+	 * @param resultSet - The result set, positioned on a row.
+	 * @param columnTypes - The SQL types of the columns, as returned by getColumnTypes().
+	 * @return The hash of the row.
+	 * @throws SQLException if a column cannot be read.
+	 */
+	public static long hashRow(ResultSet resultSet, int[] columnTypes) throws SQLException {
+		long hash = columnTypes.length;
+		for(int i = 0; i < columnTypes.length; i++) {
+			hash = mix(hash * 31 + hashColumn(resultSet, i + 1, columnTypes[i]));
+		}
+		return hash;
+	}
+
+	/**
+	 * Gets the key of the bind values of a parameterized statement.
+	 * @param values - The bind values in parameter order.
+	 * @return The key, a hash of the values in hexadecimal.
+	 */
+	public static String getParameterKey(String[] values) {
+		long hash = values.length;
+		for(String value : values) {
+			hash = mix(hash * 31 + (value == null ? NULL_HASH : hashChars(value)));
+		}
+		return toHex(hash);
+	}
+
+	/**
+	 * Compares the result of a query with the baseline.  May be called by many threads.
+	 * @param fileId - The id of the SQL file.
+	 * @param statementNumber - The position of the statement within its SQL file.
+	 * @param parameterKey - The key of the bind values, or null for a statement without
+	 * parameters.
+	 * @param rowCount - The number of rows fetched.
+	 * @param digest - The sum of the hashes of the rows fetched.
+	 * @return A description of the mismatch, or null if the result matches the baseline or
+	 * there is no baseline digest for it.
+	 */
+	public String verify(int fileId, int statementNumber, String parameterKey, long rowCount, long digest) {
+		String key = workload.getFileName(fileId) + "," + statementNumber + "," + (parameterKey == null ? "" : parameterKey);
+		if(!observed.containsKey(key)) {
+			observed.putIfAbsent(key, new Digest(rowCount, digest));
+		}
+		Digest expected = baseline.get(key);
+		if(expected == null) {
+			unverified.increment();
+			return null;
+		}
+		if(expected.rowCount == rowCount && expected.digest == digest) {
+			verified.increment();
+			return null;
+		}
+		mismatched.increment();
+		return "Result mismatch: expected " + expected.rowCount + " rows with digest " + toHex(expected.digest) + ", fetched "
+				+ rowCount + " rows with digest " + toHex(digest);
+	}
+
+	/**
+	 * Writes the first digest of every statement and bind values of the run to a CSV file and
+	 * prints how many results were verified.
+	 * @param fileName - The name of the digests file.
+	 * @return True if the digests file was written.
+	 */
+	public boolean writeDigests(String fileName) {
+		if(!baselineFileName.isEmpty()) {
+			System.out.println("*****  " + verified.sum() + " RESULTS MATCHED " + baselineFileName + ", " + mismatched.sum() + " MISMATCHED, "
+					+ unverified.sum() + " HAD NO BASELINE DIGEST  *****");
+		}
+		try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileName), StandardCharsets.UTF_8))) {
+			writer.write(DIGESTS_HEADER);
+			writer.newLine();
+			for(Map.Entry<String, Digest> entry : observed.entrySet()) {
+				writer.write(entry.getKey());
+				writer.write(',');
+				writer.write(Long.toString(entry.getValue().rowCount));
+				writer.write(',');
+				writer.write(toHex(entry.getValue().digest));
+				writer.newLine();
+			}
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.out.println("*****  UNABLE TO WRITE THE DIGESTS FILE " + fileName + "  *****");
+			return false;
+		}
+	}
+
+	/**
+	 * Reads the digests of a baseline run.
+	 * @param fileName - The name of the digests file.
+	 * @throws IOException if the file cannot be read or is invalid.
+	 */
+	private void readBaseline(String fileName) throws IOException {
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(fileName), StandardCharsets.UTF_8))) {
+			String line = reader.readLine();
+			if(line == null || !line.trim().equalsIgnoreCase(DIGESTS_HEADER)) {
+				throw new IOException("The baseline file " + fileName + " does not start with the header " + DIGESTS_HEADER);
+			}
+			while((line = reader.readLine()) != null) {
+				if(line.trim().isEmpty()) {
+					continue;
+				}
+				String[] fields = ParameterSource.parseLine(line);
+				if(fields.length != 5) {
+					throw new IOException("Invalid line in the baseline file " + fileName + ": " + line);
+				}
+				try {
+					baseline.put(getField(fields, 0) + "," + getField(fields, 1) + "," + getField(fields, 2),
+							new Digest(Long.parseLong(getField(fields, 3)), Long.parseUnsignedLong(getField(fields, 4), 16)));
+				} catch (NumberFormatException e) {
+					throw new IOException("Invalid line in the baseline file " + fileName + ": " + line, e);
+				}
+			}
+		}
+		System.out.println("*****  VERIFYING RESULTS AGAINST " + baseline.size() + " DIGESTS OF " + fileName + "  *****");
+	}
+
+	/**
+	 * Gets a field of a line of the baseline file.
+	 * @param fields - The fields of the line.
+	 * @param index - The index of the field.
+	 * @return The trimmed field, empty for an empty field.
+	 */
+	private static String getField(String[] fields, int index) {
+		return fields[index] == null ? "" : fields[index].trim();
+	}
+
+	/**
+	 * Hashes a column value, read with the getter of its SQL type.  Character and unknown types
+	 * are read as strings.
+	 * @param resultSet - The result set, positioned on a row.
+	 * @param column - The column index, starting with 1.
+	 * @param type - The java.sql.Types of the column.
+	 * @return The hash of the value.
+	 * @throws SQLException if the column cannot be read.
+	 */
+	private static long hashColumn(ResultSet resultSet, int column, int type) throws SQLException {
+		switch (type) {
+		case Types.TINYINT:
+		case Types.SMALLINT:
+		case Types.INTEGER:
+		case Types.BIGINT:
+			long number = resultSet.getLong(column);
+			return resultSet.wasNull() ? NULL_HASH : number;
+		case Types.REAL:
+		case Types.FLOAT:
+		case Types.DOUBLE:
+			double real = resultSet.getDouble(column);
+			return resultSet.wasNull() ? NULL_HASH : Double.doubleToLongBits(real);
+		case Types.BOOLEAN:
+		case Types.BIT:
+			boolean bool = resultSet.getBoolean(column);
+			return resultSet.wasNull() ? NULL_HASH : (bool ? 1 : 2);
+		case Types.DECIMAL:
+		case Types.NUMERIC:
+			BigDecimal decimal = resultSet.getBigDecimal(column);
+			if(decimal == null) {
+				return NULL_HASH;
+			}
+			long unscaled = decimal.unscaledValue().bitLength() < 64 ? decimal.unscaledValue().longValue() : decimal.unscaledValue().hashCode();
+			return unscaled * 31 + decimal.scale();
+		case Types.DATE:
+			Date date = resultSet.getDate(column);
+			return date == null ? NULL_HASH : date.getTime();
+		case Types.TIME:
+			Time time = resultSet.getTime(column);
+			return time == null ? NULL_HASH : time.getTime();
+		case Types.TIMESTAMP:
+			Timestamp timestamp = resultSet.getTimestamp(column);
+			return timestamp == null ? NULL_HASH : timestamp.getTime() * 31 + timestamp.getNanos();
+		case Types.BINARY:
+		case Types.VARBINARY:
+		case Types.LONGVARBINARY:
+		case Types.BLOB:
+			byte[] bytes = resultSet.getBytes(column);
+			return bytes == null ? NULL_HASH : hashBytes(bytes);
+		default:
+			String text = resultSet.getString(column);
+			return text == null ? NULL_HASH : hashChars(text);
+		}
+	}
+
+	private static long hashChars(String text) {
+		long hash = FNV_OFFSET;
+		for(int i = 0; i < text.length(); i++) {
+			hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+		}
+		return hash;
+	}
+
+	private static long hashBytes(byte[] bytes) {
+		long hash = FNV_OFFSET;
+		for(byte value : bytes) {
+			hash = (hash ^ (value & 0xFF)) * FNV_PRIME;
+		}
+		return hash;
+	}
+
+	/**
+	 * Spreads the bits of a hash, so the sum of row hashes changes with any change of a row.
+	 * @param hash - The hash to mix.
+	 * @return The mixed hash.
+	 */
+	private static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		hash *= 0xC4CEB9FE1A85EC53L;
+		return hash ^ (hash >>> 33);
+	}
+
+	private static String toHex(long value) {
+		return String.format("%016x", value);
+	}
+
+	/**
+	 * The row count and digest of a result.
+	 */
+	private static class Digest {
+		private final long rowCount;
+		private final long digest;
+
+		private Digest(long rowCount, long digest) {
+			this.rowCount = rowCount;
+			this.digest = digest;
+		}
+	}
+}
@@ -0,0 +1,272 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Writes the results of SQL executions to the results CSV file while the run is in progress.
+ * Worker threads hand results to a bounded, lock free queue and a background thread writes
+ * them to a buffered file, flushing it at a fixed interval.  Memory use does not grow with
+ * the length of the run and the CSV file is usable up to the last flush if the process is
+ * killed.  When the queue is full, worker threads wait for the writer to catch up rather
+ * than dropping results.  Once the results file cannot be written, for example because the
+ * disk is full, the writer keeps taking results from the queue and counts them as dropped,
+ * so worker threads never wait for a writer that will not catch up.
+ *
+ * The Phase column tells the executions of the warm up, which are summarized separately,
+ * from the measured executions, so tools that read the results file can leave out the warm
+ * up in the same way.
+ *
+ * @author Jeff Tuck
+ */
+
+public class ResultWriter implements ResultSink, Runnable {
+
+	public static final String PHASE_WARM_UP = "warm up";
+	public static final String PHASE_MEASURED = "measured";
+
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+	private final ExecutionRecordBuffer queue;
+	private final String[] fileNames;
+	private final String userName;
+	private final long flushIntervalNanos;
+	private final Thread writerThread;
+	private BufferedWriter writer = null;
+	private volatile boolean closed = false;
+	private volatile boolean failed = false;
+	private final LongAdder dropped = new LongAdder();
+	private long warmUpEndNanos = 0;
+	private volatile boolean warmUp = false;
+
+	/**
+	 * Constructor for ResultWriter.  Creates the results file, writes the header line and
+	 * starts the background writer thread.
+	 * @param fileName - The name of the file to write the results to.
+	 * @param fileNames - The names of the SQL files of the run, in file id order.
+	 * @param userName - The database user name written with each result.
+	 * @param queueCapacity - The number of results that can wait to be written.
+	 * @param flushIntervalMillis - The interval at which written results are flushed to disk.
+	 * @throws IOException if the results file cannot be created.
+	 */
+	public ResultWriter(String fileName, String[] fileNames, String userName, int queueCapacity, long flushIntervalMillis) throws IOException {
+		super();
+		this.queue = new ExecutionRecordBuffer(queueCapacity);
+		this.fileNames = fileNames;
+		this.userName = userName;
+		this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(flushIntervalMillis, 1));
+		this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileName)), 1 << 16);
+		this.writer.write("SQL Filename, Statement Number, Status, User Name, Execution Sequence, Start Time, End Time, Elapsed Time (ms), Queue Delay (ms), Response Time (ms), "
+				+ "Prepare Time (ms), Execute Time (ms), Time To First Row (ms), Time To Last Row (ms), Row Count, Bytes Fetched, Phase, Stack Trace" + System.lineSeparator());
+		this.writer.flush();
+		this.writerThread = new Thread(this, "result-writer");
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+	}
+
+	/**
+	 * Queues the result of a SQL execution to be written.  May be called by many threads.
+	 * The record is copied, so the caller may reuse it once this method returns.  The record
+	 * is dropped if the queue is full and the writer failed or is no longer running.
+	 * @param record - The record of the SQL execution.
+	 */
+	@Override
+	public void write(ExecutionRecord record) {
+		while(!queue.offer(record)) {
+			if(this.failed || !this.writerThread.isAlive()) {
+				dropped.increment();
+				return;
+			}
+			LockSupport.parkNanos(FULL_PARK_NANOS);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.ibm.hdm.utility.sql.load.ResultSink#setWarmUp(long)
+	 */
+	@Override
+	public void setWarmUp(long warmUpEndNanos) {
+		this.warmUpEndNanos = warmUpEndNanos;
+		// The volatile write publishes the end of the warm up to the writer thread.
+		this.warmUp = true;
+	}
+
+	/**
+	 * Writes all queued results, flushes and closes the results file.
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		try {
+			this.writerThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if(dropped.sum() > 0) {
+			System.out.println("*****  " + dropped.sum() + " RESULTS WERE NOT WRITTEN TO THE RESULTS FILE  *****");
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		long lastFlushNanos = System.nanoTime();
+		ExecutionRecord record = new ExecutionRecord();
+		try {
+			while(true) {
+				boolean finishing = this.closed;
+				if(queue.poll(record)) {
+					writeResult(this.writer, record);
+				} else if(finishing) {
+					break;
+				} else {
+					LockSupport.parkNanos(IDLE_PARK_NANOS);
+				}
+				if(System.nanoTime() - lastFlushNanos >= this.flushIntervalNanos) {
+					this.writer.flush();
+					lastFlushNanos = System.nanoTime();
+				}
+			}
+			this.writer.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+			this.failed = true;
+			System.out.println("*****  UNABLE TO WRITE THE RESULTS FILE, FURTHER RESULTS ARE DROPPED  *****");
+			discardQueued(record);
+			try {
+				this.writer.close();
+			} catch (IOException closeFailure) {
+				// The file is already unusable.
+			}
+		}
+	}
+
+	/**
+	 * Takes the results from the queue without writing them until the writer is closed, so
+	 * worker threads are never blocked by a writer that failed.
+	 * @param record - The record to poll into.
+	 */
+	private void discardQueued(ExecutionRecord record) {
+		while(true) {
+			boolean finishing = this.closed;
+			if(queue.poll(record)) {
+				dropped.increment();
+			} else if(finishing) {
+				break;
+			} else {
+				LockSupport.parkNanos(IDLE_PARK_NANOS);
+			}
+		}
+	}
+
+	/**
+	 * Writes the result of a processed SQL execution as one line of the CSV file.  Values are
+	 * formatted directly into the writer.
+	 * @param out - The writer of the results file.
+	 * @param record - The record of the SQL execution.
+	 * @throws IOException if the line cannot be written.
+	 */
+	protected void writeResult(Writer out, ExecutionRecord record) throws IOException {
+		out.write(fileNames[record.getFileId()]);
+		out.write(',');
+		out.write(Integer.toString(record.getStatementNumber()));
+		out.write(',');
+		out.write(ExecutionRecord.getStatusName(record.getStatus()));
+		out.write(',');
+		out.write(this.userName);
+		out.write(',');
+		out.write(Long.toString(record.getExecutionSequence()));
+		out.write(',');
+		out.write(RunClock.formatTime(record.getStartNanos()));
+		out.write(',');
+		out.write(RunClock.formatTime(record.getEndNanos()));
+		out.write(',');
+		writeMillis(out, record.getElapsedNanos());
+		out.write(',');
+		writeMillis(out, record.getQueueDelayNanos());
+		out.write(',');
+		writeMillis(out, record.getResponseNanos());
+		out.write(',');
+		if(record.getPrepareNanos() >= 0) {
+			writeMillis(out, record.getPrepareNanos());
+		}
+		out.write(',');
+		if(record.getExecuteNanos() >= 0) {
+			writeMillis(out, record.getExecuteNanos());
+		}
+		out.write(',');
+		if(record.getFirstRowNanos() != -1) {
+			writeMillis(out, record.getFirstRowNanos() - record.getStartNanos());
+		}
+		out.write(',');
+		if(record.getLastRowNanos() != -1) {
+			writeMillis(out, record.getLastRowNanos() - record.getStartNanos());
+		}
+		out.write(',');
+		if(record.getRowCount() >= 0) {
+			out.write(Long.toString(record.getRowCount()));
+		}
+		out.write(',');
+		if(record.getBytesFetched() >= 0) {
+			out.write(Long.toString(record.getBytesFetched()));
+		}
+		out.write(',');
+		out.write(warmUp && record.getRequestNanos() - warmUpEndNanos < 0 ? PHASE_WARM_UP : PHASE_MEASURED);
+		out.write(",\" ");
+		if(record.getErrorMessage() != null) {
+			// Quotes within the quoted field are doubled, as messages of Db2 may contain quotes.
+			String message = record.getErrorMessage();
+			out.write(message.indexOf('"') < 0 ? message : message.replace("\"", "\"\""));
+		}
+		out.write('"');
+		out.write(System.lineSeparator());
+	}
+
+	/**
+	 * Writes nanoseconds as milliseconds with three decimals, the same format as 
+	 * RunStatistics.toMillis(), without creating a formatter.
+	 * @param out - The writer to write to.
+	 * @param nanos - The value in nanoseconds.
+	 * @throws IOException if the value cannot be written.
+	 */
+	protected static void writeMillis(Writer out, long nanos) throws IOException {
+		long micros = Math.round(nanos / 1000.0);
+		if(micros < 0) {
+			out.write('-');
+			micros = -micros;
+		}
+		out.write(Long.toString(micros / 1000));
+		out.write('.');
+		long fraction = micros % 1000;
+		if(fraction < 100) {
+			out.write('0');
+		}
+		if(fraction < 10) {
+			out.write('0');
+		}
+		out.write(Long.toString(fraction));
+	}
+}
@@ -0,0 +1,68 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Converts System.nanoTime() values into clock times.  Executions are timed with the
+ * monotonic nanosecond clock only; clock times are derived from a single reference point
+ * taken when the utility starts and are only computed when results are reported.
+ * 
+ * @author Jeff Tuck
+ */
+
+public class RunClock {
+
+	private static final long BASE_EPOCH_MILLIS = System.currentTimeMillis();
+	private static final long BASE_NANOS = System.nanoTime();
+	private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+	/**
+	 * Default constructor
+	 */
+	private RunClock() {
+		super();
+	}
+
+	/**
+	 * Converts a System.nanoTime() value into milliseconds since the epoch.
+	 * @param nanos - The System.nanoTime() value.
+	 * @return Milliseconds since the epoch.
+	 */
+	public static long toEpochMillis(long nanos) {
+		return BASE_EPOCH_MILLIS + Math.floorDiv(nanos - BASE_NANOS, 1000000L);
+	}
+
+	/**
+	 * Converts milliseconds since the epoch into a System.nanoTime() value of this process.
+	 * @param epochMillis - Milliseconds since the epoch.
+	 * @return The System.nanoTime() value.
+	 */
+	public static long toNanos(long epochMillis) {
+		return BASE_NANOS + (epochMillis - BASE_EPOCH_MILLIS) * 1000000L;
+	}
+
+	/**
+	 * Formats a System.nanoTime() value as a clock time with millisecond precision.
+	 * @param nanos - The System.nanoTime() value.
+	 * @return The time formatted as HH:mm:ss.SSS.
+	 */
+	public static String formatTime(long nanos) {
+		return TIME_FORMAT.format(Instant.ofEpochMilli(toEpochMillis(nanos)));
+	}
+}
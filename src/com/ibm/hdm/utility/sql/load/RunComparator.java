@@ -0,0 +1,778 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Offline tool that compares the results CSV files of two or more runs, for example before
+ * and after a database upgrade.  The first file is the baseline and every other file is a
+ * candidate compared with it, per SQL file and for the whole run.
+ *
+ * Usage: RunComparator [-threshold percent] [-percentile p] [-alpha a] [-resamples n]
+ * [baseline results file] [candidate results file] ...
+ *
+ * Each results file is read line by line into latency histograms, so memory use does not
+ * depend on the size of the file.  For each SQL file the comparison reports the change of
+ * P50, P90, P99 and mean response time with a bootstrap confidence interval, the one sided
+ * Mann-Whitney p-value that the candidate is slower, the change of throughput with a
+ * bootstrap confidence interval and the change of error rate.  A SQL file regresses when the whole confidence interval of the change of the gated
+ * percentile is above the threshold and the Mann-Whitney p-value is below alpha.  A SQL file,
+ * or the whole run, also regresses when its error rate rises and the one sided p-value of the
+ * two proportion z-test that the candidate fails more often is below alpha.  The run
+ * regresses when the whole confidence interval of the change of the throughput of all SQL
+ * files is below minus the threshold.  The tool exits with 1 when a candidate regresses, so
+ * it can gate a change in a script.
+ *
+ * Results files of every version of the utility can be compared, including the first
+ * versions whose Elapsed Time and times of day are written to the second as HH:mm:ss.
+ * Response times of those files have a resolution of one second.
+ *
+ * @author Jeff Tuck
+ */
+
+public class RunComparator {
+
+	public static final String VERDICT_REGRESSION = "REGRESSION";
+	public static final String VERDICT_IMPROVEMENT = "IMPROVEMENT";
+	public static final String VERDICT_NO_CHANGE = "NO CHANGE";
+	public static final String VERDICT_INSUFFICIENT = "INSUFFICIENT DATA";
+	public static final String VERDICT_MISSING = "MISSING";
+	public static final String VERDICT_THROUGHPUT_REGRESSION = "THROUGHPUT REGRESSION";
+	public static final String VERDICT_ERROR_REGRESSION = "ERROR REGRESSION";
+
+	private static final int MIN_SAMPLES = 30;
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+	private static final long SEED = 20161207L;
+	private static final double[] REPORTED_PERCENTILES = { 50.0, 90.0, 99.0 };
+
+	private double thresholdPercent = 10.0;
+	private double gatePercentile = 90.0;
+	private double alpha = 0.05;
+	private int resamples = 1000;
+
+	public static void main(String args[]) {
+		RunComparator comparator = new RunComparator();
+		List<File> files = new ArrayList<File>();
+		try {
+			for(int i = 0; i < args.length; i++) {
+				if(args[i].startsWith("-") && i + 1 < args.length) {
+					comparator.setOption(args[i], args[++i]);
+				} else {
+					files.add(new File(args[i]));
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			System.out.println("*****  " + e.getMessage() + "  *****");
+			files.clear();
+		}
+		if(files.size() < 2) {
+			System.out.println("Usage: RunComparator [-threshold percent] [-percentile p] [-alpha a] [-resamples n] <baseline results file> <candidate results file> ...");
+			System.exit(-1);
+		}
+		boolean regression = false;
+		try {
+			regression = comparator.compare(files, "Comparison_" + new SimpleDateFormat("MMddyyyy_hhmmssa").format(System.currentTimeMillis()) + ".csv");
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.out.println("*****  UNABLE TO COMPARE THE RESULTS FILES  *****");
+			System.exit(-1);
+		}
+		System.exit(regression ? 1 : 0);
+	}
+
+	/**
+	 * Sets a command line option.
+	 * @param name - The option name, such as -threshold.
+	 * @param value - The option value.
+	 * @throws IllegalArgumentException if the option is unknown or the value is invalid.
+	 */
+	protected void setOption(String name, String value) {
+		try {
+			if("-threshold".equalsIgnoreCase(name)) {
+				thresholdPercent = Double.parseDouble(value);
+			} else if("-percentile".equalsIgnoreCase(name)) {
+				gatePercentile = Double.parseDouble(value);
+			} else if("-alpha".equalsIgnoreCase(name)) {
+				alpha = Double.parseDouble(value);
+			} else if("-resamples".equalsIgnoreCase(name)) {
+				resamples = Integer.parseInt(value);
+			} else {
+				throw new IllegalArgumentException("UNKNOWN OPTION " + name);
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("INVALID VALUE " + value + " FOR " + name);
+		}
+		if(thresholdPercent < 0 || gatePercentile <= 0 || gatePercentile > 100 || alpha <= 0 || alpha >= 1 || resamples < 100) {
+			throw new IllegalArgumentException("INVALID VALUE " + value + " FOR " + name);
+		}
+	}
+
+	/**
+	 * Compares every candidate run with the baseline run, prints the comparison and writes it
+	 * to a CSV file.
+	 * @param files - The results files, the baseline first.
+	 * @param fileName - The name of the comparison CSV file.
+	 * @return True if any candidate regressed.
+	 * @throws IOException if a results file cannot be read.
+	 */
+	public boolean compare(List<File> files, String fileName) throws IOException {
+		RunResults baseline = RunResults.read(files.get(0));
+		StringBuilder comparison = new StringBuilder();
+		comparison.append("Candidate, SQL Filename, Baseline Executions, Candidate Executions, ");
+		for(double percentile : REPORTED_PERCENTILES) {
+			String name = "P" + formatNumber(percentile);
+			comparison.append("Baseline ").append(name).append(" (ms), Candidate ").append(name).append(" (ms), ")
+				.append(name).append(" Change (%), ").append(name).append(" CI Low (%), ").append(name).append(" CI High (%), ");
+		}
+		comparison.append("Baseline Mean (ms), Candidate Mean (ms), Mean Change (%), Mean CI Low (%), Mean CI High (%), "
+				+ "Mann-Whitney p, Baseline Throughput (per sec), Candidate Throughput (per sec), Throughput Change (%), "
+				+ "Throughput CI Low (%), Throughput CI High (%), "
+				+ "Baseline Error Rate (%), Candidate Error Rate (%), Error Rate p, Verdict");
+		comparison.append(System.lineSeparator());
+
+		int regressions = 0;
+		for(int i = 1; i < files.size(); i++) {
+			RunResults candidate = RunResults.read(files.get(i));
+			List<String> names = new ArrayList<String>(baseline.files.keySet());
+			for(String name : candidate.files.keySet()) {
+				if(!names.contains(name)) {
+					names.add(name);
+				}
+			}
+			for(String name : names) {
+				String verdict = appendComparisonLine(comparison, candidate.name, name, baseline, baseline.files.get(name),
+						candidate, candidate.files.get(name));
+				if(VERDICT_REGRESSION.equals(verdict) || VERDICT_ERROR_REGRESSION.equals(verdict)) {
+					regressions++;
+				}
+			}
+			String verdict = appendComparisonLine(comparison, candidate.name, RunStatistics.ALL_QUERIES, baseline, baseline.all, candidate, candidate.all);
+			if(VERDICT_REGRESSION.equals(verdict) || VERDICT_ERROR_REGRESSION.equals(verdict) || VERDICT_THROUGHPUT_REGRESSION.equals(verdict)) {
+				regressions++;
+			}
+		}
+		boolean regression = regressions > 0;
+
+		System.out.println("=========================================================");
+		System.out.println("*****  BASELINE " + baseline.name + ", GATE P" + formatNumber(gatePercentile) + " CHANGE ABOVE "
+				+ formatNumber(thresholdPercent) + "% AT ALPHA " + formatNumber(alpha) + "  *****");
+		System.out.print(comparison);
+		try {
+			OutputStreamWriter outputStreamWriter = new OutputStreamWriter(new FileOutputStream(fileName));
+			outputStreamWriter.write(comparison.toString());
+			outputStreamWriter.close();
+			System.out.println("*****  COMPARISON WRITTEN TO " + fileName + "  *****");
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		System.out.println("*****  " + (regression ? regressions + " REGRESSIONS FOUND" : "NO REGRESSION FOUND") + "  *****");
+		return regression;
+	}
+
+	/**
+	 * Compares one SQL file, or the whole run, of a candidate with the baseline and appends
+	 * one line of the comparison.
+	 * @param comparison - The comparison being built.
+	 * @param candidateName - The name of the candidate run.
+	 * @param name - The SQL file name or ALL for the whole run.
+	 * @param baselineRun - The baseline run.
+	 * @param baseline - The results of the SQL file in the baseline run, or null if it was not run.
+	 * @param candidateRun - The candidate run.
+	 * @param candidate - The results of the SQL file in the candidate run, or null if it was not run.
+	 * @return The verdict.
+	 */
+	private String appendComparisonLine(StringBuilder comparison, String candidateName, String name, RunResults baselineRun,
+			FileResults baseline, RunResults candidateRun, FileResults candidate) {
+		comparison.append(candidateName).append(',').append(name).append(',')
+			.append(baseline == null ? "" : Long.toString(baseline.getExecutions())).append(',')
+			.append(candidate == null ? "" : Long.toString(candidate.getExecutions())).append(',');
+		if(baseline == null || candidate == null) {
+			for(int i = 0; i < REPORTED_PERCENTILES.length * 5 + 14; i++) {
+				comparison.append(',');
+			}
+			comparison.append(VERDICT_MISSING).append(System.lineSeparator());
+			return VERDICT_MISSING;
+		}
+		LatencyHistogram baselineLatencies = baseline.latencies;
+		LatencyHistogram candidateLatencies = candidate.latencies;
+		boolean sufficient = baselineLatencies.getTotalCount() >= MIN_SAMPLES && candidateLatencies.getTotalCount() >= MIN_SAMPLES;
+
+		// The resampled statistics are P50, P90, P99, the gated percentile and the mean.
+		double[][] intervals = sufficient ? bootstrap(baselineLatencies, candidateLatencies) : null;
+		for(int i = 0; i < REPORTED_PERCENTILES.length; i++) {
+			appendChange(comparison, baselineLatencies.getValueAtPercentile(REPORTED_PERCENTILES[i]),
+					candidateLatencies.getValueAtPercentile(REPORTED_PERCENTILES[i]), intervals == null ? null : intervals[i]);
+		}
+		appendChange(comparison, baselineLatencies.getMean(), candidateLatencies.getMean(), intervals == null ? null : intervals[REPORTED_PERCENTILES.length + 1]);
+		double pValue = sufficient ? mannWhitneyPValue(baselineLatencies, candidateLatencies) : Double.NaN;
+		comparison.append(sufficient ? String.format(Locale.ROOT, "%.6f", pValue) : "").append(',');
+
+		double baselineThroughput = baselineRun.getSeconds() > 0 ? baselineLatencies.getTotalCount() / baselineRun.getSeconds() : 0.0;
+		double candidateThroughput = candidateRun.getSeconds() > 0 ? candidateLatencies.getTotalCount() / candidateRun.getSeconds() : 0.0;
+		double throughputChange = percentChange(baselineThroughput, candidateThroughput);
+		double[] throughputInterval = bootstrapThroughput(baselineRun.getSecondCounts(baseline), candidateRun.getSecondCounts(candidate));
+		comparison.append(String.format(Locale.ROOT, "%.3f", baselineThroughput)).append(',')
+			.append(String.format(Locale.ROOT, "%.3f", candidateThroughput)).append(',')
+			.append(formatPercent(throughputChange)).append(',')
+			.append(throughputInterval == null ? "" : formatPercent(throughputInterval[0])).append(',')
+			.append(throughputInterval == null ? "" : formatPercent(throughputInterval[1])).append(',')
+			.append(formatPercent(baseline.getErrorPercent())).append(',')
+			.append(formatPercent(candidate.getErrorPercent())).append(',');
+		boolean errorsSufficient = baseline.getExecutions() >= MIN_SAMPLES && candidate.getExecutions() >= MIN_SAMPLES;
+		double errorPValue = errorsSufficient ? errorRatePValue(baseline, candidate) : Double.NaN;
+		comparison.append(errorsSufficient ? String.format(Locale.ROOT, "%.6f", errorPValue) : "").append(',');
+
+		String verdict = VERDICT_NO_CHANGE;
+		if(!sufficient) {
+			verdict = VERDICT_INSUFFICIENT;
+		} else {
+			double[] gate = intervals[REPORTED_PERCENTILES.length];
+			if(gate[0] > thresholdPercent && pValue < alpha) {
+				verdict = VERDICT_REGRESSION;
+			} else if(gate[1] < -thresholdPercent && 1.0 - pValue < alpha) {
+				verdict = VERDICT_IMPROVEMENT;
+			}
+		}
+		// Failing faster is no improvement, a significant rise of the error rate overrides the latency verdict.
+		if(errorsSufficient && !VERDICT_REGRESSION.equals(verdict) && errorPValue < alpha) {
+			verdict = VERDICT_ERROR_REGRESSION;
+		}
+		// Throughput is only gated for the whole run, the throughput of a single SQL file of a
+		// weighted mix varies with the random choice of statements.  Runs of a single second
+		// have no interval and are gated by the change itself.
+		boolean throughputDropped = throughputInterval == null ? throughputChange < -thresholdPercent : throughputInterval[1] < -thresholdPercent;
+		if(RunStatistics.ALL_QUERIES.equals(name) && !VERDICT_REGRESSION.equals(verdict) && !VERDICT_ERROR_REGRESSION.equals(verdict)
+				&& throughputDropped) {
+			verdict = VERDICT_THROUGHPUT_REGRESSION;
+		}
+		comparison.append(verdict).append(System.lineSeparator());
+		return verdict;
+	}
+
+	private static void appendChange(StringBuilder comparison, double baselineNanos, double candidateNanos, double[] interval) {
+		comparison.append(RunStatistics.toMillis(baselineNanos)).append(',')
+			.append(RunStatistics.toMillis(candidateNanos)).append(',')
+			.append(formatPercent(percentChange(baselineNanos, candidateNanos))).append(',')
+			.append(interval == null ? "" : formatPercent(interval[0])).append(',')
+			.append(interval == null ? "" : formatPercent(interval[1])).append(',');
+	}
+
+	/**
+	 * Estimates confidence intervals of the percent change of P50, P90, P99, the gated
+	 * percentile and the mean with a Poisson bootstrap of the histogram buckets: every bucket
+	 * count of both runs is redrawn from a Poisson distribution with the count as its mean,
+	 * which resamples the executions without reading the results files again.  The random
+	 * generator has a fixed seed, so the same files always give the same report.
+	 * @param baseline - The response times of the baseline.
+	 * @param candidate - The response times of the candidate.
+	 * @return The low and high bound of each interval in percent, at a confidence of 1 - alpha.
+	 */
+	private double[][] bootstrap(LatencyHistogram baseline, LatencyHistogram candidate) {
+		Buckets baselineBuckets = new Buckets(baseline);
+		Buckets candidateBuckets = new Buckets(candidate);
+		double[] percentiles = Arrays.copyOf(REPORTED_PERCENTILES, REPORTED_PERCENTILES.length + 1);
+		percentiles[REPORTED_PERCENTILES.length] = gatePercentile;
+		int statistics = percentiles.length + 1;
+		double[][] changes = new double[statistics][resamples];
+		double[] baselineValues = new double[statistics];
+		double[] candidateValues = new double[statistics];
+		SplittableRandom random = new SplittableRandom(SEED);
+		for(int r = 0; r < resamples; r++) {
+			baselineBuckets.resample(random, percentiles, baselineValues);
+			candidateBuckets.resample(random, percentiles, candidateValues);
+			for(int s = 0; s < statistics; s++) {
+				changes[s][r] = percentChange(baselineValues[s], candidateValues[s]);
+			}
+		}
+		double[][] intervals = new double[statistics][];
+		for(int s = 0; s < statistics; s++) {
+			Arrays.sort(changes[s]);
+			intervals[s] = new double[] {
+				changes[s][(int) Math.floor(alpha / 2 * (resamples - 1))],
+				changes[s][(int) Math.ceil((1 - alpha / 2) * (resamples - 1))]
+			};
+		}
+		return intervals;
+	}
+
+	/**
+	 * Estimates the confidence interval of the percent change of throughput with a Poisson
+	 * bootstrap of the seconds of both runs: every second is weighted with a count drawn from
+	 * a Poisson distribution with a mean of 1, and the throughput of a resample is the
+	 * weighted mean of the successful executions per second.  Seconds are resampled
+	 * independently, so the interval is too narrow when the throughput drifts during a run.
+	 * @param baseline - The successful executions of each second of the baseline.
+	 * @param candidate - The successful executions of each second of the candidate.
+	 * @return The low and high bound of the interval in percent, at a confidence of 1 - alpha,
+	 * or null if a run has fewer than two seconds.
+	 */
+	private double[] bootstrapThroughput(long[] baseline, long[] candidate) {
+		if(baseline.length < 2 || candidate.length < 2) {
+			return null;
+		}
+		double[] changes = new double[resamples];
+		SplittableRandom random = new SplittableRandom(SEED);
+		for(int r = 0; r < resamples; r++) {
+			changes[r] = percentChange(resampleMean(random, baseline), resampleMean(random, candidate));
+		}
+		Arrays.sort(changes);
+		return new double[] {
+			changes[(int) Math.floor(alpha / 2 * (resamples - 1))],
+			changes[(int) Math.ceil((1 - alpha / 2) * (resamples - 1))]
+		};
+	}
+
+	private static double resampleMean(SplittableRandom random, long[] counts) {
+		double sum = 0;
+		long weights = 0;
+		for(long count : counts) {
+			long weight = Buckets.nextPoisson(random, 1);
+			sum += (double) weight * count;
+			weights += weight;
+		}
+		return weights > 0 ? sum / weights : 0.0;
+	}
+
+	/**
+	 * Computes the one sided p-value of the Mann-Whitney U test that the response times of
+	 * the candidate are larger than those of the baseline.  Values in the same histogram
+	 * bucket are ties, which the variance of U is corrected for.  The p-value uses the normal
+	 * approximation of U, which is accurate for the sample sizes of a load test.
+	 * @param baseline - The response times of the baseline.
+	 * @param candidate - The response times of the candidate.
+	 * @return The p-value, small when the candidate is slower.
+	 */
+	protected static double mannWhitneyPValue(LatencyHistogram baseline, LatencyHistogram candidate) {
+		double n1 = baseline.getTotalCount();
+		double n2 = candidate.getTotalCount();
+		double u = 0;
+		double tieSum = 0;
+		double baselineBelow = 0;
+		for(int i = 0; i < LatencyHistogram.getBucketCount(); i++) {
+			double baselineCount = baseline.getCountAtIndex(i);
+			double candidateCount = candidate.getCountAtIndex(i);
+			if(baselineCount == 0 && candidateCount == 0) {
+				continue;
+			}
+			u += candidateCount * (baselineBelow + baselineCount / 2);
+			double ties = baselineCount + candidateCount;
+			tieSum += ties * ties * ties - ties;
+			baselineBelow += baselineCount;
+		}
+		double n = n1 + n2;
+		double variance = n1 * n2 / 12 * ((n + 1) - tieSum / (n * (n - 1)));
+		if(variance <= 0) {
+			return 0.5;
+		}
+		double z = (u - n1 * n2 / 2) / Math.sqrt(variance);
+		return 1 - normalCdf(z);
+	}
+
+	/**
+	 * Computes the one sided p-value of the two proportion z-test that the error rate of the
+	 * candidate is larger than that of the baseline.  Errors include timeouts and result
+	 * mismatches.
+	 * @param baseline - The results of the baseline.
+	 * @param candidate - The results of the candidate.
+	 * @return The p-value, small when the candidate fails more often.
+	 */
+	private static double errorRatePValue(FileResults baseline, FileResults candidate) {
+		double n1 = baseline.getExecutions();
+		double n2 = candidate.getExecutions();
+		double pooled = (baseline.errors + candidate.errors) / (n1 + n2);
+		double variance = pooled * (1 - pooled) * (1 / n1 + 1 / n2);
+		if(variance <= 0) {
+			return 0.5;
+		}
+		double z = (candidate.errors / n2 - baseline.errors / n1) / Math.sqrt(variance);
+		return 1 - normalCdf(z);
+	}
+
+	/**
+	 * Computes the standard normal cumulative distribution function, with a relative error
+	 * below 1.2e-7.
+	 * @param z - The standard score.
+	 * @return The probability that a standard normal value is at most z.
+	 */
+	private static double normalCdf(double z) {
+		double x = Math.abs(z) / Math.sqrt(2);
+		double t = 1 / (1 + 0.5 * x);
+		double erfc = t * Math.exp(-x * x - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+				+ t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+				+ t * (-0.82215223 + t * 0.17087277)))))))));
+		return z >= 0 ? 1 - erfc / 2 : erfc / 2;
+	}
+
+	private static double percentChange(double baseline, double candidate) {
+		if(baseline == 0) {
+			return candidate == 0 ? 0.0 : Double.POSITIVE_INFINITY;
+		}
+		return (candidate / baseline - 1) * 100;
+	}
+
+	private static String formatPercent(double percent) {
+		return Double.isInfinite(percent) ? "" : String.format(Locale.ROOT, "%.2f", percent);
+	}
+
+	private static String formatNumber(double value) {
+		return value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value);
+	}
+
+	/**
+	 * The used buckets of a histogram, resampled by the bootstrap.
+	 */
+	private static class Buckets {
+		private final long[] values;
+		private final long[] counts;
+		private final long[] resampled;
+
+		private Buckets(LatencyHistogram histogram) {
+			int used = 0;
+			for(int i = 0; i < LatencyHistogram.getBucketCount(); i++) {
+				if(histogram.getCountAtIndex(i) > 0) {
+					used++;
+				}
+			}
+			this.values = new long[used];
+			this.counts = new long[used];
+			this.resampled = new long[used];
+			used = 0;
+			for(int i = 0; i < LatencyHistogram.getBucketCount(); i++) {
+				long count = histogram.getCountAtIndex(i);
+				if(count > 0) {
+					values[used] = LatencyHistogram.getValueAtIndex(i);
+					counts[used++] = count;
+				}
+			}
+		}
+
+		/**
+		 * Draws one bootstrap resample and computes its statistics.
+		 * @param random - The random generator.
+		 * @param percentiles - The percentiles to compute.
+		 * @param statistics - Receives the percentiles followed by the mean, in nanoseconds.
+		 */
+		private void resample(SplittableRandom random, double[] percentiles, double[] statistics) {
+			long total = 0;
+			double sum = 0;
+			for(int i = 0; i < counts.length; i++) {
+				resampled[i] = nextPoisson(random, counts[i]);
+				total += resampled[i];
+				sum += (double) resampled[i] * values[i];
+			}
+			for(int p = 0; p < percentiles.length; p++) {
+				long target = Math.max(1, (long) Math.ceil(percentiles[p] / 100.0 * total));
+				long cumulative = 0;
+				statistics[p] = values[values.length - 1];
+				for(int i = 0; i < resampled.length; i++) {
+					cumulative += resampled[i];
+					if(cumulative >= target) {
+						statistics[p] = values[i];
+						break;
+					}
+				}
+			}
+			statistics[percentiles.length] = total == 0 ? 0.0 : sum / total;
+		}
+
+		/**
+		 * Draws a Poisson distributed count.  Large means use the normal approximation.
+		 * @param random - The random generator.
+		 * @param mean - The mean of the distribution.
+		 * @return The count.
+		 */
+		private static long nextPoisson(SplittableRandom random, long mean) {
+			if(mean > 30) {
+				double u1 = 1 - random.nextDouble();
+				double gaussian = Math.sqrt(-2 * Math.log(u1)) * Math.cos(2 * Math.PI * random.nextDouble());
+				return Math.max(0, Math.round(mean + Math.sqrt(mean) * gaussian));
+			}
+			double limit = Math.exp(-mean);
+			double product = random.nextDouble();
+			long count = 0;
+			while(product > limit) {
+				product *= random.nextDouble();
+				count++;
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * The successful executions of one SQL file, or of the whole run, per second of their end
+	 * time.
+	 */
+	private static class CompletionCounts {
+		private long firstSecond = 0;
+		private long[] counts = new long[0];
+
+		private void add(long second) {
+			if(counts.length == 0) {
+				firstSecond = second;
+				counts = new long[64];
+			} else if(second < firstSecond) {
+				// Results are written roughly in end time order, a few lines may end earlier.
+				long[] grown = new long[(int) Math.max(counts.length * 2L, counts.length + firstSecond - second)];
+				System.arraycopy(counts, 0, grown, grown.length - counts.length, counts.length);
+				firstSecond -= grown.length - counts.length;
+				counts = grown;
+			} else if(second - firstSecond >= counts.length) {
+				counts = Arrays.copyOf(counts, (int) Math.max(counts.length * 2L, second - firstSecond + 1));
+			}
+			counts[(int) (second - firstSecond)]++;
+		}
+
+		private long get(long second) {
+			long index = second - firstSecond;
+			return index >= 0 && index < counts.length ? counts[(int) index] : 0;
+		}
+	}
+
+	/**
+	 * The response times and errors of one SQL file, or of the whole run, in a results file.
+	 */
+	private static class FileResults {
+		private final LatencyHistogram latencies = new LatencyHistogram();
+		private final CompletionCounts completions = new CompletionCounts();
+		private long errors = 0;
+
+		private long getExecutions() {
+			return latencies.getTotalCount() + errors;
+		}
+
+		private double getErrorPercent() {
+			long executions = getExecutions();
+			return executions == 0 ? 0.0 : errors * 100.0 / executions;
+		}
+	}
+
+	/**
+	 * The results of one run, read from its results CSV file.
+	 */
+	private static class RunResults {
+		private final String name;
+		private final Map<String, FileResults> files = new LinkedHashMap<String, FileResults>();
+		private final FileResults all = new FileResults();
+		private long firstStartMillis = Long.MAX_VALUE;
+		private long lastEndMillis = Long.MIN_VALUE;
+
+		private RunResults(String name) {
+			this.name = name;
+		}
+
+		private double getSeconds() {
+			return lastEndMillis > firstStartMillis ? (lastEndMillis - firstStartMillis) / 1000.0 : 0.0;
+		}
+
+		/**
+		 * Gets the successful executions of a SQL file for every second of the run, including
+		 * the seconds without any.
+		 * @param results - The results of the SQL file or of the whole run.
+		 * @return The executions per second, empty if the run has no executions.
+		 */
+		private long[] getSecondCounts(FileResults results) {
+			if(lastEndMillis < firstStartMillis) {
+				return new long[0];
+			}
+			long firstSecond = Math.floorDiv(firstStartMillis, 1000);
+			long[] counts = new long[(int) (Math.floorDiv(lastEndMillis, 1000) - firstSecond + 1)];
+			for(int i = 0; i < counts.length; i++) {
+				counts[i] = results.completions.get(firstSecond + i);
+			}
+			return counts;
+		}
+
+		/**
+		 * Reads a results file one line at a time.  The response time is taken from the
+		 * Response Time column, or from the Elapsed Time (ms) column of results files written
+		 * before it existed, or from the Elapsed Time column of the first versions, which is
+		 * written to the second as HH:mm:ss.  Lines that are not execution results, such as the continuation
+		 * lines of multi-line error messages, are skipped.  Timeouts and result mismatches
+		 * count as errors.  Executions of the warm up, marked in the Phase column, are skipped
+		 * like in the Summary of the run.
+		 * @param file - The results file.
+		 * @return The results of the run.
+		 * @throws IOException if the file cannot be read or is not a results file.
+		 */
+		private static RunResults read(File file) throws IOException {
+			String name = file.getName();
+			if(name.toLowerCase().endsWith(".csv")) {
+				name = name.substring(0, name.length() - 4);
+			}
+			RunResults run = new RunResults(name);
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file)), 1 << 16);
+			try {
+				String header = reader.readLine();
+				List<String> columns = new ArrayList<String>();
+				if(header != null) {
+					for(String column : header.split(",")) {
+						columns.add(column.trim());
+					}
+				}
+				int fileColumn = columns.indexOf("SQL Filename");
+				int statusColumn = columns.indexOf("Status");
+				int startColumn = columns.indexOf("Start Time");
+				int endColumn = columns.indexOf("End Time");
+				int phaseColumn = columns.indexOf("Phase");
+				int timeColumn = columns.indexOf("Response Time (ms)");
+				if(timeColumn < 0) {
+					timeColumn = columns.indexOf("Elapsed Time (ms)");
+				}
+				boolean wholeSeconds = false;
+				if(timeColumn < 0) {
+					timeColumn = columns.indexOf("Elapsed Time");
+					wholeSeconds = timeColumn >= 0;
+				}
+				if(fileColumn < 0 || statusColumn < 0 || startColumn < 0 || endColumn < 0 || timeColumn < 0) {
+					throw new IOException(file.getPath() + " is not a results file");
+				}
+				int fieldCount = Math.max(Math.max(Math.max(fileColumn, statusColumn), Math.max(Math.max(startColumn, endColumn), timeColumn)), phaseColumn) + 1;
+				long dayOffset = 0;
+				long previousEnd = -1;
+				String line;
+				while((line = reader.readLine()) != null) {
+					String[] fields = line.split(",", fieldCount + 1);
+					if(fields.length < fieldCount) {
+						continue;
+					}
+					if(phaseColumn >= 0 && ResultWriter.PHASE_WARM_UP.equals(fields[phaseColumn])) {
+						continue;
+					}
+					boolean success = "success".equals(fields[statusColumn]);
+					if(!success && !"error".equals(fields[statusColumn]) && !"timeout".equals(fields[statusColumn])
+							&& !"mismatch".equals(fields[statusColumn])) {
+						continue;
+					}
+					long start = parseTime(fields[startColumn]);
+					long end = parseTime(fields[endColumn]);
+					double millis;
+					if(wholeSeconds) {
+						long seconds = parseDuration(fields[timeColumn]);
+						if(seconds < 0) {
+							continue;
+						}
+						millis = seconds * 1000.0;
+					} else {
+						try {
+							millis = Double.parseDouble(fields[timeColumn]);
+						} catch (NumberFormatException e) {
+							continue;
+						}
+					}
+					if(start < 0 || end < 0) {
+						continue;
+					}
+					// Times of day wrap at midnight, results are written roughly in end time order.
+					if(previousEnd >= 0 && end < previousEnd - MILLIS_PER_DAY / 2) {
+						dayOffset += MILLIS_PER_DAY;
+					}
+					previousEnd = end;
+					if(start > end) {
+						start -= MILLIS_PER_DAY;
+					}
+					run.firstStartMillis = Math.min(run.firstStartMillis, dayOffset + start);
+					run.lastEndMillis = Math.max(run.lastEndMillis, dayOffset + end);
+
+					FileResults results = run.files.get(fields[fileColumn]);
+					if(results == null) {
+						results = new FileResults();
+						run.files.put(fields[fileColumn], results);
+					}
+					if(success) {
+						long nanos = Math.round(millis * 1e6);
+						results.latencies.recordValue(nanos);
+						run.all.latencies.recordValue(nanos);
+						long second = Math.floorDiv(dayOffset + end, 1000);
+						results.completions.add(second);
+						run.all.completions.add(second);
+					} else {
+						results.errors++;
+						run.all.errors++;
+					}
+				}
+			} finally {
+				reader.close();
+			}
+			return run;
+		}
+
+		/**
+		 * Parses a time of day written by RunClock.formatTime, or to the second by the first
+		 * versions.
+		 * @param time - The time as HH:mm:ss.SSS or HH:mm:ss.
+		 * @return The milliseconds since midnight, or -1 if the time is not valid.
+		 */
+		private static long parseTime(String time) {
+			boolean withMillis = time.length() == 12 && time.charAt(8) == '.';
+			if((time.length() != 8 && !withMillis) || time.charAt(2) != ':' || time.charAt(5) != ':') {
+				return -1;
+			}
+			long millis = 0;
+			for(int i = 0; i < time.length(); i++) {
+				if(i == 2 || i == 5 || i == 8) {
+					continue;
+				}
+				int digit = time.charAt(i) - '0';
+				if(digit < 0 || digit > 9) {
+					return -1;
+				}
+				millis = millis * 10 + digit;
+			}
+			if(!withMillis) {
+				millis *= 1000;
+			}
+			// millis now holds the digits HHmmssSSS.
+			long hours = millis / 10000000;
+			long minutes = millis / 100000 % 100;
+			long seconds = millis / 1000 % 100;
+			return ((hours * 60 + minutes) * 60 + seconds) * 1000 + millis % 1000;
+		}
+
+		/**
+		 * Parses an elapsed time written by the first versions.
+		 * @param duration - The elapsed time as H:mm:ss, with any number of digits of hours.
+		 * @return The seconds, or -1 if the elapsed time is not valid.
+		 */
+		private static long parseDuration(String duration) {
+			String[] parts = duration.trim().split(":");
+			if(parts.length != 3) {
+				return -1;
+			}
+			try {
+				long hours = Long.parseLong(parts[0]);
+				long minutes = Long.parseLong(parts[1]);
+				long seconds = Long.parseLong(parts[2]);
+				return hours < 0 || minutes < 0 || minutes > 59 || seconds < 0 || seconds > 59 ? -1 : (hours * 60 + minutes) * 60 + seconds;
+			} catch (NumberFormatException e) {
+				return -1;
+			}
+		}
+	}
+}
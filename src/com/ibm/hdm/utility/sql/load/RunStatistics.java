@@ -0,0 +1,338 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Collects the latency histograms and execution counts of a run, both per SQL file and
+ * for the whole run, and produces the end of run summary.
+ *
+ * @author Jeff Tuck
+ */
+
+public class RunStatistics {
+
+	public static final String ALL_QUERIES = "ALL";
+
+	private String[] fileNames = null;
+	private final QueryStatistics[] queryStatistics;
+	private final QueryStatistics runTotals = new QueryStatistics();
+	private long runStartNanos = 0;
+	private long runEndNanos = 0;
+
+	/**
+	 * Constructor for RunStatistics
+	 * @param fileNames - The names of the SQL files of the run, in file id order.
+	 */
+	public RunStatistics(String[] fileNames) {
+		super();
+		this.fileNames = fileNames;
+		this.queryStatistics = new QueryStatistics[fileNames.length];
+		for(int fileId = 0; fileId < queryStatistics.length; fileId++) {
+			queryStatistics[fileId] = new QueryStatistics();
+		}
+	}
+
+	/**
+	 * Marks the start of the timed portion of the run.
+	 */
+	public void start() {
+		this.runStartNanos = System.nanoTime();
+		this.runEndNanos = 0;
+	}
+
+	/**
+	 * Marks the end of the timed portion of the run.
+	 */
+	public void stop() {
+		this.runEndNanos = System.nanoTime();
+	}
+
+	/**
+	 * Sets the start and the end of the timed portion of a run that was recorded earlier.
+	 * @param startNanos - The start of the run.
+	 * @param endNanos - The end of the run.
+	 */
+	public void setRunInterval(long startNanos, long endNanos) {
+		this.runStartNanos = startNanos;
+		this.runEndNanos = endNanos;
+	}
+
+	/**
+	 * Gets the start of the timed portion of the run.
+	 * @return The System.nanoTime() value.
+	 */
+	public long getRunStartNanos() {
+		return runStartNanos;
+	}
+
+	/**
+	 * Gets the end of the timed portion of the run.
+	 * @return The System.nanoTime() value or 0 if the run has not ended.
+	 */
+	public long getRunEndNanos() {
+		return runEndNanos;
+	}
+
+	/**
+	 * Records the outcome of a single SQL execution.  Only successful executions are added
+	 * to the latency histograms.
+	 * @param record - The record of the SQL execution.
+	 */
+	public void record(ExecutionRecord record) {
+		queryStatistics[record.getFileId()].record(record);
+		runTotals.record(record);
+	}
+
+	/**
+	 * Writes the statistics of the run in a compact binary form, so a distributed
+	 * coordinator can merge the statistics of its workers.
+	 * @param out - The output to write to.
+	 * @throws IOException if the statistics cannot be written.
+	 */
+	public void write(DataOutput out) throws IOException {
+		long end = runEndNanos == 0 ? System.nanoTime() : runEndNanos;
+		out.writeLong(end - runStartNanos);
+		out.writeInt(queryStatistics.length);
+		for(QueryStatistics statistics : queryStatistics) {
+			statistics.write(out);
+		}
+		runTotals.write(out);
+	}
+
+	/**
+	 * Adds the statistics of another run written with write() to these statistics.  Runs are
+	 * assumed to have started together, so the merged run lasts as long as the longest run.
+	 * @param in - The input to read from.
+	 * @throws IOException if the statistics cannot be read or are for different SQL files.
+	 */
+	public void merge(DataInput in) throws IOException {
+		long runNanos = in.readLong();
+		if(in.readInt() != queryStatistics.length) {
+			throw new IOException("The statistics are for a different number of SQL files");
+		}
+		for(QueryStatistics statistics : queryStatistics) {
+			statistics.merge(in);
+		}
+		runTotals.merge(in);
+		if(runNanos > this.runEndNanos - this.runStartNanos) {
+			setRunInterval(0, runNanos);
+		}
+	}
+
+	/**
+	 * Gets the number of seconds between the start and the end of the run.
+	 * @return The run duration in seconds.
+	 */
+	public double getRunSeconds() {
+		long end = runEndNanos == 0 ? System.nanoTime() : runEndNanos;
+		return (end - runStartNanos) / 1e9;
+	}
+
+	/**
+	 * Gets the total number of successful executions.
+	 * @return The number of successful executions.
+	 */
+	public long getSuccessCount() {
+		return runTotals.responseHistogram.getTotalCount();
+	}
+
+	/**
+	 * Gets the total number of failed executions, not counting timeouts.
+	 * @return The number of failed executions.
+	 */
+	public long getErrorCount() {
+		return runTotals.errors.sum();
+	}
+
+	/**
+	 * Gets the total number of executions that timed out or were cancelled.
+	 * @return The number of timed out executions.
+	 */
+	public long getTimeoutCount() {
+		return runTotals.timeouts.sum();
+	}
+
+	/**
+	 * Gets the total number of executions whose result did not match the baseline.
+	 * @return The number of mismatched executions.
+	 */
+	public long getMismatchCount() {
+		return runTotals.mismatches.sum();
+	}
+
+	/**
+	 * Gets the number of successful executions of a SQL file.
+	 * @param fileId - The id of the SQL file, or -1 for the whole run.
+	 * @return The number of successful executions.
+	 */
+	public long getSuccessCount(int fileId) {
+		return getStatistics(fileId).responseHistogram.getTotalCount();
+	}
+
+	/**
+	 * Gets the mean service time of the successful executions of a SQL file, which is the time
+	 * from the start of the execution until the last row was fetched.
+	 * @param fileId - The id of the SQL file, or -1 for the whole run.
+	 * @return The mean service time in nanoseconds.
+	 */
+	public double getMeanServiceNanos(int fileId) {
+		return getStatistics(fileId).serviceHistogram.getMean();
+	}
+
+	private QueryStatistics getStatistics(int fileId) {
+		return fileId < 0 ? runTotals : queryStatistics[fileId];
+	}
+
+	/**
+	 * Writes the summary of the run to a CSV file and prints it to the console.  There is
+	 * one line per SQL file followed by a line for the whole run.  Errors do not include
+	 * executions that timed out or whose result did not match the baseline, which are
+	 * counted separately.  Latency percentiles are
+	 * response times, measured from the scheduled start of each execution.  Service time
+	 * and queue delay percentiles show how much of the response time was spent executing
+	 * and how much was spent waiting to start.  Prepare percentiles only include executions
+	 * that prepared their statement, execute percentiles exclude the prepare and the fetch.
+	 * @param fileName - The name of the file to write the summary to.
+	 */
+	public void writeSummary(String fileName) {
+		double runSeconds = getRunSeconds();
+		StringBuilder summary = new StringBuilder();
+		summary.append("SQL Filename, Executions, Errors, Timeouts, Mismatches, Min (ms), P50 (ms), P90 (ms), P99 (ms), P99.9 (ms), Max (ms), Mean (ms), Throughput (per sec), "
+				+ "Service P50 (ms), Service P99 (ms), Queue Delay P50 (ms), Queue Delay P99 (ms), Queue Delay Max (ms), "
+				+ "Prepares, Prepare P50 (ms), Prepare Max (ms), Execute P50 (ms), Execute P99 (ms)");
+		summary.append(System.lineSeparator());
+		for(int fileId = 0; fileId < queryStatistics.length; fileId++) {
+			appendSummaryLine(summary, fileNames[fileId], queryStatistics[fileId], runSeconds);
+		}
+		appendSummaryLine(summary, ALL_QUERIES, runTotals, runSeconds);
+
+		System.out.println("=========================================================");
+		System.out.print(summary);
+		try {
+			OutputStreamWriter outputStreamWriter = new OutputStreamWriter(new FileOutputStream(fileName));
+			outputStreamWriter.write(summary.toString());
+			outputStreamWriter.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Appends one line of the summary.
+	 * @param summary - The summary being built.
+	 * @param name - The SQL file name or ALL for the whole run.
+	 * @param statistics - The statistics to summarize.
+	 * @param runSeconds - The duration of the run in seconds.
+	 */
+	private static void appendSummaryLine(StringBuilder summary, String name, QueryStatistics statistics, double runSeconds) {
+		LatencyHistogram histogram = statistics.responseHistogram;
+		long executions = histogram.getTotalCount();
+		summary.append(name).append(',')
+			.append(executions).append(',')
+			.append(statistics.errors.sum()).append(',')
+			.append(statistics.timeouts.sum()).append(',')
+			.append(statistics.mismatches.sum()).append(',')
+			.append(toMillis(histogram.getMinValue())).append(',')
+			.append(toMillis(histogram.getValueAtPercentile(50.0))).append(',')
+			.append(toMillis(histogram.getValueAtPercentile(90.0))).append(',')
+			.append(toMillis(histogram.getValueAtPercentile(99.0))).append(',')
+			.append(toMillis(histogram.getValueAtPercentile(99.9))).append(',')
+			.append(toMillis(histogram.getMaxValue())).append(',')
+			.append(toMillis(histogram.getMean())).append(',')
+			.append(String.format(Locale.ROOT, "%.3f", runSeconds > 0 ? executions / runSeconds : 0.0)).append(',')
+			.append(toMillis(statistics.serviceHistogram.getValueAtPercentile(50.0))).append(',')
+			.append(toMillis(statistics.serviceHistogram.getValueAtPercentile(99.0))).append(',')
+			.append(toMillis(statistics.queueDelayHistogram.getValueAtPercentile(50.0))).append(',')
+			.append(toMillis(statistics.queueDelayHistogram.getValueAtPercentile(99.0))).append(',')
+			.append(toMillis(statistics.queueDelayHistogram.getMaxValue())).append(',')
+			.append(statistics.prepareHistogram.getTotalCount()).append(',')
+			.append(toMillis(statistics.prepareHistogram.getValueAtPercentile(50.0))).append(',')
+			.append(toMillis(statistics.prepareHistogram.getMaxValue())).append(',')
+			.append(toMillis(statistics.executeHistogram.getValueAtPercentile(50.0))).append(',')
+			.append(toMillis(statistics.executeHistogram.getValueAtPercentile(99.0)))
+			.append(System.lineSeparator());
+	}
+
+	/**
+	 * Formats nanoseconds as milliseconds with microsecond precision.
+	 * @param nanos - The value in nanoseconds.
+	 * @return The formatted value in milliseconds.
+	 */
+	protected static String toMillis(double nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+	}
+
+	/**
+	 * Latency histograms, error, timeout and mismatch counts for a single SQL file or the whole run.
+	 */
+	private static class QueryStatistics {
+		private final LatencyHistogram responseHistogram = new LatencyHistogram();
+		private final LatencyHistogram serviceHistogram = new LatencyHistogram();
+		private final LatencyHistogram queueDelayHistogram = new LatencyHistogram();
+		private final LatencyHistogram prepareHistogram = new LatencyHistogram();
+		private final LatencyHistogram executeHistogram = new LatencyHistogram();
+		private final LongAdder errors = new LongAdder();
+		private final LongAdder timeouts = new LongAdder();
+		private final LongAdder mismatches = new LongAdder();
+
+		private void record(ExecutionRecord record) {
+			if(record.isSuccess()) {
+				responseHistogram.recordValue(record.getResponseNanos());
+				serviceHistogram.recordValue(record.getElapsedNanos());
+				queueDelayHistogram.recordValue(record.getQueueDelayNanos());
+				if(record.getPrepareNanos() > 0) {
+					prepareHistogram.recordValue(record.getPrepareNanos());
+				}
+				executeHistogram.recordValue(record.getExecuteNanos());
+			} else if(record.getStatus() == ExecutionRecord.STATUS_TIMEOUT) {
+				timeouts.increment();
+			} else if(record.getStatus() == ExecutionRecord.STATUS_MISMATCH) {
+				mismatches.increment();
+			} else {
+				errors.increment();
+			}
+		}
+
+		private void write(DataOutput out) throws IOException {
+			responseHistogram.write(out);
+			serviceHistogram.write(out);
+			queueDelayHistogram.write(out);
+			prepareHistogram.write(out);
+			executeHistogram.write(out);
+			out.writeLong(errors.sum());
+			out.writeLong(timeouts.sum());
+			out.writeLong(mismatches.sum());
+		}
+
+		private void merge(DataInput in) throws IOException {
+			responseHistogram.add(in);
+			serviceHistogram.add(in);
+			queueDelayHistogram.add(in);
+			prepareHistogram.add(in);
+			executeHistogram.add(in);
+			errors.add(in.readLong());
+			timeouts.add(in.readLong());
+			mismatches.add(in.readLong());
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package com.ibm.hdm.utility.sql.load;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Java Flight Recorder event for one phase of a SQL execution: waiting for a connection,
+ * preparing the statement, executing it or fetching its rows.  The flight recorder adds the
+ * start time, duration and thread of each event, so query latencies can be lined up with
+ * garbage collection pauses, safepoints and thread activity of the client on one timeline in
+ * JDK Mission Control.
+ *
+ * When no recording is running, beginPhase() returns null after a single check, so the events
+ * cost next to nothing.
+ *
+ * @author Jeff Tuck
+ */
+
+@Name("com.ibm.hdm.sqlload.SQLExecution")
+@Label("SQL Execution Phase")
+@Category("SQL Load")
+@Description("A phase of a SQL execution of SQL Load")
+@StackTrace(false)
+public class SQLExecutionEvent extends Event {
+
+	public static final String PHASE_CONNECT = "connect";
+	public static final String PHASE_PREPARE = "prepare";
+	public static final String PHASE_EXECUTE = "execute";
+	public static final String PHASE_FETCH = "fetch";
+
+	@Label("SQL File")
+	private String fileName;
+
+	@Label("Statement Number")
+	private int statementNumber;
+
+	@Label("Execution Sequence")
+	private long executionSequence;
+
+	@Label("Phase")
+	private String phase;
+
+	@Label("Failed")
+	private boolean failed;
+
+	/**
+	 * Starts timing a phase of a SQL execution.
+	 * @param phase - connect, prepare, execute or fetch.
+	 * @return The event, to be passed to endPhase(), or null if the event is not recorded.
+	 */
+	public static SQLExecutionEvent beginPhase(String phase) {
+		SQLExecutionEvent event = new SQLExecutionEvent();
+		if(!event.isEnabled()) {
+			return null;
+		}
+		event.phase = phase;
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Ends a phase of a SQL execution and records its event.
+	 * @param event - The event returned by beginPhase(), or null.
+	 * @param fileName - The name of the SQL file.
+	 * @param statementNumber - The position of the statement within its SQL file.
+	 * @param executionSequence - The sequence with which the SQL was executed.
+	 * @param failed - True if the phase ended with an exception.
+	 */
+	public static void endPhase(SQLExecutionEvent event, String fileName, int statementNumber, long executionSequence, boolean failed) {
+		if(event == null) {
+			return;
+		}
+		event.end();
+		if(event.shouldCommit()) {
+			event.fileName = fileName;
+			event.statementNumber = statementNumber;
+			event.executionSequence = executionSequence;
+			event.failed = failed;
+			event.commit();
+		}
+	}
+}
@@ -1,21 +1,21 @@
 package com.ibm.hdm.utility.sql.load;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.sql.SQLException;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Map.Entry;
-import java.util.Set;
+import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 
 /*
@@ -40,135 +40,528 @@ import java.util.concurrent.Future;
 
 public class SQLLoad {
 	
+	public static final String LOAD_MODE_ONCE = "once";
+	public static final String LOAD_MODE_CLOSED_LOOP = "closed_loop";
+	public static final String LOAD_MODE_OPEN_LOOP = "open_loop";
+	public static final String LOAD_MODE_SWEEP = "sweep";
+	public static final String LOAD_MODE_REPLAY = "replay";
+	public static final String LOAD_MODE_INGEST = "ingest";
+	public static final String RESULT_FORMAT_CSV = "csv";
+	public static final String RESULT_FORMAT_JOURNAL = "journal";
+	
 	public static void main(String args[]) {
 		
-		int successCount = 0;
-		int errorCount = 0;
-		int executionSequence = 1;
 		ConfigurationBean config = new ConfigurationBean();
-		HashMap<String, String> sqlStatments = getSqlStatements(config.getSqlDirectory());
-		Iterator<Entry<String, String>> sqlIterator = sqlStatments.entrySet().iterator();
-		ArrayList<HashMap<String, String>> resultsArrayList = new ArrayList<HashMap<String, String>>();
+		if(!config.getWorkerHosts().isEmpty()) {
+			DistributedCoordinator coordinator = new DistributedCoordinator(config);
+			coordinator.run();
+			return;
+		}
+		run(config, null);
+	}
+	
+	/**
+	 * Runs the configured load in this process and writes the results and the summary.
+	 * @param config - The configuration for SQL Load.
+	 * @param startBarrier - Called once the workload is loaded and the database connections are
+	 * open, right before the run starts, or null to start at once.  Used by distributed workers
+	 * to start together.  The run is cancelled when it returns false or fails.
+	 * @return The statistics of the run or null if the run was cancelled.
+	 */
+	protected static RunStatistics run(ConfigurationBean config, Callable<Boolean> startBarrier) {
 		
-		if(config.isUseThreads()) {
-			ExecutorService pool = Executors.newFixedThreadPool(config.getMaxThreadCount());
-		    Set<Future<HashMap<String, String>>> set = new HashSet<Future<HashMap<String, String>>>();
-			while(sqlIterator.hasNext()) {
-				Entry<String, String> sql = sqlIterator.next();
-				Callable<HashMap<String, String>> callable = new Request(sql.getValue(), sql.getKey(), executionSequence++, config);
-				Future<HashMap<String, String>> future = (Future<HashMap<String, String>>)pool.submit(callable);
-				set.add(future);
+		FlightRecording flightRecording = config.isFlightRecording() ? createFlightRecording(config) : null;
+		int executionSequence = 1;
+		boolean closedLoop = LOAD_MODE_CLOSED_LOOP.equalsIgnoreCase(config.getLoadMode());
+		boolean openLoop = LOAD_MODE_OPEN_LOOP.equalsIgnoreCase(config.getLoadMode());
+		boolean sweep = LOAD_MODE_SWEEP.equalsIgnoreCase(config.getLoadMode());
+		boolean replay = LOAD_MODE_REPLAY.equalsIgnoreCase(config.getLoadMode());
+		boolean ingest = LOAD_MODE_INGEST.equalsIgnoreCase(config.getLoadMode());
+		ReplayTrace replayTrace = replay ? createReplayTrace(config) : null;
+		// A replay executes the SQL of its trace, which is reported under the name of the trace file.
+		Workload workload = replay ? new Workload(replayTrace.getFileName()) : createWorkload(config);
+		WorkloadMix workloadMix = replay ? null : createWorkloadMix(config, workload, getUserCount(config));
+		// A distributed worker keeps serving runs, so an unreadable baseline only cancels its run.
+		ResultVerifier resultVerifier = config.isVerifyResults() ? createResultVerifier(config, workload, startBarrier == null) : null;
+		// The user classes of a workload mix define the number of closed loop users.
+		int userCount = closedLoop ? workloadMix.getTotalUsers() : getUserCount(config);
+		if(sweep) {
+			// Connections for the largest step are opened up front and reused by every step.
+			userCount = Math.max(config.getSweepMaxUsers(), 1);
+		}
+		WorkerThreads workerThreads = createWorkerThreads(config, openLoop, userCount);
+		if(replay && ConnectionPool.MODE_SHARED.equalsIgnoreCase(config.getConnectionPoolMode())) {
+			System.out.println("*****  REPLAYED SESSIONS KEEP THEIR OWN CONNECTION, USING THE per_user CONNECTION POOL  *****");
+			config.setConnectionPoolMode(ConnectionPool.MODE_PER_USER);
+		}
+		ConnectionPool connectionPool = createConnectionPool(config, closedLoop || openLoop || sweep || replay || ingest ? userCount : workload.size());
+		if(startBarrier != null && ((config.isVerifyResults() && resultVerifier == null) || !awaitStart(startBarrier))) {
+			connectionPool.close();
+			workload.close();
+			if(flightRecording != null) {
+				flightRecording.stop(getReportFileName("Recording", config, userCount, System.currentTimeMillis()).replace(".csv", ".jfr"));
+			}
+			return null;
+		}
+		long reportTime = System.currentTimeMillis();
+		String fileName = getReportFileName("Results", config, userCount, reportTime);
+		String summaryFileName = getReportFileName("Summary", config, userCount, reportTime);
+		boolean journal = RESULT_FORMAT_JOURNAL.equalsIgnoreCase(config.getResultFormat());
+		if(journal) {
+			fileName = getReportFileName("Journal", config, userCount, reportTime).replace(".csv", "");
+		}
+		RunStatistics runStatistics = new RunStatistics(workload.getFileNames());
+		ResultSink resultSink = createResultSink(config, workload, runStatistics, fileName, journal);
+		IntervalReporter intervalReporter = createIntervalReporter(config, workload, getReportFileName("Intervals", config, userCount, reportTime));
+		final ResultCollector resultCollector = new ResultCollector(runStatistics, resultSink, intervalReporter);
+		ServerMetricsCollector serverMetrics = config.isServerMetrics() ? new ServerMetricsCollector(config, connectionPool, workload) : null;
+		workerThreads.startPinnedThreadCheck();
+		if(serverMetrics != null && config.getWarmUpSeconds() <= 0) {
+			serverMetrics.start();
+		}
+		QueryWatchdog watchdog = connectionPool.getWatchdog();
+		watchdog.startRun();
+		runStatistics.start();
+		long warmUpEndNanos = runStatistics.getRunStartNanos() + TimeUnit.SECONDS.toNanos(Math.max(config.getWarmUpSeconds(), 0));
+		RunStatistics warmUpStatistics = null;
+		if(config.getWarmUpSeconds() > 0) {
+			warmUpStatistics = new RunStatistics(workload.getFileNames());
+			resultCollector.setWarmUp(warmUpStatistics, warmUpEndNanos);
+			if(serverMetrics != null) {
+				// The server metrics exclude the warm up like the Summary they are reported against.
+				serverMetrics.start(warmUpEndNanos);
 			}
+			System.out.println("*****  WARMING UP FOR " + config.getWarmUpSeconds() + " S, SUMMARIZED SEPARATELY  *****");
+		}
+		// Only the closed and open loop modes stop issuing SQL at a steady state.
+		SteadyStateDetector steadyStateDetector = null;
+		if(config.getSteadyStateIntervalSeconds() > 0 && (closedLoop || openLoop)) {
+			steadyStateDetector = new SteadyStateDetector(workload, config.getSteadyStateIntervalSeconds(), config.getSteadyStatePrecisionPercent(),
+					config.getSteadyStateMinIntervals());
+			resultCollector.setSteadyStateDetector(steadyStateDetector);
+			steadyStateDetector.start(warmUpEndNanos);
+		}
+		if(intervalReporter != null) {
+			intervalReporter.start();
+		}
+		
+		if(closedLoop) {
+			ClosedLoopDriver closedLoopDriver = new ClosedLoopDriver(config, connectionPool, workload, workloadMix, resultCollector, workerThreads);
+			closedLoopDriver.run();
 			
-			HashMap<String, String> result = null;
+		} else if(openLoop) {
+			OpenLoopDriver openLoopDriver = new OpenLoopDriver(config, connectionPool, workload, workloadMix, resultCollector, workerThreads, userCount);
+			openLoopDriver.run();
 			
-		    for (Future<HashMap<String, String>> future : set) {
-		    		try {
-			    		result = (HashMap<String, String>) future.get();
-			    		resultsArrayList.add(result);
-				} catch (InterruptedException | ExecutionException e) {
-					e.printStackTrace();
-				}
-		    	
-				if(result.get("status").equals("error")){
-					errorCount = errorCount + 1;
-				} else {
-					successCount = successCount + 1;
+		} else if(sweep) {
+			ConcurrencySweep concurrencySweep = new ConcurrencySweep(config, connectionPool, workload, workloadMix, resultCollector, workerThreads,
+					getReportFileName("Sweep", config, userCount, reportTime));
+			concurrencySweep.run();
+			
+		} else if(replay) {
+			ReplayDriver replayDriver = new ReplayDriver(config, connectionPool, workload, resultCollector, workerThreads, replayTrace, userCount);
+			replayDriver.run();
+			
+		} else if(ingest) {
+			IngestDriver ingestDriver = new IngestDriver(config, connectionPool, workload, resultCollector, workerThreads, userCount,
+					getReportFileName("Throughput", config, userCount, reportTime));
+			ingestDriver.run();
+			
+		} else if(config.isUseThreads()) {
+			ExecutorService pool = Executors.newFixedThreadPool(config.getMaxThreadCount());
+			CompletionService<ExecutionRecord> completionService = new ExecutorCompletionService<ExecutionRecord>(pool);
+			// Only a window of statements is submitted ahead, so large scripts are not held in memory.
+			// Results are collected in completion order, so a slow statement does not hold up the others.
+			int window = config.getMaxThreadCount() * 2;
+			int pending = 0;
+			for(int statementId = 0; statementId < workload.size() && !watchdog.isRunExpired(); statementId++) {
+				final Request request = new Request(workload, statementId, executionSequence++, config, connectionPool);
+				Callable<ExecutionRecord> callable = new Callable<ExecutionRecord>() {
+					@Override
+					public ExecutionRecord call() throws Exception {
+						resultCollector.executionStarted();
+						return request.call();
+					}
+				};
+				completionService.submit(callable);
+				pending++;
+				if(pending >= window) {
+					collectResult(completionService, resultCollector);
+					pending--;
 				}
-		    }
+			}
+			for(; pending > 0; pending--) {
+				collectResult(completionService, resultCollector);
+			}
 			pool.shutdown();	
 			
 		} else {		
-			while(sqlIterator.hasNext()) {
-				Entry<String, String> sql = sqlIterator.next();
-				Request request = new Request(sql.getValue(), sql.getKey(), executionSequence++, config);
-				HashMap<String, String> result = request.executeSQL();
-				resultsArrayList.add(result);
-				if(result.get("status").equals("error")){
-					errorCount = errorCount + 1;
-				} else {
-					successCount = successCount + 1;
-				}
+			ExecutionRecord record = new ExecutionRecord();
+			for(int statementId = 0; statementId < workload.size() && !watchdog.isRunExpired(); statementId++) {
+				Request request = new Request(workload, statementId, executionSequence++, config, connectionPool);
+				resultCollector.executionStarted();
+				request.executeSQL(record);
+				resultCollector.collect(record);
 			}
 		}
-		String fileName = getReportFileName(config.isUseThreads(), config.getMaxThreadCount());
-		writeResults(resultsArrayList, fileName);
+		runStatistics.stop();
+		if(steadyStateDetector != null) {
+			steadyStateDetector.close();
+		}
+		if(warmUpStatistics != null) {
+			// Throughput of the run is measured from the end of the warm up.
+			long measureStartNanos = Math.min(warmUpEndNanos, runStatistics.getRunEndNanos());
+			warmUpStatistics.setRunInterval(runStatistics.getRunStartNanos(), measureStartNanos);
+			runStatistics.setRunInterval(measureStartNanos, runStatistics.getRunEndNanos());
+		}
+		if(serverMetrics != null) {
+			// The connection metrics of the run are lost once its connections are closed.
+			serverMetrics.stop();
+		}
+		if(intervalReporter != null) {
+			intervalReporter.close();
+		}
+		workerThreads.stopPinnedThreadCheck();
+		connectionPool.close();
+		workload.close();
+		resultSink.close();
+		String warmUpFileName = getReportFileName("WarmUp", config, userCount, reportTime);
+		if(warmUpStatistics != null) {
+			System.out.println("*****  WARM UP, EXCLUDED FROM THE SUMMARY  *****");
+			warmUpStatistics.writeSummary(warmUpFileName);
+		}
+		runStatistics.writeSummary(summaryFileName);
+		String digestsFileName = getReportFileName("Digests", config, userCount, reportTime);
+		boolean digests = resultVerifier != null && resultVerifier.writeDigests(digestsFileName);
+		String serverFileName = getReportFileName("Server", config, userCount, reportTime);
+		boolean serverReport = serverMetrics != null && serverMetrics.writeReport(serverFileName, runStatistics);
+		String recordingFileName = getReportFileName("Recording", config, userCount, reportTime).replace(".csv", ".jfr");
+		boolean recording = flightRecording != null && flightRecording.stop(recordingFileName);
 		
 		System.out.println("=========================================================");
-		System.out.println("Total Success: " + successCount);
-		System.out.println("Total Error: " + errorCount);
-		System.out.println("Results Written To: " + fileName);
-		
+		System.out.println("Total Success: " + runStatistics.getSuccessCount());
+		System.out.println("Total Error: " + runStatistics.getErrorCount());
+		System.out.println("Total Timeout: " + runStatistics.getTimeoutCount());
+		if(resultVerifier != null) {
+			System.out.println("Total Mismatch: " + runStatistics.getMismatchCount());
+		}
+		if(journal) {
+			long droppedCount = ((ExecutionJournal) resultSink).getDroppedCount();
+			System.out.println("Journal Written To: " + fileName + (droppedCount > 0 ? " (INCOMPLETE, " + droppedCount + " RECORDS DROPPED)" : ""));
+			System.out.println("Convert To Results With: java -cp SQL_Load_Utility.jar " + JournalConverter.class.getName() + " " + fileName);
+		} else {
+			System.out.println("Results Written To: " + fileName);
+		}
+		System.out.println("Summary Written To: " + summaryFileName);
+		if(warmUpStatistics != null) {
+			System.out.println("Warm Up Summary Written To: " + warmUpFileName);
+		}
+		if(intervalReporter != null) {
+			System.out.println("Intervals Written To: " + getReportFileName("Intervals", config, userCount, reportTime));
+		}
+		if(serverReport) {
+			System.out.println("Server Metrics Written To: " + serverFileName);
+		}
+		if(digests) {
+			System.out.println("Result Digests Written To: " + digestsFileName);
+		}
+		if(recording) {
+			System.out.println("Flight Recording Written To: " + recordingFileName);
+		}
+		return runStatistics;
 	}
 	
 	/**
-	 * Writes results of processed SQL executions to a CSV file.
-	 * @param results - The results from the SQL executions.
-	 * @param fileName - The name of the file to write the results to.
+	 * Waits until the run may start.
+	 * @param startBarrier - Returns once the run may start.
+	 * @return True if the run should start, false if it is cancelled.
 	 */
-	private static void writeResults(ArrayList<HashMap<String, String>> results, String fileName) {
-		FileOutputStream fileOutputStream = null;
-		OutputStreamWriter outputStreamWriter = null;
-		HashMap<String, String> result = null;
-		
+	private static boolean awaitStart(Callable<Boolean> startBarrier) {
 		try {
-			fileOutputStream = new FileOutputStream(fileName);
-			outputStreamWriter = new OutputStreamWriter(fileOutputStream);
-			outputStreamWriter.write("SQL Filename, Status, User Name, Execution Sequence, Start Time, End Time, Elapsed Time, Stack Trace" + System.lineSeparator());
-			Iterator<HashMap<String, String>> iterator = results.iterator();
-			while(iterator.hasNext()){
-				result = iterator.next();
-				String resultString =  result.get("sqlFileName") + ","
-						+ result.get("status") + ","
-						+ result.get("userName") + ","
-						+ result.get("executionSequence") + ","
-						+ result.get("startTime") + ","
-						+ result.get("endTime") + ","		
-						+ result.get("elapsedTime") + ","		
-						//+ result.get("sql") + ","
-						+ "\" " + result.get("stackTrace") + "\"" +
-						System.lineSeparator();
-				outputStreamWriter.write(resultString);
+			return startBarrier.call().booleanValue();
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.out.println("*****  RUN CANCELLED  *****");
+			return false;
+		}
+	}
+	
+	/**
+	 * Waits for the next SQL execution that runs in parallel to complete and collects its result.
+	 * @param completionService - Returns the SQL executions in the order they complete.
+	 * @param resultCollector - Receives the result of the SQL execution.
+	 */
+	private static void collectResult(CompletionService<ExecutionRecord> completionService, ResultCollector resultCollector) {
+		try {
+			resultCollector.collect(completionService.take().get());
+		} catch (InterruptedException | ExecutionException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Gets the number of virtual users for the closed_loop load mode, which is also the number
+	 * of worker threads for the open_loop load mode.
+	 * @param config - The configuration for SQL Load.
+	 * @return The configured number of virtual users.  Defaults to the maximum thread count for
+	 * parallel execution and to a single user for serial execution.
+	 */
+	protected static int getUserCount(ConfigurationBean config) {
+		if(config.getVirtualUsers() > 0) {
+			return config.getVirtualUsers();
+		}
+		return config.isUseThreads() ? config.getMaxThreadCount() : 1;
+	}
+	
+	/**
+	 * Scans the SQL files for statements and reads the parameter files of parameterized SQL files.
+	 * @param config - The configuration for SQL Load.
+	 * @return The workload.
+	 */
+	protected static Workload createWorkload(ConfigurationBean config) {
+		Workload workload = null;
+		try {
+			workload = new Workload(getSqlFiles(config.getSqlDirectory()), config.getStatementTerminator(), 
+					config.getSqlFileEncoding(), config.getSqlCacheMaxFileBytes());
+			System.out.println("*****  FOUND " + workload.size() + " SQL STATEMENTS IN " + workload.getFileCount() + " SQL FILES  *****");
+			// Ingest reads its rows while they are ingested instead of loading parameter files up front.
+			if(!LOAD_MODE_INGEST.equalsIgnoreCase(config.getLoadMode())) {
+				workload.loadParameterFiles(config.getParameterDirectory(), config.getParameterAssignment());
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			System.out.println("*****  UNABLE TO LOAD THE WORKLOAD!  *****");
+			System.out.println(e.getMessage());
+			System.exit(-1);
+		}
+		return workload;
+	}
+	
+	/**
+	 * Starts the flight recording of the run.  The run continues without a recording when the
+	 * flight recorder is not available.
+	 * @param config - The configuration for SQL Load.
+	 * @return The flight recording or null if it could not be started.
+	 */
+	private static FlightRecording createFlightRecording(ConfigurationBean config) {
+		try {
+			return new FlightRecording(config.getFlightRecordingSettings());
+		} catch (Exception | LinkageError e) {
+			e.printStackTrace();
+			System.out.println("*****  UNABLE TO START THE FLIGHT RECORDING, THE RUN CONTINUES WITHOUT IT  *****");
+			return null;
+		}
+	}
+	
+	/**
+	 * Opens the trace file of the replay load mode.
+	 * @param config - The configuration for SQL Load.
+	 * @return The trace.
+	 */
+	private static ReplayTrace createReplayTrace(ConfigurationBean config) {
+		ReplayTrace replayTrace = null;
+		try {
+			replayTrace = new ReplayTrace(new File(config.getReplayFile()));
+		} catch (IOException e) {
+			System.out.println("*****  UNABLE TO OPEN THE REPLAY TRACE!  *****");
+			System.out.println(e.getMessage());
+			System.exit(-1);
+		}
+		return replayTrace;
+	}
+	
+	/**
+	 * Reads the workload definition file, which defines the weights of the SQL files and the
+	 * closed_loop user classes.
+	 * @param config - The configuration for SQL Load.
+	 * @param workload - The SQL statements of the run.
+	 * @param userCount - The number of virtual users when no user classes are defined.
+	 * @return The workload mix.
+	 */
+	private static WorkloadMix createWorkloadMix(ConfigurationBean config, Workload workload, int userCount) {
+		WorkloadMix workloadMix = null;
+		try {
+			workloadMix = new WorkloadMix(workload, config, userCount);
+			if(LOAD_MODE_CLOSED_LOOP.equalsIgnoreCase(config.getLoadMode())) {
+				workloadMix.print();
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			System.out.println("*****  UNABLE TO LOAD THE WORKLOAD DEFINITION!  *****");
+			System.out.println(e.getMessage());
+			System.exit(-1);
+		}
+		return workloadMix;
+	}
+	
+	/**
+	 * Creates the threads for the closed_loop and open_loop load modes.  With virtual threads an
+	 * open loop run starts a new thread for every statement, so per_user connections cannot be
+	 * kept and connections are borrowed from the shared pool instead.
+	 * @param config - The configuration for SQL Load.
+	 * @param openLoop - True for the open_loop load mode.
+	 * @param userCount - The number of virtual users or open loop workers.
+	 * @return The worker threads.
+	 */
+	private static WorkerThreads createWorkerThreads(ConfigurationBean config, boolean openLoop, int userCount) {
+		WorkerThreads workerThreads = new WorkerThreads(config, openLoop ? userCount : 0);
+		if(workerThreads.isVirtual() && openLoop && !ConnectionPool.MODE_SHARED.equalsIgnoreCase(config.getConnectionPoolMode())) {
+			System.out.println("*****  OPEN LOOP VIRTUAL THREADS USE THE SHARED CONNECTION POOL  *****");
+			config.setConnectionPoolMode(ConnectionPool.MODE_SHARED);
+		}
+		return workerThreads;
+	}
+	
+	/**
+	 * Creates the connection pool for the run and opens its connections before the timed part 
+	 * of the run starts.  
+	 * @param config - The configuration for SQL Load.
+	 * @param concurrency - The largest number of SQL statements that can run at the same time.
+	 * @return The connection pool.
+	 */
+	private static ConnectionPool createConnectionPool(ConfigurationBean config, int concurrency) {
+		int poolSize = 1;
+		if(config.isUseThreads() || !LOAD_MODE_ONCE.equalsIgnoreCase(config.getLoadMode())) {
+			poolSize = config.getConnectionPoolSize() > 0 ? config.getConnectionPoolSize() : config.getMaxThreadCount();
+			poolSize = Math.min(poolSize, Math.max(concurrency, 1));
+		}
+		ConnectionPool connectionPool = null;
+		try {
+			connectionPool = new ConnectionPool(config, poolSize);
+			connectionPool.prewarm();
+		} catch (ClassNotFoundException e) {
+			e.printStackTrace();
+			System.exit(-1);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			System.out.println("*****  UNABLE TO CONNECT TO THE DATABASE!  *****");
+			System.exit(-1);
+		}
+		return connectionPool;
+	}
+	
+	/**
+	 * Creates the sink that stores the result of every SQL execution while the run is in
+	 * progress, either a writer that streams the results to a CSV file or a binary journal
+	 * that is converted to CSV after the run.
+	 * @param config - The configuration for SQL Load.
+	 * @param workload - The SQL files of the run.
+	 * @param runStatistics - The statistics of the run.
+	 * @param fileName - The name of the results file or journal directory.
+	 * @param journal - True to write a journal instead of a CSV file.
+	 * @return The result sink.
+	 */
+	private static ResultSink createResultSink(ConfigurationBean config, Workload workload, RunStatistics runStatistics, String fileName, boolean journal) {
+		ResultSink resultSink = null;
+		try {
+			if(journal) {
+				resultSink = new ExecutionJournal(fileName, workload.getFileNames(), config.getDbUserName(), runStatistics);
+			} else {
+				resultSink = new ResultWriter(fileName, workload.getFileNames(), config.getDbUserName(), config.getResultQueueCapacity(), config.getResultFlushInterval());
 			}
-			outputStreamWriter.close();
-			fileOutputStream.close();
-			
 		} catch (IOException e) {
 			e.printStackTrace();
+			System.out.println("*****  UNABLE TO CREATE RESULTS FILE " + fileName + "  *****");
+			System.exit(-1);
 		}
-		
+		return resultSink;
 	}
 	
 	/**
-	 * Report filenames have a specific nomenclature which indicates when the SQL report
-	 * was created, if threads / concurrent users were used, and if thread were used the 
-	 * maximum number of threads that was in place.
-	 * @param useThreads - True if threads were used.  False otherwise.
-	 * @param maxThreadCount - The maximum thread count that was in place at the time of execution.
+	 * Creates the verifier that compares the rows of every query with a baseline run.  Rows
+	 * can only be verified when they are fetched, so result set draining is turned on.
+	 * @param config - The configuration for SQL Load.
+	 * @param workload - The SQL files of the run.
+	 * @param exitOnError - True to exit when the baseline file cannot be read, false to return null.
+	 * @return The result verifier or null if the baseline file cannot be read.
+	 */
+	private static ResultVerifier createResultVerifier(ConfigurationBean config, Workload workload, boolean exitOnError) {
+		if(!config.isDrainResultSet()) {
+			System.out.println("*****  VERIFIED RESULTS MUST BE FETCHED, SETTING result_set_drain TO TRUE  *****");
+			config.setDrainResultSet(true);
+		}
+		ResultVerifier resultVerifier = null;
+		try {
+			resultVerifier = new ResultVerifier(workload, config.getVerificationBaselineFile());
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.out.println("*****  UNABLE TO READ VERIFICATION BASELINE FILE " + config.getVerificationBaselineFile() + "  *****");
+			if(exitOnError) {
+				System.exit(-1);
+			}
+			return null;
+		}
+		workload.setResultVerifier(resultVerifier);
+		return resultVerifier;
+	}
+	
+	/**
+	 * Creates the reporter that prints and writes the metrics of each interval of the run.
+	 * @param config - The configuration for SQL Load.
+	 * @param workload - The SQL files of the run.
+	 * @param fileName - The name of the file to write the intervals to.
+	 * @return The interval reporter or null if interval reporting is disabled.
+	 */
+	private static IntervalReporter createIntervalReporter(ConfigurationBean config, Workload workload, String fileName) {
+		if(config.getIntervalReportSeconds() <= 0) {
+			return null;
+		}
+		IntervalReporter intervalReporter = null;
+		try {
+			intervalReporter = new IntervalReporter(fileName, workload, config.getIntervalReportSeconds());
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.out.println("*****  UNABLE TO CREATE INTERVALS FILE " + fileName + "  *****");
+			System.exit(-1);
+		}
+		return intervalReporter;
+	}
+	
+	/**
+	 * Report filenames have a specific nomenclature which indicates the type of report, when
+	 * the SQL report was created, if threads / concurrent users were used, and if thread were 
+	 * used the maximum number of threads that was in place.  Closed loop runs indicate the
+	 * number of virtual users, open loop runs the target rate and number of workers and ingest
+	 * runs the batch size and number of workers.
+	 * Distributed runs indicate the number of worker processes.
+	 * @param reportType - The type of report such as Results or Summary.
+	 * @param config - The configuration for SQL Load.
+	 * @param userCount - The number of virtual users or open loop workers.
+	 * @param reportTime - The time the report was created in milliseconds since the epoch.
 	 * @return The report file name.
 	 */
-	private static String getReportFileName(boolean useThreads, int maxThreadCount) {
+	protected static String getReportFileName(String reportType, ConfigurationBean config, int userCount, long reportTime) {
 		String fileName = "";
 		String processTypeIdentifier = "";
 		SimpleDateFormat simpleDateFormat = new SimpleDateFormat("MMddyyyy_hhmmssa");
-		String date = simpleDateFormat.format(System.currentTimeMillis());
-		if(useThreads) {
-			processTypeIdentifier = "Parallel_Threads-" + maxThreadCount;
+		String date = simpleDateFormat.format(reportTime);
+		if(LOAD_MODE_CLOSED_LOOP.equalsIgnoreCase(config.getLoadMode())) {
+			processTypeIdentifier = "ClosedLoop_Users-" + userCount;
+		} else if(LOAD_MODE_OPEN_LOOP.equalsIgnoreCase(config.getLoadMode())) {
+			processTypeIdentifier = "OpenLoop_Rate-" + Math.round(config.getTargetRate()) + "_Workers-" + userCount;
+		} else if(LOAD_MODE_REPLAY.equalsIgnoreCase(config.getLoadMode())) {
+			processTypeIdentifier = "Replay_Speed-" + new DecimalFormat("0.###", DecimalFormatSymbols.getInstance(Locale.ROOT)).format(config.getReplaySpeed()) + "x";
+		} else if(LOAD_MODE_INGEST.equalsIgnoreCase(config.getLoadMode())) {
+			processTypeIdentifier = "Ingest_Batch-" + config.getIngestBatchSize() + "_Workers-" + userCount;
+		} else if(LOAD_MODE_SWEEP.equalsIgnoreCase(config.getLoadMode())) {
+			processTypeIdentifier = "ConcurrencySweep_Users-" + Math.max(config.getSweepStartUsers(), 1) + "-" + userCount;
+		} else if(config.isUseThreads()) {
+			processTypeIdentifier = "Parallel_Threads-" + config.getMaxThreadCount();
 		} else {
 			processTypeIdentifier = "Serial";
 		}
-		fileName = "Results_" + processTypeIdentifier + "_" + date + ".csv";
+		if(!config.getWorkerHosts().isEmpty()) {
+			processTypeIdentifier = "Distributed-" + config.getWorkerHosts().split(",").length + "_" + processTypeIdentifier;
+		}
+		fileName = reportType + "_" + processTypeIdentifier + "_" + date + ".csv";
 		return fileName;
 	}
 	
 	/**
-	 * Get the SQL statements from the files within the configured SQL directory.
+	 * Get the SQL files within the configured SQL directory.
 	 * @param sqlDirectory - The directory where the SQL files are located.
-	 * @return - SQL statements.
+	 * @return - SQL files.
 	 */
-	private static HashMap<String, String> getSqlStatements(String sqlDirectory) {
-		HashMap<String, String> sqlStamements = new HashMap<String, String>();
-		SQLBuilder sqlBuilder = new SQLBuilder();
+	protected static List<File> getSqlFiles(String sqlDirectory) {
+		List<File> sqlFiles = new ArrayList<File>();
 		File folder = new File(sqlDirectory);
 		File[] listOfFiles = folder.listFiles();
 		if(listOfFiles == null) {
@@ -178,11 +571,11 @@ public class SQLLoad {
 		}
 		for(File file : listOfFiles) {
 			if(file.isFile()) {
-				sqlStamements.put(file.getName(), sqlBuilder.readSQLFromFile(sqlDirectory + "/" + file.getName()));
+				sqlFiles.add(file);
 			} else if(file.isDirectory()) {
 				System.out.println("Found a Directory: " + file.getName());
 			}
 		}
-		return sqlStamements;
+		return sqlFiles;
 	}
 }
@@ -0,0 +1,263 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Finds the SQL statements of a SQL script file without loading the file into memory.  The
+ * file is read through a fixed size buffer and split into statements on the terminator
+ * character.  Only the position and length of each statement is reported, so the statement
+ * text can be read when it is executed.
+ *
+ * The scanner is a state machine over the bytes of the file.  Terminators inside string
+ * literals, delimited identifiers, -- line comments and block comments are ignored.  Leading
+ * and trailing comments and white space are not part of a statement.  A line comment of the
+ * form --#SET TERMINATOR x between statements changes the terminator for the following
+ * statements, as in the Db2 command line processor.  Text after the last terminator is a
+ * statement of its own, so a file with a single unterminated statement is still one statement.
+ *
+ * Terminators, quotes and comment markers are ASCII characters, which never occur inside
+ * multi-byte UTF-8 characters, so files can be scanned without decoding them.  Files must be
+ * in UTF-8 or a single byte encoding.
+ *
+ * @author Jeff Tuck
+ */
+
+public class SQLScriptScanner {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int MAX_DIRECTIVE_LENGTH = 256;
+	private static final String SET_TERMINATOR = "#SET TERMINATOR";
+
+	private static final int NORMAL = 0;
+	private static final int SINGLE_QUOTE = 1;
+	private static final int DOUBLE_QUOTE = 2;
+	private static final int LINE_COMMENT = 3;
+	private static final int BLOCK_COMMENT = 4;
+
+	private final byte initialTerminator;
+
+	private byte terminator;
+	private int state;
+	private byte pending;
+	private long pendingPosition;
+	private byte previous;
+	private long statementStart;
+	private long statementEnd;
+	private final byte[] comment = new byte[MAX_DIRECTIVE_LENGTH];
+	private int commentLength;
+	private StatementListener listener;
+
+	/**
+	 * Constructor for SQLScriptScanner
+	 * @param terminator - The character that ends a statement, such as ;
+	 * @throws IllegalArgumentException if the terminator is not a single ASCII character.
+	 */
+	public SQLScriptScanner(String terminator) {
+		super();
+		this.initialTerminator = toTerminator(terminator);
+	}
+
+	/**
+	 * Scans a SQL script file from the beginning and reports each statement found.
+	 * @param channel - The channel of the file to scan.
+	 * @param listener - Receives the position and length of each statement.
+	 * @throws IOException if the file cannot be read.
+	 */
+	public void scan(FileChannel channel, StatementListener listener) throws IOException {
+		this.listener = listener;
+		this.terminator = this.initialTerminator;
+		this.state = NORMAL;
+		this.pending = 0;
+		this.previous = 0;
+		this.statementStart = -1;
+		this.statementEnd = -1;
+		this.commentLength = 0;
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		long position = 0;
+		channel.position(0);
+		while(channel.read(buffer) >= 0) {
+			buffer.flip();
+			while(buffer.hasRemaining()) {
+				accept(buffer.get(), position++);
+			}
+			buffer.clear();
+		}
+		flushPending();
+		endStatement();
+		this.listener = null;
+	}
+
+	/**
+	 * Advances the state machine by one byte of the file.
+	 * @param b - The byte.
+	 * @param position - The position of the byte in the file.
+	 */
+	private void accept(byte b, long position) {
+		switch (state) {
+		case SINGLE_QUOTE:
+		case DOUBLE_QUOTE:
+			markSignificant(position);
+			if(b == (state == SINGLE_QUOTE ? '\'' : '"')) {
+				state = NORMAL;
+			}
+			return;
+		case LINE_COMMENT:
+			if(b == '\n') {
+				endLineComment();
+				state = NORMAL;
+			} else if(commentLength < MAX_DIRECTIVE_LENGTH) {
+				comment[commentLength++] = b;
+			}
+			return;
+		case BLOCK_COMMENT:
+			if(previous == '*' && b == '/') {
+				state = NORMAL;
+				previous = 0;
+			} else {
+				previous = b;
+			}
+			return;
+		default:
+			break;
+		}
+		if(pending != 0) {
+			if(pending == '-' && b == '-') {
+				pending = 0;
+				commentLength = 0;
+				state = LINE_COMMENT;
+				return;
+			}
+			if(pending == '/' && b == '*') {
+				pending = 0;
+				previous = 0;
+				state = BLOCK_COMMENT;
+				return;
+			}
+			flushPending();
+		}
+		if(b == terminator) {
+			endStatement();
+		} else if(b == '-' || b == '/') {
+			pending = b;
+			pendingPosition = position;
+		} else if(b == '\'') {
+			markSignificant(position);
+			state = SINGLE_QUOTE;
+		} else if(b == '"') {
+			markSignificant(position);
+			state = DOUBLE_QUOTE;
+		} else if(!isWhitespace(b, position)) {
+			markSignificant(position);
+		}
+	}
+
+	/**
+	 * Adds a - or / that turned out not to start a comment to the current statement.
+	 */
+	private void flushPending() {
+		if(pending != 0) {
+			pending = 0;
+			markSignificant(pendingPosition);
+		}
+	}
+
+	/**
+	 * Extends the current statement up to and including a byte that is part of it.
+	 * @param position - The position of the byte in the file.
+	 */
+	private void markSignificant(long position) {
+		if(statementStart < 0) {
+			statementStart = position;
+		}
+		statementEnd = position + 1;
+	}
+
+	/**
+	 * Reports the current statement, if there is one, and starts the next statement.
+	 */
+	private void endStatement() {
+		if(statementStart >= 0) {
+			long length = statementEnd - statementStart;
+			if(length > Integer.MAX_VALUE) {
+				throw new IllegalStateException("A statement starting at byte " + statementStart + " is longer than 2GB");
+			}
+			listener.statementFound(statementStart, (int) length);
+		}
+		statementStart = -1;
+		statementEnd = -1;
+	}
+
+	/**
+	 * Applies a --#SET TERMINATOR directive found between statements.
+	 */
+	private void endLineComment() {
+		if(statementStart >= 0) {
+			return;
+		}
+		String text = new String(comment, 0, commentLength, StandardCharsets.ISO_8859_1).trim();
+		if(text.regionMatches(true, 0, SET_TERMINATOR, 0, SET_TERMINATOR.length())) {
+			String value = text.substring(SET_TERMINATOR.length()).trim();
+			if(value.length() == 1) {
+				terminator = toTerminator(value);
+			}
+		}
+	}
+
+	/**
+	 * Indicates if a byte is white space.  A UTF-8 byte order mark at the start of the file
+	 * is treated as white space.
+	 * @param b - The byte.
+	 * @param position - The position of the byte in the file.
+	 * @return True if the byte is not part of a statement.
+	 */
+	private static boolean isWhitespace(byte b, long position) {
+		if(position < 3 && (b == (byte) 0xEF || b == (byte) 0xBB || b == (byte) 0xBF)) {
+			return true;
+		}
+		return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == '\f';
+	}
+
+	/**
+	 * Converts a configured terminator to the byte the scanner looks for.
+	 * @param terminator - The terminator.
+	 * @return The terminator byte.
+	 * @throws IllegalArgumentException if the terminator is not a single ASCII character.
+	 */
+	private static byte toTerminator(String terminator) {
+		if(terminator == null || terminator.length() != 1 || terminator.charAt(0) > 127
+				|| Character.isWhitespace(terminator.charAt(0)) || "'\"-/".indexOf(terminator.charAt(0)) >= 0) {
+			throw new IllegalArgumentException("The statement terminator must be a single character other than white space, quotes, - and /, not \"" + terminator + "\"");
+		}
+		return (byte) terminator.charAt(0);
+	}
+
+	/**
+	 * Receives the statements found by the scanner.
+	 */
+	public interface StatementListener {
+
+		/**
+		 * Called for each statement in the order the statements appear in the file.
+		 * @param offset - The position of the first byte of the statement.
+		 * @param length - The number of bytes of the statement, without the terminator.
+		 */
+		void statementFound(long offset, int length);
+	}
+}
@@ -0,0 +1,178 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A SQL statement that may contain parameter markers.  Two styles of markers are supported,
+ * but not within the same statement:
+ *
+ * ? - Positional parameters, bound from the columns of the parameter file in order.
+ * :name - Named parameters, bound from the parameter file column with the same name.  A name
+ * may be used more than once.
+ *
+ * Named parameters are replaced with ? so that the statement can be prepared through JDBC.
+ * Markers inside string literals, delimited identifiers and comments are ignored.
+ *
+ * @author Jeff Tuck
+ */
+
+public class SQLTemplate {
+
+	private final String sql;
+	private final String jdbcSql;
+	private final List<String> parameterNames;
+	private final boolean named;
+
+	/**
+	 * Constructor for SQLTemplate.  Finds the parameter markers of the statement.
+	 * @param sql - The SQL statement as written in the SQL file.
+	 * @throws IllegalArgumentException if the statement mixes positional and named parameters.
+	 */
+	public SQLTemplate(String sql) {
+		super();
+		this.sql = sql;
+		List<String> names = new ArrayList<String>();
+		StringBuilder jdbc = new StringBuilder(sql.length());
+		int positionalCount = 0;
+		int length = sql.length();
+		int i = 0;
+		while(i < length) {
+			char c = sql.charAt(i);
+			if(c == '\'' || c == '"') {
+				int end = skipQuoted(sql, i, c);
+				jdbc.append(sql, i, end);
+				i = end;
+			} else if(c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+				int end = sql.indexOf('\n', i);
+				end = end < 0 ? length : end;
+				jdbc.append(sql, i, end);
+				i = end;
+			} else if(c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+				int end = sql.indexOf("*/", i + 2);
+				end = end < 0 ? length : end + 2;
+				jdbc.append(sql, i, end);
+				i = end;
+			} else if(c == '?') {
+				positionalCount++;
+				names.add(Integer.toString(positionalCount));
+				jdbc.append(c);
+				i++;
+			} else if(c == ':' && i + 1 < length && isNameStart(sql.charAt(i + 1)) && (i == 0 || !isNamePart(sql.charAt(i - 1)) && sql.charAt(i - 1) != ':')) {
+				int end = i + 1;
+				while(end < length && isNamePart(sql.charAt(end))) {
+					end++;
+				}
+				names.add(sql.substring(i + 1, end));
+				jdbc.append('?');
+				i = end;
+			} else {
+				jdbc.append(c);
+				i++;
+			}
+		}
+		if(positionalCount > 0 && positionalCount != names.size()) {
+			throw new IllegalArgumentException("Positional (?) and named (:name) parameters cannot be mixed in the same statement");
+		}
+		this.jdbcSql = jdbc.toString();
+		this.parameterNames = Collections.unmodifiableList(names);
+		this.named = positionalCount == 0 && !names.isEmpty();
+	}
+
+	/**
+	 * Gets the SQL statement as written in the SQL file.
+	 * @return The SQL statement.
+	 */
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * Gets the SQL statement with every parameter marker replaced by ?.
+	 * @return The SQL statement to prepare.
+	 */
+	public String getJdbcSql() {
+		return jdbcSql;
+	}
+
+	/**
+	 * Indicates if the statement contains parameter markers.
+	 * @return True if the statement has parameters.
+	 */
+	public boolean isParameterized() {
+		return !parameterNames.isEmpty();
+	}
+
+	/**
+	 * Indicates if the statement uses named parameters.
+	 * @return True for :name parameters, false for positional parameters.
+	 */
+	public boolean isNamed() {
+		return named;
+	}
+
+	/**
+	 * Gets the parameters in the order they are bound.  Positional parameters are named by
+	 * their position, starting with 1.
+	 * @return The parameter names.
+	 */
+	public List<String> getParameterNames() {
+		return parameterNames;
+	}
+
+	/**
+	 * Finds the end of a string literal or delimited identifier.  A doubled quote character
+	 * is an escaped quote.
+	 * @param sql - The SQL statement.
+	 * @param start - The position of the opening quote.
+	 * @param quote - The quote character.
+	 * @return The position after the closing quote.
+	 */
+	private static int skipQuoted(String sql, int start, char quote) {
+		int i = start + 1;
+		while(i < sql.length()) {
+			if(sql.charAt(i) == quote) {
+				if(i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+					i += 2;
+					continue;
+				}
+				return i + 1;
+			}
+			i++;
+		}
+		return sql.length();
+	}
+
+	/**
+	 * Indicates if a character can start a parameter name.
+	 * @param c - The character.
+	 * @return True for letters and underscores.
+	 */
+	private static boolean isNameStart(char c) {
+		return Character.isLetter(c) || c == '_';
+	}
+
+	/**
+	 * Indicates if a character can be part of a parameter name.
+	 * @param c - The character.
+	 * @return True for letters, digits and underscores.
+	 */
+	private static boolean isNamePart(char c) {
+		return Character.isLetterOrDigit(c) || c == '_';
+	}
+}
@@ -0,0 +1,362 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Captures the server side metrics of a run from the Db2 monitor table functions, so the
+ * response time measured by the client can be split into the time spent executing on the
+ * server and the time spent in the driver, on the network and fetching rows.
+ *
+ * Snapshots are read on a connection of their own before and after the timed part of the
+ * run, and the report shows the difference.  With a warm up the first snapshot is read at the
+ * end of the warm up, so the server metrics cover the same executions as the Summary.
+ * Executions in flight at the end of the warm up are summarized with the warm up by the
+ * client and partly counted in the server metrics.  Statement metrics are read from
+ * MON_GET_PKG_CACHE_STMT and matched to the SQL files by the text of their statements.
+ * Run totals are read from MON_GET_CONNECTION for the connections tagged with the client
+ * application name server_metrics_application_name, so they include every statement of
+ * the run, also those of a replayed trace.  Metrics of connections that are closed during
+ * the run, such as replaced broken connections, are lost.
+ *
+ * The tables can be replaced with server_metrics_statement_source and
+ * server_metrics_connection_source, for example with tables of a stand-in database that
+ * have the same columns.
+ *
+ * @author Jeff Tuck
+ */
+
+public class ServerMetricsCollector {
+
+	private static final String[] STATEMENT_METRICS = { "NUM_EXEC_WITH_METRICS", "STMT_EXEC_TIME", "TOTAL_ACT_WAIT_TIME", "LOCK_WAIT_TIME",
+			"TOTAL_CPU_TIME", "ROWS_READ", "ROWS_RETURNED", "SORT_OVERFLOWS" };
+	private static final String[] CONNECTION_METRICS = { "ACT_COMPLETED_TOTAL", "TOTAL_ACT_TIME", "TOTAL_ACT_WAIT_TIME", "LOCK_WAIT_TIME",
+			"TOTAL_CPU_TIME", "ROWS_READ", "ROWS_RETURNED", "SORT_OVERFLOWS" };
+	private static final int EXECUTIONS = 0;
+	private static final int EXECUTE_MILLIS = 1;
+	private static final int WAIT_MILLIS = 2;
+	private static final int LOCK_WAIT_MILLIS = 3;
+	private static final int CPU_MICROS = 4;
+	private static final int ROWS_READ = 5;
+	private static final int ROWS_RETURNED = 6;
+	private static final int SORT_OVERFLOWS = 7;
+
+	private ConfigurationBean config = null;
+	private ConnectionPool connectionPool = null;
+	private String[] fileNames = null;
+	private final Map<String, Integer> fileIdsByText = new HashMap<String, Integer>();
+	private Map<String, long[]> statementsBefore = null;
+	private long[] connectionsBefore = null;
+	private long[][] fileMetrics = null;
+	private long[] runMetrics = null;
+	private Connection connection = null;
+	private Thread snapshotThread = null;
+	private volatile boolean stopped = false;
+
+	/**
+	 * Constructor for ServerMetricsCollector.  Reads the SQL of every statement of the workload,
+	 * so statement metrics can be matched to their SQL file.
+	 * @param config - The configuration for SQL Load.
+	 * @param connectionPool - Opens the connection the metrics are read on.
+	 * @param workload - The SQL files of the run.
+	 */
+	public ServerMetricsCollector(ConfigurationBean config, ConnectionPool connectionPool, Workload workload) {
+		super();
+		this.config = config;
+		this.connectionPool = connectionPool;
+		this.fileNames = workload.getFileNames();
+		for(int statementId = 0; statementId < workload.size(); statementId++) {
+			try {
+				String sql = workload.getSql(statementId);
+				SQLTemplate template = workload.getTemplate(statementId, sql);
+				// Parameterized statements are executed with parameter markers.
+				String key = normalize(template.isParameterized() ? template.getJdbcSql() : sql);
+				if(!fileIdsByText.containsKey(key)) {
+					fileIdsByText.put(key, Integer.valueOf(workload.getFileId(statementId)));
+				}
+			} catch (IOException | IllegalArgumentException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Reads the metrics at the start of the run.  Server metrics are not captured if they
+	 * cannot be read.
+	 */
+	public void start() {
+		try {
+			connection = connectionPool.openMonitorConnection();
+			statementsBefore = readStatementMetrics();
+			connectionsBefore = readConnectionMetrics();
+		} catch (SQLException e) {
+			System.out.println("*****  UNABLE TO CAPTURE SERVER METRICS!  *****");
+			System.out.println(e.getMessage());
+			close();
+		}
+	}
+
+	/**
+	 * Reads the metrics at the start of the measured part of the run on a thread of its own,
+	 * once the warm up has ended.
+	 * @param startNanos - The end of the warm up.
+	 */
+	public void start(final long startNanos) {
+		this.snapshotThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				long waitNanos;
+				while(!stopped && (waitNanos = startNanos - System.nanoTime()) > 0) {
+					LockSupport.parkNanos(waitNanos);
+				}
+				if(stopped) {
+					System.out.println("*****  THE RUN ENDED DURING THE WARM UP, SERVER METRICS ARE NOT CAPTURED  *****");
+				} else {
+					start();
+				}
+			}
+		}, "server-metrics-snapshot");
+		this.snapshotThread.setDaemon(true);
+		this.snapshotThread.start();
+	}
+
+	/**
+	 * Reads the metrics at the end of the run and computes the metrics of the run.  Must be
+	 * called before the connections of the run are closed.
+	 */
+	public void stop() {
+		if(snapshotThread != null) {
+			this.stopped = true;
+			LockSupport.unpark(snapshotThread);
+			try {
+				snapshotThread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if(connection == null) {
+			return;
+		}
+		try {
+			Map<String, long[]> statementsAfter = readStatementMetrics();
+			long[] connectionsAfter = readConnectionMetrics();
+			fileMetrics = new long[fileNames.length][STATEMENT_METRICS.length];
+			for(Map.Entry<String, long[]> entry : statementsAfter.entrySet()) {
+				long[] delta = difference(entry.getValue(), statementsBefore.get(entry.getKey()));
+				add(fileMetrics[fileIdsByText.get(entry.getKey()).intValue()], delta);
+			}
+			runMetrics = difference(connectionsAfter, connectionsBefore);
+		} catch (SQLException e) {
+			System.out.println("*****  UNABLE TO CAPTURE SERVER METRICS!  *****");
+			System.out.println(e.getMessage());
+		} finally {
+			close();
+		}
+	}
+
+	/**
+	 * Reads the statement metrics of the statements of the workload.  Package cache entries
+	 * with the same text, such as entries for different isolation levels, are added together.
+	 * @return The metrics by normalized statement text.
+	 * @throws SQLException if the metrics cannot be read.
+	 */
+	private Map<String, long[]> readStatementMetrics() throws SQLException {
+		Map<String, long[]> metrics = new HashMap<String, long[]>();
+		if(fileIdsByText.isEmpty()) {
+			return metrics;
+		}
+		Statement statement = connection.createStatement();
+		try {
+			ResultSet resultSet = statement.executeQuery("SELECT STMT_TEXT, " + String.join(", ", STATEMENT_METRICS)
+					+ " FROM " + config.getServerMetricsStatementSource());
+			while(resultSet.next()) {
+				String text = resultSet.getString("STMT_TEXT");
+				if(text == null) {
+					continue;
+				}
+				String key = normalize(text);
+				if(fileIdsByText.containsKey(key)) {
+					long[] values = metrics.get(key);
+					if(values == null) {
+						values = new long[STATEMENT_METRICS.length];
+						metrics.put(key, values);
+					}
+					add(values, read(resultSet, STATEMENT_METRICS));
+				}
+			}
+			resultSet.close();
+		} finally {
+			statement.close();
+		}
+		return metrics;
+	}
+
+	/**
+	 * Reads the metrics of the connections of the run, which are tagged with the client
+	 * application name.
+	 * @return The metrics of all connections of the run added together.
+	 * @throws SQLException if the metrics cannot be read.
+	 */
+	private long[] readConnectionMetrics() throws SQLException {
+		long[] metrics = new long[CONNECTION_METRICS.length];
+		PreparedStatement statement = connection.prepareStatement("SELECT " + String.join(", ", CONNECTION_METRICS)
+				+ " FROM " + config.getServerMetricsConnectionSource() + " WHERE CLIENT_APPLNAME = ?");
+		try {
+			statement.setString(1, config.getServerMetricsApplicationName());
+			ResultSet resultSet = statement.executeQuery();
+			while(resultSet.next()) {
+				add(metrics, read(resultSet, CONNECTION_METRICS));
+			}
+			resultSet.close();
+		} finally {
+			statement.close();
+		}
+		return metrics;
+	}
+
+	private static long[] read(ResultSet resultSet, String[] columns) throws SQLException {
+		long[] values = new long[columns.length];
+		for(int i = 0; i < columns.length; i++) {
+			values[i] = resultSet.getLong(columns[i]);
+		}
+		return values;
+	}
+
+	private static void add(long[] totals, long[] values) {
+		for(int i = 0; i < totals.length; i++) {
+			totals[i] += values[i];
+		}
+	}
+
+	/**
+	 * Computes the change of metrics during the run.
+	 * @param after - The metrics at the end of the run.
+	 * @param before - The metrics at the start of the run, or null if there were none.
+	 * @return The change.  A metric that went down was reset during the run, for example
+	 * when a statement was evicted from the package cache, and its value at the end is used.
+	 */
+	private static long[] difference(long[] after, long[] before) {
+		long[] delta = new long[after.length];
+		for(int i = 0; i < after.length; i++) {
+			long start = before == null ? 0 : before[i];
+			delta[i] = after[i] >= start ? after[i] - start : after[i];
+		}
+		return delta;
+	}
+
+	/**
+	 * Normalizes SQL text for matching, since the package cache may not keep the exact
+	 * white space of the statement.
+	 * @param sql - The SQL text.
+	 * @return The SQL in upper case with runs of white space replaced by one space.
+	 */
+	private static String normalize(String sql) {
+		return sql.trim().replaceAll("\\s+", " ").toUpperCase(Locale.ROOT);
+	}
+
+	private void close() {
+		if(connection != null) {
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				e.printStackTrace();
+			}
+			connection = null;
+		}
+	}
+
+	/**
+	 * Writes the server metrics of the run next to the client measurements to a CSV file and
+	 * prints them to the console.  There is one line per SQL file and a line for the whole run.
+	 * Server times are means per execution.  Outside Server is the mean client service time
+	 * less the mean server execution time: the time spent in the driver, on the network and
+	 * fetching rows.
+	 * @param fileName - The name of the file to write the report to.
+	 * @param runStatistics - The client statistics of the run.
+	 * @return True if the report was written, false if no server metrics were captured.
+	 */
+	public boolean writeReport(String fileName, RunStatistics runStatistics) {
+		if(runMetrics == null) {
+			return false;
+		}
+		StringBuilder report = new StringBuilder();
+		report.append("SQL Filename, Executions, Service Mean (ms), Server Executions, Server Execute Mean (ms), Server Wait Mean (ms), "
+				+ "Lock Wait Mean (ms), Server CPU Mean (ms), Outside Server Mean (ms), Rows Read, Rows Returned, Sort Overflows");
+		report.append(System.lineSeparator());
+		for(int fileId = 0; fileId < fileNames.length; fileId++) {
+			appendReportLine(report, fileNames[fileId], runStatistics, fileId, fileMetrics[fileId]);
+		}
+		appendReportLine(report, RunStatistics.ALL_QUERIES, runStatistics, -1, runMetrics);
+
+		System.out.println("=========================================================");
+		System.out.print(report);
+		try {
+			OutputStreamWriter outputStreamWriter = new OutputStreamWriter(new FileOutputStream(fileName));
+			outputStreamWriter.write(report.toString());
+			outputStreamWriter.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return true;
+	}
+
+	/**
+	 * Appends one line of the report.  Server means are left empty when the server has no
+	 * executions for the line.
+	 * @param report - The report being built.
+	 * @param name - The SQL file name or ALL for the whole run.
+	 * @param runStatistics - The client statistics of the run.
+	 * @param fileId - The id of the SQL file, or -1 for the whole run.
+	 * @param metrics - The server metrics of the line.
+	 */
+	private static void appendReportLine(StringBuilder report, String name, RunStatistics runStatistics, int fileId, long[] metrics) {
+		double serviceMillis = runStatistics.getMeanServiceNanos(fileId) / 1e6;
+		long executions = metrics[EXECUTIONS];
+		report.append(name).append(',')
+			.append(runStatistics.getSuccessCount(fileId)).append(',')
+			.append(format(serviceMillis)).append(',')
+			.append(executions).append(',');
+		if(executions > 0) {
+			double executeMillis = (double) metrics[EXECUTE_MILLIS] / executions;
+			report.append(format(executeMillis)).append(',')
+				.append(format((double) metrics[WAIT_MILLIS] / executions)).append(',')
+				.append(format((double) metrics[LOCK_WAIT_MILLIS] / executions)).append(',')
+				.append(format(metrics[CPU_MICROS] / 1e3 / executions)).append(',')
+				.append(format(serviceMillis - executeMillis)).append(',');
+		} else {
+			report.append(",,,,,");
+		}
+		report.append(metrics[ROWS_READ]).append(',')
+			.append(metrics[ROWS_RETURNED]).append(',')
+			.append(metrics[SORT_OVERFLOWS])
+			.append(System.lineSeparator());
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+}
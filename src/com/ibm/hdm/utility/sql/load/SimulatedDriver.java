@@ -0,0 +1,551 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * JDBC driver for a simulated database, used to calibrate the measurements of the utility and
+ * to rehearse a load plan without a database.  Statements wait for a service time drawn from
+ * the distribution of their profile, return synthetic result sets and fail at a configured
+ * rate, as described by Simulation.
+ *
+ * Set jdbc_driver to com.ibm.hdm.utility.sql.load.SimulatedDriver and jdbc_url to
+ * jdbc:simulated:[simulation file].  All connections with the same URL share one simulated
+ * server, so its concurrency limit applies to the whole run.  The server answers queries of
+ * the MON_GET_PKG_CACHE_STMT and MON_GET_CONNECTION table functions with its own metrics,
+ * and the ApplicationName client info property sets the client application name of a
+ * connection.
+ *
+ * @author Jeff Tuck
+ */
+
+public class SimulatedDriver implements Driver {
+
+	public static final String URL_PREFIX = "jdbc:simulated:";
+
+	private static final ConcurrentHashMap<String, Simulation> simulations = new ConcurrentHashMap<String, Simulation>();
+
+	static {
+		try {
+			DriverManager.registerDriver(new SimulatedDriver());
+		} catch (SQLException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	@Override
+	public Connection connect(String url, Properties info) throws SQLException {
+		if(!acceptsURL(url)) {
+			return null;
+		}
+		Simulation simulation = getSimulation(url.substring(URL_PREFIX.length()).trim());
+		Simulation.Session session = simulation.connect();
+		return (Connection) proxy(Connection.class, new ConnectionHandler(simulation, session));
+	}
+
+	@Override
+	public boolean acceptsURL(String url) {
+		return url != null && url.startsWith(URL_PREFIX);
+	}
+
+	@Override
+	public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+		return new DriverPropertyInfo[0];
+	}
+
+	@Override
+	public int getMajorVersion() {
+		return 1;
+	}
+
+	@Override
+	public int getMinorVersion() {
+		return 0;
+	}
+
+	@Override
+	public boolean jdbcCompliant() {
+		return false;
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+
+	/**
+	 * Gets the simulation of a simulation file, reading the file the first time it is used.
+	 * @param fileName - The name of the simulation file.
+	 * @return The simulation.
+	 * @throws SQLException if the simulation file cannot be read or is invalid.
+	 */
+	private static Simulation getSimulation(String fileName) throws SQLException {
+		Simulation simulation = simulations.get(fileName);
+		if(simulation == null) {
+			synchronized (simulations) {
+				simulation = simulations.get(fileName);
+				if(simulation == null) {
+					try {
+						simulation = new Simulation(fileName);
+					} catch (IOException | IllegalArgumentException e) {
+						throw new SQLException("Unable to load the simulation " + fileName + ": " + e.getMessage(), "08001", e);
+					}
+					System.out.println("*****  USING THE SIMULATED DATABASE " + (fileName.isEmpty() ? "WITH DEFAULT SETTINGS" : fileName) + "  *****");
+					simulations.put(fileName, simulation);
+				}
+			}
+		}
+		return simulation;
+	}
+
+	private static Object proxy(Class<?> type, InvocationHandler handler) {
+		return Proxy.newProxyInstance(SimulatedDriver.class.getClassLoader(), new Class<?>[] { type }, handler);
+	}
+
+	/**
+	 * Answers the methods of Object and the methods that only return a default value.
+	 * @param proxy - The proxy the method was called on.
+	 * @param method - The method.
+	 * @param args - The arguments of the method.
+	 * @return The result of the method.
+	 */
+	private static Object defaultResult(Object proxy, Method method, Object[] args) {
+		switch (method.getName()) {
+		case "hashCode":
+			return Integer.valueOf(System.identityHashCode(proxy));
+		case "equals":
+			return Boolean.valueOf(proxy == args[0]);
+		case "toString":
+			return "Simulated" + method.getDeclaringClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+		default:
+			break;
+		}
+		Class<?> type = method.getReturnType();
+		if(type == boolean.class) {
+			return Boolean.FALSE;
+		} else if(type == int.class) {
+			return Integer.valueOf(0);
+		} else if(type == long.class) {
+			return Long.valueOf(0);
+		} else if(type == short.class) {
+			return Short.valueOf((short) 0);
+		} else if(type == byte.class) {
+			return Byte.valueOf((byte) 0);
+		} else if(type == double.class) {
+			return Double.valueOf(0);
+		} else if(type == float.class) {
+			return Float.valueOf(0);
+		}
+		return null;
+	}
+
+	/**
+	 * A simulated connection.
+	 */
+	private static class ConnectionHandler implements InvocationHandler {
+
+		private static final String APPLICATION_NAME = "ApplicationName";
+
+		private final Simulation simulation;
+		private final Simulation.Session session;
+		private volatile boolean closed = false;
+		private boolean autoCommit = true;
+
+		private ConnectionHandler(Simulation simulation, Simulation.Session session) {
+			this.simulation = simulation;
+			this.session = session;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "createStatement":
+				checkOpen();
+				return proxy(Statement.class, new StatementHandler(simulation, session, null, null));
+			case "prepareStatement":
+				checkOpen();
+				Simulation.Profile profile = simulation.getProfile((String) args[0]);
+				Simulation.pause(profile.getPrepareNanos());
+				return proxy(PreparedStatement.class, new StatementHandler(simulation, session, profile, (String) args[0]));
+			case "setClientInfo":
+				if(args[0] instanceof Properties) {
+					String applicationName = ((Properties) args[0]).getProperty(APPLICATION_NAME);
+					if(applicationName != null) {
+						session.setApplicationName(applicationName);
+					}
+				} else if(APPLICATION_NAME.equals(args[0])) {
+					session.setApplicationName((String) args[1]);
+				}
+				return null;
+			case "getClientInfo":
+				if(args == null || args.length == 0) {
+					Properties clientInfo = new Properties();
+					clientInfo.setProperty(APPLICATION_NAME, session.getApplicationName());
+					return clientInfo;
+				}
+				return APPLICATION_NAME.equals(args[0]) ? session.getApplicationName() : null;
+			case "isValid":
+				return Boolean.valueOf(!closed);
+			case "isClosed":
+				return Boolean.valueOf(closed);
+			case "close":
+				if(!closed) {
+					closed = true;
+					simulation.disconnect(session);
+				}
+				return null;
+			case "setAutoCommit":
+				autoCommit = ((Boolean) args[0]).booleanValue();
+				return null;
+			case "getAutoCommit":
+				return Boolean.valueOf(autoCommit);
+			case "commit":
+			case "rollback":
+				checkOpen();
+				simulation.commit();
+				return null;
+			default:
+				return defaultResult(proxy, method, args);
+			}
+		}
+
+		private void checkOpen() throws SQLException {
+			if(closed) {
+				throw new SQLException("The connection is closed", "08003", -4470);
+			}
+		}
+	}
+
+	/**
+	 * A simulated statement or prepared statement.
+	 */
+	private static class StatementHandler implements InvocationHandler {
+
+		private final Simulation simulation;
+		private final Simulation.Session session;
+		private final Simulation.Profile preparedProfile;
+		private final String preparedSql;
+		private final Simulation.Cancellation cancellation = new Simulation.Cancellation();
+		private int queryTimeout = 0;
+		private int batchCount = 0;
+		private Object firstParameter = null;
+		private ResultSet resultSet = null;
+
+		/**
+		 * Constructor for StatementHandler.
+		 * @param simulation - The simulated database.
+		 * @param session - The session of the connection of the statement.
+		 * @param preparedProfile - The profile of a prepared statement, or null for a statement.
+		 * @param preparedSql - The SQL of a prepared statement, or null for a statement.
+		 */
+		private StatementHandler(Simulation simulation, Simulation.Session session, Simulation.Profile preparedProfile, String preparedSql) {
+			this.simulation = simulation;
+			this.session = session;
+			this.preparedProfile = preparedProfile;
+			this.preparedSql = preparedSql;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "executeQuery":
+				execute(args);
+				return resultSet;
+			case "execute":
+				execute(args);
+				return Boolean.TRUE;
+			case "executeUpdate":
+				simulation.execute(getProfile(args), getSql(args), session, queryTimeout, cancellation);
+				return Integer.valueOf(1);
+			case "executeLargeUpdate":
+				simulation.execute(getProfile(args), getSql(args), session, queryTimeout, cancellation);
+				return Long.valueOf(1);
+			case "addBatch":
+				batchCount++;
+				return null;
+			case "clearBatch":
+				batchCount = 0;
+				return null;
+			case "executeBatch":
+				simulation.execute(getProfile(args), getSql(args), session, queryTimeout, cancellation);
+				int[] counts = new int[batchCount];
+				Arrays.fill(counts, 1);
+				batchCount = 0;
+				return counts;
+			case "getResultSet":
+				return resultSet;
+			case "getUpdateCount":
+				return Integer.valueOf(-1);
+			case "setQueryTimeout":
+				queryTimeout = ((Integer) args[0]).intValue();
+				return null;
+			case "getQueryTimeout":
+				return Integer.valueOf(queryTimeout);
+			case "cancel":
+				cancellation.cancel();
+				return null;
+			case "setString":
+			case "setObject":
+				if(((Integer) args[0]).intValue() == 1) {
+					firstParameter = args[1];
+				}
+				return null;
+			case "getParameterMetaData":
+				return proxy(ParameterMetaData.class, new MetaDataHandler(null));
+			default:
+				return defaultResult(proxy, method, args);
+			}
+		}
+
+		private void execute(Object[] args) throws SQLException {
+			String sql = getSql(args);
+			if(Simulation.isMonitorQuery(sql)) {
+				// Monitor queries are answered at once, without a server slot.
+				String[] columns = sql.toUpperCase().contains("MON_GET_PKG_CACHE_STMT") ? Simulation.STATEMENT_MONITOR_COLUMNS
+						: Simulation.CONNECTION_MONITOR_COLUMNS;
+				String applicationName = firstParameter == null ? null : firstParameter.toString();
+				resultSet = (ResultSet) proxy(ResultSet.class, new TableHandler(columns, simulation.getMonitorRows(sql, applicationName)));
+				return;
+			}
+			Simulation.Profile profile = getProfile(args);
+			simulation.execute(profile, sql, session, queryTimeout, cancellation);
+			resultSet = (ResultSet) proxy(ResultSet.class, new ResultSetHandler(profile));
+		}
+
+		private String getSql(Object[] args) {
+			if(args != null && args.length > 0 && args[0] instanceof String) {
+				return (String) args[0];
+			}
+			return preparedSql != null ? preparedSql : "";
+		}
+
+		private Simulation.Profile getProfile(Object[] args) {
+			if(args != null && args.length > 0 && args[0] instanceof String) {
+				return simulation.getProfile((String) args[0]);
+			}
+			return preparedProfile != null ? preparedProfile : simulation.getProfile("");
+		}
+	}
+
+	/**
+	 * A synthetic result set with the rows and columns of a statement profile.
+	 */
+	private static class ResultSetHandler implements InvocationHandler {
+
+		private final Simulation.Profile profile;
+		private int row = 0;
+		private boolean closed = false;
+
+		private ResultSetHandler(Simulation.Profile profile) {
+			this.profile = profile;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "next":
+				if(closed) {
+					throw new SQLException("The result set is closed", "XJ012", -4470);
+				}
+				row++;
+				return Boolean.valueOf(row <= profile.getRows());
+			case "getString":
+			case "getObject":
+				return profile.getColumnValue();
+			case "getInt":
+				return Integer.valueOf(row);
+			case "getLong":
+				return Long.valueOf(row);
+			case "getRow":
+				return Integer.valueOf(row <= profile.getRows() ? row : 0);
+			case "getMetaData":
+				return proxy(ResultSetMetaData.class, new MetaDataHandler(profile));
+			case "close":
+				closed = true;
+				return null;
+			case "isClosed":
+				return Boolean.valueOf(closed);
+			default:
+				return defaultResult(proxy, method, args);
+			}
+		}
+	}
+
+	/**
+	 * A result set with the rows of a monitor table function.
+	 */
+	private static class TableHandler implements InvocationHandler {
+
+		private final String[] columns;
+		private final List<Object[]> rows;
+		private int row = 0;
+		private boolean wasNull = false;
+		private boolean closed = false;
+
+		private TableHandler(String[] columns, List<Object[]> rows) {
+			this.columns = columns;
+			this.rows = rows;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "next":
+				if(closed) {
+					throw new SQLException("The result set is closed", "XJ012", -4470);
+				}
+				row++;
+				return Boolean.valueOf(row <= rows.size());
+			case "getString":
+				Object text = getValue(args[0]);
+				return text == null ? null : text.toString();
+			case "getObject":
+				return getValue(args[0]);
+			case "getLong":
+				Object number = getValue(args[0]);
+				return Long.valueOf(number instanceof Number ? ((Number) number).longValue() : 0);
+			case "getInt":
+				Object integer = getValue(args[0]);
+				return Integer.valueOf(integer instanceof Number ? ((Number) integer).intValue() : 0);
+			case "wasNull":
+				return Boolean.valueOf(wasNull);
+			case "findColumn":
+				return Integer.valueOf(findColumn((String) args[0]));
+			case "getMetaData":
+				return proxy(ResultSetMetaData.class, new TableMetaDataHandler(columns));
+			case "close":
+				closed = true;
+				return null;
+			case "isClosed":
+				return Boolean.valueOf(closed);
+			default:
+				return defaultResult(proxy, method, args);
+			}
+		}
+
+		private Object getValue(Object column) throws SQLException {
+			if(row < 1 || row > rows.size()) {
+				throw new SQLException("The result set is not on a row", "24000", -4476);
+			}
+			int index = column instanceof String ? findColumn((String) column) : ((Integer) column).intValue();
+			if(index < 1 || index > columns.length) {
+				throw new SQLException("Invalid column " + column, "42703", -206);
+			}
+			Object value = rows.get(row - 1)[index - 1];
+			wasNull = value == null;
+			return value;
+		}
+
+		private int findColumn(String name) throws SQLException {
+			for(int i = 0; i < columns.length; i++) {
+				if(columns[i].equalsIgnoreCase(name)) {
+					return i + 1;
+				}
+			}
+			throw new SQLException("Invalid column name " + name, "42703", -206);
+		}
+	}
+
+	/**
+	 * The metadata of a monitor table function result set.  STMT_TEXT and CLIENT_APPLNAME are
+	 * VARCHAR, the other columns BIGINT.
+	 */
+	private static class TableMetaDataHandler implements InvocationHandler {
+
+		private final String[] columns;
+
+		private TableMetaDataHandler(String[] columns) {
+			this.columns = columns;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "getColumnCount":
+				return Integer.valueOf(columns.length);
+			case "getColumnName":
+			case "getColumnLabel":
+				return columns[((Integer) args[0]).intValue() - 1];
+			case "getColumnType":
+				return Integer.valueOf(isText(args) ? Types.VARCHAR : Types.BIGINT);
+			case "getColumnTypeName":
+				return isText(args) ? "VARCHAR" : "BIGINT";
+			default:
+				return defaultResult(proxy, method, args);
+			}
+		}
+
+		private boolean isText(Object[] args) {
+			String name = columns[((Integer) args[0]).intValue() - 1];
+			return "STMT_TEXT".equals(name) || "CLIENT_APPLNAME".equals(name);
+		}
+	}
+
+	/**
+	 * The metadata of a synthetic result set, or of the parameters of a prepared statement.
+	 * All columns and parameters are VARCHAR.
+	 */
+	private static class MetaDataHandler implements InvocationHandler {
+
+		private final Simulation.Profile profile;
+
+		private MetaDataHandler(Simulation.Profile profile) {
+			this.profile = profile;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "getColumnCount":
+				return Integer.valueOf(profile.getColumns());
+			case "getColumnType":
+			case "getParameterType":
+				return Integer.valueOf(Types.VARCHAR);
+			case "getColumnTypeName":
+			case "getParameterTypeName":
+				return "VARCHAR";
+			case "getColumnDisplaySize":
+			case "getPrecision":
+				return Integer.valueOf(profile == null ? 0 : profile.getColumnWidth());
+			case "getColumnName":
+			case "getColumnLabel":
+				return "COL" + args[0];
+			default:
+				return defaultResult(proxy, method, args);
+			}
+		}
+	}
+}
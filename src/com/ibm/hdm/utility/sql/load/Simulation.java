@@ -0,0 +1,541 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The simulated database of the SimulatedDriver, read from a simulation file.  The simulation
+ * file is a properties file that sets the behavior of all statements, with optional profiles
+ * for statements that behave differently:
+ *
+ * service_time_distribution - fixed, lognormal or bimodal.
+ * service_time_millis - The service time, the median for lognormal and the fast mode for bimodal.
+ * service_time_sigma - The standard deviation of the logarithm of lognormal service times.
+ * slow_service_time_millis - The slow mode of bimodal service times.
+ * slow_fraction - The fraction of bimodal executions that take the slow mode.
+ * prepare_time_millis - The time to prepare a statement.
+ * rows, columns, column_width - The size of each result set.
+ * error_rate - The fraction of executions that fail with error_sqlcode and error_sqlstate.
+ * max_concurrent_statements - The number of statements the server executes at the same time.
+ * Further statements wait for a free slot.  0 is no limit.
+ * connect_time_millis - The time to open a connection.
+ * commit_time_millis - The time to commit a transaction.
+ * statements - A comma separated list of statement profile names.
+ * [profile].match - Text the SQL of the statements of the profile contains, ignoring case.
+ * [profile].[setting] - Overrides a statement setting for the profile.
+ *
+ * The first profile whose match text is found in the SQL is used.
+ *
+ * The simulated server keeps monitor metrics like a Db2 server, so server metric capture can
+ * be rehearsed: SQL that reads MON_GET_PKG_CACHE_STMT returns the metrics of each distinct
+ * statement text and SQL that reads MON_GET_CONNECTION returns the metrics of each open
+ * connection, with the columns of the Db2 table functions that SQL Load reads.  Execution
+ * time includes the wait for a free server slot, which is reported as wait time.
+ *
+ * @author Jeff Tuck
+ */
+
+public class Simulation {
+
+	public static final String DISTRIBUTION_FIXED = "fixed";
+	public static final String DISTRIBUTION_LOGNORMAL = "lognormal";
+	public static final String DISTRIBUTION_BIMODAL = "bimodal";
+	public static final String[] STATEMENT_MONITOR_COLUMNS = { "STMT_TEXT", "NUM_EXEC_WITH_METRICS", "STMT_EXEC_TIME", "TOTAL_ACT_TIME",
+			"TOTAL_ACT_WAIT_TIME", "LOCK_WAIT_TIME", "TOTAL_CPU_TIME", "ROWS_READ", "ROWS_RETURNED", "SORT_OVERFLOWS" };
+	public static final String[] CONNECTION_MONITOR_COLUMNS = { "APPLICATION_HANDLE", "CLIENT_APPLNAME", "ACT_COMPLETED_TOTAL", "TOTAL_ACT_TIME",
+			"TOTAL_ACT_WAIT_TIME", "LOCK_WAIT_TIME", "TOTAL_CPU_TIME", "ROWS_READ", "ROWS_RETURNED", "SORT_OVERFLOWS" };
+
+	private final String fileName;
+	private final Profile defaultProfile;
+	private final List<Profile> profiles = new ArrayList<Profile>();
+	private final ConcurrentHashMap<String, Profile> profileCache = new ConcurrentHashMap<String, Profile>();
+	private final Semaphore serverSlots;
+	private final long connectNanos;
+	private final long commitNanos;
+	private final ConcurrentHashMap<String, Metrics> statementMetrics = new ConcurrentHashMap<String, Metrics>();
+	private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+	private final AtomicLong applicationHandles = new AtomicLong();
+
+	/**
+	 * Constructor for Simulation.  Reads the simulation file.
+	 * @param fileName - The name of the simulation file, or an empty string for the default
+	 * behavior of a fixed 1 ms service time and 10 rows per result set.
+	 * @throws IOException if the simulation file cannot be read.
+	 * @throws IllegalArgumentException if a setting is invalid.
+	 */
+	public Simulation(String fileName) throws IOException {
+		super();
+		this.fileName = fileName;
+		Properties definition = new Properties();
+		if(!fileName.isEmpty()) {
+			InputStream input = new FileInputStream(fileName);
+			try {
+				definition.load(input);
+			} finally {
+				input.close();
+			}
+		}
+		this.defaultProfile = new Profile(definition, "", null);
+		for(String name : definition.getProperty("statements", "").split(",")) {
+			name = name.trim();
+			if(!name.isEmpty()) {
+				profiles.add(new Profile(definition, name + ".", defaultProfile));
+			}
+		}
+		int maxConcurrent = Integer.parseInt(definition.getProperty("max_concurrent_statements", "0").trim());
+		this.serverSlots = maxConcurrent > 0 ? new Semaphore(maxConcurrent, true) : null;
+		this.connectNanos = toNanos(Double.parseDouble(definition.getProperty("connect_time_millis", "0").trim()));
+		this.commitNanos = toNanos(Double.parseDouble(definition.getProperty("commit_time_millis", "0").trim()));
+	}
+
+	/**
+	 * Gets the name of the simulation file.
+	 * @return The file name.
+	 */
+	public String getFileName() {
+		return fileName;
+	}
+
+	/**
+	 * Waits for the time it takes to open a connection.
+	 * @return The session of the connection on the simulated server.
+	 */
+	public Session connect() {
+		pause(connectNanos);
+		Session session = new Session(applicationHandles.incrementAndGet());
+		sessions.add(session);
+		return session;
+	}
+
+	/**
+	 * Waits for the time it takes to commit a transaction.
+	 */
+	public void commit() {
+		pause(commitNanos);
+	}
+
+	/**
+	 * Ends the session of a closed connection, which removes it from the connection metrics.
+	 * @param session - The session of the connection.
+	 */
+	public void disconnect(Session session) {
+		sessions.remove(session);
+	}
+
+	/**
+	 * Gets the profile of a statement.
+	 * @param sql - The SQL of the statement.
+	 * @return The first profile that matches the SQL or the default profile.
+	 */
+	public Profile getProfile(String sql) {
+		Profile profile = profileCache.get(sql);
+		if(profile == null) {
+			profile = defaultProfile;
+			String upperSql = sql.toUpperCase();
+			for(Profile candidate : profiles) {
+				if(upperSql.contains(candidate.match)) {
+					profile = candidate;
+					break;
+				}
+			}
+			// The cache is bounded by the number of distinct statements of the workload.
+			profileCache.put(sql, profile);
+		}
+		return profile;
+	}
+
+	/**
+	 * Executes a statement: waits for a free server slot, waits for the service time of the
+	 * statement and fails the statement at the configured error rate.  The execution is added
+	 * to the metrics of the statement text and of the session, whether it succeeds or not.
+	 * @param profile - The profile of the statement.
+	 * @param sql - The SQL of the statement.
+	 * @param session - The session of the connection that executes the statement.
+	 * @param timeoutSeconds - The query timeout of the statement, 0 for no timeout.
+	 * @param cancellation - Cancels the execution of the statement.
+	 * @throws SQLException if the execution is chosen to fail or cancelled or the thread is interrupted.
+	 * @throws SQLTimeoutException if the service time is longer than the query timeout.
+	 */
+	public void execute(Profile profile, String sql, Session session, int timeoutSeconds, Cancellation cancellation) throws SQLException {
+		long serviceNanos = profile.nextServiceNanos();
+		long timeoutNanos = TimeUnit.SECONDS.toNanos(timeoutSeconds);
+		boolean timedOut = timeoutNanos > 0 && serviceNanos > timeoutNanos;
+		long startNanos = System.nanoTime();
+		if(serverSlots != null) {
+			try {
+				serverSlots.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SQLException("Interrupted while waiting for the simulated server", "57014", -952, e);
+			}
+		}
+		long waitNanos = System.nanoTime() - startNanos;
+		cancellation.begin();
+		try {
+			pause(timedOut ? timeoutNanos : serviceNanos, cancellation);
+		} finally {
+			cancellation.end();
+			if(serverSlots != null) {
+				serverSlots.release();
+			}
+			long executeNanos = System.nanoTime() - startNanos;
+			int rows = timedOut ? 0 : profile.getRows();
+			getStatementMetrics(sql).record(executeNanos, waitNanos, executeNanos - waitNanos, rows);
+			session.metrics.record(executeNanos, waitNanos, executeNanos - waitNanos, rows);
+		}
+		if(cancellation.cancelled) {
+			throw new SQLException("Simulated cancel, SQLCODE=-952, SQLSTATE=57014", "57014", -952);
+		}
+		if(timedOut) {
+			throw new SQLTimeoutException("Simulated query timeout after " + timeoutSeconds + " seconds", "57014", -952);
+		}
+		if(profile.errorRate > 0 && ThreadLocalRandom.current().nextDouble() < profile.errorRate) {
+			throw new SQLException("Simulated error, SQLCODE=" + profile.errorSqlCode + ", SQLSTATE=" + profile.errorSqlState,
+					profile.errorSqlState, profile.errorSqlCode);
+		}
+	}
+
+	private Metrics getStatementMetrics(String sql) {
+		Metrics metrics = statementMetrics.get(sql);
+		if(metrics == null) {
+			metrics = new Metrics();
+			Metrics existing = statementMetrics.putIfAbsent(sql, metrics);
+			if(existing != null) {
+				metrics = existing;
+			}
+		}
+		return metrics;
+	}
+
+	/**
+	 * Tells if a SQL statement reads a monitor table function of the simulated server.
+	 * @param sql - The SQL of the statement.
+	 * @return True for SQL that reads MON_GET_PKG_CACHE_STMT or MON_GET_CONNECTION.
+	 */
+	public static boolean isMonitorQuery(String sql) {
+		String upperSql = sql.toUpperCase();
+		return upperSql.contains("MON_GET_PKG_CACHE_STMT") || upperSql.contains("MON_GET_CONNECTION");
+	}
+
+	/**
+	 * Gets the rows of a monitor table function.  Predicates of the SQL are not evaluated, only
+	 * the application name of a MON_GET_CONNECTION query can be given as a filter.
+	 * @param sql - SQL that reads MON_GET_PKG_CACHE_STMT or MON_GET_CONNECTION.
+	 * @param applicationName - The client application name of the connections to return, or
+	 * null for all connections.
+	 * @return The rows, with the values of STATEMENT_MONITOR_COLUMNS or CONNECTION_MONITOR_COLUMNS.
+	 */
+	public List<Object[]> getMonitorRows(String sql, String applicationName) {
+		List<Object[]> rows = new ArrayList<Object[]>();
+		if(sql.toUpperCase().contains("MON_GET_PKG_CACHE_STMT")) {
+			for(Map.Entry<String, Metrics> entry : statementMetrics.entrySet()) {
+				rows.add(entry.getValue().toRow(entry.getKey(), null));
+			}
+		} else {
+			for(Session session : sessions) {
+				if(applicationName == null || applicationName.equals(session.applicationName)) {
+					rows.add(session.metrics.toRow(Long.valueOf(session.applicationHandle), session.applicationName));
+				}
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Waits for a period without holding a monitor, so virtual threads are not pinned.
+	 * @param nanos - The period in nanoseconds.
+	 */
+	public static void pause(long nanos) {
+		if(nanos <= 0) {
+			return;
+		}
+		long deadline = System.nanoTime() + nanos;
+		long remaining = nanos;
+		while(remaining > 0 && !Thread.currentThread().isInterrupted()) {
+			LockSupport.parkNanos(remaining);
+			remaining = deadline - System.nanoTime();
+		}
+	}
+
+	/**
+	 * Waits for a period or until the execution is cancelled.
+	 * @param nanos - The period in nanoseconds.
+	 * @param cancellation - Ends the wait when the execution is cancelled.
+	 */
+	private static void pause(long nanos, Cancellation cancellation) {
+		long deadline = System.nanoTime() + nanos;
+		long remaining = nanos;
+		while(remaining > 0 && !cancellation.cancelled && !Thread.currentThread().isInterrupted()) {
+			LockSupport.parkNanos(remaining);
+			remaining = deadline - System.nanoTime();
+		}
+	}
+
+	private static long toNanos(double millis) {
+		return Math.round(millis * TimeUnit.MILLISECONDS.toNanos(1));
+	}
+
+	/**
+	 * The behavior of the statements of one profile.
+	 */
+	public static class Profile {
+
+		private final String match;
+		private final String distribution;
+		private final double serviceMillis;
+		private final double sigma;
+		private final double slowServiceMillis;
+		private final double slowFraction;
+		private final double prepareMillis;
+		private final int rows;
+		private final int columns;
+		private final int columnWidth;
+		private final double errorRate;
+		private final int errorSqlCode;
+		private final String errorSqlState;
+		private final String columnValue;
+
+		/**
+		 * Constructor for Profile.
+		 * @param definition - The simulation file.
+		 * @param prefix - The prefix of the settings of the profile, empty for the default profile.
+		 * @param defaults - The profile that settings missing from the profile are taken from, or
+		 * null for the default profile.
+		 */
+		private Profile(Properties definition, String prefix, Profile defaults) {
+			this.match = definition.getProperty(prefix + "match", "").trim().toUpperCase();
+			if(defaults != null && this.match.isEmpty()) {
+				throw new IllegalArgumentException(prefix + "match must be set");
+			}
+			boolean base = defaults == null;
+			this.distribution = get(definition, prefix, "service_time_distribution", base ? DISTRIBUTION_FIXED : defaults.distribution).toLowerCase();
+			this.serviceMillis = getDouble(definition, prefix, "service_time_millis", base ? 1 : defaults.serviceMillis);
+			this.sigma = getDouble(definition, prefix, "service_time_sigma", base ? 0.5 : defaults.sigma);
+			this.slowServiceMillis = getDouble(definition, prefix, "slow_service_time_millis", base ? 100 : defaults.slowServiceMillis);
+			this.slowFraction = getDouble(definition, prefix, "slow_fraction", base ? 0.05 : defaults.slowFraction);
+			this.prepareMillis = getDouble(definition, prefix, "prepare_time_millis", base ? 0 : defaults.prepareMillis);
+			this.rows = (int) getDouble(definition, prefix, "rows", base ? 10 : defaults.rows);
+			this.columns = (int) getDouble(definition, prefix, "columns", base ? 4 : defaults.columns);
+			this.columnWidth = (int) getDouble(definition, prefix, "column_width", base ? 20 : defaults.columnWidth);
+			this.errorRate = getDouble(definition, prefix, "error_rate", base ? 0 : defaults.errorRate);
+			this.errorSqlCode = (int) getDouble(definition, prefix, "error_sqlcode", base ? -911 : defaults.errorSqlCode);
+			this.errorSqlState = get(definition, prefix, "error_sqlstate", base ? "40001" : defaults.errorSqlState);
+			if(!DISTRIBUTION_FIXED.equals(distribution) && !DISTRIBUTION_LOGNORMAL.equals(distribution) && !DISTRIBUTION_BIMODAL.equals(distribution)) {
+				throw new IllegalArgumentException(prefix + "service_time_distribution must be fixed, lognormal or bimodal");
+			}
+			if(serviceMillis < 0 || slowServiceMillis < 0 || sigma < 0 || rows < 0 || columns < 1 || columnWidth < 0) {
+				throw new IllegalArgumentException("The settings of " + (prefix.isEmpty() ? "the simulation" : prefix + "*") + " must not be negative");
+			}
+			StringBuilder value = new StringBuilder(columnWidth);
+			for(int i = 0; i < columnWidth; i++) {
+				value.append((char) ('A' + i % 26));
+			}
+			this.columnValue = value.toString();
+		}
+
+		private static String get(Properties definition, String prefix, String key, String defaultValue) {
+			return definition.getProperty(prefix + key, defaultValue).trim();
+		}
+
+		private static double getDouble(Properties definition, String prefix, String key, double defaultValue) {
+			String value = definition.getProperty(prefix + key);
+			return value == null ? defaultValue : Double.parseDouble(value.trim());
+		}
+
+		/**
+		 * Draws the service time of one execution from the distribution of the profile.
+		 * @return The service time in nanoseconds.
+		 */
+		private long nextServiceNanos() {
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			double millis = serviceMillis;
+			if(DISTRIBUTION_BIMODAL.equals(distribution) && random.nextDouble() < slowFraction) {
+				millis = slowServiceMillis;
+			}
+			if(!DISTRIBUTION_FIXED.equals(distribution) && sigma > 0) {
+				// The configured time is the median of a lognormal distribution around it.
+				millis = millis * Math.exp(sigma * random.nextGaussian());
+			}
+			return toNanos(millis);
+		}
+
+		/**
+		 * Gets the time it takes to prepare a statement of the profile.
+		 * @return The prepare time in nanoseconds.
+		 */
+		public long getPrepareNanos() {
+			return toNanos(prepareMillis);
+		}
+
+		/**
+		 * Gets the number of rows of each result set.
+		 * @return The number of rows.
+		 */
+		public int getRows() {
+			return rows;
+		}
+
+		/**
+		 * Gets the number of columns of each result set.
+		 * @return The number of columns.
+		 */
+		public int getColumns() {
+			return columns;
+		}
+
+		/**
+		 * Gets the width of each column.
+		 * @return The column width in characters.
+		 */
+		public int getColumnWidth() {
+			return columnWidth;
+		}
+
+		/**
+		 * Gets the value of every column of every row.
+		 * @return A string of column_width characters.
+		 */
+		public String getColumnValue() {
+			return columnValue;
+		}
+	}
+
+	/**
+	 * Cancels the execution of a statement from another thread, like Statement.cancel().
+	 */
+	public static class Cancellation {
+
+		private volatile Thread thread = null;
+		private volatile boolean cancelled = false;
+
+		private void begin() {
+			cancelled = false;
+			thread = Thread.currentThread();
+		}
+
+		private void end() {
+			thread = null;
+		}
+
+		/**
+		 * Cancels the statement if it is executing.  A statement that is not executing is not
+		 * affected.
+		 */
+		public void cancel() {
+			Thread executing = thread;
+			if(executing != null) {
+				cancelled = true;
+				LockSupport.unpark(executing);
+			}
+		}
+	}
+
+	/**
+	 * The session of a simulated connection on the simulated server.
+	 */
+	public static class Session {
+
+		private final long applicationHandle;
+		private final Metrics metrics = new Metrics();
+		private volatile String applicationName = "";
+
+		private Session(long applicationHandle) {
+			this.applicationHandle = applicationHandle;
+		}
+
+		/**
+		 * Sets the client application name of the session, which JDBC drivers set with the
+		 * ApplicationName client info property.
+		 * @param applicationName - The client application name.
+		 */
+		public void setApplicationName(String applicationName) {
+			this.applicationName = applicationName == null ? "" : applicationName;
+		}
+
+		/**
+		 * Gets the client application name of the session.
+		 * @return The client application name.
+		 */
+		public String getApplicationName() {
+			return applicationName;
+		}
+	}
+
+	/**
+	 * Monitor metrics of a statement text or a session, kept with the units of the Db2 monitor
+	 * elements when they are read.
+	 */
+	private static class Metrics {
+
+		private final LongAdder executions = new LongAdder();
+		private final LongAdder executeNanos = new LongAdder();
+		private final LongAdder waitNanos = new LongAdder();
+		private final LongAdder cpuNanos = new LongAdder();
+		private final LongAdder rows = new LongAdder();
+
+		private void record(long executeNanos, long waitNanos, long cpuNanos, int rows) {
+			this.executions.increment();
+			this.executeNanos.add(executeNanos);
+			this.waitNanos.add(waitNanos);
+			this.cpuNanos.add(cpuNanos);
+			this.rows.add(rows);
+		}
+
+		/**
+		 * Gets the row of a monitor table function.  Times are in milliseconds, except the CPU
+		 * time in microseconds, and every row read is returned.
+		 * @param key - The statement text or the application handle.
+		 * @param applicationName - The client application name of a session, null for a statement.
+		 * @return The values of STATEMENT_MONITOR_COLUMNS or CONNECTION_MONITOR_COLUMNS.
+		 */
+		private Object[] toRow(Object key, String applicationName) {
+			Long executeMillis = Long.valueOf(TimeUnit.NANOSECONDS.toMillis(executeNanos.sum()));
+			Object[] metrics = { Long.valueOf(executions.sum()), executeMillis, executeMillis,
+					Long.valueOf(TimeUnit.NANOSECONDS.toMillis(waitNanos.sum())), Long.valueOf(0),
+					Long.valueOf(TimeUnit.NANOSECONDS.toMicros(cpuNanos.sum())), Long.valueOf(rows.sum()), Long.valueOf(rows.sum()), Long.valueOf(0) };
+			if(applicationName == null) {
+				Object[] row = new Object[STATEMENT_MONITOR_COLUMNS.length];
+				row[0] = key;
+				System.arraycopy(metrics, 0, row, 1, metrics.length);
+				return row;
+			}
+			Object[] row = new Object[CONNECTION_MONITOR_COLUMNS.length];
+			row[0] = key;
+			row[1] = applicationName;
+			// Connections have no STMT_EXEC_TIME, only ACT_COMPLETED_TOTAL and TOTAL_ACT_TIME.
+			row[2] = metrics[0];
+			row[3] = metrics[2];
+			System.arraycopy(metrics, 3, row, 4, metrics.length - 3);
+			return row;
+		}
+	}
+}
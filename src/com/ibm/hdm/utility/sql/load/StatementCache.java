@@ -0,0 +1,175 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.sql.Connection;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The prepared statements of a single connection, so that each statement is prepared once
+ * per connection rather than once per execution.  When the cache is full, the least
+ * recently used statement is closed.  A connection is only used by one thread at a time,
+ * so the cache is not thread safe.
+ *
+ * @author Jeff Tuck
+ */
+
+public class StatementCache {
+
+	private final Connection connection;
+	private final int fetchSize;
+	private final int queryTimeout;
+	private final LinkedHashMap<String, CachedStatement> statements;
+
+	/**
+	 * Constructor for StatementCache
+	 * @param connection - The connection the statements are prepared on.
+	 * @param capacity - The largest number of statements kept open.
+	 * @param fetchSize - The fetch size set on each statement, 0 for the driver default.
+	 * @param queryTimeout - The query timeout set on each statement in seconds, 0 for no timeout.
+	 */
+	public StatementCache(Connection connection, final int capacity, int fetchSize, int queryTimeout) {
+		super();
+		this.connection = connection;
+		this.fetchSize = fetchSize;
+		this.queryTimeout = queryTimeout;
+		this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+				if(size() > Math.max(capacity, 1)) {
+					closeStatement(eldest.getValue().getStatement());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Gets the prepared statement for a SQL statement if it has been prepared before.
+	 * @param sql - The SQL statement with ? parameter markers.
+	 * @return The cached statement or null.
+	 */
+	public CachedStatement get(String sql) {
+		return statements.get(sql);
+	}
+
+	/**
+	 * Prepares a SQL statement, looks up the types of its parameters and adds it to the cache.
+	 * @param sql - The SQL statement with ? parameter markers.
+	 * @param parameterCount - The number of parameter markers.
+	 * @return The cached statement.
+	 * @throws SQLException if the statement cannot be prepared.
+	 */
+	public CachedStatement prepare(String sql, int parameterCount) throws SQLException {
+		PreparedStatement statement = connection.prepareStatement(sql);
+		try {
+			if(this.fetchSize > 0) {
+				statement.setFetchSize(this.fetchSize);
+			}
+			if(this.queryTimeout > 0) {
+				statement.setQueryTimeout(this.queryTimeout);
+			}
+			CachedStatement cached = new CachedStatement(statement, getParameterTypes(statement, parameterCount));
+			statements.put(sql, cached);
+			return cached;
+		} catch (SQLException e) {
+			closeStatement(statement);
+			throw e;
+		}
+	}
+
+	/**
+	 * Removes a statement from the cache and closes it, for example after it failed.
+	 * @param sql - The SQL statement with ? parameter markers.
+	 */
+	public void evict(String sql) {
+		CachedStatement cached = statements.remove(sql);
+		if(cached != null) {
+			closeStatement(cached.getStatement());
+		}
+	}
+
+	/**
+	 * Gets the types of the parameters of a prepared statement.  Parameters are bound as
+	 * strings when the driver cannot describe them.
+	 * @param statement - The prepared statement.
+	 * @param parameterCount - The number of parameter markers.
+	 * @return The java.sql.Types of the parameters.
+	 */
+	private static int[] getParameterTypes(PreparedStatement statement, int parameterCount) {
+		int[] types = new int[parameterCount];
+		try {
+			ParameterMetaData metaData = statement.getParameterMetaData();
+			for(int i = 0; i < parameterCount; i++) {
+				types[i] = metaData.getParameterType(i + 1);
+			}
+		} catch (SQLException e) {
+			for(int i = 0; i < parameterCount; i++) {
+				types[i] = Types.VARCHAR;
+			}
+		}
+		return types;
+	}
+
+	/**
+	 * Closes a statement without raising an exception.
+	 * @param statement - The statement to close.
+	 */
+	private static void closeStatement(PreparedStatement statement) {
+		try {
+			statement.close();
+		} catch (SQLException e) {
+			// The statement is no longer used.
+		}
+	}
+
+	/**
+	 * A prepared statement together with the types of its parameters.
+	 */
+	public static class CachedStatement {
+
+		private final PreparedStatement statement;
+		private final int[] parameterTypes;
+
+		private CachedStatement(PreparedStatement statement, int[] parameterTypes) {
+			this.statement = statement;
+			this.parameterTypes = parameterTypes;
+		}
+
+		/**
+		 * Gets the prepared statement.
+		 * @return The prepared statement.
+		 */
+		public PreparedStatement getStatement() {
+			return statement;
+		}
+
+		/**
+		 * Gets the types of the parameters.
+		 * @return The java.sql.Types of the parameters.
+		 */
+		public int[] getParameterTypes() {
+			return parameterTypes;
+		}
+	}
+}
@@ -0,0 +1,244 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Decides when a run has measured enough to stop, so a run takes as long as its statistics
+ * need and no longer.  After the warm up the run is cut into intervals and the mean and P95
+ * response time of each SQL file are taken for every interval (the method of batch means).
+ * Once every SQL file that was executed has at least the minimum number of intervals and the
+ * 95% confidence intervals of its mean and its P95, computed from the spread of the interval
+ * values, are narrower than the target precision, the run is in a steady state.  The load
+ * drivers then stop issuing SQL.  The run duration stays the upper limit.
+ *
+ * Like the IntervalReporter, workers record into live histograms without locks and the
+ * detector thread moves their counts to interval histograms at each interval.
+ *
+ * @author Jeff Tuck
+ */
+
+public class SteadyStateDetector implements Runnable {
+
+	/** The 97.5% quantiles of the t distribution for 1 to 30 degrees of freedom. */
+	private static final double[] T_QUANTILES = { 12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+			2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+			2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042 };
+	private static final double Z_QUANTILE = 1.960;
+
+	private final Workload workload;
+	private final long intervalNanos;
+	private final double precisionPercent;
+	private final int minIntervals;
+	private final LatencyHistogram[] liveHistograms;
+	private final LatencyHistogram intervalHistogram = new LatencyHistogram();
+	private final IntervalSeries[] means;
+	private final IntervalSeries[] p95s;
+	private final Thread detectorThread;
+	private long measureStartNanos = 0;
+	private volatile boolean steady = false;
+	private volatile boolean closed = false;
+
+	/**
+	 * Constructor for SteadyStateDetector
+	 * @param workload - The SQL files of the run.
+	 * @param intervalSeconds - The length of an interval in seconds.
+	 * @param precisionPercent - The largest half width of a 95% confidence interval, as a
+	 * percentage of the value it is for.
+	 * @param minIntervals - The smallest number of intervals of a SQL file to decide on.
+	 */
+	public SteadyStateDetector(Workload workload, int intervalSeconds, double precisionPercent, int minIntervals) {
+		super();
+		this.workload = workload;
+		this.intervalNanos = TimeUnit.SECONDS.toNanos(Math.max(intervalSeconds, 1));
+		this.precisionPercent = precisionPercent;
+		this.minIntervals = Math.max(minIntervals, 2);
+		int fileCount = workload.getFileCount();
+		this.liveHistograms = new LatencyHistogram[fileCount];
+		this.means = new IntervalSeries[fileCount];
+		this.p95s = new IntervalSeries[fileCount];
+		for(int fileId = 0; fileId < fileCount; fileId++) {
+			liveHistograms[fileId] = new LatencyHistogram();
+			means[fileId] = new IntervalSeries();
+			p95s[fileId] = new IntervalSeries();
+		}
+		this.detectorThread = new Thread(this, "steady-state-detector");
+		this.detectorThread.setDaemon(true);
+	}
+
+	/**
+	 * Starts the detector thread.  Executions before the start of the measurement, the end of
+	 * the warm up, are not recorded.
+	 * @param measureStartNanos - The start of the first interval.
+	 */
+	public void start(long measureStartNanos) {
+		this.measureStartNanos = measureStartNanos;
+		this.detectorThread.start();
+		System.out.println("*****  STOPPING AT A STEADY STATE: 95% CONFIDENCE WITHIN " + format(precisionPercent) + "% OVER AT LEAST "
+				+ minIntervals + " INTERVALS OF " + TimeUnit.NANOSECONDS.toSeconds(intervalNanos) + " S  *****");
+	}
+
+	/**
+	 * Records the response time of a successful SQL execution after the warm up.  May be
+	 * called by many threads.
+	 * @param record - The record of the SQL execution.
+	 */
+	public void record(ExecutionRecord record) {
+		if(record.isSuccess()) {
+			liveHistograms[record.getFileId()].recordValue(record.getResponseNanos());
+		}
+	}
+
+	/**
+	 * Indicates if the run has reached a steady state and no more SQL needs to be issued.
+	 * @return True once the steady state has been reached.
+	 */
+	public boolean isSteady() {
+		return steady;
+	}
+
+	/**
+	 * Stops the detector thread and prints the precision reached if the run ended before a
+	 * steady state.
+	 */
+	public void close() {
+		this.closed = true;
+		LockSupport.unpark(this.detectorThread);
+		try {
+			this.detectorThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if(!steady) {
+			System.out.println("*****  THE RUN ENDED BEFORE A STEADY STATE WAS REACHED  *****");
+			printPrecision();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		long nextCheckNanos = this.measureStartNanos + this.intervalNanos;
+		while(!this.closed && !this.steady) {
+			long waitNanos = nextCheckNanos - System.nanoTime();
+			if(waitNanos > 0) {
+				LockSupport.parkNanos(waitNanos);
+				continue;
+			}
+			endInterval();
+			nextCheckNanos += this.intervalNanos;
+			if(isConverged()) {
+				System.out.println("*****  STEADY STATE REACHED AFTER " + format((System.nanoTime() - measureStartNanos) / 1e9)
+						+ " S OF MEASUREMENT, STOPPING THE RUN  *****");
+				printPrecision();
+				this.steady = true;
+			}
+		}
+	}
+
+	/**
+	 * Adds the mean and P95 of the interval that just ended to the series of each SQL file.
+	 * Intervals without executions of a SQL file are not added to its series.
+	 */
+	private void endInterval() {
+		for(int fileId = 0; fileId < liveHistograms.length; fileId++) {
+			intervalHistogram.reset();
+			liveHistograms[fileId].moveTo(intervalHistogram);
+			if(intervalHistogram.getTotalCount() > 0) {
+				means[fileId].add(intervalHistogram.getMean());
+				p95s[fileId].add(intervalHistogram.getValueAtPercentile(95.0));
+			}
+		}
+	}
+
+	/**
+	 * Checks if the confidence intervals of every executed SQL file are narrow enough.
+	 * @return True if every executed SQL file is measured precisely enough.
+	 */
+	private boolean isConverged() {
+		boolean executed = false;
+		for(int fileId = 0; fileId < means.length; fileId++) {
+			if(means[fileId].count == 0) {
+				continue;
+			}
+			executed = true;
+			if(means[fileId].count < minIntervals || means[fileId].getPrecisionPercent() > precisionPercent
+					|| p95s[fileId].getPrecisionPercent() > precisionPercent) {
+				return false;
+			}
+		}
+		return executed;
+	}
+
+	/**
+	 * Prints the mean and P95 of each executed SQL file with the half width of their 95%
+	 * confidence intervals.
+	 */
+	private void printPrecision() {
+		for(int fileId = 0; fileId < means.length; fileId++) {
+			IntervalSeries mean = means[fileId];
+			IntervalSeries p95 = p95s[fileId];
+			if(mean.count == 0) {
+				continue;
+			}
+			System.out.println("    " + workload.getFileName(fileId) + ": " + mean.count + " INTERVALS, MEAN "
+					+ RunStatistics.toMillis(mean.getMean()) + " MS +/- " + format(mean.getPrecisionPercent()) + "%, P95 "
+					+ RunStatistics.toMillis(p95.getMean()) + " MS +/- " + format(p95.getPrecisionPercent()) + "%");
+		}
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.2f", value);
+	}
+
+	/**
+	 * The values of one statistic of a SQL file, one per interval.  Only used by the detector
+	 * thread.
+	 */
+	private static class IntervalSeries {
+		private int count = 0;
+		private double sum = 0;
+		private double sumOfSquares = 0;
+
+		private void add(double value) {
+			count++;
+			sum += value;
+			sumOfSquares += value * value;
+		}
+
+		private double getMean() {
+			return count > 0 ? sum / count : 0;
+		}
+
+		/**
+		 * Gets the half width of the 95% confidence interval of the mean of the values.
+		 * @return The half width as a percentage of the mean, infinite with fewer than two values.
+		 */
+		private double getPrecisionPercent() {
+			double mean = getMean();
+			if(count < 2 || mean <= 0) {
+				return Double.POSITIVE_INFINITY;
+			}
+			double variance = Math.max((sumOfSquares - sum * mean) / (count - 1), 0);
+			double quantile = count - 1 <= T_QUANTILES.length ? T_QUANTILES[count - 2] : Z_QUANTILE;
+			return quantile * Math.sqrt(variance / count) / mean * 100;
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package com.ibm.hdm.utility.sql.load;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A group of closed loop virtual users that share the same behavior.  Each user of the
+ * class repeatedly runs an iteration of SQL statements, waiting the think time of the class
+ * after each statement.  An iteration is either:
+ *
+ * A fixed scenario - The statements of a sequence of SQL files, in order.
+ * A weighted mix - A number of statements picked at random by the weights of their SQL files.
+ * All statements - Every statement of the workload, each user starting at a different statement.
+ *
+ * @author Jeff Tuck
+ */
+
+public class UserClass {
+
+	private final String name;
+	private final int users;
+	private final long thinkTime;
+	private final int[] scenario;
+	private final WeightedSelector selector;
+	private final int iterationLength;
+
+	/**
+	 * Constructor for UserClass
+	 * @param name - The name of the user class.
+	 * @param users - The number of virtual users in the class.
+	 * @param thinkTime - The time a user waits after each statement in milliseconds.
+	 * @param scenario - The statement ids of a fixed scenario, or null.
+	 * @param selector - Picks the statements of a weighted mix, or null.
+	 * @param iterationLength - The number of statements in an iteration.
+	 */
+	public UserClass(String name, int users, long thinkTime, int[] scenario, WeightedSelector selector, int iterationLength) {
+		super();
+		this.name = name;
+		this.users = users;
+		this.thinkTime = thinkTime;
+		this.scenario = scenario;
+		this.selector = selector;
+		this.iterationLength = iterationLength;
+	}
+
+	/**
+	 * Gets the name of the user class.
+	 * @return The name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the number of virtual users in the class.
+	 * @return The number of users.
+	 */
+	public int getUsers() {
+		return users;
+	}
+
+	/**
+	 * Gets the time a user waits after each statement.
+	 * @return The think time in milliseconds.
+	 */
+	public long getThinkTime() {
+		return thinkTime;
+	}
+
+	/**
+	 * Gets the number of statements in one iteration.
+	 * @return The iteration length.
+	 */
+	public int getIterationLength() {
+		return iterationLength;
+	}
+
+	/**
+	 * Gets the statement a user runs at a step of an iteration.
+	 * @param userNumber - The number of the user within the class.
+	 * @param step - The position within the iteration.
+	 * @return The id of the statement.
+	 */
+	public int getStatementId(int userNumber, int step) {
+		if(this.selector != null) {
+			return this.selector.nextStatementId();
+		}
+		if(this.scenario != null) {
+			return this.scenario[step];
+		}
+		return (userNumber + step) % this.iterationLength;
+	}
+}
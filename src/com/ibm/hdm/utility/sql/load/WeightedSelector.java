@@ -0,0 +1,106 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Picks SQL statements at random in proportion to the weights of their SQL files.  A file
+ * is picked in constant time with the alias method and a statement is then picked uniformly
+ * from the statements of that file.  Random numbers come from the ThreadLocalRandom of the
+ * calling thread, so many threads can pick statements at the same time without contention.
+ *
+ * @author Jeff Tuck
+ */
+
+public class WeightedSelector {
+
+	private final Workload workload;
+	private final int[] fileIds;
+	private final double[] probabilities;
+	private final int[] aliases;
+
+	/**
+	 * Constructor for WeightedSelector.  Builds the alias table.
+	 * @param workload - The SQL statements of the run.
+	 * @param fileIds - The SQL files to pick from.
+	 * @param weights - The weight of each SQL file.  Weights are relative and do not need to
+	 * add up to 100.
+	 * @throws IllegalArgumentException if a weight is negative or all weights are zero.
+	 */
+	public WeightedSelector(Workload workload, int[] fileIds, double[] weights) {
+		super();
+		this.workload = workload;
+		this.fileIds = fileIds.clone();
+		int count = fileIds.length;
+		double total = 0;
+		for(double weight : weights) {
+			if(weight < 0 || Double.isNaN(weight) || Double.isInfinite(weight)) {
+				throw new IllegalArgumentException("Weights must be zero or positive numbers");
+			}
+			total += weight;
+		}
+		if(total <= 0) {
+			throw new IllegalArgumentException("At least one weight must be greater than zero");
+		}
+		this.probabilities = new double[count];
+		this.aliases = new int[count];
+		double[] scaled = new double[count];
+		int[] small = new int[count];
+		int[] large = new int[count];
+		int smallCount = 0;
+		int largeCount = 0;
+		for(int i = 0; i < count; i++) {
+			scaled[i] = weights[i] * count / total;
+			if(scaled[i] < 1.0) {
+				small[smallCount++] = i;
+			} else {
+				large[largeCount++] = i;
+			}
+		}
+		while(smallCount > 0 && largeCount > 0) {
+			int less = small[--smallCount];
+			int more = large[--largeCount];
+			probabilities[less] = scaled[less];
+			aliases[less] = more;
+			scaled[more] = scaled[more] + scaled[less] - 1.0;
+			if(scaled[more] < 1.0) {
+				small[smallCount++] = more;
+			} else {
+				large[largeCount++] = more;
+			}
+		}
+		while(largeCount > 0) {
+			probabilities[large[--largeCount]] = 1.0;
+		}
+		while(smallCount > 0) {
+			// Only reached through rounding errors.
+			probabilities[small[--smallCount]] = 1.0;
+		}
+	}
+
+	/**
+	 * Picks a statement.
+	 * @return The id of the statement.
+	 */
+	public int nextStatementId() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int column = random.nextInt(fileIds.length);
+		int fileId = random.nextDouble() < probabilities[column] ? fileIds[column] : fileIds[aliases[column]];
+		int statementCount = workload.getStatementCount(fileId);
+		int offset = statementCount > 1 ? random.nextInt(statementCount) : 0;
+		return workload.getFirstStatementId(fileId) + offset;
+	}
+}
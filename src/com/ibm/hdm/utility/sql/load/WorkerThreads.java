@@ -0,0 +1,182 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Creates the threads that run virtual users and open loop workers and limits how many SQL
+ * statements execute at the same time.  Two executor modes are supported:
+ *
+ * platform - A fixed pool of operating system threads, one per virtual user or worker.
+ * virtual - One virtual thread per virtual user or per open loop statement.  Virtual threads
+ * release their carrier thread while sleeping or waiting on network I/O, so thousands of
+ * mostly idle users can be simulated from one client machine.  Requires Java 21 or later,
+ * older runtimes fall back to platform threads.
+ *
+ * Virtual threads are created through reflection so that the utility still builds and runs
+ * on Java 17.
+ *
+ * @author Jeff Tuck
+ */
+
+public class WorkerThreads {
+
+	public static final String MODE_PLATFORM = "platform";
+	public static final String MODE_VIRTUAL = "virtual";
+
+	private ConfigurationBean config = null;
+	private final boolean virtual;
+	private final Semaphore executionPermits;
+	private PinnedThreadMonitor pinnedThreadMonitor = null;
+
+	/**
+	 * Constructor for WorkerThreads
+	 * @param config - The configuration for SQL Load.
+	 * @param defaultLimit - The number of SQL statements that may execute at the same time with
+	 * virtual threads when max_concurrent_executions is not set, or 0 for no limit.
+	 */
+	public WorkerThreads(ConfigurationBean config, int defaultLimit) {
+		super();
+		this.config = config;
+		this.virtual = MODE_VIRTUAL.equalsIgnoreCase(config.getExecutorMode()) && isVirtualThreadSupported();
+		if(MODE_VIRTUAL.equalsIgnoreCase(config.getExecutorMode()) && !this.virtual) {
+			System.out.println("*****  VIRTUAL THREADS REQUIRE JAVA 21 OR LATER, USING PLATFORM THREADS  *****");
+		}
+		int limit = config.getMaxConcurrentExecutions();
+		if(limit <= 0 && this.virtual) {
+			limit = defaultLimit;
+		}
+		this.executionPermits = limit > 0 ? new Semaphore(limit, true) : null;
+	}
+
+	/**
+	 * Indicates if virtual threads are used.
+	 * @return True if virtual threads are used.
+	 */
+	public boolean isVirtual() {
+		return this.virtual;
+	}
+
+	/**
+	 * Creates the executor that runs virtual users or open loop statements.
+	 * @param threadCount - The number of platform threads.  Ignored for virtual threads, which
+	 * are created for each task.
+	 * @param namePrefix - The prefix of the thread names.
+	 * @return The executor.
+	 */
+	public ExecutorService newExecutor(int threadCount, String namePrefix) {
+		if(this.virtual) {
+			try {
+				Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+				Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+				builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix + "-", 1L);
+				ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+				Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+				return (ExecutorService) newExecutor.invoke(null, factory);
+			} catch (ReflectiveOperationException e) {
+				e.printStackTrace();
+				System.out.println("*****  UNABLE TO CREATE VIRTUAL THREADS, USING PLATFORM THREADS  *****");
+			}
+		}
+		ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(Math.max(threadCount, 1), new NamedThreadFactory(namePrefix));
+		executor.prestartAllCoreThreads();
+		return executor;
+	}
+
+	/**
+	 * Waits until another SQL statement may execute.  Must be followed by endExecution().
+	 * @throws InterruptedException if the thread is interrupted while waiting.
+	 */
+	public void beginExecution() throws InterruptedException {
+		if(this.executionPermits != null) {
+			this.executionPermits.acquire();
+		}
+	}
+
+	/**
+	 * Marks the end of a SQL execution started with beginExecution().
+	 */
+	public void endExecution() {
+		if(this.executionPermits != null) {
+			this.executionPermits.release();
+		}
+	}
+
+	/**
+	 * Starts watching for virtual threads pinned to their carrier thread when virtual threads
+	 * are used and the pinned thread check is configured.
+	 */
+	public void startPinnedThreadCheck() {
+		if(!this.virtual || !config.isPinnedThreadCheck()) {
+			return;
+		}
+		try {
+			this.pinnedThreadMonitor = new PinnedThreadMonitor(config.getPinnedThreadThreshold());
+			this.pinnedThreadMonitor.start();
+		} catch (Exception | LinkageError e) {
+			this.pinnedThreadMonitor = null;
+			System.out.println("*****  JAVA FLIGHT RECORDER IS NOT AVAILABLE, PINNED THREAD CHECK DISABLED: " + e + "  *****");
+		}
+	}
+
+	/**
+	 * Stops watching for pinned virtual threads and prints what was found.
+	 */
+	public void stopPinnedThreadCheck() {
+		if(this.pinnedThreadMonitor != null) {
+			this.pinnedThreadMonitor.stop();
+			this.pinnedThreadMonitor = null;
+		}
+	}
+
+	/**
+	 * Indicates if the running Java version can create virtual threads.
+	 * @return True if virtual threads are supported.
+	 */
+	private static boolean isVirtualThreadSupported() {
+		try {
+			Thread.class.getMethod("ofVirtual");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Creates numbered platform threads so that thread dumps and profiles show which threads
+	 * belong to the load.
+	 */
+	private static class NamedThreadFactory implements ThreadFactory {
+
+		private final String namePrefix;
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+		private NamedThreadFactory(String namePrefix) {
+			this.namePrefix = namePrefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			return new Thread(runnable, this.namePrefix + "-" + threadNumber.getAndIncrement());
+		}
+	}
+}
@@ -0,0 +1,376 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The SQL statements of a run.  Each SQL file is identified by a numeric file id, its position
+ * in file name order, which is what statistics refer to.  A SQL file may contain many
+ * statements separated by a terminator.  Every statement of every file is identified by a
+ * numeric statement id, which is what the load drivers iterate over.
+ *
+ * SQL files are scanned once when the workload is created and only the position and length
+ * of each statement is kept.  Statements of files larger than the cache limit are read from
+ * the file each time they are executed, so script files of several hundred MB with thousands
+ * of statements do not have to fit into memory.  Statements of smaller files are kept in
+ * memory.
+ *
+ * SQL files with parameter markers get their bind values from a CSV parameter file with the
+ * same base name, for example Query1.csv for Query1.sql.
+ * 
+ * @author Jeff Tuck
+ */
+
+public class Workload {
+
+	private final String[] fileNames;
+	private final FileChannel[] channels;
+	private final ParameterSource[] parameterSources;
+	private final int[] firstStatementIds;
+	private final int[] fileStatementCounts;
+	private final Charset charset;
+	private int statementCount = 0;
+	private int[] fileIds = new int[16];
+	private int[] statementNumbers = new int[16];
+	private long[] offsets = new long[16];
+	private int[] lengths = new int[16];
+	private String[] cachedSql = new String[16];
+	private SQLTemplate[] cachedTemplates = new SQLTemplate[16];
+	private ResultVerifier resultVerifier = null;
+
+	/**
+	 * Constructor for Workload.  Scans the SQL files for statements.
+	 * @param sqlFiles - The SQL files of the run.
+	 * @param terminator - The character that separates statements within a SQL file.
+	 * @param encoding - The character encoding of the SQL files.
+	 * @param cacheMaxFileBytes - The size up to which the statements of a SQL file are kept in memory.
+	 * @throws IOException if a SQL file cannot be read.
+	 * @throws IllegalArgumentException if the terminator is invalid or a statement mixes 
+	 * positional and named parameters.
+	 */
+	public Workload(List<File> sqlFiles, String terminator, String encoding, long cacheMaxFileBytes) throws IOException {
+		super();
+		File[] files = sqlFiles.toArray(new File[sqlFiles.size()]);
+		Arrays.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File first, File second) {
+				return first.getName().compareTo(second.getName());
+			}
+		});
+		this.fileNames = new String[files.length];
+		this.channels = new FileChannel[files.length];
+		this.parameterSources = new ParameterSource[files.length];
+		this.firstStatementIds = new int[files.length];
+		this.fileStatementCounts = new int[files.length];
+		this.charset = Charset.forName(encoding);
+		SQLScriptScanner scanner = new SQLScriptScanner(terminator);
+		for(int fileId = 0; fileId < files.length; fileId++) {
+			this.fileNames[fileId] = files[fileId].getName();
+			FileChannel channel = FileChannel.open(files[fileId].toPath(), StandardOpenOption.READ);
+			int firstStatement = this.statementCount;
+			scanner.scan(channel, new StatementCollector(fileId));
+			this.firstStatementIds[fileId] = firstStatement;
+			this.fileStatementCounts[fileId] = this.statementCount - firstStatement;
+			if(channel.size() <= cacheMaxFileBytes) {
+				for(int statementId = firstStatement; statementId < this.statementCount; statementId++) {
+					cachedSql[statementId] = readSql(channel, statementId);
+					try {
+						cachedTemplates[statementId] = new SQLTemplate(cachedSql[statementId]);
+					} catch (IllegalArgumentException e) {
+						throw new IllegalArgumentException(fileNames[fileId] + " statement " + statementNumbers[statementId] + ": " + e.getMessage(), e);
+					}
+				}
+				channel.close();
+			} else {
+				this.channels[fileId] = channel;
+			}
+		}
+	}
+
+	/**
+	 * Constructor for a Workload without SQL files, for runs whose statements are given to
+	 * each Request, such as a replayed trace.  Every execution is reported under one name.
+	 * @param name - The name executions are reported under, such as the name of the trace file.
+	 */
+	public Workload(String name) {
+		super();
+		this.fileNames = new String[] { name };
+		this.channels = new FileChannel[1];
+		this.parameterSources = new ParameterSource[1];
+		this.firstStatementIds = new int[1];
+		this.fileStatementCounts = new int[1];
+		this.charset = StandardCharsets.UTF_8;
+	}
+
+	/**
+	 * Reads the parameter files of the SQL files.  A parameter file is required for every 
+	 * SQL file with parameterized statements that are kept in memory.  Parameterized 
+	 * statements of larger SQL files fail when they are executed without a parameter file.
+	 * @param parameterDirectory - The directory that contains the parameter files.
+	 * @param assignment - How rows are assigned to executions: round_robin, random or unique.
+	 * @throws IOException if a parameter file is missing or does not match its SQL file.
+	 */
+	public void loadParameterFiles(String parameterDirectory, String assignment) throws IOException {
+		for(int fileId = 0; fileId < fileNames.length; fileId++) {
+			File parameterFile = getParameterFile(fileId, parameterDirectory);
+			if(parameterFile.isFile()) {
+				parameterSources[fileId] = new ParameterSource(parameterFile, assignment);
+				System.out.println("*****  LOADED " + parameterSources[fileId].size() + " PARAMETER ROWS FOR " + fileNames[fileId] + "  *****");
+			}
+		}
+		for(int statementId = 0; statementId < statementCount; statementId++) {
+			SQLTemplate template = cachedTemplates[statementId];
+			if(template == null || !template.isParameterized()) {
+				continue;
+			}
+			int fileId = fileIds[statementId];
+			if(parameterSources[fileId] == null) {
+				throw new IOException("The SQL file " + fileNames[fileId] + " has parameters but the parameter file for it was not found in \""
+						+ parameterDirectory + "\".  Edit parameter_file_directory in config.props to correct.");
+			}
+			try {
+				parameterSources[fileId].getColumns(template);
+			} catch (SQLException e) {
+				throw new IOException(fileNames[fileId] + " statement " + statementNumbers[statementId] + ": " + e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * Gets the parameter file of a SQL file, the CSV file with the same base name.
+	 * @param fileId - The id of the SQL file.
+	 * @param parameterDirectory - The directory that contains the parameter files.
+	 * @return The parameter file, which may not exist.
+	 */
+	public File getParameterFile(int fileId, String parameterDirectory) {
+		String baseName = fileNames[fileId];
+		if(baseName.lastIndexOf('.') > 0) {
+			baseName = baseName.substring(0, baseName.lastIndexOf('.'));
+		}
+		return parameterDirectory.isEmpty() ? new File(baseName + ".csv") : new File(parameterDirectory, baseName + ".csv");
+	}
+
+	/**
+	 * Closes the SQL files that statements are read from during the run.
+	 */
+	public void close() {
+		for(FileChannel channel : channels) {
+			if(channel != null) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of statements in all SQL files.
+	 * @return The number of statements.
+	 */
+	public int size() {
+		return statementCount;
+	}
+
+	/**
+	 * Gets the number of SQL files.
+	 * @return The number of SQL files.
+	 */
+	public int getFileCount() {
+		return fileNames.length;
+	}
+
+	/**
+	 * Gets the name of a SQL file.
+	 * @param fileId - The id of the SQL file.
+	 * @return The file name.
+	 */
+	public String getFileName(int fileId) {
+		return fileNames[fileId];
+	}
+
+	/**
+	 * Gets the names of all SQL files, in file id order.
+	 * @return A copy of the file names.
+	 */
+	public String[] getFileNames() {
+		return fileNames.clone();
+	}
+
+	/**
+	 * Finds a SQL file by name.
+	 * @param fileName - The name of the SQL file.
+	 * @return The id of the SQL file or -1 if the workload has no SQL file with that name.
+	 */
+	public int findFileId(String fileName) {
+		int fileId = Arrays.binarySearch(fileNames, fileName);
+		return fileId >= 0 ? fileId : -1;
+	}
+
+	/**
+	 * Gets the id of the first statement of a SQL file.  The statements of a SQL file have
+	 * consecutive ids.
+	 * @param fileId - The id of the SQL file.
+	 * @return The id of the first statement.
+	 */
+	public int getFirstStatementId(int fileId) {
+		return firstStatementIds[fileId];
+	}
+
+	/**
+	 * Gets the number of statements in a SQL file.
+	 * @param fileId - The id of the SQL file.
+	 * @return The number of statements.
+	 */
+	public int getStatementCount(int fileId) {
+		return fileStatementCounts[fileId];
+	}
+
+	/**
+	 * Gets the SQL file that contains a statement.
+	 * @param statementId - The id of the statement.
+	 * @return The id of the SQL file.
+	 */
+	public int getFileId(int statementId) {
+		return fileIds[statementId];
+	}
+
+	/**
+	 * Gets the position of a statement within its SQL file.
+	 * @param statementId - The id of the statement.
+	 * @return The statement number, starting with 1.
+	 */
+	public int getStatementNumber(int statementId) {
+		return statementNumbers[statementId];
+	}
+
+	/**
+	 * Gets the SQL of a statement.  Statements that are not kept in memory are read from
+	 * their SQL file.
+	 * @param statementId - The id of the statement.
+	 * @return The SQL statement.
+	 * @throws IOException if the statement cannot be read.
+	 */
+	public String getSql(int statementId) throws IOException {
+		String sql = cachedSql[statementId];
+		if(sql == null) {
+			sql = readSql(channels[fileIds[statementId]], statementId);
+		}
+		return sql;
+	}
+
+	/**
+	 * Gets the parsed SQL of a statement, including its parameter markers.
+	 * @param statementId - The id of the statement.
+	 * @param sql - The SQL of the statement as returned by getSql().
+	 * @return The SQL template.
+	 */
+	public SQLTemplate getTemplate(int statementId, String sql) {
+		SQLTemplate template = cachedTemplates[statementId];
+		if(template == null) {
+			template = new SQLTemplate(sql);
+		}
+		return template;
+	}
+
+	/**
+	 * Gets the bind values of a SQL file.
+	 * @param fileId - The id of the SQL file.
+	 * @return The parameter source or null if the SQL file has no parameter file.
+	 */
+	public ParameterSource getParameterSource(int fileId) {
+		return parameterSources[fileId];
+	}
+
+	/**
+	 * Gets the verifier that compares the results of queries with a baseline run.
+	 * @return The result verifier or null if results are not verified.
+	 */
+	public ResultVerifier getResultVerifier() {
+		return resultVerifier;
+	}
+
+	/**
+	 * Sets the verifier that compares the results of queries with a baseline run.
+	 * @param resultVerifier - The result verifier or null to not verify results.
+	 */
+	public void setResultVerifier(ResultVerifier resultVerifier) {
+		this.resultVerifier = resultVerifier;
+	}
+
+	/**
+	 * Reads a statement from its SQL file with a positional read, which can be performed
+	 * by many threads at the same time.
+	 * @param channel - The channel of the SQL file.
+	 * @param statementId - The id of the statement.
+	 * @return The SQL statement.
+	 * @throws IOException if the statement cannot be read.
+	 */
+	private String readSql(FileChannel channel, int statementId) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(lengths[statementId]);
+		long position = offsets[statementId];
+		while(buffer.hasRemaining()) {
+			int read = channel.read(buffer, position + buffer.position());
+			if(read < 0) {
+				throw new IOException("Unexpected end of file reading " + fileNames[fileIds[statementId]]);
+			}
+		}
+		buffer.flip();
+		return charset.decode(buffer).toString();
+	}
+
+	/**
+	 * Adds the statements found by the scanner to the workload.
+	 */
+	private class StatementCollector implements SQLScriptScanner.StatementListener {
+
+		private final int fileId;
+		private int statementNumber = 0;
+
+		private StatementCollector(int fileId) {
+			this.fileId = fileId;
+		}
+
+		@Override
+		public void statementFound(long offset, int length) {
+			if(statementCount == offsets.length) {
+				int capacity = statementCount * 2;
+				fileIds = Arrays.copyOf(fileIds, capacity);
+				statementNumbers = Arrays.copyOf(statementNumbers, capacity);
+				offsets = Arrays.copyOf(offsets, capacity);
+				lengths = Arrays.copyOf(lengths, capacity);
+				cachedSql = Arrays.copyOf(cachedSql, capacity);
+				cachedTemplates = Arrays.copyOf(cachedTemplates, capacity);
+			}
+			fileIds[statementCount] = this.fileId;
+			statementNumbers[statementCount] = ++this.statementNumber;
+			offsets[statementCount] = offset;
+			lengths[statementCount] = length;
+			statementCount++;
+		}
+	}
+}
@@ -0,0 +1,240 @@
+package com.ibm.hdm.utility.sql.load;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Defines which SQL statements the load drivers run, read from the optional workload
+ * definition file.  The file is a properties file with the following entries:
+ *
+ * weight.[file name] - The relative weight of a SQL file in the open_loop mode and for user
+ * classes without a scenario or weights of their own.
+ * user_classes - A comma separated list of closed_loop user class names.
+ * [class].users - The number of virtual users in the class.
+ * [class].think_time_millis - The think time of the class.  Defaults to think_time_millis.
+ * [class].scenario - A comma separated list of SQL files the users run in order.
+ * [class].weight.[file name] - The relative weight of a SQL file for the class.
+ * [class].statements_per_iteration - The number of weighted statements in an iteration.
+ * Defaults to the number of statements in the workload.
+ *
+ * Without a workload definition file, or without user classes, there is a single user class
+ * with virtual_users users.
+ *
+ * @author Jeff Tuck
+ */
+
+public class WorkloadMix {
+
+	private static final String WEIGHT_PREFIX = "weight.";
+	private static final String DEFAULT_CLASS = "default";
+
+	private Workload workload = null;
+	private final List<UserClass> userClasses = new ArrayList<UserClass>();
+	private WeightedSelector selector = null;
+
+	/**
+	 * Constructor for WorkloadMix.  Reads the workload definition file when one is configured.
+	 * @param workload - The SQL statements of the run.
+	 * @param config - The configuration for SQL Load.
+	 * @param defaultUsers - The number of virtual users when no user classes are defined.
+	 * @throws IOException if the workload definition file cannot be read.
+	 * @throws IllegalArgumentException if the workload definition is invalid.
+	 */
+	public WorkloadMix(Workload workload, ConfigurationBean config, int defaultUsers) throws IOException {
+		super();
+		this.workload = workload;
+		Properties definition = new Properties();
+		if(!config.getWorkloadDefinitionFile().isEmpty()) {
+			InputStream input = new FileInputStream(config.getWorkloadDefinitionFile());
+			try {
+				definition.load(input);
+			} finally {
+				input.close();
+			}
+		}
+		this.selector = createSelector(definition, "");
+		String classNames = definition.getProperty("user_classes", "").trim();
+		if(classNames.isEmpty()) {
+			int iterationLength = workload.size();
+			userClasses.add(new UserClass(DEFAULT_CLASS, defaultUsers, config.getThinkTime(), null, this.selector, iterationLength));
+			return;
+		}
+		for(String className : classNames.split(",")) {
+			className = className.trim();
+			if(!className.isEmpty()) {
+				userClasses.add(createUserClass(definition, className, config));
+			}
+		}
+	}
+
+	/**
+	 * Gets the closed_loop user classes.
+	 * @return The user classes.
+	 */
+	public List<UserClass> getUserClasses() {
+		return Collections.unmodifiableList(userClasses);
+	}
+
+	/**
+	 * Gets the number of closed_loop virtual users in all user classes.
+	 * @return The number of virtual users.
+	 */
+	public int getTotalUsers() {
+		int users = 0;
+		for(UserClass userClass : userClasses) {
+			users += userClass.getUsers();
+		}
+		return users;
+	}
+
+	/**
+	 * Gets the statement of an open_loop arrival.  Statements are picked by weight when
+	 * weights are defined and issued in turn otherwise.
+	 * @param arrival - The number of the arrival, starting with 0.
+	 * @return The id of the statement.
+	 */
+	public int getStatementId(long arrival) {
+		if(this.selector != null) {
+			return this.selector.nextStatementId();
+		}
+		return (int) (arrival % workload.size());
+	}
+
+	/**
+	 * Prints the user classes of the run.
+	 */
+	public void print() {
+		for(UserClass userClass : userClasses) {
+			System.out.println("*****  USER CLASS " + userClass.getName() + ": " + userClass.getUsers() + " USERS, THINK TIME "
+					+ userClass.getThinkTime() + " MS, " + userClass.getIterationLength() + " STATEMENTS PER ITERATION  *****");
+		}
+	}
+
+	/**
+	 * Creates a user class from the workload definition.
+	 * @param definition - The workload definition.
+	 * @param className - The name of the user class.
+	 * @param config - The configuration for SQL Load.
+	 * @return The user class.
+	 */
+	private UserClass createUserClass(Properties definition, String className, ConfigurationBean config) {
+		String prefix = className + ".";
+		int users = Integer.parseInt(definition.getProperty(prefix + "users", "0").trim());
+		if(users <= 0) {
+			throw new IllegalArgumentException(prefix + "users must be greater than zero");
+		}
+		long thinkTime = Long.parseLong(definition.getProperty(prefix + "think_time_millis", Long.toString(config.getThinkTime())).trim());
+		String scenarioFiles = definition.getProperty(prefix + "scenario", "").trim();
+		if(!scenarioFiles.isEmpty()) {
+			int[] scenario = createScenario(scenarioFiles, prefix + "scenario");
+			return new UserClass(className, users, thinkTime, scenario, null, scenario.length);
+		}
+		WeightedSelector classSelector = createSelector(definition, prefix);
+		if(classSelector == null) {
+			classSelector = this.selector;
+		}
+		int iterationLength = Integer.parseInt(definition.getProperty(prefix + "statements_per_iteration", Integer.toString(workload.size())).trim());
+		if(iterationLength <= 0) {
+			throw new IllegalArgumentException(prefix + "statements_per_iteration must be greater than zero");
+		}
+		if(classSelector == null) {
+			// Without weights the users run every statement of the workload.
+			iterationLength = workload.size();
+		}
+		return new UserClass(className, users, thinkTime, null, classSelector, iterationLength);
+	}
+
+	/**
+	 * Creates the statement sequence of a fixed scenario.
+	 * @param scenarioFiles - The comma separated SQL file names of the scenario.
+	 * @param key - The name of the workload definition entry, used in error messages.
+	 * @return The statement ids of the scenario in order.
+	 */
+	private int[] createScenario(String scenarioFiles, String key) {
+		List<Integer> statementIds = new ArrayList<Integer>();
+		for(String fileName : scenarioFiles.split(",")) {
+			int fileId = findFileId(fileName.trim(), key);
+			int first = workload.getFirstStatementId(fileId);
+			for(int i = 0; i < workload.getStatementCount(fileId); i++) {
+				statementIds.add(first + i);
+			}
+		}
+		if(statementIds.isEmpty()) {
+			throw new IllegalArgumentException(key + " contains no SQL statements");
+		}
+		int[] scenario = new int[statementIds.size()];
+		for(int i = 0; i < scenario.length; i++) {
+			scenario[i] = statementIds.get(i);
+		}
+		return scenario;
+	}
+
+	/**
+	 * Creates the weighted selector defined by the weight entries with a prefix.
+	 * @param definition - The workload definition.
+	 * @param prefix - The prefix of the entries, empty for the global weights.
+	 * @return The selector or null if there are no weight entries.
+	 */
+	private WeightedSelector createSelector(Properties definition, String prefix) {
+		String weightPrefix = prefix + WEIGHT_PREFIX;
+		TreeSet<String> keys = new TreeSet<String>();
+		for(String key : definition.stringPropertyNames()) {
+			if(key.startsWith(weightPrefix)) {
+				keys.add(key);
+			}
+		}
+		if(keys.isEmpty()) {
+			return null;
+		}
+		int[] fileIds = new int[keys.size()];
+		double[] weights = new double[keys.size()];
+		int i = 0;
+		for(String key : keys) {
+			fileIds[i] = findFileId(key.substring(weightPrefix.length()), key);
+			weights[i] = Double.parseDouble(definition.getProperty(key).trim());
+			if(weights[i] > 0 && workload.getStatementCount(fileIds[i]) == 0) {
+				throw new IllegalArgumentException(key + " refers to a SQL file without SQL statements");
+			}
+			i++;
+		}
+		try {
+			return new WeightedSelector(workload, fileIds, weights);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException(weightPrefix + "*: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Finds a SQL file of the workload by name.
+	 * @param fileName - The name of the SQL file.
+	 * @param key - The name of the workload definition entry, used in error messages.
+	 * @return The id of the SQL file.
+	 */
+	private int findFileId(String fileName, String key) {
+		int fileId = workload.findFileId(fileName);
+		if(fileId < 0) {
+			throw new IllegalArgumentException(key + " refers to the SQL file " + fileName + ", which is not in the SQL directory");
+		}
+		return fileId;
+	}
+}